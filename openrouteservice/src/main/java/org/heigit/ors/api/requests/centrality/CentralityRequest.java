@@ -18,6 +18,8 @@ public class CentralityRequest {
     public static final String PARAM_EXCLUDENODES = "excludeNodes";
     public static final String PARAM_PROFILE = "profile";
     public static final String PARAM_FORMAT = "format";
+    public static final String PARAM_MODE = "mode";
+    public static final String PARAM_SAMPLE_SIZE = "sampleSize";
 
     @ApiModelProperty(name = PARAM_ID, value = "Arbitrary identification string of the request reflected in the meta information.",
             example = "routing_request")
@@ -41,6 +43,23 @@ public class CentralityRequest {
     private List<Integer> excludeNodes;
     private boolean hasExcludeNodes = false;
 
+    @ApiModelProperty(name = PARAM_MODE, value = "Specifies whether the centrality is computed exactly from all nodes in the bounding box or " +
+            "approximated from a random sample of source nodes, which bounds the computation time for large areas.",
+            example = "approximate")
+    @JsonProperty(value = PARAM_MODE)
+    private APIEnums.CentralityMode mode = APIEnums.CentralityMode.EXACT;
+    @JsonIgnore
+    private boolean hasMode = false;
+
+    @ApiModelProperty(name = PARAM_SAMPLE_SIZE, value = "Number of source nodes to sample in `approximate` mode. " +
+            "The scores are scaled to the total number of nodes and the estimated error is returned with the result. " +
+            "It bounds the absolute error of all scores with a probability of about 90% and is on the same scale as the scores.",
+            example = "500")
+    @JsonProperty(value = PARAM_SAMPLE_SIZE)
+    private Integer sampleSize;
+    @JsonIgnore
+    private boolean hasSampleSize = false;
+
     @ApiModelProperty(name = PARAM_FORMAT, hidden = true)
     @JsonProperty(PARAM_FORMAT)
     private APIEnums.CentralityResponseType responseType = APIEnums.CentralityResponseType.JSON;
@@ -88,6 +107,32 @@ public class CentralityRequest {
         this.profile = profile;
     }
 
+    public APIEnums.CentralityMode getMode() {
+        return mode;
+    }
+
+    public void setMode(APIEnums.CentralityMode mode) {
+        this.mode = mode;
+        this.hasMode = true;
+    }
+
+    public boolean hasMode() {
+        return hasMode;
+    }
+
+    public Integer getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(Integer sampleSize) {
+        this.sampleSize = sampleSize;
+        this.hasSampleSize = true;
+    }
+
+    public boolean hasSampleSize() {
+        return hasSampleSize;
+    }
+
     public void setResponseType(APIEnums.CentralityResponseType responseType) {
         this.responseType = responseType;
     }
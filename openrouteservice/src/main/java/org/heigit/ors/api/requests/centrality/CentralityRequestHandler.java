@@ -2,6 +2,7 @@ package org.heigit.ors.api.requests.centrality;
 
 import com.google.common.primitives.Doubles;
 import com.graphhopper.util.shapes.BBox;
+import org.heigit.ors.api.requests.common.APIEnums;
 import org.heigit.ors.api.requests.common.GenericHandler;
 import org.heigit.ors.common.StatusCode;
 import org.heigit.ors.exceptions.ParameterValueException;
@@ -51,6 +52,15 @@ public class CentralityRequestHandler extends GenericHandler {
             coreRequest.setExcludeNodes(request.getExcludeNodes());
         }
 
+        if (request.hasMode() && request.getMode() == APIEnums.CentralityMode.APPROXIMATE) {
+            coreRequest.setApproximate(true);
+            if (request.hasSampleSize()) {
+                if (request.getSampleSize() == null || request.getSampleSize() <= 0)
+                    throw new ParameterValueException(CentralityErrorCodes.INVALID_PARAMETER_VALUE, CentralityRequest.PARAM_SAMPLE_SIZE, String.valueOf(request.getSampleSize()));
+                coreRequest.setSampleSize(request.getSampleSize());
+            }
+        }
+
         return coreRequest;
     }
 
@@ -121,7 +121,8 @@ public class APIEnums {
 
     @ApiModel
     public enum MatrixResponseType {
-        JSON("json");
+        JSON("json"),
+        BINARY("binary");
 
         private final String value;
 
@@ -167,6 +168,29 @@ public class APIEnums {
         public String toString() { return value; }
     }
 
+    @ApiModel
+    public enum CentralityMode {
+        EXACT("exact"),
+        APPROXIMATE("approximate");
+
+        private final String value;
+
+        CentralityMode(String value) { this.value = value; }
+
+        @JsonCreator
+        public static CentralityMode forValue(String v) throws ParameterValueException {
+            for (CentralityMode enumItem: CentralityMode.values()) {
+                if (enumItem.value.equals(v))
+                    return enumItem;
+            }
+            throw new ParameterValueException(INVALID_PARAMETER_VALUE, "mode", v);
+        }
+
+        @Override
+        @JsonValue
+        public String toString() { return value; }
+    }
+
     @ApiModel
     public enum VehicleType {
         HGV("hgv"),
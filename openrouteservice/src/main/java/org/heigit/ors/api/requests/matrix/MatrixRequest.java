@@ -43,6 +43,7 @@ public class MatrixRequest {
     public static final String PARAM_RESOLVE_LOCATIONS = "resolve_locations";
     public static final String PARAM_UNITS = "units";
     public static final String PARAM_OPTIMIZED = "optimized";
+    public static final String PARAM_AVOID_FEATURES = "avoid_features";
 
     @ApiModelProperty(name = "PARAM_ID", value = "Arbitrary identification string of the request reflected in the meta information.",
             example = "matrix_request")
@@ -101,6 +102,14 @@ public class MatrixRequest {
     @JsonIgnore
     private boolean hasOptimized = false;
 
+    @ApiModelProperty(name = PARAM_AVOID_FEATURES, value = "List of features to avoid. Requests with features to avoid are computed in flexible mode. " +
+            "CUSTOM_KEYS:{'itemRestrictions':{'ref':'profile', 'itemsWhen':{'driving-*':['highways','tollways','ferries'],'cycling-*':['ferries','steps','fords'],'foot-*':['ferries','fords','steps'],'wheelchair':['ferries','steps']}}}",
+            example = "[\"ferries\"]")
+    @JsonProperty(PARAM_AVOID_FEATURES)
+    private APIEnums.AvoidFeatures[] avoidFeatures;
+    @JsonIgnore
+    private boolean hasAvoidFeatures = false;
+
     @ApiModelProperty(hidden = true)
     private APIEnums.MatrixResponseType responseType;
 
@@ -243,6 +252,19 @@ public class MatrixRequest {
         return hasOptimized;
     }
 
+    public APIEnums.AvoidFeatures[] getAvoidFeatures() {
+        return avoidFeatures;
+    }
+
+    public void setAvoidFeatures(APIEnums.AvoidFeatures[] avoidFeatures) {
+        this.avoidFeatures = avoidFeatures;
+        hasAvoidFeatures = true;
+    }
+
+    public boolean hasAvoidFeatures() {
+        return hasAvoidFeatures;
+    }
+
     public APIEnums.MatrixResponseType getResponseType() {
         return responseType;
     }
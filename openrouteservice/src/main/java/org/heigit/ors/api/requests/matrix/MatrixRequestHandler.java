@@ -25,6 +25,7 @@ import org.heigit.ors.exceptions.StatusCodeException;
 import org.heigit.ors.matrix.MatrixErrorCodes;
 import org.heigit.ors.matrix.MatrixMetricsType;
 import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.routing.AvoidFeatureFlags;
 import org.heigit.ors.routing.RoutingProfileManager;
 import org.heigit.ors.routing.RoutingProfileType;
 import org.heigit.ors.services.matrix.MatrixServiceSettings;
@@ -55,7 +56,7 @@ public class MatrixRequestHandler {
 
         int sources = request.getSources() == null ? request.getLocations().size() : request.getSources().length;
         int destinations = request.getDestinations() == null ? request.getLocations().size() : request.getDestinations().length;
-        Coordinate[] locations = convertLocations(request.getLocations(), sources * destinations);
+        Coordinate[] locations = convertLocations(request.getLocations());
 
         coreRequest.setProfileType(convertToMatrixProfileType(request.getProfile()));
 
@@ -80,6 +81,13 @@ public class MatrixRequestHandler {
             coreRequest.setResolveLocations(request.getResolveLocations());
         if (request.hasUnits())
             coreRequest.setUnits(convertUnits(request.getUnits()));
+        if (request.hasAvoidFeatures()) {
+            coreRequest.setAvoidFeatures(convertAvoidFeatures(request.getAvoidFeatures(), coreRequest.getProfileType()));
+            // the features can only be avoided on the graphs without static preprocessing
+            coreRequest.setFlexibleMode(true);
+        }
+        // the limit depends on the mode, which is only known after all parameters have been converted
+        checkNumberOfRoutes(sources * destinations, coreRequest.getFlexibleMode());
 
         return coreRequest;
     }
@@ -100,12 +108,15 @@ public class MatrixRequestHandler {
         return combined;
     }
 
-    protected static Coordinate[] convertLocations(List<List<Double>> locations, int numberOfRoutes) throws ParameterValueException, ServerLimitExceededException {
-        if (locations == null || locations.size() < 2)
-            throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, MatrixRequest.PARAM_LOCATIONS);
-        int maximumNumberOfRoutes = MatrixServiceSettings.getMaximumRoutes(false);
+    protected static void checkNumberOfRoutes(int numberOfRoutes, boolean flexibleMode) throws ServerLimitExceededException {
+        int maximumNumberOfRoutes = MatrixServiceSettings.getMaximumRoutes(flexibleMode);
         if (numberOfRoutes > maximumNumberOfRoutes)
             throw new ServerLimitExceededException(MatrixErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "Only a total of " + maximumNumberOfRoutes + " routes are allowed.");
+    }
+
+    protected static Coordinate[] convertLocations(List<List<Double>> locations) throws ParameterValueException {
+        if (locations == null || locations.size() < 2)
+            throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, MatrixRequest.PARAM_LOCATIONS);
         ArrayList<Coordinate> locationCoordinates = new ArrayList<>();
 
         for (List<Double> coordinate : locations) {
@@ -164,6 +175,19 @@ public class MatrixRequestHandler {
         return units;
     }
 
+    protected static int convertAvoidFeatures(APIEnums.AvoidFeatures[] avoidFeatures, int profileType) throws ParameterValueException {
+        int flags = 0;
+        for (APIEnums.AvoidFeatures avoid : avoidFeatures) {
+            String avoidFeatureName = avoid.toString();
+            int flag = AvoidFeatureFlags.getFromString(avoidFeatureName);
+            if (flag == 0 || !AvoidFeatureFlags.isValid(profileType, flag))
+                throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, MatrixRequest.PARAM_AVOID_FEATURES, avoidFeatureName);
+
+            flags |= flag;
+        }
+        return flags;
+    }
+
     protected static int convertToMatrixProfileType(APIEnums.Profile profile) throws ParameterValueException {
         try {
             int profileFromString = RoutingProfileType.getFromString(profile.toString());
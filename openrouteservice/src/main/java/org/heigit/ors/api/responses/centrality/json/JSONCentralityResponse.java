@@ -1,5 +1,6 @@
 package org.heigit.ors.api.responses.centrality.json;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.vividsolutions.jts.geom.Coordinate;
 import io.swagger.annotations.ApiModel;
@@ -26,6 +27,14 @@ public class JSONCentralityResponse extends CentralityResponse {
     @JsonProperty("aggregated") // test if everything is returned in correct order
     public Double[][] aggregated;
 
+    @JsonProperty("sampleSize")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer sampleSize;
+
+    @JsonProperty("estimatedError")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Double estimatedError;
+
     public JSONCentralityResponse(CentralityResult centralityResult, CentralityRequest request) throws StatusCodeException {
         super(centralityResult);
         HashMap<Coordinate, Double> centralityScores = centralityResult.getCentralityScores();
@@ -38,6 +47,11 @@ public class JSONCentralityResponse extends CentralityResponse {
         this.nodeIds = new Integer[length];
         int current = 0;
 
+        if (centralityResult.isApproximate()) {
+            this.sampleSize = centralityResult.getSampleSize();
+            this.estimatedError = centralityResult.getEstimatedError();
+        }
+
         for (HashMap.Entry<Coordinate, Double> centralityScore : centralityScores.entrySet()) {
             Coordinate location = centralityScore.getKey();
             Double score = centralityScore.getValue();
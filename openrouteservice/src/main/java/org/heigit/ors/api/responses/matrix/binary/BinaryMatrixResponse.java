@@ -0,0 +1,124 @@
+/*
+ * This file is part of Openrouteservice.
+ *
+ * Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library;
+ * if not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.heigit.ors.api.responses.matrix.binary;
+
+import org.heigit.ors.api.requests.matrix.MatrixRequest;
+import org.heigit.ors.api.responses.matrix.MatrixResponse;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.ResolvedLocation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of a matrix result for clients fetching large matrices. All numbers are little-endian.
+ *
+ * <pre>
+ * header:    "ORSM" | int32 version | int32 source count | int32 destination count | int32 metrics
+ * locations: for each source, then each destination:
+ *            float64 longitude | float64 latitude | float32 snapped distance | int32 name length | UTF-8 name
+ * tables:    for each metric flag set in metrics, in ascending order of the flags:
+ *            source count rows of destination count float32 values
+ * </pre>
+ *
+ * The metrics are the {@link org.heigit.ors.matrix.MatrixMetricsType} flags of the contained tables. Locations which
+ * could not be resolved have NaN coordinates and snapped distance, and values which could not be determined are NaN.
+ * Names are only contained if resolve_locations is set, otherwise their length is 0. The values are not rounded.
+ */
+public class BinaryMatrixResponse extends MatrixResponse {
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'O', 'R', 'S', 'M'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean includeResolveLocations;
+
+    public BinaryMatrixResponse(MatrixResult result, MatrixRequest request) {
+        super(result, request);
+        includeResolveLocations = request.hasResolveLocations() && request.getResolveLocations();
+    }
+
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ResolvedLocation[] sources = matrixResult.getSources();
+        ResolvedLocation[] destinations = matrixResult.getDestinations();
+
+        int metrics = 0;
+        float[][] tables = matrixResult.getTables();
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null)
+                metrics |= i;
+        }
+
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(sources.length);
+        buffer.putInt(destinations.length);
+        buffer.putInt(metrics);
+
+        for (ResolvedLocation location : sources)
+            buffer = writeLocation(out, buffer, location);
+        for (ResolvedLocation location : destinations)
+            buffer = writeLocation(out, buffer, location);
+
+        int valueCount = sources.length * destinations.length;
+        for (float[] table : tables) {
+            if (table == null)
+                continue;
+            for (int i = 0; i < valueCount; i++) {
+                if (buffer.remaining() < Float.BYTES)
+                    flush(out, buffer);
+                buffer.putFloat(table[i] == -1 ? Float.NaN : table[i]);
+            }
+        }
+        flush(out, buffer);
+        out.flush();
+    }
+
+    private ByteBuffer writeLocation(OutputStream out, ByteBuffer buffer, ResolvedLocation location) throws IOException {
+        byte[] name = new byte[0];
+        if (includeResolveLocations && location != null && location.getName() != null)
+            name = location.getName().getBytes(StandardCharsets.UTF_8);
+
+        int size = 2 * Double.BYTES + Float.BYTES + Integer.BYTES + name.length;
+        if (buffer.remaining() < size) {
+            flush(out, buffer);
+            if (buffer.capacity() < size)
+                buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (location == null) {
+            buffer.putDouble(Double.NaN);
+            buffer.putDouble(Double.NaN);
+            buffer.putFloat(Float.NaN);
+        } else {
+            buffer.putDouble(location.getCoordinate().x);
+            buffer.putDouble(location.getCoordinate().y);
+            buffer.putFloat((float) location.getSnappedDistance());
+        }
+        buffer.putInt(name.length);
+        buffer.put(name);
+        return buffer;
+    }
+
+    private static void flush(OutputStream out, ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
@@ -15,12 +15,12 @@
 
 package org.heigit.ors.api.responses.matrix.json;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.heigit.ors.api.requests.matrix.MatrixRequest;
 import org.heigit.ors.matrix.MatrixMetricsType;
 import org.heigit.ors.matrix.MatrixResult;
-import org.heigit.ors.util.FormatUtility;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -31,11 +31,11 @@ import java.util.List;
 public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixResponse {
     @ApiModelProperty(value = "The durations of the matrix calculations.", example = "[[0,25],[25,0]]")
     @JsonProperty("durations")
-    private Double[][] durations;
+    private JSONMatrixTable durations;
 
     @ApiModelProperty(value = "The distances of the matrix calculations.", example = "[[0,0.25],[0.25,0]]")
     @JsonProperty("distances")
-    private Double[][] distances;
+    private JSONMatrixTable distances;
 
     @ApiModelProperty(value = "The individual destinations of the matrix calculations.")
     @JsonProperty("destinations")
@@ -67,27 +67,13 @@ public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixRespo
         }
     }
 
-    private Double[][] constructMetric(float[] table, MatrixResult result) {
-        int sourceCount = result.getSources().length;
-        int destinationCount = result.getDestinations().length;
-
-        Double[][] constructedTable = new Double[sourceCount][destinationCount];
-
-        for (int i=0; i<sourceCount; i++) {
-            for (int j=0; j<destinationCount; j++) {
-                double value = (double) table[(i*destinationCount) + j];
-                if (value == -1)
-                    constructedTable[i][j] = null;
-                else
-                    constructedTable[i][j] = FormatUtility.roundToDecimals(value, 2);
-            }
-        }
-
-        return constructedTable;
+    private JSONMatrixTable constructMetric(float[] table, MatrixResult result) {
+        return new JSONMatrixTable(table, result.getSources().length, result.getDestinations().length);
     }
 
+    @JsonIgnore
     public Double[][] getDurations() {
-        return durations;
+        return durations == null ? null : durations.toArray();
     }
 
     public List<JSON2DDestinations> getDestinations() {
@@ -98,16 +84,19 @@ public class JSONIndividualMatrixResponse extends JSONBasedIndividualMatrixRespo
         return sources;
     }
 
+    @JsonIgnore
     public Double[][] getDistances() {
-        return distances;
+        return distances == null ? null : distances.toArray();
     }
 
+    @JsonIgnore
     public void setDistances(Double[][] distances) {
-        this.distances = distances;
+        this.distances = distances == null ? null : JSONMatrixTable.fromArray(distances);
     }
 
+    @JsonIgnore
     public void setDurations(Double[][] durations) {
-        this.durations = durations;
+        this.durations = durations == null ? null : JSONMatrixTable.fromArray(durations);
     }
 
     public void setDestinations(List<JSON2DDestinations> destinations) {
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Openrouteservice.
+ *
+ * Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this library;
+ * if not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.heigit.ors.api.responses.matrix.json;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.heigit.ors.api.converters.MatrixTableSerializer;
+import org.heigit.ors.util.FormatUtility;
+
+/**
+ * A metric table of a matrix result, kept as the flat float array of the {@link org.heigit.ors.matrix.MatrixResult}.
+ * It is serialized row by row straight from that array, so that no boxed copy of the table has to be created.
+ */
+@JsonSerialize(using = MatrixTableSerializer.class)
+public class JSONMatrixTable {
+    private static final int DECIMAL_PLACES = 2;
+
+    private final float[] values;
+    private final int rowCount;
+    private final int columnCount;
+
+    public JSONMatrixTable(float[] values, int rowCount, int columnCount) {
+        this.values = values;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+    }
+
+    static JSONMatrixTable fromArray(Double[][] table) {
+        int columnCount = table.length > 0 ? table[0].length : 0;
+        float[] values = new float[table.length * columnCount];
+        for (int i = 0; i < table.length; i++) {
+            for (int j = 0; j < columnCount; j++)
+                values[i * columnCount + j] = table[i][j] == null ? -1 : table[i][j].floatValue();
+        }
+        return new JSONMatrixTable(values, table.length, columnCount);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public boolean hasValue(int row, int column) {
+        return values[row * columnCount + column] != -1;
+    }
+
+    /**
+     * @return the value rounded to two decimals, only valid if {@link #hasValue(int, int)} is true
+     */
+    public double getValue(int row, int column) {
+        return FormatUtility.roundToDecimals(values[row * columnCount + column], DECIMAL_PLACES);
+    }
+
+    Double[][] toArray() {
+        Double[][] table = new Double[rowCount][columnCount];
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++)
+                table[i][j] = hasValue(i, j) ? getValue(i, j) : null;
+        }
+        return table;
+    }
+}
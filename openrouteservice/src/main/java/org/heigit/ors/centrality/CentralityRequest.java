@@ -7,10 +7,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CentralityRequest extends ServiceRequest {
+    public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
     private BBox bbox;
     private List<Integer> excludeNodes = new ArrayList<>();
 
     private int profileType = -1;
+    private boolean approximate = false;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
 
     public BBox getBoundingBox() { return this.bbox; }
 
@@ -24,5 +28,12 @@ public class CentralityRequest extends ServiceRequest {
 
     public void setProfileType(int profileType) { this.profileType = profileType; }
 
+    public boolean isApproximate() { return approximate; }
+
+    public void setApproximate(boolean approximate) { this.approximate = approximate; }
+
+    public int getSampleSize() { return sampleSize; }
+
+    public void setSampleSize(int sampleSize) { this.sampleSize = sampleSize; }
 
 }
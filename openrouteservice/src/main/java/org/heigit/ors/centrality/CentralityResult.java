@@ -6,6 +6,9 @@ import java.util.HashMap;
 public class CentralityResult {
     private HashMap<Coordinate, Double> centralityScores;
     private HashMap<Coordinate, Integer> nodes;
+    private boolean approximate = false;
+    private int sampleSize;
+    private double estimatedError;
 
     public CentralityResult() {
         this.centralityScores = new HashMap<>();
@@ -30,6 +33,18 @@ public class CentralityResult {
         this.nodes = nodes;
     }
 
+    public boolean isApproximate() { return approximate; }
+
+    public void setApproximate(boolean approximate) { this.approximate = approximate; }
+
+    public int getSampleSize() { return sampleSize; }
+
+    public void setSampleSize(int sampleSize) { this.sampleSize = sampleSize; }
+
+    public double getEstimatedError() { return estimatedError; }
+
+    public void setEstimatedError(double estimatedError) { this.estimatedError = estimatedError; }
+
     public void addCentralityScore(Coordinate coord, Double score) {
         this.centralityScores.put(coord, score);
     }
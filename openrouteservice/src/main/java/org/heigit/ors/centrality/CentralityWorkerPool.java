@@ -0,0 +1,40 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.centrality;
+
+import org.heigit.ors.services.centrality.CentralityServiceSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Worker pool shared by all centrality requests, bounded by the centrality service parameter 'maximum_threads'. It is
+ * used to process the source nodes of a betweenness calculation in parallel.
+ */
+public class CentralityWorkerPool {
+    private static ForkJoinPool workerPool;
+
+    private CentralityWorkerPool() {}
+
+    /**
+     * @return the shared pool, or null if centrality scores are computed in the requesting threads only
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (CentralityServiceSettings.getMaximumThreads() <= 1)
+            return null;
+        if (workerPool == null)
+            workerPool = new ForkJoinPool(CentralityServiceSettings.getMaximumThreads());
+        return workerPool;
+    }
+}
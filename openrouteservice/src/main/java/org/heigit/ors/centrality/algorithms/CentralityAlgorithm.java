@@ -10,4 +10,21 @@ public interface CentralityAlgorithm {
     void init(Graph graph, Weighting weighting);
 
     HashMap<Integer, Double> compute(ArrayList<Integer> nodes) throws Exception;
+
+    /**
+     * Restricts the computation to the given number of randomly chosen source nodes. A value <= 0 or a value not
+     * smaller than the number of nodes selects the exact computation.
+     */
+    void setSampleSize(int sampleSize);
+
+    /**
+     * @return the number of source nodes the last computation was based on
+     */
+    int getSampleSize();
+
+    /**
+     * @return the estimated bound on the absolute error of the scores of the last computation, on the same scale as
+     * the scores (not normalized by the number of node pairs), 0 if it was exact
+     */
+    double getEstimatedError();
 }
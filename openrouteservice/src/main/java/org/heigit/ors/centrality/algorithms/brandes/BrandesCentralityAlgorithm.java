@@ -1,16 +1,60 @@
 package org.heigit.ors.centrality.algorithms.brandes;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIterator;
+import org.heigit.ors.centrality.CentralityWorkerPool;
 import org.heigit.ors.centrality.algorithms.CentralityAlgorithm;
+import org.heigit.ors.services.centrality.CentralityServiceSettings;
+import org.heigit.ors.util.WorkerPoolUtility;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BrandesCentralityAlgorithm implements CentralityAlgorithm {
+    private static final double EPSILON = 0.000001d;
+    // probability with which the error of any approximated score may exceed the reported estimated error
+    private static final double ERROR_PROBABILITY = 0.1d;
+
     protected Graph graph;
     protected Weighting weighting;
+    private final ExecutorService executor;
+    private final int maxThreads;
+    private final Random random;
+    private int sampleSize = 0;
+    private int usedSampleSize = 0;
+    private double estimatedError = 0;
+
+    // local copy of the subgraph induced by the requested nodes in compressed sparse row format
+    private int[] nodeIds;
+    private int[] arcOffsets;
+    private int[] arcTargets;
+    private double[] arcWeights;
+    private int[] predecessorOffsets;
+
+    public BrandesCentralityAlgorithm() {
+        this(CentralityWorkerPool.getExecutor(), CentralityServiceSettings.getMaximumThreads());
+    }
+
+    /**
+     * @param executor the pool running the workers, or null to process all sources in the calling thread
+     * @param maxThreads the maximum number of workers of one calculation
+     */
+    public BrandesCentralityAlgorithm(ExecutorService executor, int maxThreads) {
+        this(executor, maxThreads, new Random());
+    }
+
+    public BrandesCentralityAlgorithm(ExecutorService executor, int maxThreads, Random random) {
+        this.executor = executor;
+        this.maxThreads = Math.max(1, maxThreads);
+        this.random = random;
+    }
 
     public void init(Graph graph, Weighting weighting)
     {
@@ -18,126 +62,301 @@ public class BrandesCentralityAlgorithm implements CentralityAlgorithm {
         this.weighting = weighting;
     }
 
-    private class QueueElement implements Comparable<QueueElement> {
-        public Double dist;
-        public Integer pred;
-        public Integer v;
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
 
-        public QueueElement(Double dist, Integer pred, Integer v) {
-            this.dist = dist;
-            this.pred = pred;
-            this.v = v;
-        }
+    public int getSampleSize() {
+        return usedSampleSize;
+    }
 
-        public int compareTo(QueueElement other) {
-            return Double.compare(this.dist, other.dist);
-        }
+    public double getEstimatedError() {
+        return estimatedError;
     }
+
     // this implementation follows the code given in
     // "A Faster Algorithm for Betweenness Centrality" by Ulrik Brandes, 2001
     public HashMap<Integer, Double> compute(ArrayList<Integer> nodesInBBox) throws Exception {
-        HashMap<Integer, Double> betweenness = new HashMap<>();
+        buildLocalGraph(nodesInBBox);
+
+        int[] sources = selectSources();
+        Dependencies dependencies = computeDependencies(sources);
+        double[] betweenness = dependencies.sums;
+
+        int n = nodeIds.length;
+        usedSampleSize = sources.length;
+        estimatedError = 0;
+        if (usedSampleSize < n) {
+            double scale = (double) n / usedSampleSize;
+            for (int v = 0; v < n; v++)
+                betweenness[v] *= scale;
+            estimatedError = estimateError(dependencies, n, usedSampleSize);
+        }
+
+        HashMap<Integer, Double> result = new HashMap<>(n);
+        for (int v = 0; v < n; v++) {
+            result.put(nodeIds[v], betweenness[v]);
+        }
+        return result;
+    }
 
-        // c_b[v] = 0 forall v in V
-        for (int v: nodesInBBox) {
-            betweenness.put(v,0.0d);
+    /**
+     * Maps the requested nodes to the dense indices 0..n-1 and copies the edges between them, so that the searches
+     * neither need an edge explorer nor a membership test per visited edge.
+     */
+    private void buildLocalGraph(List<Integer> nodes) {
+        IntIntHashMap localIds = new IntIntHashMap(nodes.size());
+        IntArrayList uniqueNodes = new IntArrayList(nodes.size());
+        for (int node : nodes) {
+            if (localIds.putIfAbsent(node, uniqueNodes.size()))
+                uniqueNodes.add(node);
         }
 
+        int n = uniqueNodes.size();
+        nodeIds = uniqueNodes.toArray();
+        arcOffsets = new int[n + 1];
+        IntArrayList targets = new IntArrayList();
+        DoubleArrayList weights = new DoubleArrayList();
+        int[] inDegrees = new int[n];
 
-        for (int s : nodesInBBox) {
-            Stack<Integer> S = new Stack<>();
-            HashMap<Integer, List<Integer>> P = new HashMap<>();
-            HashMap<Integer, Integer> sigma = new HashMap<>();
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int v = 0; v < n; v++) {
+            arcOffsets[v] = targets.size();
+            EdgeIterator iter = explorer.setBaseNode(nodeIds[v]);
+            while (iter.next()) {
+                int w = localIds.getOrDefault(iter.getAdjNode(), -1);
+                if (w == -1) {
+                    // Node not in bbox, skipping edge
+                    continue;
+                }
 
-            // single source shortest path
-            //S, P, sigma = SingleSourceDijkstra(graph, nodesInBBox, s);
+                double weight = weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+                if (Double.isInfinite(weight))
+                    continue;
 
-            for (int v : nodesInBBox) {
-                P.put(v, new ArrayList<>());
-                sigma.put(v, 0);
+                targets.add(w);
+                weights.add(weight);
+                inDegrees[w]++;
             }
-            sigma.put(s, 1);
+        }
+        arcOffsets[n] = targets.size();
+        arcTargets = targets.toArray();
+        arcWeights = weights.toArray();
 
-            HashMap<Integer, Double> D = new HashMap<>();
-            HashMap<Integer, Double> seen = new HashMap<>();
-            seen.put(s, 0.0d);
+        // the predecessors of a node on shortest paths are a subset of its incoming arcs
+        predecessorOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++)
+            predecessorOffsets[v + 1] = predecessorOffsets[v] + inDegrees[v];
+    }
 
-            PriorityQueue<QueueElement> Q = new PriorityQueue<>();
+    /**
+     * Returns all local node indices, or a uniform random sample of sampleSize distinct ones if sampling is enabled.
+     */
+    private int[] selectSources() {
+        int n = nodeIds.length;
+        int[] sources = new int[n];
+        for (int v = 0; v < n; v++)
+            sources[v] = v;
 
-            Q.add(new QueueElement(0d, s, s));
+        if (sampleSize <= 0 || sampleSize >= n)
+            return sources;
 
-            // check that everything has the length it should.
-            assert S.empty(); //S should be empty
-            assert seen.size() == 1;
+        // partial Fisher-Yates shuffle
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = sources[i];
+            sources[i] = sources[j];
+            sources[j] = tmp;
+        }
+        return Arrays.copyOf(sources, sampleSize);
+    }
 
-            while (Q.peek() != null) {
-                QueueElement first = Q.poll();
-                Double dist = first.dist;
-                Integer pred = first.pred;
-                Integer v = first.v;
+    /**
+     * The score of a node is n/k times the sum of the dependencies of the k sampled sources on it. Its standard error
+     * is estimated from the sample variance of these dependencies, with the correction for sampling without
+     * replacement, so that it vanishes when all nodes are sampled. The estimated error is the largest standard error
+     * times the normal quantile for which, by the union bound over all nodes, no score deviates by more than this from
+     * its exact value with probability of about 1-ERROR_PROBABILITY. It is on the same scale as the scores.
+     */
+    private static double estimateError(Dependencies dependencies, int n, int k) {
+        if (k < 2) {
+            // the variance cannot be estimated from a single source, so the maximum possible score is reported
+            return (double) (n - 1) * (n - 2);
+        }
+        double z = upperNormalQuantile(ERROR_PROBABILITY / (2 * n));
+        double maxVariance = 0;
+        for (int v = 0; v < n; v++) {
+            double mean = dependencies.sums[v] / k;
+            double variance = Math.max(0, (dependencies.squaredSums[v] - k * mean * mean) / (k - 1));
+            maxVariance = Math.max(maxVariance, variance);
+        }
+        return z * n * Math.sqrt(maxVariance / k * (1 - (double) k / n));
+    }
 
-                if (D.containsKey(v)) {
-                    continue;
+    /**
+     * Approximation 26.2.23 of Abramowitz and Stegun, "Handbook of Mathematical Functions", with an absolute error
+     * below 4.5e-4.
+     *
+     * @return the value which a standard normal variable exceeds with probability p, for 0 < p <= 0.5
+     */
+    private static double upperNormalQuantile(double p) {
+        double t = Math.sqrt(-2 * Math.log(p));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+
+    /**
+     * Runs the single source phases for the given sources, distributing them over at most maxThreads workers of the
+     * executor. Each worker accumulates into its own arrays and the arrays are summed up at the end.
+     */
+    private Dependencies computeDependencies(int[] sources) throws Exception {
+        int n = nodeIds.length;
+        int nThreads = executor == null ? 1 : Math.min(maxThreads, sources.length);
+        AtomicInteger nextSource = new AtomicInteger();
+
+        if (nThreads <= 1)
+            return new SingleSourceSearch().run(sources, nextSource);
+
+        List<Callable<Dependencies>> tasks = new ArrayList<>(nThreads);
+        for (int i = 0; i < nThreads; i++) {
+            tasks.add(() -> {
+                try {
+                    return new SingleSourceSearch().run(sources, nextSource);
+                } catch (RuntimeException e) {
+                    // stop the other workers from picking up further sources
+                    nextSource.set(sources.length);
+                    throw e;
                 }
+            });
+        }
 
-                sigma.put(v, sigma.get(v) + sigma.get(pred));
-                S.push(v);
-                D.put(v, dist);
+        Dependencies dependencies = new Dependencies(n);
+        for (Dependencies partial : WorkerPoolUtility.invokeAll(executor, tasks))
+            dependencies.add(partial);
+        return dependencies;
+    }
 
-                // iterate all edges connected to v
-                EdgeExplorer explorer = graph.createEdgeExplorer();
-                EdgeIterator iter = explorer.setBaseNode(v);
+    /**
+     * Sums of the dependencies of the processed sources on each node and of their squares.
+     */
+    private static class Dependencies {
+        private final double[] sums;
+        private final double[] squaredSums;
 
-                while (iter.next()) {
-                    int w = iter.getAdjNode(); // this is the node this edge state is "pointing to"
-                    if (!nodesInBBox.contains(w)) {
-                        // Node not in bbox, skipping edge
-                        continue;
-                    }
+        Dependencies(int n) {
+            sums = new double[n];
+            squaredSums = new double[n];
+        }
+
+        void add(Dependencies other) {
+            for (int v = 0; v < sums.length; v++) {
+                sums[v] += other.sums[v];
+                squaredSums[v] += other.squaredSums[v];
+            }
+        }
+    }
+
+    /**
+     * State of one worker. All arrays are allocated once and only the entries touched by a search are reset
+     * before the next source is processed.
+     */
+    private class SingleSourceSearch {
+        private final double[] dist;
+        private final double[] sigma;
+        private final double[] delta;
+        private final boolean[] settled;
+        private final int[] predecessors;
+        private final int[] predecessorCounts;
+        private final int[] stack;
+        private final NodeHeap heap;
+        private final Dependencies dependencies;
+
+        SingleSourceSearch() {
+            int n = nodeIds.length;
+            dist = new double[n];
+            sigma = new double[n];
+            delta = new double[n];
+            settled = new boolean[n];
+            predecessors = new int[predecessorOffsets[n]];
+            predecessorCounts = new int[n];
+            stack = new int[n];
+            heap = new NodeHeap(n);
+            dependencies = new Dependencies(n);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        }
+
+        Dependencies run(int[] sources, AtomicInteger nextSource) {
+            int i;
+            while ((i = nextSource.getAndIncrement()) < sources.length) {
+                int s = sources[i];
+                int stackSize = calcShortestPaths(s);
+                accumulate(s, stackSize);
+            }
+            return dependencies;
+        }
 
-                    if (D.containsKey(w)) { // This is only possible if weights are always bigger than 0, which should be given for real-world examples.
+        /**
+         * Dijkstra from s counting the shortest paths. Returns the number of settled nodes, which are on the stack in
+         * order of non-decreasing distance.
+         */
+        private int calcShortestPaths(int s) {
+            int stackSize = 0;
+            dist[s] = 0;
+            sigma[s] = 1;
+            heap.insertOrDecrease(s, 0);
+
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                settled[v] = true;
+                stack[stackSize++] = v;
+
+                for (int arc = arcOffsets[v]; arc < arcOffsets[v + 1]; arc++) {
+                    int w = arcTargets[arc];
+                    if (settled[w]) { // This is only possible if weights are always bigger than 0, which should be given for real-world examples.
                         // Node already checked, skipping edge
                         continue;
                     }
 
-                    Double vw_dist = dist + weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
-
-                    if (seen.containsKey(w) && (Math.abs(vw_dist - seen.get(w)) < 0.000001d)) {
-                        sigma.put(w, sigma.get(w) + sigma.get(v));
-                        List<Integer> predecessors = P.get(w);
-                        predecessors.add(v);
-                        P.put(w, predecessors);
-                    } else if (!seen.containsKey(w) || vw_dist < seen.get(w)) {
-                        seen.put(w, vw_dist);
-                        Q.add(new QueueElement(vw_dist, v, w));
-                        sigma.put(w, 0);
-                        ArrayList<Integer> predecessors = new ArrayList<>();
-                        predecessors.add(v);
-                        P.put(w, predecessors);
+                    double vwDist = dist[v] + arcWeights[arc];
+
+                    if (dist[w] != Double.POSITIVE_INFINITY && Math.abs(vwDist - dist[w]) < EPSILON) {
+                        sigma[w] += sigma[v];
+                        predecessors[predecessorOffsets[w] + predecessorCounts[w]++] = v;
+                    } else if (vwDist < dist[w]) {
+                        dist[w] = vwDist;
+                        sigma[w] = sigma[v];
+                        predecessors[predecessorOffsets[w]] = v;
+                        predecessorCounts[w] = 1;
+                        heap.insertOrDecrease(w, vwDist);
                     }
                 }
             }
+            return stackSize;
+        }
 
-
-            // accumulate betweenness
-            HashMap<Integer, Double> delta = new HashMap<>();
-
-            for (Integer v : S) {
-                delta.put(v, 0.0d);
-            }
-
-            while (!S.empty()) {
-                Integer w = S.pop();
-                Double coefficient = (1 + delta.get(w)) / sigma.get(w);
-                for (Integer v : P.get(w)) {
-                    delta.put(v, delta.get(v) + sigma.get(v) * coefficient);
+        private void accumulate(int s, int stackSize) {
+            for (int i = stackSize - 1; i >= 0; i--) {
+                int w = stack[i];
+                double coefficient = (1 + delta[w]) / sigma[w];
+                int offset = predecessorOffsets[w];
+                for (int p = offset; p < offset + predecessorCounts[w]; p++) {
+                    int v = predecessors[p];
+                    delta[v] += sigma[v] * coefficient;
                 }
                 if (w != s) {
-                    betweenness.put(w, betweenness.get(w) + delta.get(w));
+                    dependencies.sums[w] += delta[w];
+                    dependencies.squaredSums[w] += delta[w] * delta[w];
                 }
             }
-        }
 
-        return betweenness;
+            // every node reached by the search has been settled, so resetting the stack restores the initial state
+            for (int i = 0; i < stackSize; i++) {
+                int v = stack[i];
+                dist[v] = Double.POSITIVE_INFINITY;
+                sigma[v] = 0;
+                delta[v] = 0;
+                settled[v] = false;
+                predecessorCounts[v] = 0;
+            }
+        }
     }
-}
\ No newline at end of file
+}
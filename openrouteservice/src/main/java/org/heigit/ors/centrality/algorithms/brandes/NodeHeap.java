@@ -0,0 +1,90 @@
+package org.heigit.ors.centrality.algorithms.brandes;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over the dense node indices 0..capacity-1 supporting decrease-key, so that the single source
+ * searches do not need to allocate queue elements.
+ */
+class NodeHeap {
+    private final int[] heap;
+    private final int[] positions;
+    private final double[] keys;
+    private int size;
+
+    NodeHeap(int capacity) {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Inserts the node or lowers its key if it is already contained. The key must not be larger than the current one.
+     */
+    void insertOrDecrease(int node, double key) {
+        keys[node] = key;
+        int pos = positions[node];
+        if (pos == -1) {
+            pos = size++;
+            heap[pos] = node;
+            positions[node] = pos;
+        }
+        siftUp(pos);
+    }
+
+    int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >> 1;
+            int parent = heap[parentPos];
+            if (keys[parent] <= key)
+                break;
+            heap[pos] = parent;
+            positions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        int half = size >> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && keys[heap[rightPos]] < keys[child]) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (key <= keys[child])
+                break;
+            heap[pos] = child;
+            positions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+}
@@ -100,7 +100,7 @@ public class Contour {
     private void handleBaseCells() {
         for (IntCursor cellId : isochroneNodeStorage.getCellIds()) {
             List<Coordinate> coordinates = createCoordinates(cellId.value);
-            LineString ring = createContour(coordinates, cellStorage.getNodesOfCell(cellId.value).size() < 1000);
+            LineString ring = createContour(coordinates, cellStorage.getNodeCount(cellId.value) < 1000);
             if (ring == null || ring.getNumPoints() < 2) {
                 cellStorage.setCellContourOrder(cellId.value, new ArrayList<>(), new ArrayList<>());
                 continue;
@@ -320,8 +320,8 @@ public class Contour {
 
     private boolean isDisconnectedCell(IntSet cellIds, int cellId) {
         //If it has sister, check if their combined size is smaller than minimum cell size -> disconnected
-        return (cellIds.contains(cellId ^ 1) && cellStorage.getNodesOfCell(cellId).size()
-                + cellStorage.getNodesOfCell(cellId ^ 1).size()
+        return (cellIds.contains(cellId ^ 1) && cellStorage.getNodeCount(cellId)
+                + cellStorage.getNodeCount(cellId ^ 1)
                 < getMaxCellNodesNumber());
     }
 
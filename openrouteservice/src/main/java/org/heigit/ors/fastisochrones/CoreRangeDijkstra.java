@@ -17,6 +17,9 @@
  */
 package org.heigit.ors.fastisochrones;
 
+import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.graphhopper.routing.EdgeIteratorStateHelper;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.SPTEntry;
@@ -26,6 +29,9 @@ import org.heigit.ors.fastisochrones.storage.BorderNodeDistanceSet;
 import org.heigit.ors.fastisochrones.storage.BorderNodeDistanceStorage;
 import org.heigit.ors.fastisochrones.partitioning.storage.IsochroneNodeStorage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.heigit.ors.fastisochrones.partitioning.FastIsochroneParameters.CORERANGEDIJKSTRA;
 
 /**
@@ -53,6 +59,53 @@ public class CoreRangeDijkstra extends AbstractIsochroneDijkstra {
         fromHeap.add(currEdge);
     }
 
+    /**
+     * Restore the result of a search with the current limit from the result of a search from the same node with a
+     * higher limit, instead of searching again. The entries within the current limit are the ones this search would
+     * have settled, with the same weights. The entries beyond the limit are not taken over, as their parents in the
+     * larger search can lie beyond the current limit as well. Instead, the edges of the settled entries are relaxed
+     * again, which gives the entries beyond the limit the weights and parents this search would have given them.
+     * The entries of the given map are not modified.
+     */
+    protected void initFromSearch(IntObjectMap<SPTEntry> searchMap) {
+        List<SPTEntry> settledEntries = new ArrayList<>();
+        for (IntObjectCursor<SPTEntry> entry : searchMap) {
+            if (entry.value.getWeightOfVisitedPath() <= isochroneLimit) {
+                fromMap.put(entry.key, entry.value);
+                settledEntries.add(entry.value);
+            }
+        }
+        // relax the edges in the order in which the entries would have been settled
+        settledEntries.sort(null);
+
+        EdgeExplorer explorer = outEdgeExplorer;
+        for (SPTEntry settledEntry : settledEntries) {
+            visitedNodes++;
+            EdgeIterator iter = explorer.setBaseNode(settledEntry.adjNode);
+            while (iter.next()) {
+                if (!accept(iter, settledEntry.edge))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                double tmpWeight = weighting.calcWeight(iter, reverseDirection, settledEntry.originalEdge) + settledEntry.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                SPTEntry nEdge = fromMap.get(traversalId);
+                if (nEdge == null) {
+                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                    fromMap.put(traversalId, nEdge);
+                } else if (nEdge.weight <= isochroneLimit || nEdge.weight <= tmpWeight) {
+                    // settled entries are shared with the larger search and already have their final weight
+                    continue;
+                }
+                nEdge.edge = iter.getEdge();
+                nEdge.originalEdge = EdgeIteratorStateHelper.getOriginalEdge(iter);
+                nEdge.weight = tmpWeight;
+                nEdge.parent = settledEntry;
+            }
+        }
+    }
+
     protected void runAlgo() {
         EdgeExplorer explorer = outEdgeExplorer;
         while (true) {
@@ -90,7 +90,7 @@ public class Eccentricity extends AbstractEccentricity {
                 rangeDijkstra.setEdgeFilter(edgeFilterSequence);
                 rangeDijkstra.setCellNodes(cellStorage.getNodesOfCell(isochroneNodeStorage.getCellId(node)));
                 double eccentricity = rangeDijkstra.calcMaxWeight(node, relevantNodesSets.get(isochroneNodeStorage.getCellId(node)));
-                int cellNodeCount = cellStorage.getNodesOfCell(isochroneNodeStorage.getCellId(node)).size();
+                int cellNodeCount = cellStorage.getNodeCount(isochroneNodeStorage.getCellId(node));
                 //Rerun outside of cell if not enough nodes were found in first run, but try to find almost all
                 //Sometimes nodes in a cell cannot be found, but we do not want to search the entire graph each time, so we limit the Dijkstra
                 if (((double) rangeDijkstra.getFoundCellNodeSize()) / cellNodeCount < acceptedFullyReachablePercentage) {
@@ -194,10 +194,10 @@ public class Eccentricity extends AbstractEccentricity {
 
     private IntHashSet getBorderNodesOfCell(int cellId, CellStorage cellStorage, IsochroneNodeStorage isochroneNodeStorage) {
         IntHashSet borderNodes = new IntHashSet();
-        for (IntCursor node : cellStorage.getNodesOfCell(cellId)) {
-            if (isochroneNodeStorage.getBorderness(node.value))
-                borderNodes.add(node.value);
-        }
+        cellStorage.forEachNodeOfCell(cellId, node -> {
+            if (isochroneNodeStorage.getBorderness(node))
+                borderNodes.add(node);
+        });
         return borderNodes;
     }
 
@@ -13,7 +13,14 @@
  */
 package org.heigit.ors.fastisochrones;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.carrotsearch.hppc.IntDoubleMap;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntDoubleCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -26,8 +33,13 @@ import org.heigit.ors.fastisochrones.partitioning.storage.IsochroneNodeStorage;
 import org.heigit.ors.fastisochrones.storage.BorderNodeDistanceStorage;
 import org.heigit.ors.fastisochrones.storage.EccentricityStorage;
 import org.heigit.ors.routing.graphhopper.extensions.edgefilters.EdgeFilterSequence;
+import org.heigit.ors.util.WorkerPoolUtility;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Implementation of Fast Isochrones
@@ -38,12 +50,14 @@ import java.util.*;
 public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
     private static final String NAME = "FastIsochrone";
     protected IntObjectMap<SPTEntry> startCellMap;
-    protected Set<Integer> activeBorderNodes;
-    protected Set<Integer> inactiveBorderNodes;
-    protected Set<Integer> fullyReachableCells;
-    protected Map<Integer, Map<Integer, Double>> upAndCoreGraphDistMap;
-    protected Map<Integer, IntObjectMap<SPTEntry>> activeCellMaps;
+    protected IntHashSet activeBorderNodes;
+    protected IntHashSet inactiveBorderNodes;
+    protected IntHashSet fullyReachableCells;
+    protected IntObjectMap<IntDoubleMap> upAndCoreGraphDistMap;
+    protected IntObjectMap<IntObjectMap<SPTEntry>> activeCellMaps;
     int from;
+    private ExecutorService executor;
+    private IntObjectMap<SPTEntry> startCellSearchMap;
 
     public FastIsochroneAlgorithm(Graph graph,
                                   Weighting weighting,
@@ -56,53 +70,101 @@ public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
         super(graph, weighting, tMode, cellStorage, isochroneNodeStorage, eccentricityStorage, borderNodeDistanceStorage, additionalEdgeFilter);
     }
 
-    @Override
-    protected void initCollections(int size) {
-        startCellMap = new GHIntObjectHashMap<>(size);
+    /**
+     * Set the executor to run the searches in the active cells on. Without an executor, the cells are searched in the
+     * calling thread.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
-    @Override
-    public void init(int from, double isochroneLimit) {
-        this.from = from;
-        this.isochroneLimit = isochroneLimit;
-        activeBorderNodes = new HashSet<>();
-        inactiveBorderNodes = new HashSet<>();
-        fullyReachableCells = new HashSet<>();
-        upAndCoreGraphDistMap = new HashMap<>();
+    /**
+     * Use the result of {@link #searchStartCell(int, double)} for a limit at least as high as the limit of this
+     * calculation instead of searching the start cell again. The result is the same as the one of a separate search
+     * with the limit of this calculation, see {@link CoreRangeDijkstra#initFromSearch(IntObjectMap)}. The given map is
+     * not modified, so that it can be shared by the calculations of several limits.
+     */
+    public void setStartCellSearch(IntObjectMap<SPTEntry> startCellSearchMap) {
+        this.startCellSearchMap = startCellSearchMap;
     }
 
-    @Override
-    void runStartCellPhase() {
-        int startCell = isochroneNodeStorage.getCellId(from);
+    /**
+     * Search the start cell and the core graph of border nodes up to the given limit.
+     *
+     * @return the shortest path tree entries of all nodes found
+     */
+    public IntObjectMap<SPTEntry> searchStartCell(int from, double isochroneLimit) {
+        CoreRangeDijkstra coreRangeDijkstra = createStartCellDijkstra(from, isochroneLimit);
+        coreRangeDijkstra.initFrom(from);
+        coreRangeDijkstra.runAlgo();
+        return coreRangeDijkstra.getFromMap();
+    }
+
+    /**
+     * Restore the search of the start cell up to the limit of this calculation from a search with a higher limit.
+     */
+    private IntObjectMap<SPTEntry> restoreStartCellSearch(IntObjectMap<SPTEntry> searchMap) {
+        CoreRangeDijkstra coreRangeDijkstra = createStartCellDijkstra(from, isochroneLimit);
+        coreRangeDijkstra.initFromSearch(searchMap);
+        return coreRangeDijkstra.getFromMap();
+    }
+
+    private CoreRangeDijkstra createStartCellDijkstra(int from, double isochroneLimit) {
         CoreRangeDijkstra coreRangeDijkstra = new CoreRangeDijkstra(graph, weighting, isochroneNodeStorage, borderNodeDistanceStorage);
         EdgeFilterSequence edgeFilterSequence = new EdgeFilterSequence();
         if (additionalEdgeFilter != null)
             edgeFilterSequence.add(additionalEdgeFilter);
         edgeFilterSequence.add(
                 new CellAndBorderNodeFilter(isochroneNodeStorage,
-                        startCell,
+                        isochroneNodeStorage.getCellId(from),
                         graph.getNodes())
         );
         coreRangeDijkstra.setEdgeFilter(edgeFilterSequence);
         coreRangeDijkstra.setIsochroneLimit(isochroneLimit);
-        coreRangeDijkstra.initFrom(from);
-        coreRangeDijkstra.runAlgo();
-        startCellMap = coreRangeDijkstra.getFromMap();
+        return coreRangeDijkstra;
+    }
+
+    @Override
+    protected void initCollections(int size) {
+        startCellMap = new GHIntObjectHashMap<>(size);
+    }
+
+    @Override
+    public void init(int from, double isochroneLimit) {
+        this.from = from;
+        this.isochroneLimit = isochroneLimit;
+        activeBorderNodes = new IntHashSet();
+        inactiveBorderNodes = new IntHashSet();
+        fullyReachableCells = new IntHashSet();
+        upAndCoreGraphDistMap = new IntObjectHashMap<>();
+    }
+
+    @Override
+    void runStartCellPhase() {
+        int startCell = isochroneNodeStorage.getCellId(from);
+        if (startCellSearchMap == null)
+            startCellMap = searchStartCell(from, isochroneLimit);
+        else
+            startCellMap = restoreStartCellSearch(startCellSearchMap);
         findFullyReachableCells(startCellMap);
 
-        for (int inactiveBorderNode : inactiveBorderNodes) {
-            startCellMap.remove(inactiveBorderNode);
-            activeBorderNodes.remove(inactiveBorderNode);
+        for (IntCursor inactiveBorderNode : inactiveBorderNodes) {
+            startCellMap.remove(inactiveBorderNode.value);
+            activeBorderNodes.remove(inactiveBorderNode.value);
         }
 
-        for (int sweepEndNode : activeBorderNodes) {
-            double dist = coreRangeDijkstra.fromMap.get(sweepEndNode).getWeightOfVisitedPath();
+        for (IntCursor activeBorderNode : activeBorderNodes) {
+            int sweepEndNode = activeBorderNode.value;
+            double dist = startCellMap.get(sweepEndNode).getWeightOfVisitedPath();
             int cell = isochroneNodeStorage.getCellId(sweepEndNode);
             if (cell == startCell)
                 continue;
-            if (!upAndCoreGraphDistMap.containsKey(cell))
-                upAndCoreGraphDistMap.put(cell, new HashMap<>());
-            upAndCoreGraphDistMap.get(cell).put(sweepEndNode, dist);
+            IntDoubleMap cellDistMap = upAndCoreGraphDistMap.get(cell);
+            if (cellDistMap == null) {
+                cellDistMap = new IntDoubleHashMap();
+                upAndCoreGraphDistMap.put(cell, cellDistMap);
+            }
+            cellDistMap.put(sweepEndNode, dist);
             startCellMap.remove(sweepEndNode);
         }
     }
@@ -126,21 +188,44 @@ public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
         return true;
     }
 
+    /**
+     * Run a dijkstra in each active cell, starting from the border nodes reached in the previous phases. The cells are
+     * independent of each other, so the searches are run on the executor if one is set. The results are added in the
+     * order of the cell ids.
+     */
     @Override
     void runActiveCellPhase() {
-        activeCellMaps = new HashMap<>(upAndCoreGraphDistMap.entrySet().size());
+        activeCellMaps = new GHIntObjectHashMap<>(upAndCoreGraphDistMap.size() + 1);
         activeCellMaps.put(isochroneNodeStorage.getCellId(from), startCellMap);
-        for (Map.Entry<Integer, Map<Integer, Double>> entry : upAndCoreGraphDistMap.entrySet()) {
-            ActiveCellDijkstra activeCellDijkstra = new ActiveCellDijkstra(graph, weighting, isochroneNodeStorage, entry.getKey());
-            activeCellDijkstra.setIsochroneLimit(isochroneLimit);
-            //Add all the start points with their respective already visited weight
-            for (int nodeId : entry.getValue().keySet()) {
-                activeCellDijkstra.addInitialBordernode(nodeId, entry.getValue().get(nodeId));
-            }
-            activeCellDijkstra.init();
-            activeCellDijkstra.runAlgo();
-            activeCellMaps.put(entry.getKey(), activeCellDijkstra.getFromMap());
+        int[] cellIds = upAndCoreGraphDistMap.keys().toArray();
+        Arrays.sort(cellIds);
+        List<Callable<IntObjectMap<SPTEntry>>> tasks = new ArrayList<>(cellIds.length);
+        for (int cellId : cellIds) {
+            IntDoubleMap borderNodeDistances = upAndCoreGraphDistMap.get(cellId);
+            tasks.add(() -> runActiveCell(cellId, borderNodeDistances));
         }
+        List<IntObjectMap<SPTEntry>> cellMaps;
+        try {
+            cellMaps = WorkerPoolUtility.invokeAll(executor, tasks);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to search the active cells.", e);
+        }
+        for (int i = 0; i < cellIds.length; i++)
+            activeCellMaps.put(cellIds[i], cellMaps.get(i));
+    }
+
+    private IntObjectMap<SPTEntry> runActiveCell(int cellId, IntDoubleMap borderNodeDistances) {
+        ActiveCellDijkstra activeCellDijkstra = new ActiveCellDijkstra(graph, weighting, isochroneNodeStorage, cellId);
+        activeCellDijkstra.setIsochroneLimit(isochroneLimit);
+        //Add all the start points with their respective already visited weight
+        for (IntDoubleCursor node : borderNodeDistances) {
+            activeCellDijkstra.addInitialBordernode(node.key, node.value);
+        }
+        activeCellDijkstra.init();
+        activeCellDijkstra.runAlgo();
+        return activeCellDijkstra.getFromMap();
     }
 
     @Override
@@ -174,13 +259,15 @@ public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
      * @param approximation factor of approximation. 1 means all nodes must be found, 0 means no nodes have to be found.
      */
     public void approximateActiveCells(double approximation) {
-        Iterator<Map.Entry<Integer, IntObjectMap<SPTEntry>>> activeCellIterator = getActiveCellMaps().entrySet().iterator();
-        while (activeCellIterator.hasNext()) {
-            Map.Entry<Integer, IntObjectMap<SPTEntry>> activeCell = activeCellIterator.next();
-            if (activeCell.getValue().size() / (double) cellStorage.getNodesOfCell(activeCell.getKey()).size() > approximation) {
-                activeCellIterator.remove();
-                getFullyReachableCells().add(activeCell.getKey());
-            }
+        IntArrayList approximatedCells = new IntArrayList();
+        for (IntObjectCursor<IntObjectMap<SPTEntry>> activeCell : getActiveCellMaps()) {
+            if (activeCell.value.size() / (double) cellStorage.getNodeCount(activeCell.key) > approximation)
+                approximatedCells.add(activeCell.key);
+        }
+        //Remove after iterating, as hppc maps cannot be modified while being iterated
+        for (IntCursor cellId : approximatedCells) {
+            getActiveCellMaps().remove(cellId.value);
+            getFullyReachableCells().add(cellId.value);
         }
     }
 
@@ -200,7 +287,7 @@ public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
         inactiveBorderNodes.add(nodeId);
     }
 
-    public Set<Integer> getFullyReachableCells() {
+    public IntHashSet getFullyReachableCells() {
         return fullyReachableCells;
     }
 
@@ -212,7 +299,7 @@ public class FastIsochroneAlgorithm extends AbstractIsochroneAlgorithm {
         return NAME;
     }
 
-    public Map<Integer, IntObjectMap<SPTEntry>> getActiveCellMaps() {
+    public IntObjectMap<IntObjectMap<SPTEntry>> getActiveCellMaps() {
         return activeCellMaps;
     }
 }
@@ -20,6 +20,7 @@ package org.heigit.ors.fastisochrones.partitioning.storage;
 import com.carrotsearch.hppc.*;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.carrotsearch.hppc.procedures.IntProcedure;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Storable;
@@ -48,6 +49,7 @@ public class CellStorage implements Storable<CellStorage> {
     private long cellContourPointer;
     private IsochroneNodeStorage isochroneNodeStorage;
     private IntLongMap cellIdToNodesPointerMap;
+    private IntIntMap cellIdToNodeCountMap;
     private IntLongMap cellIdToContourPointerMap;
     private IntIntMap cellIdToSuperCellMap = new IntIntHashMap();
     private IntObjectMap<IntHashSet> superCellIdToCellsMap = new IntObjectHashMap<>();
@@ -72,6 +74,7 @@ public class CellStorage implements Storable<CellStorage> {
             nodeIndexOffset = cellCount * 12;
             contourIndexOffset = 2 * cellCount * 18;
             cellIdToNodesPointerMap = new IntLongHashMap(cellCount);
+            cellIdToNodeCountMap = new IntIntHashMap(cellCount);
             cellIdToContourPointerMap = new IntLongHashMap(cellCount);
             fillCellIdToNodesPointerMap();
             fillCellIdToContourPointerMap();
@@ -91,6 +94,7 @@ public class CellStorage implements Storable<CellStorage> {
         cells.create(1000);
         int cellCount = isochroneNodeStorage.getCellIds().size();
         cellIdToNodesPointerMap = new IntLongHashMap(cellCount);
+        cellIdToNodeCountMap = new IntIntHashMap(cellCount);
         cellIdToContourPointerMap = new IntLongHashMap(cellCount);
         cellIdToSuperCellMap = new IntIntHashMap(cellCount);
     }
@@ -122,6 +126,7 @@ public class CellStorage implements Storable<CellStorage> {
         for (IntCursor cellId : cellIdToNodesMap.keys()) {
             cells.ensureCapacity(nodePointer + (long) (cellIdToNodesMap.get(cellId.value).size() + 1) * byteCount);
             cellIdToNodesPointerMap.put(cellId.value, nodePointer);
+            cellIdToNodeCountMap.put(cellId.value, cellIdToNodesMap.get(cellId.value).size());
             for (IntCursor nodeId : cellIdToNodesMap.get(cellId.value)) {
                 cells.setInt(nodePointer, nodeId.value);
                 nodePointer = nodePointer + (long) byteCount;
@@ -152,17 +157,39 @@ public class CellStorage implements Storable<CellStorage> {
      * @return the int hash set
      */
     public IntHashSet getNodesOfCell(int cellId) {
+        IntHashSet nodeIds = new IntHashSet(getNodeCount(cellId));
+        forEachNodeOfCell(cellId, nodeIds::add);
+        return nodeIds;
+    }
+
+    /**
+     * Get the number of nodes of a cell without reading the nodes.
+     *
+     * @param cellId the cell id
+     * @return the node count
+     */
+    public int getNodeCount(int cellId) {
+        if (cellIdToNodesPointerMap.isEmpty())
+            throw new IllegalStateException("CellStorage not filled yet. Was calcCellNodesMap run?");
+        return cellIdToNodeCountMap.get(cellId);
+    }
+
+    /**
+     * Apply the procedure to each node of a cell, reading the nodes directly from the storage.
+     *
+     * @param cellId    the cell id
+     * @param procedure the procedure
+     */
+    public void forEachNodeOfCell(int cellId, IntProcedure procedure) {
         if (cellIdToNodesPointerMap.isEmpty())
             throw new IllegalStateException("CellStorage not filled yet. Was calcCellNodesMap run?");
         long nodePointer = cellIdToNodesPointerMap.get(cellId);
         int currentNode = cells.getInt(nodePointer);
-        IntHashSet nodeIds = new IntHashSet();
         while (currentNode != -1) {
-            nodeIds.add(currentNode);
+            procedure.apply(currentNode);
             nodePointer = nodePointer + (long) byteCount;
             currentNode = cells.getInt(nodePointer);
         }
-        return nodeIds;
     }
 
     /**
@@ -301,6 +328,13 @@ public class CellStorage implements Storable<CellStorage> {
             cells.getBytes((long) i * 12 + 4, buffer, 8);
             long nodePointer = byteArrayToLong(buffer);
             cellIdToNodesPointerMap.put(cellId, nodePointer);
+            //Count the nodes up to the trailing -1
+            int cellNodeCount = 0;
+            while (cells.getInt(nodePointer) != -1) {
+                cellNodeCount++;
+                nodePointer = nodePointer + (long) byteCount;
+            }
+            cellIdToNodeCountMap.put(cellId, cellNodeCount);
         }
     }
 
@@ -0,0 +1,41 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.isochrones;
+
+import org.heigit.ors.services.isochrones.IsochronesServiceSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Worker pool shared by all isochrone requests for the parts of an isochrone calculation which consist of independent
+ * tasks. Its size is bounded by the isochrones service parameter 'maximum_threads'. The pool is a fork join pool, so
+ * that tasks running on it may split their work into further tasks on the same pool without blocking its workers.
+ */
+public class IsochroneWorkerPool {
+    private static ForkJoinPool workerPool;
+
+    private IsochroneWorkerPool() {}
+
+    /**
+     * @return the shared pool, or null if isochrones are computed in the requesting threads only
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (IsochronesServiceSettings.getMaximumThreads() <= 1)
+            return null;
+        if (workerPool == null)
+            workerPool = new ForkJoinPool(IsochronesServiceSettings.getMaximumThreads());
+        return workerPool;
+    }
+}
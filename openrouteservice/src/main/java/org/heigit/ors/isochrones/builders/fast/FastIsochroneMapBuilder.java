@@ -15,6 +15,7 @@ package org.heigit.ors.isochrones.builders.fast;
 
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -51,9 +52,12 @@ import org.heigit.ors.routing.graphhopper.extensions.flagencoders.FootFlagEncode
 import org.heigit.ors.routing.graphhopper.extensions.flagencoders.ORSAbstractFlagEncoder;
 import org.heigit.ors.routing.graphhopper.extensions.flagencoders.WheelchairFlagEncoder;
 import org.heigit.ors.util.GeomUtility;
+import org.heigit.ors.util.WorkerPoolUtility;
 import org.opensphere.geometry.algorithm.ConcaveHull;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static org.heigit.ors.fastisochrones.partitioning.FastIsochroneParameters.*;
 
@@ -66,17 +70,11 @@ import static org.heigit.ors.fastisochrones.partitioning.FastIsochroneParameters
 public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
     private final static DistanceCalc dcFast = new DistancePlaneProjection();
     private final Logger LOGGER = Logger.getLogger(FastIsochroneMapBuilder.class.getName());
-    private Envelope searchEnv = new Envelope();
     private GeometryFactory geomFactory;
-    private PointItemVisitor visitor = null;
-    private TreeSet<Coordinate> treeSet = new TreeSet<>();
     private Polygon previousIsochronePolygon = null;
     private RouteSearchContext searchcontext;
     private CellStorage cellStorage;
     private IsochroneNodeStorage isochroneNodeStorage;
-    private double searchWidth = 0.0007;
-    private double pointWidth = 0.0005;
-    private double visitorThreshold = 0.0013;
     private int minEdgeLengthLimit = 125;
     private int maxEdgeLengthLimit = Integer.MAX_VALUE;
     private boolean BUFFERED_OUTPUT = true;
@@ -143,87 +141,80 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         if (!(searchcontext.getGraphHopper() instanceof ORSGraphHopper))
             throw new IllegalStateException("Unable to run fast isochrones without ORSGraphhopper");
 
+        ExecutorService executor = IsochroneWorkerPool.getExecutor();
         int nRanges = parameters.getRanges().length;
-        double prevCost = 0;
-        IsochroneMap isochroneMap = null;
-
+        double[] isoLimits = new double[nRanges];
+        double[] maxRadii = new double[nRanges];
+        double[] meanRadii = new double[nRanges];
+        double[] isochronesDifferences = new double[nRanges];
         for (int i = 0; i < nRanges; i++) {
-            FastIsochroneAlgorithm fastIsochroneAlgorithm = new FastIsochroneAlgorithm(
-                    graph,
-                    weighting,
-                    TraversalMode.NODE_BASED,
-                    cellStorage,
-                    isochroneNodeStorage,
-                    ((ORSGraphHopper) searchcontext.getGraphHopper()).getEccentricity().getEccentricityStorage(weighting),
-                    ((ORSGraphHopper) searchcontext.getGraphHopper()).getEccentricity().getBorderNodeDistanceStorage(weighting),
-                    edgeFilterSequence);
             //Account for snapping distance
-            double isolimit = parameters.getRanges()[i] - weighting.getMinWeight(res.getQueryDistance());
-            if (isolimit <= 0)
+            isoLimits[i] = parameters.getRanges()[i] - weighting.getMinWeight(res.getQueryDistance());
+            if (isoLimits[i] <= 0)
                 throw new IllegalStateException("Distance of query to snapped position is greater than isochrone limit!");
 
-            fastIsochroneAlgorithm.calcIsochroneNodes(nonvirtualClosestNode, isolimit);
-
-            Set<Geometry> isochroneGeometries = new HashSet<>();
-
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Find edges: " + sw.stop().getSeconds());
-                sw = new StopWatch();
-                sw.start();
-            }
-
-            fastIsochroneAlgorithm.approximateActiveCells(activeCellApproximationFactor);
-
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Approximate active cells: " + sw.stop().getSeconds());
-                sw = new StopWatch();
-                sw.start();
-            }
-            //Add all fully reachable cell geometries
-            handleFullyReachableCells(isochroneGeometries, fastIsochroneAlgorithm.getFullyReachableCells());
-
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Handle " + fastIsochroneAlgorithm.getFullyReachableCells().size() + " fully reachable cells: " + sw.stop().getSeconds());
-            }
-
-            GHPoint3D snappedPosition = res.getSnappedPoint();
-
-            AccessibilityMap edgeMap = new AccessibilityMap(fastIsochroneAlgorithm.getStartCellMap(), snappedPosition);
-
-            final Coordinate snappedLoc = (snappedPosition == null) ? parameters.getLocation() : new Coordinate(snappedPosition.lon, snappedPosition.lat);
-
-            if (isochroneMap == null) isochroneMap = new IsochroneMap(parameters.getTravellerId(), snappedLoc);
-
-            if (edgeMap.isEmpty())
-                return isochroneMap;
-
-            treeSet = new TreeSet<>();
-
-            List<Coordinate> isoPoints = new ArrayList<>((int) (1.2 * edgeMap.getMap().size()));
-
             double isoValue = parameters.getRanges()[i];
             double isochronesDifference = parameters.getRanges()[i];
             if (i > 0)
                 isochronesDifference = parameters.getRanges()[i] - parameters.getRanges()[i - 1];
 
-            float smoothingFactor = parameters.getSmoothingFactor();
-            TravelRangeType isochroneType = parameters.getRangeType();
-
-            final double maxRadius;
-            double meanRadius = 0;
-            switch (isochroneType) {
+            switch (parameters.getRangeType()) {
                 case TIME:
-                    maxRadius = metersPerSecond * isoValue;
-                    meanRadius = meanMetersPerSecond * isoValue;
-                    isochronesDifference = metersPerSecond * isochronesDifference;
+                    maxRadii[i] = metersPerSecond * isoValue;
+                    meanRadii[i] = meanMetersPerSecond * isoValue;
+                    isochronesDifferences[i] = metersPerSecond * isochronesDifference;
                     break;
                 default:
-                    maxRadius = isoValue;
-                    meanRadius = isoValue;
+                    maxRadii[i] = isoValue;
+                    meanRadii[i] = isoValue;
+                    isochronesDifferences[i] = isochronesDifference;
                     break;
             }
+        }
+
+        //Search the start cell and the border nodes once for the largest range, the smaller ranges restore their searches from it
+        FastIsochroneAlgorithm startCellAlgorithm = createFastIsochroneAlgorithm(graph, weighting, edgeFilterSequence, executor);
+        IntObjectMap<SPTEntry> startCellSearch = startCellAlgorithm.searchStartCell(nonvirtualClosestNode, Arrays.stream(isoLimits).max().getAsDouble());
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Search start cell: " + sw.stop().getSeconds());
+            sw = new StopWatch();
+            sw.start();
+        }
+
+        GHPoint3D snappedPosition = res.getSnappedPoint();
+        final Coordinate snappedLoc = (snappedPosition == null) ? parameters.getLocation() : new Coordinate(snappedPosition.lon, snappedPosition.lat);
+        float smoothingFactor = parameters.getSmoothingFactor();
+
+        //The cells of each range do not depend on the other ranges, so the ranges are handled in parallel.
+        //The edge filters keep state while accepting edges, so each range gets its own filters.
+        List<Callable<RangeGeometries>> tasks = new ArrayList<>(nRanges);
+        for (int i = 0; i < nRanges; i++) {
+            int range = i;
+            double prevCost = i > 0 ? parameters.getRanges()[i - 1] : 0;
+            tasks.add(() -> {
+                FastIsochroneAlgorithm fastIsochroneAlgorithm = createFastIsochroneAlgorithm(graph, weighting, getEdgeFilterSequence(edgeFilterFactory), executor);
+                fastIsochroneAlgorithm.setStartCellSearch(startCellSearch);
+                return buildRangeGeometries(fastIsochroneAlgorithm, nonvirtualClosestNode, isoLimits[range], snappedLoc, snappedPosition, prevCost, isochronesDifferences[range], parameters.getRanges()[range], maxRadii[range], smoothingFactor, executor);
+            });
+        }
+        List<RangeGeometries> rangeGeometries = WorkerPoolUtility.invokeAll(executor, tasks);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Build cells of " + nRanges + " ranges: " + sw.stop().getSeconds());
+        }
+
+        IsochroneMap isochroneMap = new IsochroneMap(parameters.getTravellerId(), snappedLoc);
+        double prevCost = 0;
+        //Each isochrone contains the polygon of the previous one, so the final hulls are built one after another
+        for (int i = 0; i < nRanges; i++) {
+            RangeGeometries range = rangeGeometries.get(i);
+            if (range.startCellSize == 0)
+                return isochroneMap;
 
-            buildActiveCellsConcaveHulls(fastIsochroneAlgorithm, isochroneGeometries, snappedLoc, snappedPosition, prevCost, isochronesDifference, isoValue, maxRadius, smoothingFactor);
+            double isoValue = parameters.getRanges()[i];
+            Set<Geometry> isochroneGeometries = range.geometries;
+            List<Coordinate> isoPoints = new ArrayList<>((int) (1.2 * range.startCellSize));
 
             //Add previous isochrone interval polygon
             addPreviousIsochronePolygon(isochroneGeometries);
@@ -235,8 +226,8 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
                 if (LOGGER.isDebugEnabled())
                     finalConcaveHullStopWatch.start();
                 List<Double> contourCoordinates = createCoordinateListFromGeometry(preprocessedGeometry);
-                GeometryCollection points = buildIsochrone(new AccessibilityMap(new GHIntObjectHashMap<>(0), snappedPosition), contourCoordinates, isoPoints, loc.x, loc.y, isoValue, prevCost, isochronesDifference, 1);
-                addIsochrone(isochroneMap, points, isoValue, maxRadius, meanRadius, smoothingFactor);
+                GeometryCollection points = buildIsochrone(new AccessibilityMap(new GHIntObjectHashMap<>(0), snappedPosition), contourCoordinates, isoPoints, loc.x, loc.y, isoValue, prevCost, isochronesDifferences[i], 1);
+                addIsochrone(isochroneMap, points, isoValue, maxRadii[i], meanRadii[i], smoothingFactor);
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Build final concave hull from " + points.getNumGeometries() + " points: " + finalConcaveHullStopWatch.stop().getSeconds());
                 }
@@ -250,6 +241,45 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         return isochroneMap;
     }
 
+    private FastIsochroneAlgorithm createFastIsochroneAlgorithm(Graph graph, Weighting weighting, EdgeFilterSequence edgeFilterSequence, ExecutorService executor) {
+        FastIsochroneAlgorithm fastIsochroneAlgorithm = new FastIsochroneAlgorithm(
+                graph,
+                weighting,
+                TraversalMode.NODE_BASED,
+                cellStorage,
+                isochroneNodeStorage,
+                ((ORSGraphHopper) searchcontext.getGraphHopper()).getEccentricity().getEccentricityStorage(weighting),
+                ((ORSGraphHopper) searchcontext.getGraphHopper()).getEccentricity().getBorderNodeDistanceStorage(weighting),
+                edgeFilterSequence);
+        fastIsochroneAlgorithm.setExecutor(executor);
+        return fastIsochroneAlgorithm;
+    }
+
+    /**
+     * Calculates the isochrone nodes of a single range and builds the polygons of its fully reachable and active cells.
+     */
+    private RangeGeometries buildRangeGeometries(FastIsochroneAlgorithm fastIsochroneAlgorithm, int from, double isoLimit, Coordinate snappedLoc, GHPoint3D snappedPosition, double prevCost, double isochronesDifference, double isoValue, double maxRadius, float smoothingFactor, ExecutorService executor) throws Exception {
+        StopWatch sw = new StopWatch();
+        if (LOGGER.isDebugEnabled())
+            sw.start();
+
+        fastIsochroneAlgorithm.calcIsochroneNodes(from, isoLimit);
+        fastIsochroneAlgorithm.approximateActiveCells(activeCellApproximationFactor);
+
+        Set<Geometry> isochroneGeometries = new HashSet<>();
+        //Add all fully reachable cell geometries
+        handleFullyReachableCells(isochroneGeometries, fastIsochroneAlgorithm.getFullyReachableCells());
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Find " + fastIsochroneAlgorithm.getFullyReachableCells().size() + " fully reachable cells of range " + isoValue + ": " + sw.stop().getSeconds());
+        }
+
+        int startCellSize = fastIsochroneAlgorithm.getStartCellMap().size();
+        if (startCellSize > 0)
+            buildActiveCellsConcaveHulls(fastIsochroneAlgorithm, isochroneGeometries, snappedLoc, snappedPosition, prevCost, isochronesDifference, isoValue, maxRadius, smoothingFactor, executor);
+        return new RangeGeometries(isochroneGeometries, startCellSize);
+    }
+
     private EdgeFilterSequence getEdgeFilterSequence(ORSEdgeFilterFactory edgeFilterFactory) throws Exception {
         EdgeFilterSequence edgeFilterSequence = new EdgeFilterSequence();
         EdgeFilter edgeFilter = edgeFilterFactory.createEdgeFilter(searchcontext.getProperties(), searchcontext.getEncoder(), searchcontext.getGraphHopper().getGraphHopperStorage());
@@ -281,32 +311,43 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         return maxSpeed;
     }
 
-    private void buildActiveCellsConcaveHulls(FastIsochroneAlgorithm fastIsochroneAlgorithm, Set<Geometry> isochroneGeometries, Coordinate snappedLoc, GHPoint3D snappedPosition, double prevCost, double isochronesDifference, double isoValue, double maxRadius, float smoothingFactor) {
-        //Build concave hulls of all active cells individually
-        StopWatch swActiveCellSeparate = new StopWatch();
+    /**
+     * Builds the concave hulls of all active cells. The cells are independent of each other, so their hulls are built
+     * as separate tasks on the isochrone worker pool. The hulls are added in the order of the cell ids.
+     */
+    private void buildActiveCellsConcaveHulls(FastIsochroneAlgorithm fastIsochroneAlgorithm, Set<Geometry> isochroneGeometries, Coordinate snappedLoc, GHPoint3D snappedPosition, double prevCost, double isochronesDifference, double isoValue, double maxRadius, float smoothingFactor, ExecutorService executor) throws Exception {
         StopWatch swActiveCellBuild = new StopWatch();
-
-        for (Map.Entry<Integer, IntObjectMap<SPTEntry>> activeCell : fastIsochroneAlgorithm.getActiveCellMaps().entrySet()) {
-            swActiveCellSeparate.start();
-            //Find disconnected sub-cells of active cells to avoid geometric problems
-            List<GHIntObjectHashMap<SPTEntry>> disconnectedActiveCells = separateDisconnected(activeCell.getValue());
-
-            swActiveCellSeparate.stop();
+        if (LOGGER.isDebugEnabled())
             swActiveCellBuild.start();
-            boolean largestSubCellProcessed = false;
-            for (GHIntObjectHashMap<SPTEntry> splitMap : disconnectedActiveCells) {
-                if (largestSubCellProcessed && splitMap.size() < getMinCellNodesNumber())
-                    continue;
-                largestSubCellProcessed = true;
-                GeometryCollection points = buildIsochrone(new AccessibilityMap(splitMap, snappedPosition), new ArrayList<>(), new ArrayList<>(), snappedLoc.x, snappedLoc.y, isoValue, prevCost, isochronesDifference, 0.85);
-                createPolyFromPoints(isochroneGeometries, points, maxRadius, smoothingFactor);
-            }
-            swActiveCellBuild.stop();
+
+        IntObjectMap<IntObjectMap<SPTEntry>> activeCellMaps = fastIsochroneAlgorithm.getActiveCellMaps();
+        int[] cellIds = activeCellMaps.keys().toArray();
+        Arrays.sort(cellIds);
+        List<Callable<List<Geometry>>> tasks = new ArrayList<>(cellIds.length);
+        for (int cellId : cellIds) {
+            IntObjectMap<SPTEntry> activeCell = activeCellMaps.get(cellId);
+            tasks.add(() -> buildActiveCellConcaveHulls(activeCell, snappedLoc, snappedPosition, prevCost, isochronesDifference, isoValue, maxRadius, smoothingFactor));
         }
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Separate disconnected: " + swActiveCellSeparate.stop().getSeconds());
-            LOGGER.debug("Build " + fastIsochroneAlgorithm.getActiveCellMaps().size() + " active cells: " + swActiveCellBuild.stop().getSeconds());
+        for (List<Geometry> cellGeometries : WorkerPoolUtility.invokeAll(executor, tasks))
+            isochroneGeometries.addAll(cellGeometries);
+
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Build " + cellIds.length + " active cells: " + swActiveCellBuild.stop().getSeconds());
+    }
+
+    private List<Geometry> buildActiveCellConcaveHulls(IntObjectMap<SPTEntry> activeCell, Coordinate snappedLoc, GHPoint3D snappedPosition, double prevCost, double isochronesDifference, double isoValue, double maxRadius, float smoothingFactor) {
+        List<Geometry> cellGeometries = new ArrayList<>();
+        //Find disconnected sub-cells of active cells to avoid geometric problems
+        List<GHIntObjectHashMap<SPTEntry>> disconnectedActiveCells = separateDisconnected(activeCell);
+        boolean largestSubCellProcessed = false;
+        for (GHIntObjectHashMap<SPTEntry> splitMap : disconnectedActiveCells) {
+            if (largestSubCellProcessed && splitMap.size() < getMinCellNodesNumber())
+                continue;
+            largestSubCellProcessed = true;
+            GeometryCollection points = buildIsochrone(new AccessibilityMap(splitMap, snappedPosition), new ArrayList<>(), new ArrayList<>(), snappedLoc.x, snappedLoc.y, isoValue, prevCost, isochronesDifference, 0.85);
+            createPolyFromPoints(cellGeometries, points, maxRadius, smoothingFactor);
         }
+        return cellGeometries;
     }
 
     private List<Double> createCoordinateListFromGeometry(Geometry preprocessedGeometry) {
@@ -387,7 +428,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         return maxLength;
     }
 
-    private void createPolyFromPoints(Set<Geometry> isochroneGeometries, GeometryCollection points, double maxRadius, float smoothingFactor) {
+    private void createPolyFromPoints(Collection<Geometry> isochroneGeometries, GeometryCollection points, double maxRadius, float smoothingFactor) {
         if (points.isEmpty())
             return;
         LinearRing ring;
@@ -442,39 +483,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         isochroneMap.addIsochrone(new Isochrone(poly, isoValue, meanRadius));
     }
 
-    public Boolean addPoint(List<Coordinate> points, Quadtree tree, double lon, double lat, boolean checkNeighbours) {
-        if (checkNeighbours) {
-            visitor.setPoint(lon, lat);
-            searchEnv.init(lon - searchWidth, lon + searchWidth, lat - searchWidth, lat + searchWidth);
-            tree.query(searchEnv, visitor);
-            if (!visitor.isNeighbourFound()) {
-                Coordinate p = new Coordinate(lon, lat);
-
-                if (!treeSet.contains(p)) {
-                    Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
-                    tree.insert(env, p);
-                    points.add(p);
-                    treeSet.add(p);
-
-                    return true;
-                }
-            }
-        } else {
-            Coordinate p = new Coordinate(lon, lat);
-            if (!treeSet.contains(p)) {
-                Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
-                tree.insert(env, p);
-                points.add(p);
-                treeSet.add(p);
-
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private void addBufferPoints(List<Coordinate> points, Quadtree tree, double lon0, double lat0, double lon1,
+    private void addBufferPoints(HullPoints points, double lon0, double lat0, double lon1,
                                  double lat1, boolean addLast, boolean checkNeighbours, double bufferSize) {
         double dx = (lon0 - lon1);
         double dy = (lat0 - lat1);
@@ -484,36 +493,32 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         double dx2 = -dy * scale;
         double dy2 = dx * scale;
 
-        addPoint(points, tree, lon0 + dx2, lat0 + dy2, checkNeighbours);
-        addPoint(points, tree, lon0 - dx2, lat0 - dy2, checkNeighbours);
+        points.add(lon0 + dx2, lat0 + dy2, checkNeighbours);
+        points.add(lon0 - dx2, lat0 - dy2, checkNeighbours);
 
         // add a middle point if two points are too far from each other
         if (normLength > 2 * bufferSize) {
-            addPoint(points, tree, (lon0 + lon1) / 2.0 + dx2, (lat0 + lat1) / 2.0 + dy2, checkNeighbours);
-            addPoint(points, tree, (lon0 + lon1) / 2.0 - dx2, (lat0 + lat1) / 2.0 - dy2, checkNeighbours);
+            points.add((lon0 + lon1) / 2.0 + dx2, (lat0 + lat1) / 2.0 + dy2, checkNeighbours);
+            points.add((lon0 + lon1) / 2.0 - dx2, (lat0 + lat1) / 2.0 - dy2, checkNeighbours);
         }
 
         if (addLast) {
-            addPoint(points, tree, lon1 + dx2, lat1 + dy2, checkNeighbours);
-            addPoint(points, tree, lon1 - dx2, lat1 - dy2, checkNeighbours);
+            points.add(lon1 + dx2, lat1 + dy2, checkNeighbours);
+            points.add(lon1 - dx2, lat1 - dy2, checkNeighbours);
         }
     }
 
     private GeometryCollection buildIsochrone(AccessibilityMap edgeMap, List<Double> contourCoordinates, List<Coordinate> points, double lon, double lat,
                                               double isolineCost, double prevCost, double isochronesDifference, double detailedGeomFactor) {
         IntObjectMap<SPTEntry> map = edgeMap.getMap();
-        treeSet.clear();
 
         GraphHopperStorage graphHopperStorage = searchcontext.getGraphHopper().getGraphHopperStorage();
         NodeAccess nodeAccess = graphHopperStorage.getNodeAccess();
-        Quadtree qtree = new Quadtree();
-
         int maxNodeId = graphHopperStorage.getNodes();
 
         SPTEntry goalEdge;
 
         double bufferSize = 0.0018;
-        visitor = new PointItemVisitor(lon, lat, visitorThreshold);
         double detailedZone = isolineCost * detailedGeomFactor;
 
         double defaultSearchWidth = 0.0008;
@@ -534,11 +539,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
             defaultVisitorThreshold = 0.000005;
         }
 
-        searchWidth = defaultSearchWidth;
-        visitorThreshold = defaultVisitorThreshold;
-        pointWidth = defaulPointWidth;
-
-        visitor.setThreshold(visitorThreshold);
+        HullPoints hullPoints = new HullPoints(points, lon, lat, defaultSearchWidth, defaulPointWidth, defaultVisitorThreshold);
 
         for (IntObjectCursor<SPTEntry> entry : map) {
             goalEdge = entry.value;
@@ -565,18 +566,18 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
                 if (goalEdge.edge != -2 || useHighDetail) {
                     double edgeDist = iter.getDistance();
                     if (((maxCost >= detailedZone && maxCost <= isolineCost) || edgeDist > 300)) {
-                        addBufferedWayGeometry(points, qtree, goalEdge, bufferSize, iter, edgeDist);
+                        addBufferedWayGeometry(hullPoints, goalEdge, bufferSize, iter, edgeDist);
                     } else {
-                        addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
+                        hullPoints.add(nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
                     }
                 }
             } else {
                 if ((minCost < isolineCost && maxCost >= isolineCost)) {
-                    addEdgeCaseGeometry(iter, qtree, points, bufferSize, maxCost, minCost, isolineCost);
+                    addEdgeCaseGeometry(iter, hullPoints, bufferSize, maxCost, minCost, isolineCost);
                 }
             }
         }
-        addContourCoordinates(contourCoordinates, points, qtree);
+        addContourCoordinates(contourCoordinates, hullPoints);
         Geometry[] geometries = new Geometry[points.size()];
 
         for (int i = 0; i < points.size(); ++i) {
@@ -587,18 +588,18 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         return new GeometryCollection(geometries, geomFactory);
     }
 
-    private void addContourCoordinates(List<Double> contourCoordinates, List<Coordinate> points, Quadtree qtree) {
+    private void addContourCoordinates(List<Double> contourCoordinates, HullPoints points) {
         int j = 0;
         while (j < contourCoordinates.size()) {
             double latitude = contourCoordinates.get(j);
             j++;
             double longitude = contourCoordinates.get(j);
             j++;
-            addPoint(points, qtree, longitude, latitude, true);
+            points.add(longitude, latitude, true);
         }
     }
 
-    private void addEdgeCaseGeometry(EdgeIteratorState iter, Quadtree qtree, List<Coordinate> points, double bufferSize, float maxCost, float minCost, double isolineCost) {
+    private void addEdgeCaseGeometry(EdgeIteratorState iter, HullPoints points, double bufferSize, float maxCost, float minCost, double isolineCost) {
         PointList pl = iter.fetchWayGeometry(3);
 
         int size = pl.getSize();
@@ -626,14 +627,14 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
                         double lon2 = lon0 + segLength * (lon1 - lon0);
                         double lat2 = lat0 + segLength * (lat1 - lat0);
 
-                        addBufferPoints(points, qtree, lon0, lat0, lon2, lat2, true, false, bufferSize);
+                        addBufferPoints(points, lon0, lat0, lon2, lat2, true, false, bufferSize);
 
                         break;
                     } else {
-                        addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, false, true, bufferSize);
+                        addBufferPoints(points, lon0, lat0, lon1, lat1, false, true, bufferSize);
                     }
                 } else {
-                    addPoint(points, qtree, lon0, lat0, true);
+                    points.add(lon0, lat0, true);
                 }
 
                 lat0 = lat1;
@@ -642,7 +643,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         }
     }
 
-    private void addBufferedWayGeometry(List<Coordinate> points, Quadtree qtree, SPTEntry goalEdge, double bufferSize, EdgeIteratorState iter, double edgeDist) {
+    private void addBufferedWayGeometry(HullPoints points, SPTEntry goalEdge, double bufferSize, EdgeIteratorState iter, double edgeDist) {
         boolean detailedShape = (edgeDist > 300);
         // always use mode=3, since other ones do not provide correct results
         PointList pl = iter.fetchWayGeometry(3);
@@ -658,7 +659,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
                     lat1 = pl.getLat(i);
                     lon1 = pl.getLon(i);
 
-                    addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, goalEdge.edge < 0 && i == size - 1, true, bufferSize);
+                    addBufferPoints(points, lon0, lat0, lon1, lat1, goalEdge.edge < 0 && i == size - 1, true, bufferSize);
 
                     lon0 = lon1;
                     lat0 = lat1;
@@ -668,9 +669,9 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
                     lat1 = pl.getLat(i);
                     lon1 = pl.getLon(i);
 
-                    addPoint(points, qtree, lon0, lat0, true);
+                    points.add(lon0, lat0, true);
                     if (i == size - 1)
-                        addPoint(points, qtree, lon1, lat1, true);
+                        points.add(lon1, lat1, true);
 
                     lon0 = lon1;
                     lat0 = lat1;
@@ -679,7 +680,7 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         }
     }
 
-    private void handleFullyReachableCells(Set<Geometry> isochroneGeometries, Set<Integer> fullyReachableCells) {
+    private void handleFullyReachableCells(Set<Geometry> isochroneGeometries, IntHashSet fullyReachableCells) {
         //printing for debug
 //        StringBuilder cellsPrintStatement = new StringBuilder();
 //
@@ -690,10 +691,10 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
 //                    "  \"features\": [");
 //            cellsPrintStatement.append(System.lineSeparator());
 //        }
-        Set<Integer> reachableCellsAndSuperCells = isSupercellsEnabled() ? handleSuperCells(fullyReachableCells) : fullyReachableCells;
+        IntHashSet reachableCellsAndSuperCells = isSupercellsEnabled() ? handleSuperCells(fullyReachableCells) : fullyReachableCells;
 
-        for (int cellId : reachableCellsAndSuperCells) {
-            addCellPolygon(cellId, isochroneGeometries);
+        for (IntCursor cellId : reachableCellsAndSuperCells) {
+            addCellPolygon(cellId.value, isochroneGeometries);
 //            if (LOGGER.isDebugEnabled())
 //                cellsPrintStatement.append(printCell(cellStorage.getCellContourOrder(cellId), cellId));
         }
@@ -705,28 +706,36 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
 //        LOGGER.debug(cellsPrintStatement.toString());
     }
 
-    private Set<Integer> handleSuperCells(Set<Integer> fullyReachableCells) {
-        Set<Integer> reachableCellsAndSuperCells = new HashSet<>();
-        Set<Integer> reachableSuperCells = new HashSet<>();
-        for (int cellId : fullyReachableCells) {
-            int superCell = cellStorage.getSuperCellOfCell(cellId);
-            if (superCell != -1 && fullyReachableCells.containsAll(cellStorage.getCellsOfSuperCellAsList(superCell)))
+    private IntHashSet handleSuperCells(IntHashSet fullyReachableCells) {
+        IntHashSet reachableCellsAndSuperCells = new IntHashSet();
+        IntHashSet reachableSuperCells = new IntHashSet();
+        for (IntCursor cellId : fullyReachableCells) {
+            int superCell = cellStorage.getSuperCellOfCell(cellId.value);
+            if (superCell != -1 && containsAll(fullyReachableCells, cellStorage.getCellsOfSuperCell(superCell)))
                 reachableSuperCells.add(superCell);
             else {
-                reachableCellsAndSuperCells.add(cellId);
+                reachableCellsAndSuperCells.add(cellId.value);
             }
         }
-        for (int cellId : reachableSuperCells) {
-            int superCell = cellStorage.getSuperCellOfCell(cellId);
-            if (superCell != -1 && reachableSuperCells.containsAll(cellStorage.getCellsOfSuperCellAsList(superCell))) {
+        for (IntCursor cellId : reachableSuperCells) {
+            int superCell = cellStorage.getSuperCellOfCell(cellId.value);
+            if (superCell != -1 && containsAll(reachableSuperCells, cellStorage.getCellsOfSuperCell(superCell))) {
                 reachableCellsAndSuperCells.add(superCell);
             } else {
-                reachableCellsAndSuperCells.add(cellId);
+                reachableCellsAndSuperCells.add(cellId.value);
             }
         }
         return reachableCellsAndSuperCells;
     }
 
+    private static boolean containsAll(IntHashSet set, IntHashSet subset) {
+        for (IntCursor element : subset) {
+            if (!set.contains(element.value))
+                return false;
+        }
+        return true;
+    }
+
     private void addCellPolygon(int cellId, Set<Geometry> isochronePolygons) {
         List<Double> coordinates = cellStorage.getCellContourOrder(cellId);
         if (coordinates.size() % 2 != 0)
@@ -815,4 +824,56 @@ public class FastIsochroneMapBuilder implements IsochroneMapBuilder {
         Collections.sort(disconnectedCells, (a1, a2) -> a2.size() - a1.size());
         return disconnectedCells;
     }
+
+    /**
+     * Collects the points of a single hull and skips points which are too close to the points already collected. Each
+     * hull gets its own instance, so that hulls can be built concurrently.
+     */
+    private static class HullPoints {
+        private final List<Coordinate> points;
+        private final Quadtree tree = new Quadtree();
+        private final TreeSet<Coordinate> treeSet = new TreeSet<>();
+        private final Envelope searchEnv = new Envelope();
+        private final PointItemVisitor visitor;
+        private final double searchWidth;
+        private final double pointWidth;
+
+        HullPoints(List<Coordinate> points, double lon, double lat, double searchWidth, double pointWidth, double visitorThreshold) {
+            this.points = points;
+            this.searchWidth = searchWidth;
+            this.pointWidth = pointWidth;
+            this.visitor = new PointItemVisitor(lon, lat, visitorThreshold);
+        }
+
+        boolean add(double lon, double lat, boolean checkNeighbours) {
+            if (checkNeighbours) {
+                visitor.setPoint(lon, lat);
+                searchEnv.init(lon - searchWidth, lon + searchWidth, lat - searchWidth, lat + searchWidth);
+                tree.query(searchEnv, visitor);
+                if (visitor.isNeighbourFound())
+                    return false;
+            }
+            Coordinate p = new Coordinate(lon, lat);
+            if (treeSet.contains(p))
+                return false;
+            Envelope env = new Envelope(lon - pointWidth, lon + pointWidth, lat - pointWidth, lat + pointWidth);
+            tree.insert(env, p);
+            points.add(p);
+            treeSet.add(p);
+            return true;
+        }
+    }
+
+    /**
+     * The polygons of the cells of a single range and the number of nodes found in its start cell.
+     */
+    private static class RangeGeometries {
+        private final Set<Geometry> geometries;
+        private final int startCellSize;
+
+        RangeGeometries(Set<Geometry> geometries, int startCellSize) {
+            this.geometries = geometries;
+            this.startCellSize = startCellSize;
+        }
+    }
 }
@@ -0,0 +1,248 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.isochrones.statistics.raster;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Population grid in WGS84 which is memory-mapped from a preprocessed file. Every row of the file holds the prefix
+ * sums of the population of its cells, so that the population of a polygon is obtained by rasterising the polygon
+ * onto the rows and reading two values per covered run of cells. A cell is counted if its center lies inside the
+ * polygon.
+ *
+ * File layout (big endian): magic, version, columns, rows as int, then west, north, cell width, cell height as double,
+ * followed by rows * columns doubles, the rows ordered from north to south.
+ */
+public class PopulationGrid implements Closeable {
+    private static final int MAGIC = 0x4f525350; // "ORSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * 4 + 4 * 8;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int columns;
+    private final int rows;
+    private final double west;
+    private final double north;
+    private final double cellWidth;
+    private final double cellHeight;
+
+    public PopulationGrid(File gridFile) throws IOException {
+        file = new RandomAccessFile(gridFile, "r");
+        try {
+            if (file.readInt() != MAGIC)
+                throw new IOException("'" + gridFile + "' is not a population grid file.");
+            int version = file.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported population grid version " + version + " in '" + gridFile + "'.");
+            columns = file.readInt();
+            rows = file.readInt();
+            west = file.readDouble();
+            north = file.readDouble();
+            cellWidth = file.readDouble();
+            cellHeight = file.readDouble();
+
+            long rowBytes = (long) columns * 8;
+            if (file.length() < HEADER_BYTES + rows * rowBytes)
+                throw new IOException("Population grid file '" + gridFile + "' is truncated.");
+
+            // a single buffer cannot map more than 2GB, so whole rows are grouped into segments
+            rowsPerSegment = (int) Math.max(1, Math.min(rows, MAX_SEGMENT_BYTES / rowBytes));
+            segments = new MappedByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < segments.length; i++) {
+                int segmentRows = Math.min(rowsPerSegment, rows - i * rowsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + i * rowsPerSegment * rowBytes, segmentRows * rowBytes);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sums up the population of all cells whose centers lie inside the given (multi) polygon.
+     */
+    public double getPopulation(Geometry geometry) {
+        double sum = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon)
+                sum += getPopulation((Polygon) part);
+        }
+        return sum;
+    }
+
+    private double getPopulation(Polygon polygon) {
+        Envelope env = polygon.getEnvelopeInternal();
+        // rows whose centers lie between the northern and the southern extent of the polygon
+        int firstRow = Math.max(0, (int) Math.ceil((north - env.getMaxY()) / cellHeight - 0.5));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((north - env.getMinY()) / cellHeight - 0.5));
+        if (firstRow > lastRow)
+            return 0;
+
+        DoubleArrayList[] crossings = new DoubleArrayList[lastRow - firstRow + 1];
+        addCrossings(polygon.getExteriorRing(), firstRow, lastRow, crossings);
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+            addCrossings(polygon.getInteriorRingN(i), firstRow, lastRow, crossings);
+
+        double sum = 0;
+        for (int i = 0; i < crossings.length; i++) {
+            if (crossings[i] == null)
+                continue;
+            double[] xs = crossings[i].toArray();
+            Arrays.sort(xs);
+            // even-odd rule: the cells between every pair of crossings are inside
+            for (int j = 0; j + 1 < xs.length; j += 2) {
+                int firstColumn = Math.max(0, (int) Math.ceil((xs[j] - west) / cellWidth - 0.5));
+                int lastColumn = Math.min(columns - 1, (int) Math.ceil((xs[j + 1] - west) / cellWidth - 0.5) - 1);
+                if (firstColumn <= lastColumn)
+                    sum += getRowSum(firstRow + i, firstColumn, lastColumn);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Stores the longitudes at which the edges of the ring cross the center lines of the rows.
+     */
+    private void addCrossings(LineString ring, int firstRow, int lastRow, DoubleArrayList[] crossings) {
+        Coordinate[] coords = ring.getCoordinates();
+        for (int k = 0; k + 1 < coords.length; k++) {
+            Coordinate a = coords[k];
+            Coordinate b = coords[k + 1];
+            if (a.y == b.y)
+                continue;
+            double minY = Math.min(a.y, b.y);
+            double maxY = Math.max(a.y, b.y);
+            // half-open interval [minY, maxY) so that vertices on a center line are counted once
+            int rowFrom = Math.max(firstRow, (int) Math.floor((north - maxY) / cellHeight - 0.5) + 1);
+            int rowTo = Math.min(lastRow, (int) Math.floor((north - minY) / cellHeight - 0.5));
+            for (int row = rowFrom; row <= rowTo; row++) {
+                double y = north - (row + 0.5) * cellHeight;
+                if (y < minY || y >= maxY)
+                    continue;
+                double x = a.x + (y - a.y) * (b.x - a.x) / (b.y - a.y);
+                int i = row - firstRow;
+                if (crossings[i] == null)
+                    crossings[i] = new DoubleArrayList();
+                crossings[i].add(x);
+            }
+        }
+    }
+
+    private double getRowSum(int row, int firstColumn, int lastColumn) {
+        MappedByteBuffer segment = segments[row / rowsPerSegment];
+        int rowOffset = (row % rowsPerSegment) * columns * 8;
+        double sum = segment.getDouble(rowOffset + lastColumn * 8);
+        if (firstColumn > 0)
+            sum -= segment.getDouble(rowOffset + (firstColumn - 1) * 8);
+        return sum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Converts a population raster in ESRI ASCII grid format with WGS84 coordinates into a population grid file.
+     * Cells with the no data value are counted as unpopulated.
+     */
+    public static void convertAsciiGrid(File source, File target) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(source));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            StreamTokenizer tokenizer = new StreamTokenizer(reader);
+            // numbers are parsed by Double.parseDouble to support the exponent notation
+            tokenizer.resetSyntax();
+            tokenizer.wordChars(33, 255);
+            tokenizer.whitespaceChars(0, 32);
+            int columns = 0;
+            int rows = 0;
+            double x = Double.NaN;
+            double y = Double.NaN;
+            boolean corner = true;
+            double cellSize = Double.NaN;
+            double noData = Double.NaN;
+
+            // header lines consist of a keyword and a value, the data starts with the first number
+            while (tokenizer.nextToken() == StreamTokenizer.TT_WORD && Character.isLetter(tokenizer.sval.charAt(0))) {
+                String key = tokenizer.sval.toLowerCase();
+                double value = parseValue(tokenizer, source);
+                switch (key) {
+                    case "ncols": columns = (int) value; break;
+                    case "nrows": rows = (int) value; break;
+                    case "xllcorner": x = value; break;
+                    case "yllcorner": y = value; break;
+                    case "xllcenter": x = value; corner = false; break;
+                    case "yllcenter": y = value; corner = false; break;
+                    case "cellsize": cellSize = value; break;
+                    case "nodata_value": noData = value; break;
+                    default: throw new IOException("Unknown header entry '" + key + "' in '" + source + "'.");
+                }
+            }
+            if (columns <= 0 || rows <= 0 || Double.isNaN(x) || Double.isNaN(y) || Double.isNaN(cellSize))
+                throw new IOException("Incomplete ESRI ASCII grid header in '" + source + "'.");
+            double west = corner ? x : x - cellSize / 2;
+            double south = corner ? y : y - cellSize / 2;
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns);
+            out.writeInt(rows);
+            out.writeDouble(west);
+            out.writeDouble(south + rows * cellSize);
+            out.writeDouble(cellSize);
+            out.writeDouble(cellSize);
+
+            for (int row = 0; row < rows; row++) {
+                double sum = 0;
+                for (int column = 0; column < columns; column++) {
+                    // the first value has already been read with the header
+                    double value = row == 0 && column == 0 ? toValue(tokenizer, source) : parseValue(tokenizer, source);
+                    if (value != noData && value > 0)
+                        sum += value;
+                    out.writeDouble(sum);
+                }
+            }
+        }
+    }
+
+    private static double parseValue(StreamTokenizer tokenizer, File source) throws IOException {
+        tokenizer.nextToken();
+        return toValue(tokenizer, source);
+    }
+
+    private static double toValue(StreamTokenizer tokenizer, File source) throws IOException {
+        if (tokenizer.ttype != StreamTokenizer.TT_WORD)
+            throw new IOException("Unexpected end of ESRI ASCII grid '" + source + "'.");
+        try {
+            return Double.parseDouble(tokenizer.sval);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid value '" + tokenizer.sval + "' in '" + source + "'.", ex);
+        }
+    }
+}
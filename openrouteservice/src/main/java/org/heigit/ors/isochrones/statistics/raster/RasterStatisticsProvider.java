@@ -0,0 +1,91 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.isochrones.statistics.raster;
+
+import com.graphhopper.util.Helper;
+import org.apache.log4j.Logger;
+import org.heigit.ors.exceptions.InternalServerException;
+import org.heigit.ors.isochrones.Isochrone;
+import org.heigit.ors.isochrones.IsochronesErrorCodes;
+import org.heigit.ors.isochrones.statistics.StatisticsProvider;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * This class answers the population statistic queries from a {@link PopulationGrid} on local disk, so that no
+ * database is needed and the costs of a query only depend on the extent of the isochrone.
+ *
+ * The grid is read from the file given by the 'grid_file' parameter. If that file does not exist but 'source_file'
+ * points to an ESRI ASCII grid, the grid file is created from it first.
+ */
+public class RasterStatisticsProvider implements StatisticsProvider {
+    private static final Logger LOGGER = Logger.getLogger(RasterStatisticsProvider.class.getName());
+
+    private static final String PARAM_KEY_GRID_FILE = "grid_file";
+    private static final String PARAM_KEY_SOURCE_FILE = "source_file";
+    private static final String PROPERTY_TOTAL_POP = "total_pop";
+
+    private PopulationGrid grid;
+
+    @Override
+    public void init(Map<String, Object> parameters) throws Exception {
+        grid = null;
+
+        String value = (String) parameters.get(PARAM_KEY_GRID_FILE);
+        if (Helper.isEmpty(value))
+            throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "'" + PARAM_KEY_GRID_FILE + "' parameter can not be null or empty.");
+        File gridFile = new File(value);
+
+        if (!gridFile.exists()) {
+            value = (String) parameters.get(PARAM_KEY_SOURCE_FILE);
+            if (Helper.isEmpty(value))
+                throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Population grid '" + gridFile + "' does not exist and no '" + PARAM_KEY_SOURCE_FILE + "' is given.");
+            LOGGER.info("Creating population grid '" + gridFile + "' from '" + value + "'.");
+            File tmpFile = new File(gridFile.getPath() + ".tmp");
+            PopulationGrid.convertAsciiGrid(new File(value), tmpFile);
+            if (!tmpFile.renameTo(gridFile))
+                throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to create population grid '" + gridFile + "'.");
+        }
+
+        grid = new PopulationGrid(gridFile);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (grid != null) {
+            grid.close();
+            grid = null;
+        }
+    }
+
+    /**
+     * Returns the values of the given properties for the area of the isochrone. Only total_pop is supported, the
+     * values of other properties are 0.
+     */
+    @Override
+    public double[] getStatistics(Isochrone isochrone, String[] properties) throws Exception {
+        double[] res = new double[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            if (PROPERTY_TOTAL_POP.equals(properties[i]))
+                res[i] = Math.round(grid.getPopulation(isochrone.getGeometry()));
+        }
+        return res;
+    }
+
+    @Override
+    public String getName() {
+        return "raster";
+    }
+}
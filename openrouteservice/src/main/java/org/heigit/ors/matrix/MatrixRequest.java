@@ -28,6 +28,7 @@ public class MatrixRequest extends ServiceRequest {
 	private boolean resolveLocations = false;
 	private boolean flexibleMode = false;
 	private String algorithm;
+	private int avoidFeatures;
 
 	public Coordinate[] getSources()
 	{
@@ -112,6 +113,18 @@ public class MatrixRequest extends ServiceRequest {
 		this.algorithm = algorithm;
 	}
 
+	public int getAvoidFeatures() {
+		return avoidFeatures;
+	}
+
+	public void setAvoidFeatures(int avoidFeatures) {
+		this.avoidFeatures = avoidFeatures;
+	}
+
+	public boolean hasAvoidFeatures() {
+		return avoidFeatures > 0;
+	}
+
 	public boolean isValid(){
 		return !(sources == null && destinations == null);
 	}
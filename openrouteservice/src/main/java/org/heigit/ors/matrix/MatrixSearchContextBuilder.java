@@ -13,6 +13,7 @@
  */
 package org.heigit.ors.matrix;
 
+import com.graphhopper.coll.GHLongObjectHashMap;
 import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Graph;
@@ -22,11 +23,16 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint3D;
 import com.vividsolutions.jts.geom.Coordinate;
 import org.heigit.ors.exceptions.PointNotFoundException;
+import org.heigit.ors.util.WorkerPoolUtility;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public class MatrixSearchContextBuilder {
-	private Map<Coordinate, LocationEntry> locationCache;
+	private static final int LOCATIONS_PER_TASK = 32;
+	private static final double LOCATION_KEY_FACTOR = 1e6;
+
+	private GHLongObjectHashMap<LocationEntry> locationCache;
 	private boolean resolveNames;
 	private LocationIndex locIndex;
 	private EdgeFilter edgeFilter;
@@ -69,17 +75,14 @@ public class MatrixSearchContextBuilder {
 
 	public MatrixSearchContext create(Graph graph, Coordinate[] sources, Coordinate[] destinations, double maxSearchRadius) throws Exception {
 		if (locationCache == null)
-			locationCache = new HashMap<>();
+			locationCache = new GHLongObjectHashMap<>(sources.length + destinations.length);
 		else
 			locationCache.clear();
 
 		checkBounds(graph.getBounds(), sources, destinations);
 
 		QueryGraph queryGraph = new QueryGraph(graph);
-		List<QueryResult> queryResults = new ArrayList<>(sources.length + destinations.length);
-		
-		resolveLocations(sources, queryResults, maxSearchRadius);
-		resolveLocations(destinations, queryResults, maxSearchRadius);
+		List<QueryResult> queryResults = resolveLocations(sources, destinations, maxSearchRadius);
 
 		queryGraph.lookup(queryResults);
 		
@@ -136,34 +139,75 @@ public class MatrixSearchContextBuilder {
 		return idsArray;
 	}
 	
-	private void resolveLocations(Coordinate[] coords, List<QueryResult> queryResults, double maxSearchRadius) {
-		for (Coordinate p : coords) {
-			LocationEntry ld = locationCache.get(p);
-			if (ld == null) {
-				QueryResult qr = locIndex.findClosest(p.y, p.x, edgeFilter);
-
-				ld = new LocationEntry();
-				ld.queryResult = qr;
+	/**
+	 * Snaps every distinct location once, so that a location used as a source and as a destination, like in symmetric
+	 * matrices, shares its QueryResult. Locations with the same coordinates rounded to six decimal places (about 10 cm)
+	 * count as one location. The snapping is split into chunks which run on the matrix worker pool.
+	 *
+	 * @return the valid query results in the order of the first occurrence of their locations
+	 */
+	private List<QueryResult> resolveLocations(Coordinate[] sources, Coordinate[] destinations, double maxSearchRadius) throws Exception {
+		List<Coordinate> coords = new ArrayList<>(sources.length + destinations.length);
+		List<LocationEntry> entries = new ArrayList<>(sources.length + destinations.length);
+		addUniqueLocations(sources, coords, entries);
+		addUniqueLocations(destinations, coords, entries);
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int start = 0; start < coords.size(); start += LOCATIONS_PER_TASK) {
+			final int from = start;
+			final int to = Math.min(start + LOCATIONS_PER_TASK, coords.size());
+			tasks.add(() -> {
+				for (int i = from; i < to; i++)
+					resolveLocation(coords.get(i), entries.get(i), maxSearchRadius);
+				return null;
+			});
+		}
+		WorkerPoolUtility.invokeAll(MatrixWorkerPool.getExecutor(), tasks);
 
-				if (qr.isValid() && qr.getQueryDistance() < maxSearchRadius) {
-					GHPoint3D pt = qr.getSnappedPoint();
-					ld.nodeId = qr.getClosestNode();
-					ld.location = new ResolvedLocation(new Coordinate(pt.getLon(), pt.getLat()), resolveNames ? qr.getClosestEdge().getName() : null, qr.getQueryDistance());
+		List<QueryResult> queryResults = new ArrayList<>(entries.size());
+		for (LocationEntry ld : entries) {
+			if (ld.nodeId != -1)
+				queryResults.add(ld.queryResult);
+		}
+		return queryResults;
+	}
 
-					queryResults.add(qr);
-				} else {
-					ld.nodeId = -1;
-				}
-				locationCache.put(p, ld);
+	private void addUniqueLocations(Coordinate[] coords, List<Coordinate> uniqueCoords, List<LocationEntry> entries) {
+		for (Coordinate p : coords) {
+			long key = getLocationKey(p);
+			if (!locationCache.containsKey(key)) {
+				LocationEntry ld = new LocationEntry();
+				locationCache.put(key, ld);
+				uniqueCoords.add(p);
+				entries.add(ld);
 			}
 		}
 	}
+
+	private void resolveLocation(Coordinate p, LocationEntry ld, double maxSearchRadius) {
+		QueryResult qr = locIndex.findClosest(p.y, p.x, edgeFilter);
+		ld.queryResult = qr;
+
+		if (qr.isValid() && qr.getQueryDistance() < maxSearchRadius) {
+			GHPoint3D pt = qr.getSnappedPoint();
+			ld.nodeId = qr.getClosestNode();
+			ld.location = new ResolvedLocation(new Coordinate(pt.getLon(), pt.getLat()), resolveNames ? qr.getClosestEdge().getName() : null, qr.getQueryDistance());
+		} else {
+			ld.nodeId = -1;
+		}
+	}
+
+	static long getLocationKey(Coordinate p) {
+		long lat = Math.round(p.y * LOCATION_KEY_FACTOR);
+		long lon = Math.round(p.x * LOCATION_KEY_FACTOR);
+		return (lat << 32) | (lon & 0xFFFFFFFFL);
+	}
  	
 	private MatrixLocations createLocations(Coordinate[] coords) throws Exception {
 		MatrixLocations mlRes = new MatrixLocations(coords.length);
 		for (int i = 0; i < coords.length; i++) {
 			Coordinate p = coords[i];
-			LocationEntry ld = locationCache.get(p);
+			LocationEntry ld = locationCache.get(getLocationKey(p));
 			if (ld != null)
 				mlRes.setData(i, ld.nodeId == -1 ? -1 : ld.queryResult.getClosestNode(), ld.location);
 			else
@@ -0,0 +1,41 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.matrix;
+
+import org.heigit.ors.services.matrix.MatrixServiceSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Worker pool shared by all matrix requests, bounded by the matrix service parameter 'maximum_threads'. It is used
+ * for the independent parts of a matrix calculation, like the rows of a Dijkstra matrix and the snapping of the
+ * locations.
+ */
+public class MatrixWorkerPool {
+	private static ForkJoinPool workerPool;
+
+	private MatrixWorkerPool() {}
+
+	/**
+	 * @return the shared pool, or null if matrices are computed in the requesting threads only
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (MatrixServiceSettings.getMaximumThreads() <= 1)
+			return null;
+		if (workerPool == null)
+			workerPool = new ForkJoinPool(MatrixServiceSettings.getMaximumThreads());
+		return workerPool;
+	}
+}
@@ -27,6 +27,7 @@ import com.graphhopper.util.EdgeIteratorState;
 import org.heigit.ors.common.DistanceUnit;
 import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
 import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntryItem;
+import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPState;
 import org.heigit.ors.util.DistanceUnitUtil;
 
 public class MultiTreeMetricsExtractor {
@@ -119,7 +120,6 @@ public class MultiTreeMetricsExtractor {
 		double pathTime;
 		double pathDistance;
 		double pathWeight;
-		long entryHash = 0;
 		boolean calcTime = MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION);
 		boolean calcDistance = MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE);
 		boolean calcWeight = MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT);
@@ -147,79 +147,11 @@ public class MultiTreeMetricsExtractor {
 
 						if (sptItem.getParent() != null) {
 							while (EdgeIterator.Edge.isValid(sptItem.getEdge())) {
-								edgeMetricsItem = null;
-								if (edgeMetrics != null) {
-									entryHash = getMultiTreeSPEntryHash(targetEntry, srcNode);
-									edgeMetricsItem = edgeMetrics.get(entryHash);
-								}
-
-								if (edgeMetricsItem == null) {
-									if (chGraph != null) {
-										CHEdgeIteratorState iterState = (CHEdgeIteratorState) graph
-												.getEdgeIteratorState(sptItem.getEdge(), targetEntry.getAdjNode());
-
-										boolean unpackDistance = true;
-										if (calcWeight || calcTime || unpackDistance) {
-											if (iterState.isShortcut()) {
-												if (chGraph.getLevel(iterState.getBaseNode()) > chGraph
-														.getLevel(iterState.getAdjNode())) {
-													reverseOrder = true;
-													extractEdgeValues(iterState, false);
-												} else {
-													reverseOrder = false;
-													extractEdgeValues(iterState, true);
-												}
-											} else {
-												extractEdgeValues(iterState, false);
-											}
-
-											if (unpackDistance)
-												edgeDistance = (distUnits == DistanceUnit.METERS) ? edgeDistance
-														: DistanceUnitUtil.convert(edgeDistance, DistanceUnit.METERS,
-														distUnits);
-										}
-
-										if (!unpackDistance && calcDistance)
-											edgeDistance = (distUnits == DistanceUnit.METERS)
-													? iterState.getDistance()
-													: DistanceUnitUtil.convert(iterState.getDistance(),
-															DistanceUnit.METERS, distUnits);
-									} else {
-										EdgeIteratorState iter = graph.getEdgeIteratorState(sptItem.getEdge(),
-												targetEntry.getAdjNode());
-
-										if (calcDistance)
-											edgeDistance = (distUnits == DistanceUnit.METERS) ? iter.getDistance()
-													: DistanceUnitUtil.convert(iter.getDistance(), DistanceUnit.METERS,
-													distUnits);
-
-										if (calcTime)
-											edgeTime = timeWeighting.calcMillis(iter, false, EdgeIterator.NO_EDGE)
-													/ 1000.0;
-
-										if (calcWeight)
-											edgeWeight = weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
-									}
-
-									if (edgeMetrics != null) {
-										edgeMetricsItem = new MetricsItem();
-										edgeMetricsItem.distance = edgeDistance;
-										edgeMetricsItem.time = edgeTime;
-										edgeMetricsItem.weight = edgeWeight;
-										edgeMetrics.put(entryHash, edgeMetricsItem);
-									}
-
-									pathDistance += edgeDistance;
-									pathTime += edgeTime;
-									pathWeight += edgeWeight;
-								} else {
-									if (calcDistance)
-										pathDistance += edgeMetricsItem.distance;
-									if (calcTime)
-										pathTime += edgeMetricsItem.time;
-									if (calcWeight)
-										pathWeight += edgeMetricsItem.weight;
-								}
+								edgeMetricsItem = getEdgeMetrics(sptItem.getEdge(), targetEntry.getAdjNode(), calcTime, calcDistance, calcWeight);
+
+								pathDistance += edgeMetricsItem.distance;
+								pathTime += edgeMetricsItem.time;
+								pathWeight += edgeMetricsItem.weight;
 
 								targetEntry = sptItem.getParent();
 
@@ -245,8 +177,128 @@ public class MultiTreeMetricsExtractor {
 		}
 	}
 
-	private long getMultiTreeSPEntryHash(MultiTreeSPEntry entry, int sptEntry) {
-		return entry.getAdjNode() * maxEdgeId + entry.getItem(sptEntry).getEdge();
+	/**
+	 * Calculates the values of the matrix from the trees of a {@link MultiTreeSPState}, in which tree i belongs to the
+	 * i-th source with a valid node. If the state carries durations and distances, they are read from it directly,
+	 * otherwise the paths are unpacked.
+	 */
+	public void calcValues(MultiTreeSPState state, MatrixLocations srcData, MatrixLocations dstData, float[] times,
+			float[] distances, float[] weights) throws Exception {
+		if (state == null)
+			throw new IllegalStateException("Target destinations not set");
+
+		boolean calcTime = MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION);
+		boolean calcDistance = MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE);
+		boolean calcWeight = MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT);
+
+		for (int i = 0; i < dstData.size(); ++i) {
+			int targetNode = dstData.getNodeId(i);
+			int targetSlot = targetNode == -1 ? -1 : state.getSlot(targetNode);
+			int tree = 0;
+			for (int j = 0; j < srcData.size(); ++j) {
+				double pathTime = -1;
+				double pathDistance = -1;
+				double pathWeight = -1;
+
+				int index = j * dstData.size() + i;
+
+				if (srcData.getNodeId(j) != -1) {
+					if (targetSlot != -1) {
+						pathTime = 0.0;
+						pathDistance = 0.0;
+						pathWeight = 0.0;
+
+						int slot = targetSlot;
+						if (state.getParent(slot, tree) != -1 && state.hasMetrics()) {
+							pathTime = state.getTime(slot, tree);
+							pathDistance = convertDistance(state.getDistance(slot, tree));
+							pathWeight = state.getWeight(slot, tree);
+						} else if (state.getParent(slot, tree) != -1) {
+							while (EdgeIterator.Edge.isValid(state.getEdge(slot, tree))) {
+								MetricsItem edgeMetricsItem = getEdgeMetrics(state.getEdge(slot, tree), state.getNode(slot), calcTime, calcDistance, calcWeight);
+
+								pathDistance += edgeMetricsItem.distance;
+								pathTime += edgeMetricsItem.time;
+								pathWeight += edgeMetricsItem.weight;
+
+								slot = state.getParent(slot, tree);
+
+								if (slot == -1)
+									break;
+							}
+						}
+					}
+					tree++;
+				}
+
+				if (calcTime)
+					times[index] = (float) pathTime;
+
+				if (calcDistance)
+					distances[index] = (float) pathDistance;
+
+				if (calcWeight)
+					weights[index] = (float) pathWeight;
+			}
+		}
+	}
+
+	private double convertDistance(double distance) {
+		return distUnits == DistanceUnit.METERS ? distance : DistanceUnitUtil.convert(distance, DistanceUnit.METERS, distUnits);
+	}
+
+	/**
+	 * Returns the metrics of the edge leading to the node, unpacking shortcuts. The results are cached per edge and
+	 * node for the lifetime of this extractor.
+	 */
+	private MetricsItem getEdgeMetrics(int edge, int adjNode, boolean calcTime, boolean calcDistance, boolean calcWeight) {
+		long entryHash = adjNode * maxEdgeId + edge;
+		MetricsItem edgeMetricsItem = edgeMetrics.get(entryHash);
+		if (edgeMetricsItem != null)
+			return edgeMetricsItem;
+
+		if (chGraph != null) {
+			CHEdgeIteratorState iterState = (CHEdgeIteratorState) graph
+					.getEdgeIteratorState(edge, adjNode);
+
+			if (iterState.isShortcut()) {
+				if (chGraph.getLevel(iterState.getBaseNode()) > chGraph
+						.getLevel(iterState.getAdjNode())) {
+					reverseOrder = true;
+					extractEdgeValues(iterState, false);
+				} else {
+					reverseOrder = false;
+					extractEdgeValues(iterState, true);
+				}
+			} else {
+				extractEdgeValues(iterState, false);
+			}
+
+			edgeDistance = (distUnits == DistanceUnit.METERS) ? edgeDistance
+					: DistanceUnitUtil.convert(edgeDistance, DistanceUnit.METERS,
+					distUnits);
+		} else {
+			EdgeIteratorState iter = graph.getEdgeIteratorState(edge, adjNode);
+
+			if (calcDistance)
+				edgeDistance = (distUnits == DistanceUnit.METERS) ? iter.getDistance()
+						: DistanceUnitUtil.convert(iter.getDistance(), DistanceUnit.METERS,
+						distUnits);
+
+			if (calcTime)
+				edgeTime = timeWeighting.calcMillis(iter, false, EdgeIterator.NO_EDGE)
+						/ 1000.0;
+
+			if (calcWeight)
+				edgeWeight = weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+		}
+
+		edgeMetricsItem = new MetricsItem();
+		edgeMetricsItem.distance = edgeDistance;
+		edgeMetricsItem.time = edgeTime;
+		edgeMetricsItem.weight = edgeWeight;
+		edgeMetrics.put(entryHash, edgeMetricsItem);
+		return edgeMetricsItem;
 	}
 
 	private void extractEdgeValues(CHEdgeIteratorState iterState, boolean reverse) {
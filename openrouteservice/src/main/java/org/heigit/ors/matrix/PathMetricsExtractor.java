@@ -211,8 +211,11 @@ public class PathMetricsExtractor {
 		}
 	}
 
+	/**
+	 * The key of the edge leading to the node of the entry, which differs for both directions of the edge.
+	 */
 	private long getSPTEntryHash(SPTEntry entry) {
-		return (long)entry.adjNode + entry.edge;
+		return ((long) entry.edge << 32) | entry.adjNode;
 	}
 
 	private void extractEdgeValues(CHEdgeIteratorState iterState, boolean reverse) {
@@ -14,16 +14,21 @@
 package org.heigit.ors.matrix.algorithms;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import org.heigit.ors.matrix.MatrixRequest;
 
+import java.util.concurrent.Callable;
+
 public abstract class AbstractMatrixAlgorithm implements MatrixAlgorithm {
   protected GraphHopper graphHopper;
   protected Graph graph;
   protected FlagEncoder encoder;
   protected Weighting weighting;
+  protected EdgeFilter edgeFilter;
+  protected Callable<EdgeFilter> edgeFilterFactory;
   
   public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting)
   {
@@ -32,4 +37,14 @@ public abstract class AbstractMatrixAlgorithm implements MatrixAlgorithm {
 	  this.encoder = encoder;
 	  this.weighting = weighting;
   }
+
+  public void setEdgeFilter(EdgeFilter edgeFilter)
+  {
+	  this.edgeFilter = edgeFilter;
+  }
+
+  public void setEdgeFilterFactory(Callable<EdgeFilter> edgeFilterFactory)
+  {
+	  this.edgeFilterFactory = edgeFilterFactory;
+  }
 }
@@ -14,6 +14,7 @@
 package org.heigit.ors.matrix.algorithms;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -22,8 +23,18 @@ import org.heigit.ors.matrix.MatrixLocations;
 import org.heigit.ors.matrix.MatrixRequest;
 import org.heigit.ors.matrix.MatrixResult;
 
+import java.util.concurrent.Callable;
+
 public interface MatrixAlgorithm {
   public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting);
   
+  public void setEdgeFilter(EdgeFilter edgeFilter);
+
+  /**
+   * Sets a factory creating further instances of the edge filter, which algorithms searching in several threads use
+   * to give each thread its own filter. Without a factory, a filtered search runs in the calling thread only.
+   */
+  public void setEdgeFilterFactory(Callable<EdgeFilter> edgeFilterFactory);
+
   public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception;
 }
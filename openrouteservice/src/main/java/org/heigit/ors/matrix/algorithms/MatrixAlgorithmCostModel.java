@@ -0,0 +1,54 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.matrix.algorithms;
+
+/**
+ * Estimates the costs of the two CH matrix algorithms from the numbers of sources and targets, in units of a single
+ * CH upward search.
+ *
+ * The bucket algorithm runs one upward search per source and target, and matches every pair of a source and a
+ * target in the buckets: (sources + targets) + bucketCellCost * sources * targets.
+ *
+ * RPHAST builds its target graph from one upward search per target. Its sweeps then carry an entry per source
+ * through the search spaces of the sources and the target graph: rphastBaseCost + targets + rphastCellCost *
+ * sources * (sources + targets).
+ *
+ * A negative bucket cell cost disables the bucket algorithm.
+ */
+public class MatrixAlgorithmCostModel {
+	private final double bucketCellCost;
+	private final double rphastBaseCost;
+	private final double rphastCellCost;
+
+	public MatrixAlgorithmCostModel(double bucketCellCost, double rphastBaseCost, double rphastCellCost) {
+		this.bucketCellCost = bucketCellCost;
+		this.rphastBaseCost = rphastBaseCost;
+		this.rphastCellCost = rphastCellCost;
+	}
+
+	public double getBucketCost(int sources, int targets) {
+		return (sources + targets) + bucketCellCost * sources * targets;
+	}
+
+	public double getRPHASTCost(int sources, int targets) {
+		return rphastBaseCost + targets + rphastCellCost * sources * (double) (sources + targets);
+	}
+
+	/**
+	 * @return true if the bucket algorithm is expected to be cheaper than RPHAST
+	 */
+	public boolean preferBucketAlgorithm(int sources, int targets) {
+		return bucketCellCost >= 0 && getBucketCost(sources, targets) < getRPHASTCost(sources, targets);
+	}
+}
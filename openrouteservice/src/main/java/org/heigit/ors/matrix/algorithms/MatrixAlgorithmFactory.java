@@ -14,17 +14,46 @@
 package org.heigit.ors.matrix.algorithms;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.CHProfile;
 import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.algorithms.bucket.BucketManyToManyMatrixAlgorithm;
+import org.heigit.ors.matrix.algorithms.core.CoreMatrixAlgorithm;
 import org.heigit.ors.matrix.algorithms.dijkstra.DijkstraMatrixAlgorithm;
 import org.heigit.ors.matrix.algorithms.rphast.RPHASTMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.services.matrix.MatrixServiceSettings;
 
 public class MatrixAlgorithmFactory {
+	private static final MatrixAlgorithmCostModel COST_MODEL = new MatrixAlgorithmCostModel(
+			MatrixServiceSettings.getBucketCellCost(), MatrixServiceSettings.getRPHASTBaseCost(),
+			MatrixServiceSettings.getRPHASTCellCost());
+
 	private MatrixAlgorithmFactory() {}
 
 	public static MatrixAlgorithm createAlgorithm(MatrixRequest req, GraphHopper gh) {
-		if (!req.getFlexibleMode() && gh.isCHEnabled())
+		return createAlgorithm(req, gh, null, null);
+	}
+
+	/**
+	 * @param chProfile the CH profile which has been prepared for the weighting of the request, or null if there is none,
+	 *                  in which case the matrix is computed on the core or the base graph
+	 */
+	public static MatrixAlgorithm createAlgorithm(MatrixRequest req, GraphHopper gh, CHProfile chProfile, String weighting) {
+		if (!req.getFlexibleMode() && chProfile != null) {
+			if (hasShortcutMetrics(gh, chProfile) && COST_MODEL.preferBucketAlgorithm(req.getSources().length, req.getDestinations().length))
+				return new BucketManyToManyMatrixAlgorithm();
 			return new RPHASTMatrixAlgorithm();
+		}
+		else if (weighting != null && gh instanceof ORSGraphHopper && ((ORSGraphHopper) gh).isCoreAvailable(weighting))
+			return new CoreMatrixAlgorithm();
 		else
 			return new DijkstraMatrixAlgorithm();
 	}
+
+	/**
+	 * The bucket algorithm takes the metrics of the shortcuts from their precomputed storage instead of unpacking them.
+	 */
+	private static boolean hasShortcutMetrics(GraphHopper gh, CHProfile chProfile) {
+		return gh instanceof ORSGraphHopper && ((ORSGraphHopper) gh).getShortcutMetrics(chProfile) != null;
+	}
 }
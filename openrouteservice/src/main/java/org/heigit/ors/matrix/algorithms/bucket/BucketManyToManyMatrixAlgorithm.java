@@ -0,0 +1,333 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.matrix.algorithms.bucket;
+
+import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.ch.PreparationWeighting;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import org.heigit.ors.common.DistanceUnit;
+import org.heigit.ors.exceptions.ServerLimitExceededException;
+import org.heigit.ors.matrix.MatrixErrorCodes;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.ch.CHLevelEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.ch.DownwardSearchEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.ch.UpwardSearchEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+import org.heigit.ors.services.matrix.MatrixServiceSettings;
+import org.heigit.ors.util.DistanceUnitUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bucket based many-to-many matrix algorithm on the CH graph, which is cheaper than RPHAST for requests with few
+ * sources or few targets, see {@link org.heigit.ors.matrix.algorithms.MatrixAlgorithmCostModel}.
+ *
+ * A backward upward search is run from every target, whose settled nodes are stored in buckets at these nodes. The
+ * forward upward search of every source then scans the buckets of the nodes it settles, as the shortest path to a
+ * target is found at its highest node, which is settled by both searches. The forward search stops as soon as it
+ * cannot improve the result of any target.
+ *
+ * Durations and distances are carried along with the weights, those of the shortcuts being taken from the
+ * {@link ShortcutMetricsStorage} of the CH graph.
+ */
+public class BucketManyToManyMatrixAlgorithm extends AbstractMatrixAlgorithm {
+	private CHGraph chGraph;
+	private Weighting prepareWeighting;
+	private ShortcutMetricsStorage shortcutMetrics;
+	private EdgeExplorer explorer;
+	private CHLevelEdgeFilter upwardFilter;
+	private CHLevelEdgeFilter downwardFilter;
+	private int maxVisitedNodes;
+	private DistanceUnit units;
+
+	private IntObjectMap<List<BucketEntry>> targetBuckets;
+	private IntObjectMap<BucketEntry> bestWeightMap;
+	private PriorityQueue<BucketEntry> prioQueue;
+
+	private double[] bestWeights;
+	private double[] bestTimes;
+	private double[] bestDistances;
+
+	@Override
+	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
+		super.init(req, gh, graph, encoder, weighting);
+
+		Graph mainGraph = graph instanceof QueryGraph ? ((QueryGraph) graph).getMainGraph() : graph;
+		if (!(mainGraph instanceof CHGraph))
+			throw new IllegalStateException("The bucket matrix algorithm requires a CH graph.");
+		chGraph = (CHGraph) mainGraph;
+
+		if (gh instanceof ORSGraphHopper)
+			shortcutMetrics = ((ORSGraphHopper) gh).getShortcutMetrics(chGraph.getCHProfile());
+		if (shortcutMetrics == null)
+			throw new IllegalStateException("The shortcut metrics of the CH graph are not available.");
+
+		maxVisitedNodes = MatrixServiceSettings.getMaximumVisitedNodes();
+		units = req.getUnits();
+
+		prepareWeighting = new PreparationWeighting(weighting);
+		explorer = graph.createEdgeExplorer();
+		upwardFilter = new UpwardSearchEdgeFilter(chGraph, encoder);
+		downwardFilter = new DownwardSearchEdgeFilter(chGraph, encoder);
+
+		int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+		targetBuckets = new GHIntObjectHashMap<>(size);
+		bestWeightMap = new GHIntObjectHashMap<>(size);
+		prioQueue = new PriorityQueue<>(size);
+	}
+
+	public void setMaxVisitedNodes(int numberOfNodes) {
+		maxVisitedNodes = numberOfNodes;
+	}
+
+	@Override
+	public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception {
+		MatrixResult mtxResult = new MatrixResult(srcData.getLocations(), dstData.getLocations());
+
+		float[] times = null;
+		float[] distances = null;
+		float[] weights = null;
+
+		int tableSize = srcData.size() * dstData.size();
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
+			times = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE))
+			distances = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT))
+			weights = new float[tableSize];
+
+		if (srcData.hasValidNodes() && dstData.hasValidNodes()) {
+			mtxResult.setGraphDate(graphHopper.getGraphHopperStorage().getProperties().get("datareader.import.date"));
+
+			bestWeights = new double[dstData.size()];
+			bestTimes = new double[dstData.size()];
+			bestDistances = new double[dstData.size()];
+
+			fillTargetBuckets(dstData.getNodeIds());
+		}
+
+		for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
+			int sourceId = srcData.getNodeId(srcIndex);
+			if (sourceId != -1 && dstData.hasValidNodes())
+				calcSourceRow(sourceId, dstData.getNodeIds());
+			else if (bestWeights != null)
+				Arrays.fill(bestWeights, Double.POSITIVE_INFINITY);
+
+			int index = srcIndex * dstData.size();
+			for (int dstIndex = 0; dstIndex < dstData.size(); dstIndex++, index++) {
+				boolean found = bestWeights != null && bestWeights[dstIndex] != Double.POSITIVE_INFINITY;
+				if (times != null)
+					times[index] = found ? (float) bestTimes[dstIndex] : -1;
+				if (distances != null)
+					distances[index] = found ? (float) convertDistance(bestDistances[dstIndex]) : -1;
+				if (weights != null)
+					weights[index] = found ? (float) bestWeights[dstIndex] : -1;
+			}
+		}
+
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
+			mtxResult.setTable(MatrixMetricsType.DURATION, times);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE))
+			mtxResult.setTable(MatrixMetricsType.DISTANCE, distances);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT))
+			mtxResult.setTable(MatrixMetricsType.WEIGHT, weights);
+
+		return mtxResult;
+	}
+
+	/**
+	 * Runs the backward upward search from every target and stores the settled nodes in the buckets of these nodes.
+	 */
+	private void fillTargetBuckets(int[] targets) throws ServerLimitExceededException {
+		for (int dstIndex = 0; dstIndex < targets.length; dstIndex++) {
+			if (targets[dstIndex] == -1)
+				continue;
+
+			runUpwardSearch(targets[dstIndex], downwardFilter, true, null);
+
+			for (ObjectCursor<BucketEntry> cursor : bestWeightMap.values()) {
+				BucketEntry entry = cursor.value;
+				List<BucketEntry> bucket = targetBuckets.get(entry.node);
+				if (bucket == null) {
+					bucket = new ArrayList<>(4);
+					targetBuckets.put(entry.node, bucket);
+				}
+				// within a bucket the node field refers to the index of the target
+				bucket.add(new BucketEntry(dstIndex, entry.weight, entry.time, entry.distance));
+			}
+		}
+	}
+
+	private void calcSourceRow(int source, int[] targets) throws ServerLimitExceededException {
+		Arrays.fill(bestWeights, Double.POSITIVE_INFINITY);
+		runUpwardSearch(source, upwardFilter, false, targets);
+	}
+
+	/**
+	 * Runs a CH upward search, leaving the settled nodes in {@link #bestWeightMap}. The forward search of a source,
+	 * for which the targets are given, matches every settled node against the target buckets and stops once the
+	 * weights of the remaining nodes exceed the results of all targets.
+	 *
+	 * @throws ServerLimitExceededException if the search settles more nodes than allowed for matrix searches
+	 */
+	private void runUpwardSearch(int startNode, CHLevelEdgeFilter filter, boolean reverse, int[] targets) throws ServerLimitExceededException {
+		bestWeightMap.clear();
+		prioQueue.clear();
+
+		BucketEntry startEntry = new BucketEntry(startNode, 0, 0, 0);
+		bestWeightMap.put(startNode, startEntry);
+		prioQueue.add(startEntry);
+
+		double maxWeight = Double.POSITIVE_INFINITY;
+		int visitedNodes = 0;
+
+		while (!prioQueue.isEmpty()) {
+			BucketEntry currEntry = prioQueue.poll();
+			if (currEntry.settled || bestWeightMap.get(currEntry.node) != currEntry)
+				continue;
+
+			if (targets != null) {
+				// no target can be improved by any entry which is not better than the worst of the current results
+				if (currEntry.weight >= maxWeight)
+					break;
+				if (updateBestWeights(currEntry))
+					maxWeight = getMaxBestWeight(targets);
+			}
+
+			currEntry.settled = true;
+
+			if (++visitedNodes > maxVisitedNodes)
+				throw new ServerLimitExceededException(MatrixErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "Search exceeds the limit of " + maxVisitedNodes + " visited nodes.");
+
+			fillEdges(currEntry, filter, reverse);
+		}
+	}
+
+	private void fillEdges(BucketEntry currEntry, CHLevelEdgeFilter filter, boolean reverse) {
+		EdgeIterator iter = explorer.setBaseNode(currEntry.node);
+		filter.setBaseNode(currEntry.node);
+		while (iter.next()) {
+			if (!filter.accept(iter))
+				continue;
+
+			double edgeWeight = prepareWeighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			double tmpWeight = currEntry.weight + edgeWeight;
+			BucketEntry entry = bestWeightMap.get(iter.getAdjNode());
+			if (entry != null && (entry.settled || entry.weight <= tmpWeight))
+				continue;
+
+			double edgeTime = calcEdgeTime(iter, reverse);
+			if (edgeTime < 0)
+				continue;
+
+			// stale queue entries are skipped when polled instead of being removed from the queue
+			entry = new BucketEntry(iter.getAdjNode(), tmpWeight, currEntry.time + edgeTime,
+					currEntry.distance + calcEdgeDistance(iter));
+			bestWeightMap.put(entry.node, entry);
+			prioQueue.add(entry);
+		}
+	}
+
+	private boolean updateBestWeights(BucketEntry entry) {
+		List<BucketEntry> bucket = targetBuckets.get(entry.node);
+		if (bucket == null)
+			return false;
+
+		boolean updated = false;
+		for (BucketEntry targetEntry : bucket) {
+			double weight = entry.weight + targetEntry.weight;
+			if (weight < bestWeights[targetEntry.node]) {
+				bestWeights[targetEntry.node] = weight;
+				bestTimes[targetEntry.node] = entry.time + targetEntry.time;
+				bestDistances[targetEntry.node] = entry.distance + targetEntry.distance;
+				updated = true;
+			}
+		}
+		return updated;
+	}
+
+	private double getMaxBestWeight(int[] targets) {
+		double maxWeight = 0;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] != -1)
+				maxWeight = Math.max(maxWeight, bestWeights[i]);
+		}
+		return maxWeight;
+	}
+
+	/**
+	 * @param reverse whether the edge is traversed from its adjacent to its base node, as in the backward searches
+	 * @return the duration in seconds, or a negative value for a shortcut which cannot be traversed in this direction
+	 */
+	private double calcEdgeTime(EdgeIteratorState edge, boolean reverse) {
+		if (shortcutMetrics.isShortcut(edge.getEdge())) {
+			if (reverse)
+				return shortcutMetrics.getTime(edge.getEdge(), edge.getAdjNode(), edge.getBaseNode());
+			return shortcutMetrics.getTime(edge.getEdge(), edge.getBaseNode(), edge.getAdjNode());
+		}
+		return weighting.calcMillis(edge, reverse, EdgeIterator.NO_EDGE) / 1000.0;
+	}
+
+	private double calcEdgeDistance(EdgeIteratorState edge) {
+		if (shortcutMetrics.isShortcut(edge.getEdge()))
+			return shortcutMetrics.getDistance(edge.getEdge());
+		return edge.getDistance();
+	}
+
+	private double convertDistance(double distance) {
+		return units == DistanceUnit.METERS ? distance : DistanceUnitUtil.convert(distance, DistanceUnit.METERS, units);
+	}
+
+	private static class BucketEntry implements Comparable<BucketEntry> {
+		private final int node;
+		private final double weight;
+		private final double time;
+		private final double distance;
+		private boolean settled;
+
+		BucketEntry(int node, double weight, double time, double distance) {
+			this.node = node;
+			this.weight = weight;
+			this.time = time;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(BucketEntry other) {
+			return Double.compare(weight, other.weight);
+		}
+	}
+}
@@ -0,0 +1,426 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.matrix.algorithms.core;
+
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.LongDoubleHashMap;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.ch.PreparationWeighting;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import org.heigit.ors.common.DistanceUnit;
+import org.heigit.ors.exceptions.ServerLimitExceededException;
+import org.heigit.ors.matrix.MatrixErrorCodes;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreDijkstraFilter;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+import org.heigit.ors.services.matrix.MatrixServiceSettings;
+import org.heigit.ors.util.DistanceUnitUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Many-to-many matrix algorithm running on the core graph, used for requests whose edge restrictions are only
+ * known at query time.
+ *
+ * Like the core routing algorithms the search is split into two phases. In phase 1 an upward CH search is run
+ * outside of the core from every target (backwards) and every source (forwards). The backward search spaces are
+ * stored in buckets at their nodes, so that each forward search can be matched against all targets at once. In
+ * phase 2 the search of each source continues inside the core from the core entry points found in phase 1, with
+ * the restriction filter of the request applied to the core edges.
+ *
+ * Durations and distances are carried along with the weights. Those of the shortcuts are taken from the metrics
+ * precomputed for the core graph, or are obtained by unpacking each shortcut once per request if there are none.
+ */
+public class CoreMatrixAlgorithm extends AbstractMatrixAlgorithm {
+	private CHGraph chGraph;
+	private Weighting prepareWeighting;
+	private EdgeExplorer outEdgeExplorer;
+	private EdgeExplorer inEdgeExplorer;
+	private CoreDijkstraFilter levelFilter;
+	private CoreDijkstraFilter coreFilter;
+	private int maxNodes;
+	private int coreNodeLevel;
+	private int maxVisitedNodes;
+	private DistanceUnit units;
+
+	private IntObjectMap<List<CoreMatrixEntry>> targetBuckets;
+	private IntObjectMap<CoreMatrixEntry> bestWeightMap;
+	private PriorityQueue<CoreMatrixEntry> prioQueue;
+	private ShortcutMetricsStorage shortcutMetrics;
+	private LongDoubleHashMap shortcutTimes;
+	private IntDoubleHashMap shortcutDistances;
+
+	private double[] bestWeights;
+	private double[] bestTimes;
+	private double[] bestDistances;
+
+	@Override
+	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
+		super.init(req, gh, graph, encoder, weighting);
+
+		if (graph instanceof QueryGraph)
+			chGraph = (CHGraph) ((QueryGraph) graph).getMainGraph();
+		else
+			chGraph = (CHGraph) graph;
+
+		maxNodes = chGraph.getNodes();
+		coreNodeLevel = maxNodes + 1;
+		maxVisitedNodes = MatrixServiceSettings.getMaximumVisitedNodes();
+		units = req.getUnits();
+
+		prepareWeighting = new PreparationWeighting(weighting);
+		outEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+		inEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.inEdges(encoder));
+
+		int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+		targetBuckets = new GHIntObjectHashMap<>(size);
+		bestWeightMap = new GHIntObjectHashMap<>(size);
+		prioQueue = new PriorityQueue<>(size);
+		shortcutTimes = new LongDoubleHashMap();
+		shortcutDistances = new IntDoubleHashMap();
+		if (gh instanceof ORSGraphHopper)
+			shortcutMetrics = ((ORSGraphHopper) gh).getShortcutMetrics(chGraph.getCHProfile());
+	}
+
+	public void setMaxVisitedNodes(int numberOfNodes) {
+		maxVisitedNodes = numberOfNodes;
+	}
+
+	@Override
+	public MatrixResult compute(MatrixLocations srcData, MatrixLocations dstData, int metrics) throws Exception {
+		MatrixResult mtxResult = new MatrixResult(srcData.getLocations(), dstData.getLocations());
+
+		float[] times = null;
+		float[] distances = null;
+		float[] weights = null;
+
+		int tableSize = srcData.size() * dstData.size();
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
+			times = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE))
+			distances = new float[tableSize];
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT))
+			weights = new float[tableSize];
+
+		if (srcData.hasValidNodes() && dstData.hasValidNodes()) {
+			mtxResult.setGraphDate(graphHopper.getGraphHopperStorage().getProperties().get("datareader.import.date"));
+
+			levelFilter = new CoreDijkstraFilter(chGraph);
+			coreFilter = new CoreDijkstraFilter(chGraph);
+			coreFilter.setInCore(true);
+			coreFilter.addRestrictionFilter(edgeFilter != null ? edgeFilter : DefaultEdgeFilter.allEdges(encoder));
+
+			bestWeights = new double[dstData.size()];
+			bestTimes = new double[dstData.size()];
+			bestDistances = new double[dstData.size()];
+
+			fillTargetBuckets(dstData.getNodeIds());
+		}
+
+		for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
+			int sourceId = srcData.getNodeId(srcIndex);
+			if (sourceId != -1 && dstData.hasValidNodes())
+				calcSourceRow(sourceId, dstData.getNodeIds());
+			else if (bestWeights != null)
+				Arrays.fill(bestWeights, Double.POSITIVE_INFINITY);
+
+			int index = srcIndex * dstData.size();
+			for (int dstIndex = 0; dstIndex < dstData.size(); dstIndex++, index++) {
+				boolean found = bestWeights != null && bestWeights[dstIndex] != Double.POSITIVE_INFINITY;
+				if (times != null)
+					times[index] = found ? (float) bestTimes[dstIndex] : -1;
+				if (distances != null)
+					distances[index] = found ? (float) convertDistance(bestDistances[dstIndex]) : -1;
+				if (weights != null)
+					weights[index] = found ? (float) bestWeights[dstIndex] : -1;
+			}
+		}
+
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
+			mtxResult.setTable(MatrixMetricsType.DURATION, times);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DISTANCE))
+			mtxResult.setTable(MatrixMetricsType.DISTANCE, distances);
+		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.WEIGHT))
+			mtxResult.setTable(MatrixMetricsType.WEIGHT, weights);
+
+		return mtxResult;
+	}
+
+	/**
+	 * Phase 1 for the targets: runs the backward upward search from every target and stores the settled nodes,
+	 * including the core exit points, in the buckets of the respective nodes.
+	 */
+	private void fillTargetBuckets(int[] targets) throws ServerLimitExceededException {
+		for (int dstIndex = 0; dstIndex < targets.length; dstIndex++) {
+			if (targets[dstIndex] == -1)
+				continue;
+
+			runUpwardSearch(targets[dstIndex], inEdgeExplorer, true);
+
+			for (ObjectCursor<CoreMatrixEntry> cursor : bestWeightMap.values()) {
+				CoreMatrixEntry entry = cursor.value;
+				List<CoreMatrixEntry> bucket = targetBuckets.get(entry.node);
+				if (bucket == null) {
+					bucket = new ArrayList<>(4);
+					targetBuckets.put(entry.node, bucket);
+				}
+				// within a bucket the node field refers to the index of the target
+				bucket.add(new CoreMatrixEntry(dstIndex, entry.weight, entry.time, entry.distance));
+			}
+		}
+	}
+
+	private void calcSourceRow(int source, int[] targets) throws ServerLimitExceededException {
+		Arrays.fill(bestWeights, Double.POSITIVE_INFINITY);
+
+		// Phase 1: forward upward search outside of the core
+		runUpwardSearch(source, outEdgeExplorer, false);
+
+		List<CoreMatrixEntry> coreEntryPoints = new ArrayList<>();
+		for (ObjectCursor<CoreMatrixEntry> cursor : bestWeightMap.values()) {
+			CoreMatrixEntry entry = cursor.value;
+			if (isCoreNode(entry.node))
+				coreEntryPoints.add(entry);
+			else
+				updateBestWeights(entry);
+		}
+
+		// Phase 2: continue from the core entry points inside the core
+		bestWeightMap.clear();
+		prioQueue.clear();
+		for (CoreMatrixEntry entry : coreEntryPoints) {
+			CoreMatrixEntry coreEntry = new CoreMatrixEntry(entry.node, entry.weight, entry.time, entry.distance);
+			bestWeightMap.put(coreEntry.node, coreEntry);
+			prioQueue.add(coreEntry);
+		}
+
+		double maxWeight = getMaxBestWeight(targets);
+		int visitedNodes = 0;
+
+		while (!prioQueue.isEmpty()) {
+			CoreMatrixEntry currEntry = prioQueue.poll();
+			if (currEntry.settled || bestWeightMap.get(currEntry.node) != currEntry)
+				continue;
+			// no target can be improved by any entry which is not better than the worst of the current results
+			if (currEntry.weight >= maxWeight)
+				break;
+
+			currEntry.settled = true;
+			if (updateBestWeights(currEntry))
+				maxWeight = getMaxBestWeight(targets);
+
+			if (++visitedNodes > maxVisitedNodes)
+				throw new ServerLimitExceededException(MatrixErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "Search exceeds the limit of " + maxVisitedNodes + " visited nodes.");
+
+			fillEdges(currEntry, outEdgeExplorer, coreFilter, false);
+		}
+	}
+
+	/**
+	 * Runs a CH upward search which does not expand the core nodes it reaches. The settled nodes are left in
+	 * {@link #bestWeightMap}.
+	 */
+	private void runUpwardSearch(int startNode, EdgeExplorer explorer, boolean reverse) throws ServerLimitExceededException {
+		bestWeightMap.clear();
+		prioQueue.clear();
+
+		CoreMatrixEntry startEntry = new CoreMatrixEntry(startNode, 0, 0, 0);
+		bestWeightMap.put(startNode, startEntry);
+		prioQueue.add(startEntry);
+
+		int visitedNodes = 0;
+
+		while (!prioQueue.isEmpty()) {
+			CoreMatrixEntry currEntry = prioQueue.poll();
+			if (currEntry.settled || bestWeightMap.get(currEntry.node) != currEntry)
+				continue;
+
+			currEntry.settled = true;
+
+			if (++visitedNodes > maxVisitedNodes)
+				throw new ServerLimitExceededException(MatrixErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "Search exceeds the limit of " + maxVisitedNodes + " visited nodes.");
+
+			// core entry point, do not relax its edges
+			if (!isCoreNode(currEntry.node))
+				fillEdges(currEntry, explorer, levelFilter, reverse);
+		}
+	}
+
+	private void fillEdges(CoreMatrixEntry currEntry, EdgeExplorer explorer, EdgeFilter filter, boolean reverse) {
+		EdgeIterator iter = explorer.setBaseNode(currEntry.node);
+		while (iter.next()) {
+			if (!filter.accept(iter))
+				continue;
+
+			double edgeWeight = prepareWeighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			double tmpWeight = currEntry.weight + edgeWeight;
+			CoreMatrixEntry entry = bestWeightMap.get(iter.getAdjNode());
+			if (entry != null && (entry.settled || entry.weight <= tmpWeight))
+				continue;
+
+			double edgeTime = calcEdgeTime(iter, reverse);
+			if (edgeTime < 0)
+				continue;
+
+			// stale queue entries are skipped when polled instead of being removed from the queue
+			entry = new CoreMatrixEntry(iter.getAdjNode(), tmpWeight, currEntry.time + edgeTime,
+					currEntry.distance + calcEdgeDistance(iter));
+			bestWeightMap.put(entry.node, entry);
+			prioQueue.add(entry);
+		}
+	}
+
+	private boolean updateBestWeights(CoreMatrixEntry entry) {
+		List<CoreMatrixEntry> bucket = targetBuckets.get(entry.node);
+		if (bucket == null)
+			return false;
+
+		boolean updated = false;
+		for (CoreMatrixEntry targetEntry : bucket) {
+			double weight = entry.weight + targetEntry.weight;
+			if (weight < bestWeights[targetEntry.node]) {
+				bestWeights[targetEntry.node] = weight;
+				bestTimes[targetEntry.node] = entry.time + targetEntry.time;
+				bestDistances[targetEntry.node] = entry.distance + targetEntry.distance;
+				updated = true;
+			}
+		}
+		return updated;
+	}
+
+	private double getMaxBestWeight(int[] targets) {
+		double maxWeight = 0;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] != -1)
+				maxWeight = Math.max(maxWeight, bestWeights[i]);
+		}
+		return maxWeight;
+	}
+
+	/**
+	 * @return the duration in seconds, or a negative value for a shortcut which cannot be traversed in this direction
+	 */
+	private double calcEdgeTime(EdgeIteratorState edge, boolean reverse) {
+		if (!(edge instanceof CHEdgeIteratorState) || !((CHEdgeIteratorState) edge).isShortcut())
+			return weighting.calcMillis(edge, reverse, EdgeIterator.NO_EDGE) / 1000.0;
+
+		if (shortcutMetrics != null && shortcutMetrics.isShortcut(edge.getEdge())) {
+			if (reverse)
+				return shortcutMetrics.getTime(edge.getEdge(), edge.getAdjNode(), edge.getBaseNode());
+			return shortcutMetrics.getTime(edge.getEdge(), edge.getBaseNode(), edge.getAdjNode());
+		}
+
+		long key = ((long) edge.getEdge() << 1) | (reverse ? 1 : 0);
+		double time = shortcutTimes.getOrDefault(key, -1);
+		if (time < 0) {
+			time = expandShortcutTime((CHEdgeIteratorState) edge, reverse);
+			shortcutTimes.put(key, time);
+		}
+		return time;
+	}
+
+	/**
+	 * Sums up the durations of the edges skipped by a shortcut which is traversed from its base to its adjacent
+	 * node, or the other way round if reverse is set.
+	 */
+	private double expandShortcutTime(CHEdgeIteratorState shortcut, boolean reverse) {
+		int from = reverse ? shortcut.getAdjNode() : shortcut.getBaseNode();
+		int to = reverse ? shortcut.getBaseNode() : shortcut.getAdjNode();
+		int skippedEdgeFrom = shortcut.getSkippedEdge1();
+		int skippedEdgeTo = shortcut.getSkippedEdge2();
+
+		CHEdgeIteratorState edgeFrom = chGraph.getEdgeIteratorState(skippedEdgeFrom, from);
+		if (edgeFrom == null) {
+			skippedEdgeFrom = shortcut.getSkippedEdge2();
+			skippedEdgeTo = shortcut.getSkippedEdge1();
+			edgeFrom = chGraph.getEdgeIteratorState(skippedEdgeFrom, from);
+		}
+		CHEdgeIteratorState edgeTo = chGraph.getEdgeIteratorState(skippedEdgeTo, to);
+
+		// edgeFrom points towards the start node of the shortcut and is therefore traversed in reverse
+		return calcEdgeTime(edgeFrom, true) + calcEdgeTime(edgeTo, false);
+	}
+
+	private double calcEdgeDistance(EdgeIteratorState edge) {
+		if (!(edge instanceof CHEdgeIteratorState) || !((CHEdgeIteratorState) edge).isShortcut())
+			return edge.getDistance();
+
+		if (shortcutMetrics != null && shortcutMetrics.isShortcut(edge.getEdge()))
+			return shortcutMetrics.getDistance(edge.getEdge());
+
+		// shortcuts do not store the distances of the edges skipped by them
+		double distance = shortcutDistances.getOrDefault(edge.getEdge(), -1);
+		if (distance < 0) {
+			CHEdgeIteratorState shortcut = (CHEdgeIteratorState) edge;
+			distance = calcEdgeDistance(chGraph.getEdgeIteratorState(shortcut.getSkippedEdge1(), Integer.MIN_VALUE))
+					+ calcEdgeDistance(chGraph.getEdgeIteratorState(shortcut.getSkippedEdge2(), Integer.MIN_VALUE));
+			shortcutDistances.put(edge.getEdge(), distance);
+		}
+		return distance;
+	}
+
+	private double convertDistance(double distance) {
+		return units == DistanceUnit.METERS ? distance : DistanceUnitUtil.convert(distance, DistanceUnit.METERS, units);
+	}
+
+	private boolean isCoreNode(int node) {
+		// virtual nodes of the query graph are never part of the core
+		return node < maxNodes && chGraph.getLevel(node) >= coreNodeLevel;
+	}
+
+	private static class CoreMatrixEntry implements Comparable<CoreMatrixEntry> {
+		private final int node;
+		private final double weight;
+		private final double time;
+		private final double distance;
+		private boolean settled;
+
+		CoreMatrixEntry(int node, double weight, double time, double distance) {
+			this.node = node;
+			this.weight = weight;
+			this.time = time;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(CoreMatrixEntry other) {
+			return Double.compare(weight, other.weight);
+		}
+	}
+}
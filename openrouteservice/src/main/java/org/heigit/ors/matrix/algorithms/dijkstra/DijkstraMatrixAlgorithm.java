@@ -14,29 +14,44 @@
 package org.heigit.ors.matrix.algorithms.dijkstra;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.SPTEntry;
 
+import org.heigit.ors.common.DistanceUnit;
 import org.heigit.ors.matrix.MatrixMetricsType;
 import org.heigit.ors.matrix.MatrixRequest;
 import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.MatrixWorkerPool;
 import org.heigit.ors.matrix.MatrixLocations;
 import org.heigit.ors.matrix.PathMetricsExtractor;
 import org.heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
 import org.heigit.ors.routing.algorithms.DijkstraOneToManyAlgorithm;
 import org.heigit.ors.services.matrix.MatrixServiceSettings;
+import org.heigit.ors.util.WorkerPoolUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 	private PathMetricsExtractor pathMetricsExtractor;
+	private int metrics;
+	private DistanceUnit units;
+	private int maxThreads;
 
 	@Override
 	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
 		super.init(req, gh, graph, encoder, weighting);
 
-		pathMetricsExtractor = new PathMetricsExtractor(req.getMetrics(), this.graph, this.encoder, this.weighting, req.getUnits());
+		metrics = req.getMetrics();
+		units = req.getUnits();
+		maxThreads = MatrixServiceSettings.getMaximumThreads();
+		pathMetricsExtractor = new PathMetricsExtractor(metrics, this.graph, this.encoder, this.weighting, units);
 	}
 
 	@Override
@@ -59,29 +74,12 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) 
 				pathMetricsExtractor.setEmptyValues(srcIndex, dstData, times, distances, weights);
 		} else {
-			DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(graph, weighting, TraversalMode.NODE_BASED);
-			algorithm.prepare(srcData.getNodeIds(),  dstData.getNodeIds());
-			algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
-			
-			int sourceId = -1;
-
-			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
-				sourceId = srcData.getNodeId(srcIndex);
-
-				if (sourceId == -1) {
-					pathMetricsExtractor.setEmptyValues(srcIndex, dstData, times, distances, weights);
-				} else {
-					algorithm.reset();
-					SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
-
-					if (algorithm.getFoundTargets() != algorithm.getTargetsCount())
-						throw new Exception("Search exceeds the limit of visited nodes.");
-
-					if (targets != null) {
-						pathMetricsExtractor.calcValues(srcIndex, targets, dstData, times, distances, weights);
-					}
-				}
-			}
+			// the edge filters keep per-instance buffers, each worker therefore needs its own instance
+			int nThreads = edgeFilter == null || edgeFilterFactory != null ? Math.min(maxThreads, srcData.size()) : 1;
+			if (nThreads > 1)
+				computeRowsInParallel(srcData, dstData, times, distances, weights, nThreads);
+			else
+				computeRows(createSearchAlgorithm(srcData, dstData, edgeFilter), pathMetricsExtractor, srcData, dstData, times, distances, weights, new AtomicInteger());
 		}
 
 		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
@@ -93,4 +91,63 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 
 		return mtxResult;
 	}
+
+	/**
+	 * Distributes the source rows over the shared worker pool. Each worker owns its search algorithm, edge filter and
+	 * metrics extractor and takes the next unprocessed row until all rows are done, so every row of the result tables is
+	 * written by exactly one thread.
+	 */
+	private void computeRowsInParallel(MatrixLocations srcData, MatrixLocations dstData, float[] times, float[] distances, float[] weights, int nThreads) throws Exception {
+		AtomicInteger nextRow = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>(nThreads);
+
+		for (int i = 0; i < nThreads; i++) {
+			tasks.add(() -> {
+				try {
+					PathMetricsExtractor extractor = new PathMetricsExtractor(metrics, graph, encoder, weighting, units);
+					EdgeFilter workerEdgeFilter = edgeFilter == null ? null : edgeFilterFactory.call();
+					computeRows(createSearchAlgorithm(srcData, dstData, workerEdgeFilter), extractor, srcData, dstData, times, distances, weights, nextRow);
+					return null;
+				} catch (Exception e) {
+					// stop the other workers from picking up further rows
+					nextRow.set(srcData.size());
+					throw e;
+				}
+			});
+		}
+
+		WorkerPoolUtility.invokeAll(MatrixWorkerPool.getExecutor(), tasks);
+	}
+
+	private void computeRows(DijkstraOneToManyAlgorithm algorithm, PathMetricsExtractor extractor, MatrixLocations srcData, MatrixLocations dstData, float[] times, float[] distances, float[] weights, AtomicInteger nextRow) throws Exception {
+		int srcIndex;
+		while ((srcIndex = nextRow.getAndIncrement()) < srcData.size()) {
+			int sourceId = srcData.getNodeId(srcIndex);
+
+			if (sourceId == -1) {
+				extractor.setEmptyValues(srcIndex, dstData, times, distances, weights);
+			} else {
+				algorithm.reset();
+				SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
+
+				if (algorithm.getFoundTargets() != algorithm.getTargetsCount()) {
+					nextRow.set(srcData.size());
+					throw new Exception("Search exceeds the limit of visited nodes.");
+				}
+
+				if (targets != null) {
+					extractor.calcValues(srcIndex, targets, dstData, times, distances, weights);
+				}
+			}
+		}
+	}
+
+	private DijkstraOneToManyAlgorithm createSearchAlgorithm(MatrixLocations srcData, MatrixLocations dstData, EdgeFilter edgeFilter) {
+		DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(graph, weighting, TraversalMode.NODE_BASED);
+		algorithm.prepare(srcData.getNodeIds(), dstData.getNodeIds());
+		algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
+		if (edgeFilter != null)
+			algorithm.setEdgeFilter(edgeFilter);
+		return algorithm;
+	}
 }
@@ -17,10 +17,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.graphhopper.GraphHopper;
-import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.ch.PreparationWeighting;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
 import com.graphhopper.storage.Graph;
 
 import org.heigit.ors.matrix.MatrixLocations;
@@ -29,18 +31,30 @@ import org.heigit.ors.matrix.MatrixRequest;
 import org.heigit.ors.matrix.MatrixResult;
 import org.heigit.ors.matrix.MultiTreeMetricsExtractor;
 import org.heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
-import org.heigit.ors.routing.algorithms.RPHASTAlgorithm;
-import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
+import org.heigit.ors.routing.algorithms.RPHASTStateAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPState;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
 
 public class RPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
-	private PrepareContractionHierarchies prepareCH;
+	private Weighting prepareWeighting;
 	private MultiTreeMetricsExtractor pathMetricsExtractor;
+	private ShortcutMetricsStorage shortcutMetrics;
 
 	@Override
 	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting) {
 		super.init(req, gh, graph, encoder, weighting);
 
-		prepareCH = graphHopper.getCHFactoryDecorator().getPreparations().get(0);
+		Graph mainGraph = graph instanceof QueryGraph ? ((QueryGraph) graph).getMainGraph() : graph;
+		if (mainGraph instanceof CHGraph) {
+			CHGraph chGraph = (CHGraph) mainGraph;
+			// the weighting of the CH profile the graph has been contracted with
+			prepareWeighting = new PreparationWeighting(chGraph.getCHProfile().getWeighting());
+			if (graphHopper instanceof ORSGraphHopper)
+				shortcutMetrics = ((ORSGraphHopper) graphHopper).getShortcutMetrics(chGraph.getCHProfile());
+		} else {
+			prepareWeighting = new PreparationWeighting(weighting);
+		}
 		pathMetricsExtractor = new MultiTreeMetricsExtractor(req.getMetrics(), graph, this.encoder, weighting,
 				req.getUnits());
 	}
@@ -65,31 +79,24 @@ public class RPHASTMatrixAlgorithm extends AbstractMatrixAlgorithm {
 			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) 
 				pathMetricsExtractor.setEmptyValues(srcIndex, dstData, times, distances, weights);
 		} else {
-			RPHASTAlgorithm algorithm = new RPHASTAlgorithm(graph, prepareCH.getPrepareWeighting(),
+			RPHASTStateAlgorithm algorithm = new RPHASTStateAlgorithm(graph, prepareWeighting,
 					TraversalMode.NODE_BASED);
+			if (shortcutMetrics != null)
+				algorithm.setShortcutMetrics(shortcutMetrics, weighting);
 			
 			int[] srcIds = getValidNodeIds(srcData.getNodeIds());
 			int[] destIds = getValidNodeIds(dstData.getNodeIds());
 
 			mtxResult.setGraphDate(graphHopper.getGraphHopperStorage().getProperties().get("datareader.import.date"));
 			
-			algorithm.prepare(srcIds, destIds);
-
-			MultiTreeSPEntry[] destTrees = algorithm.calcPaths(srcIds, destIds);
+			algorithm.prepare(destIds);
 
-			MultiTreeSPEntry[] originalDestTrees = new MultiTreeSPEntry[dstData.size()];
-			
-			int j = 0;
-			for (int i = 0; i < dstData.size(); i++) {
-				if (dstData.getNodeIds()[i] != -1) {
-					originalDestTrees[i] = destTrees[j];
-					++j;
-				} else {
-					originalDestTrees[i] = null;
-				}
+			MultiTreeSPState state = algorithm.calcPaths(srcIds);
+			try {
+				pathMetricsExtractor.calcValues(state, srcData, dstData, times, distances, weights);
+			} finally {
+				state.release();
 			}
-
-			pathMetricsExtractor.calcValues(originalDestTrees, srcData, dstData, times, distances, weights);
 		}
 
 		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.DURATION))
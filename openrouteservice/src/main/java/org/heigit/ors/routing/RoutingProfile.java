@@ -19,6 +19,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHProfile;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
@@ -50,11 +51,15 @@ import org.heigit.ors.mapmatching.hmm.HiddenMarkovMapMatcher;
 import org.heigit.ors.matrix.*;
 import org.heigit.ors.matrix.algorithms.MatrixAlgorithm;
 import org.heigit.ors.matrix.algorithms.MatrixAlgorithmFactory;
+import org.heigit.ors.matrix.algorithms.core.CoreMatrixAlgorithm;
 import org.heigit.ors.routing.configuration.RouteProfileConfiguration;
 import org.heigit.ors.routing.graphhopper.extensions.*;
+import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCore;
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.AvoidAreasEdgeFilter;
 import org.heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 import org.heigit.ors.routing.graphhopper.extensions.storages.builders.BordersGraphStorageBuilder;
 import org.heigit.ors.routing.graphhopper.extensions.storages.builders.GraphStorageBuilder;
+import org.heigit.ors.routing.graphhopper.extensions.util.GraphWarmup;
 import org.heigit.ors.routing.graphhopper.extensions.util.ORSPMap;
 import org.heigit.ors.routing.graphhopper.extensions.util.ORSParameters;
 import org.heigit.ors.routing.parameters.ProfileParameters;
@@ -74,6 +79,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class generates {@link RoutingProfile} classes and is used by mostly all service classes e.g.
@@ -123,21 +133,25 @@ public class RoutingProfile {
     private static int profileIdentifier = 0;
     private static final Object lockObj = new Object();
 
-    private ORSGraphHopper mGraphHopper;
+    private final AtomicReference<GraphVersion> mGraph = new AtomicReference<>();
     private Integer[] mRoutePrefs;
-    private Integer mUseCounter;
-    private boolean mUpdateRun;
-    private MapMatcher mMapMatcher;
+    private ExecutorService mSegmentExecutor;
 
     private RouteProfileConfiguration config;
     private String astarApproximation;
     private Double astarEpsilon;
 
     public RoutingProfile(String osmFile, RouteProfileConfiguration rpc, RoutingProfileLoadContext loadCntx) throws Exception {
+        this(rpc, initGraphHopper(osmFile, rpc, loadCntx));
+    }
+
+    /**
+     * Creates the profile for a graph which has already been loaded.
+     */
+    RoutingProfile(RouteProfileConfiguration rpc, ORSGraphHopper gh) {
         mRoutePrefs = rpc.getProfilesTypes();
-        mUseCounter = 0;
 
-        mGraphHopper = initGraphHopper(osmFile, rpc, loadCntx);
+        mGraph.set(new GraphVersion(gh));
 
         config = rpc;
 
@@ -148,6 +162,9 @@ public class RoutingProfile {
             if (optsExecute.hasPath("methods.astar.epsilon"))
                 astarEpsilon = Double.parseDouble(optsExecute.getString("methods.astar.epsilon"));
         }
+
+        if (config.getSegmentThreads() > 1)
+            mSegmentExecutor = Executors.newFixedThreadPool(config.getSegmentThreads());
     }
 
     public static ORSGraphHopper initGraphHopper(String osmFile, RouteProfileConfiguration config, RoutingProfileLoadContext loadCntx) throws Exception {
@@ -192,9 +209,18 @@ public class RoutingProfile {
         }
         gh.setGraphStorageFactory(new ORSGraphStorageFactory(gpc.getStorageBuilders()));
         gh.setWeightingFactory(new ORSWeightingFactory());
+        gh.setSharedOSMImport(loadCntx.getSharedOSMImport(config));
 
         gh.importOrLoad();
 
+        // memory-mapped storages are only read from disk on first access, so read them in advance
+        if (config.getGraphWarmupThreads() > 0 && config.getGraphDataAccess().toUpperCase().startsWith("MMAP")) {
+            long warmupStart = System.currentTimeMillis();
+            long bytes = GraphWarmup.warmup(new File(config.getGraphPath()), config.getGraphWarmupThreads());
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info(String.format("[%d] Warmed up %d MB of graph files in %s.", profileId, bytes >> 20, TimeUtility.getElapsedTime(warmupStart, true)));
+        }
+
         // store CountryBordersReader for later use
         for (GraphStorageBuilder builder : gpc.getStorageBuilders()) {
             if (builder.getName().equals(BordersGraphStorageBuilder.BUILDER_NAME)) {
@@ -232,13 +258,18 @@ public class RoutingProfile {
     }
 
     public long getCapacity() {
-        GraphHopperStorage graph = mGraphHopper.getGraphHopperStorage();
-        return graph.getCapacity() + GraphStorageUtils.getCapacity(graph.getExtension());
+        GraphVersion graph = acquireGraph();
+        try {
+            GraphHopperStorage storage = graph.graphHopper.getGraphHopperStorage();
+            return storage.getCapacity() + GraphStorageUtils.getCapacity(storage.getExtension());
+        } finally {
+            graph.release();
+        }
     }
 
     private static CmdArgs createGHSettings(String sourceFile, RouteProfileConfiguration config) {
         CmdArgs args = new CmdArgs();
-        args.put("graph.dataaccess", "RAM_STORE");
+        args.put("graph.dataaccess", config.getGraphDataAccess());
         args.put("datareader.file", sourceFile);
         args.put("graph.location", config.getGraphPath());
         args.put("graph.bytes_for_flags", config.getEncoderFlagsSize());
@@ -351,6 +382,8 @@ public class RoutingProfile {
                             args.put("prepare.corelm.lmsets", StringUtility.trimQuotes(coreOpts.getString("lmsets")));
                         if (coreOpts.hasPath(KEY_LANDMARKS))
                             args.put("prepare.corelm.landmarks", coreOpts.getInt(KEY_LANDMARKS));
+                        if (coreOpts.hasPath("landmark_threads"))
+                            args.put("prepare.corelm.landmark_threads", coreOpts.getInt("landmark_threads"));
                     }
                 }
             }
@@ -410,20 +443,37 @@ public class RoutingProfile {
         return args;
     }
 
+    /**
+     * Returns the current graph of the profile without holding a reference to it. It is not safe to access the graph
+     * storages through it while an update may run, as {@link #updateGH(ORSGraphHopper)} closes the graph as soon as the
+     * requests holding a reference have finished. It is meant for the configuration of the graph, like its encoding
+     * manager, and for the time before updates are started.
+     */
     public ORSGraphHopper getGraphhopper() {
-        return mGraphHopper;
+        return mGraph.get().graphHopper;
     }
 
     public BBox getBounds() {
-        return mGraphHopper.getGraphHopperStorage().getBounds();
+        GraphVersion graph = acquireGraph();
+        try {
+            return graph.graphHopper.getGraphHopperStorage().getBounds();
+        } finally {
+            graph.release();
+        }
     }
 
     public StorableProperties getGraphProperties() {
-        return mGraphHopper.getGraphHopperStorage().getProperties();
+        GraphVersion graph = acquireGraph();
+        try {
+            return graph.graphHopper.getGraphHopperStorage().getProperties();
+        } finally {
+            graph.release();
+        }
     }
 
     public String getGraphLocation() {
-        return mGraphHopper == null ? null : mGraphHopper.getGraphHopperStorage().getDirectory().toString();
+        GraphVersion graph = mGraph.get();
+        return graph == null ? null : graph.graphHopper.getGraphHopperStorage().getDirectory().toString();
     }
 
     public RouteProfileConfiguration getConfiguration() {
@@ -445,82 +495,62 @@ public class RoutingProfile {
 
 
     public boolean isCHEnabled() {
-        return mGraphHopper != null && mGraphHopper.isCHEnabled();
-    }
-
-    public void close() {
-        mGraphHopper.close();
+        GraphVersion graph = mGraph.get();
+        return graph != null && graph.graphHopper.isCHEnabled();
     }
 
-    private synchronized boolean isGHUsed() {
-        return mUseCounter > 0;
+    /**
+     * Returns the bounded executor used to compute independent segments of a multi-waypoint route concurrently, or
+     * null if the profile is configured to compute route segments in series.
+     */
+    public ExecutorService getSegmentExecutor() {
+        return mSegmentExecutor;
     }
 
-    private synchronized void beginUseGH() {
-        mUseCounter++;
+    public void close() {
+        if (mSegmentExecutor != null)
+            mSegmentExecutor.shutdownNow();
+        getGraphhopper().close();
     }
 
-    private synchronized void endUseGH() {
-        mUseCounter--;
+    /**
+     * Returns the current graph version with an additional reference, which has to be given back by
+     * {@link GraphVersion#release()}. The reference keeps the graph open if it is replaced by an update meanwhile.
+     */
+    GraphVersion acquireGraph() {
+        while (true) {
+            GraphVersion graph = mGraph.get();
+            // fails only if the version has been replaced and released in the meantime
+            if (graph.acquire())
+                return graph;
+        }
     }
 
-    public void updateGH(GraphHopper gh) throws Exception {
+    /**
+     * Replaces the graph of the profile by the given one, which has been loaded from its own directory. New requests
+     * use the new graph right away, while running requests finish on the old one. Once the last of them has released
+     * the old graph, it is closed and its files are replaced by those of the new graph, so that the new graph is
+     * loaded from the configured location after a restart.
+     */
+    public void updateGH(ORSGraphHopper gh) throws Exception {
         if (gh == null)
             throw new Exception("GraphHopper instance is null.");
 
-        try {
-            mUpdateRun = true;
-            while (true) {
-                if (!isGHUsed()) {
-                    GraphHopper ghOld = mGraphHopper;
-
-                    ghOld.close();
-                    ghOld.clean();
-
-                    gh.close();
-                    // gh.clean(); // do not remove on-disk files, we need to
-                    // copy them as follows
-
-                    RuntimeUtility.clearMemory(LOGGER);
-
-                    // Change the content of the graph folder
-                    String oldLocation = ghOld.getGraphHopperLocation();
-                    File dstDir = new File(oldLocation);
-                    File srcDir = new File(gh.getGraphHopperLocation());
-                    FileUtils.copyDirectory(srcDir, dstDir, true);
-                    FileUtils.deleteDirectory(srcDir);
-
-                    RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
-
-                    mGraphHopper = initGraphHopper(ghOld.getDataReaderFile(), config, loadCntx);
-
-                    loadCntx.releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed();
-
-                    break;
-                }
-
-                Thread.sleep(2000);
-            }
-        } catch (Exception ex) {
-            LOGGER.error(ex.getMessage());
-        }
-
-        mUpdateRun = false;
-    }
-
-    private void waitForUpdateCompletion() throws Exception {
-        if (mUpdateRun) {
-            long startTime = System.currentTimeMillis();
-
-            while (mUpdateRun) {
-                long curTime = System.currentTimeMillis();
-                if (curTime - startTime > 600000) {
-                    throw new Exception("The route profile is currently being updated.");
-                }
-
-                Thread.sleep(1000);
-            }
-        }
+        GraphVersion oldGraph = mGraph.getAndSet(new GraphVersion(gh));
+        oldGraph.release();
+        oldGraph.awaitReleased();
+
+        ORSGraphHopper ghOld = oldGraph.graphHopper;
+        ghOld.close();
+        RuntimeUtility.clearMemory(LOGGER);
+
+        File graphDir = new File(config.getGraphPath());
+        File oldDir = new File(ghOld.getGraphHopperLocation());
+        // the old graph was loaded from the directory of an earlier update
+        if (!oldDir.getCanonicalFile().equals(graphDir.getCanonicalFile()))
+            FileUtils.deleteDirectory(oldDir);
+        FileUtils.cleanDirectory(graphDir);
+        FileUtils.copyDirectory(new File(gh.getGraphHopperLocation()), graphDir, true);
     }
 
     private static boolean supportWeightingMethod(int profileType) {
@@ -564,23 +594,19 @@ public class RoutingProfile {
 
 
         IsochroneMap result = null;
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphVersion graph = acquireGraph();
 
         try {
-            RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters());
+            RouteSearchContext searchCntx = createSearchContext(graph.graphHopper, parameters.getRouteParameters());
 
             IsochroneMapBuilderFactory isochroneMapBuilderFactory = new IsochroneMapBuilderFactory(searchCntx);
             result = isochroneMapBuilderFactory.buildMap(parameters);
-
-            endUseGH();
         } catch (Exception ex) {
-            endUseGH();
-
             LOGGER.error(ex);
 
             throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to build an isochrone map.");
+        } finally {
+            graph.release();
         }
 
         if (tempAttributes != null && result.getIsochronesCount() > 0) {
@@ -623,29 +649,53 @@ public class RoutingProfile {
     }
 
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
+        GraphVersion graph = acquireGraph();
+        try {
+            return computeMatrix(req, graph.graphHopper);
+        } finally {
+            graph.release();
+        }
+    }
+
+    private MatrixResult computeMatrix(MatrixRequest req, GraphHopper gh) throws Exception {
         MatrixResult mtxResult = null;
 
-        GraphHopper gh = getGraphhopper();
         String encoderName = RoutingProfileType.getEncoderName(req.getProfileType());
         FlagEncoder flagEncoder = gh.getEncodingManager().getEncoder(encoderName);
 
-        MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(req, gh);
+        HintsMap hintsMap = new HintsMap();
+        int weightingMethod = req.getWeightingMethod() == WeightingMethod.UNKNOWN ? WeightingMethod.RECOMMENDED : req.getWeightingMethod();
+        setWeighting(hintsMap, weightingMethod, req.getProfileType(), false);
+
+        // the CH graph can only be used if it has been prepared for the weighting of the request
+        CHProfile chProfile = null;
+        if (!req.getFlexibleMode() && gh.getCHFactoryDecorator().isEnabled() && gh.getCHFactoryDecorator().getCHProfileStrings().contains(hintsMap.getWeighting())) {
+            hintsMap.setVehicle(encoderName);
+            chProfile = ((PrepareContractionHierarchies) gh.getAlgorithmFactory(hintsMap)).getCHProfile();
+        }
+
+        MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(req, gh, chProfile, hintsMap.getWeighting());
 
         if (alg == null)
             throw new Exception("Unable to create an algorithm to for computing distance/duration matrix.");
 
         try {
-            HintsMap hintsMap = new HintsMap();
-            int weightingMethod = req.getWeightingMethod() == WeightingMethod.UNKNOWN ? WeightingMethod.RECOMMENDED : req.getWeightingMethod();
-            setWeighting(hintsMap, weightingMethod, req.getProfileType(), false);
             Graph graph = null;
-            if (!req.getFlexibleMode() && gh.getCHFactoryDecorator().isEnabled() && gh.getCHFactoryDecorator().getCHProfileStrings().contains(hintsMap.getWeighting())) {
+            if (chProfile != null)
+                graph = gh.getGraphHopperStorage().getCHGraph(chProfile);
+            else if (alg instanceof CoreMatrixAlgorithm) {
                 hintsMap.setVehicle(encoderName);
-                graph = gh.getGraphHopperStorage().getCHGraph(((PrepareContractionHierarchies) gh.getAlgorithmFactory(hintsMap)).getCHProfile());
+                PrepareCore prepareCore = (PrepareCore) ((ORSGraphHopper) gh).getCoreFactoryDecorator().getDecoratedAlgorithmFactory(null, hintsMap);
+                graph = gh.getGraphHopperStorage().getCHGraph(prepareCore.getCHProfile());
             }
             else
                 graph = gh.getGraphHopperStorage().getBaseGraph();
 
+            if (req.hasAvoidFeatures()) {
+                alg.setEdgeFilter(createMatrixEdgeFilter(req, flagEncoder, gh.getGraphHopperStorage()));
+                alg.setEdgeFilterFactory(() -> createMatrixEdgeFilter(req, flagEncoder, gh.getGraphHopperStorage()));
+            }
+
             MatrixSearchContextBuilder builder = new MatrixSearchContextBuilder(gh.getLocationIndex(), DefaultEdgeFilter.allEdges(flagEncoder), req.getResolveLocations());
             MatrixSearchContext mtxSearchCntx = builder.create(graph, req.getSources(), req.getDestinations(), MatrixServiceSettings.getMaximumSearchRadius());
 
@@ -665,10 +715,30 @@ public class RoutingProfile {
         return mtxResult;
     }
 
+    private EdgeFilter createMatrixEdgeFilter(MatrixRequest req, FlagEncoder flagEncoder, GraphHopperStorage gs) throws Exception {
+        RouteSearchParameters searchParams = new RouteSearchParameters();
+        searchParams.setProfileType(req.getProfileType());
+        searchParams.setAvoidFeatureTypes(req.getAvoidFeatures());
+
+        ORSPMap props = new ORSPMap();
+        props.put("routing_profile_type", req.getProfileType());
+        props.putObj("avoid_features", searchParams);
+
+        return new ORSEdgeFilterFactory().createEdgeFilter(props, flagEncoder, gs);
+    }
+
     public CentralityResult computeCentrality(CentralityRequest req) throws Exception {
+        GraphVersion graph = acquireGraph();
+        try {
+            return computeCentrality(req, graph.graphHopper);
+        } finally {
+            graph.release();
+        }
+    }
+
+    private CentralityResult computeCentrality(CentralityRequest req, GraphHopper gh) throws Exception {
         CentralityResult res = new CentralityResult();
 
-        GraphHopper gh = getGraphhopper();
         String encoderName = RoutingProfileType.getEncoderName(req.getProfileType());
         FlagEncoder flagEncoder = gh.getEncodingManager().getEncoder(encoderName);
         Graph graph = gh.getGraphHopperStorage().getBaseGraph();
@@ -698,8 +768,13 @@ public class RoutingProfile {
 
         CentralityAlgorithm alg = new BrandesCentralityAlgorithm();
         alg.init(graph, weighting);
+        if (req.isApproximate())
+            alg.setSampleSize(req.getSampleSize());
 
         HashMap<Integer, Double> betweenness = alg.compute(nodesInBBox);
+        res.setApproximate(req.isApproximate());
+        res.setSampleSize(alg.getSampleSize());
+        res.setEstimatedError(alg.getEstimatedError());
 
         // transform node ids to coordinates
         for (int v : nodesInBBox) {
@@ -711,7 +786,7 @@ public class RoutingProfile {
         return res;
     }
 
-    private RouteSearchContext createSearchContext(RouteSearchParameters searchParams) throws Exception {
+    private RouteSearchContext createSearchContext(ORSGraphHopper gh, RouteSearchParameters searchParams) throws Exception {
         ORSPMap props = new ORSPMap();
 
         int profileType = searchParams.getProfileType();
@@ -720,12 +795,12 @@ public class RoutingProfile {
         if ("UNKNOWN".equals(encoderName))
             throw new InternalServerException(RoutingErrorCodes.UNKNOWN, "unknown vehicle profile.");
 
-        if (!mGraphHopper.getEncodingManager().hasEncoder(encoderName)) {
+        if (!gh.getEncodingManager().hasEncoder(encoderName)) {
             throw new IllegalArgumentException("Vehicle " + encoderName + " unsupported. " + "Supported are: "
-                    + mGraphHopper.getEncodingManager());
+                    + gh.getEncodingManager());
         }
 
-        FlagEncoder flagEncoder = mGraphHopper.getEncodingManager().getEncoder(encoderName);
+        FlagEncoder flagEncoder = gh.getEncodingManager().getEncoder(encoderName);
         ProfileParameters profileParams = searchParams.getProfileParameters();
 
         /*
@@ -748,6 +823,8 @@ public class RoutingProfile {
         if (searchParams.hasAvoidAreas()) {
             props.put("avoid_areas", true);
             props.putObj("avoid_areas", searchParams.getAvoidAreas());
+            // the blocked edges are determined once for all searches of the request
+            props.putObj("avoid_areas_blocked_edges", AvoidAreasEdgeFilter.findBlockedEdges(searchParams.getAvoidAreas(), gh.getGraphHopperStorage(), gh.getLocationIndex()));
         }
 
         /* Heavy vehicle filter */
@@ -791,7 +868,7 @@ public class RoutingProfile {
             }
         }
 
-        RouteSearchContext searchCntx = new RouteSearchContext(mGraphHopper, flagEncoder);
+        RouteSearchContext searchCntx = new RouteSearchContext(gh, flagEncoder);
         searchCntx.setProperties(props);
 
         return searchCntx;
@@ -801,47 +878,40 @@ public class RoutingProfile {
             throws Exception {
         RouteSegmentInfo[] rsi = null;
 
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphVersion graph = acquireGraph();
 
         try {
-            rsi = getMatchedSegmentsInternal(locations, searchRadius, null, bothDirections);
-
-            endUseGH();
-        } catch (Exception ex) {
-            endUseGH();
-
-            throw ex;
+            rsi = getMatchedSegmentsInternal(graph, locations, searchRadius, null, bothDirections);
+        } finally {
+            graph.release();
         }
 
         return rsi;
     }
 
-    private RouteSegmentInfo[] getMatchedSegmentsInternal(Coordinate[] locations,
+    private RouteSegmentInfo[] getMatchedSegmentsInternal(GraphVersion graph, Coordinate[] locations,
                                                           double searchRadius, EdgeFilter edgeFilter, boolean bothDirections) {
-        if (mMapMatcher == null) {
-            mMapMatcher = new HiddenMarkovMapMatcher();
-            mMapMatcher.setGraphHopper(mGraphHopper);
+        if (graph.mapMatcher == null) {
+            graph.mapMatcher = new HiddenMarkovMapMatcher();
+            graph.mapMatcher.setGraphHopper(graph.graphHopper);
         }
 
-        mMapMatcher.setSearchRadius(searchRadius);
-        mMapMatcher.setEdgeFilter(edgeFilter);
+        graph.mapMatcher.setSearchRadius(searchRadius);
+        graph.mapMatcher.setEdgeFilter(edgeFilter);
 
-        return mMapMatcher.match(locations, bothDirections);
+        return graph.mapMatcher.match(locations, bothDirections);
     }
 
     public GHResponse computeRoundTripRoute(double lat0, double lon0, WayPointBearing bearing, RouteSearchParameters searchParams, Boolean geometrySimplify) throws Exception {
         GHResponse resp;
 
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphVersion graph = acquireGraph();
+        ORSGraphHopper gh = graph.graphHopper;
 
         try {
             int profileType = searchParams.getProfileType();
             int weightingMethod = searchParams.getWeightingMethod();
-            RouteSearchContext searchCntx = createSearchContext(searchParams);
+            RouteSearchContext searchCntx = createSearchContext(gh, searchParams);
 
             List<GHPoint> points = new ArrayList<>();
             points.add(new GHPoint(lat0, lon0));
@@ -875,7 +945,7 @@ public class RoutingProfile {
                 throw new IllegalArgumentException("Unsupported weighting " + weightingMethod + " for profile + " + profileType);
 
             //Roundtrip not possible with preprocessed edges.
-            setSpeedups(req, false, false, true);
+            setSpeedups(gh, req, false, false, true);
 
             if (astarEpsilon != null)
                 req.getHints().put("astarbi.epsilon", astarEpsilon);
@@ -884,17 +954,14 @@ public class RoutingProfile {
             //Overwrite algorithm selected in setSpeedups
             req.setAlgorithm(Parameters.Algorithms.ROUND_TRIP);
 
-            mGraphHopper.setSimplifyResponse(geometrySimplify);
-            resp = mGraphHopper.route(req);
-
-            endUseGH();
-
+            gh.setSimplifyResponse(geometrySimplify);
+            resp = gh.route(req);
         } catch (Exception ex) {
-            endUseGH();
-
             LOGGER.error(ex);
 
             throw new InternalServerException(RoutingErrorCodes.UNKNOWN, "Unable to compute a route");
+        } finally {
+            graph.release();
         }
 
         return resp;
@@ -905,14 +972,13 @@ public class RoutingProfile {
 
         GHResponse resp = null;
 
-        waitForUpdateCompletion();
-
-        beginUseGH();
+        GraphVersion graph = acquireGraph();
+        ORSGraphHopper gh = graph.graphHopper;
 
         try {
             int profileType = searchParams.getProfileType();
             int weightingMethod = searchParams.getWeightingMethod();
-            RouteSearchContext searchCntx = createSearchContext(searchParams);
+            RouteSearchContext searchCntx = createSearchContext(gh, searchParams);
 
             int flexibleMode = searchParams.getFlexibleMode() ? KEY_FLEX_PREPROCESSED : KEY_FLEX_STATIC;
             boolean optimized = searchParams.getOptimized();
@@ -946,21 +1012,21 @@ public class RoutingProfile {
 
             if(flexibleMode == KEY_FLEX_STATIC)
                 //Speedup order: useCH, useCore, useALT
-                setSpeedups(req, true, true, true);
+                setSpeedups(gh, req, true, true, true);
 
             if (flexibleMode == KEY_FLEX_PREPROCESSED) {
                 if(optimized)
-                    setSpeedups(req, false, true, true);
+                    setSpeedups(gh, req, false, true, true);
                 else
-                    setSpeedups(req, false, false, true);
+                    setSpeedups(gh, req, false, false, true);
             }
 
             //cannot use CH or CoreALT with requests where the weighting of non-predefined edges might change
             if(flexibleMode == KEY_FLEX_FULLY)
-                setSpeedups(req, false, false, true);
+                setSpeedups(gh, req, false, false, true);
 
             if (flexibleMode == KEY_FLEX_TIMEDEPENDENT) {
-                setSpeedups(req, false, false, true);
+                setSpeedups(gh, req, false, false, true);
                 req.setAlgorithm(Parameters.Algorithms.TD_ASTAR);
                 if (searchParams.hasDeparture())
                     req.getHints().put("departure", searchParams.getDeparture());
@@ -975,7 +1041,7 @@ public class RoutingProfile {
 
             if (searchParams.getAlternativeRoutesCount() > 0) {
                 //TAKB: CH and CORE have to be disabled for alternative routes
-                setSpeedups(req, false, false, true);
+                setSpeedups(gh, req, false, false, true);
                 req.setAlgorithm("alternative_route");
                 req.getHints().put("alternative_route.max_paths", searchParams.getAlternativeRoutesCount());
                 req.getHints().put("alternative_route.max_weight_factor", searchParams.getAlternativeRoutesWeightFactor());
@@ -987,10 +1053,10 @@ public class RoutingProfile {
             }
 
             if (directedSegment) {
-                resp = mGraphHopper.constructFreeHandRoute(req);
+                resp = gh.constructFreeHandRoute(req);
             } else {
-                mGraphHopper.setSimplifyResponse(geometrySimplify);
-                resp = mGraphHopper.route(req);
+                gh.setSimplifyResponse(geometrySimplify);
+                resp = gh.route(req);
             }
             if (DebugUtility.isDebug() && !directedSegment) {
                 LOGGER.info("visited_nodes.average - " + resp.getHints().get("visited_nodes.average", ""));
@@ -998,13 +1064,12 @@ public class RoutingProfile {
             if (DebugUtility.isDebug() && directedSegment) {
                 LOGGER.info("skipped segment - " + resp.getHints().get("skipped_segment", ""));
             }
-            endUseGH();
         } catch (Exception ex) {
-            endUseGH();
-
             LOGGER.error(ex);
 
             throw new InternalServerException(RoutingErrorCodes.UNKNOWN, "Unable to compute a route");
+        } finally {
+            graph.release();
         }
 
         return resp;
@@ -1078,18 +1143,19 @@ public class RoutingProfile {
      * Set the speedup techniques used for calculating the route.
      * Reults in usage of CH, Core or ALT/AStar, if they are enabled.
      *
+     * @param gh Graph the request is computed on
      * @param req Request whose hints will be set
      * @param useCH Should CH be enabled
      * @param useCore Should Core be enabled
      * @param useALT Should ALT be enabled
      */
-    private void setSpeedups(GHRequest req, boolean useCH, boolean useCore, boolean useALT){
+    private void setSpeedups(ORSGraphHopper gh, GHRequest req, boolean useCH, boolean useCore, boolean useALT){
         String weighting = req.getWeighting();
 
         //Priority: CH->Core->ALT
-        useCH = useCH && mGraphHopper.isCHAvailable(weighting);
-        useCore = useCore && !useCH && mGraphHopper.isCoreAvailable(weighting);
-        useALT = useALT && !useCH && !useCore && mGraphHopper.isLMAvailable(weighting);
+        useCH = useCH && gh.isCHAvailable(weighting);
+        useCore = useCore && !useCH && gh.isCoreAvailable(weighting);
+        useALT = useALT && !useCH && !useCore && gh.isLMAvailable(weighting);
 
         req.getHints().put(KEY_CH_DISABLE, !useCH);
         req.getHints().put(KEY_CORE_DISABLE, !useCore);
@@ -1115,17 +1181,16 @@ public class RoutingProfile {
      */
     public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters) throws Exception {
         IsochroneMap result = null;
-        waitForUpdateCompletion();
-        beginUseGH();
+        GraphVersion graph = acquireGraph();
         try {
-            RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters());
+            RouteSearchContext searchCntx = createSearchContext(graph.graphHopper, parameters.getRouteParameters());
             IsochroneMapBuilderFactory isochroneMapBuilderFactory = new IsochroneMapBuilderFactory(searchCntx);
             result = isochroneMapBuilderFactory.buildMap(parameters);
-            endUseGH();
         } catch (Exception ex) {
-            endUseGH();
             LOGGER.error(ex);
             throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to build an isochrone map.");
+        } finally {
+            graph.release();
         }
 
         if (result.getIsochronesCount() > 0) {
@@ -1182,6 +1247,45 @@ public class RoutingProfile {
     }
 
     public int hashCode() {
-        return mGraphHopper.getGraphHopperStorage().getDirectory().getLocation().hashCode();
+        // the configured location stays the same when the graph is updated
+        return config.getGraphPath().hashCode();
+    }
+
+    /**
+     * A loaded graph of the profile. The profile holds a reference to its current version, and every request holds a
+     * reference to the version it has started on, so that an update can publish a new version at any time. The
+     * version is released as soon as all references have been given back.
+     */
+    static class GraphVersion {
+        private final ORSGraphHopper graphHopper;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private MapMatcher mapMatcher;
+
+        GraphVersion(ORSGraphHopper graphHopper) {
+            this.graphHopper = graphHopper;
+        }
+
+        /**
+         * @return false if the version has already been released and must not be used anymore
+         */
+        boolean acquire() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0)
+                    return false;
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0)
+                released.countDown();
+        }
+
+        void awaitReleased() throws InterruptedException {
+            released.await();
+        }
     }
 }
@@ -14,10 +14,16 @@
 package org.heigit.ors.routing;
 
 import com.graphhopper.reader.dem.ElevationProvider;
+import org.heigit.ors.routing.configuration.RouteProfileConfiguration;
+import org.heigit.ors.routing.graphhopper.extensions.SharedOSMImport;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class RoutingProfileLoadContext {
 	// add here any other shared resources
 	private ElevationProvider elevationProvider = null;
+	private final Map<RouteProfileConfiguration, SharedOSMImport.Participant> sharedImports = new HashMap<>();
 	
 	public ElevationProvider getElevationProvider(){
 		return elevationProvider;
@@ -29,6 +35,26 @@ public class RoutingProfileLoadContext {
 		}
 	}
 
+	public synchronized void setSharedOSMImport(RouteProfileConfiguration rpc, SharedOSMImport.Participant sharedImport) {
+		sharedImports.put(rpc, sharedImport);
+	}
+
+	/**
+	 * @return the shared import through which the profile reads the OSM file, or null if it reads the file on its own
+	 */
+	public synchronized SharedOSMImport.Participant getSharedOSMImport(RouteProfileConfiguration rpc) {
+		return sharedImports.get(rpc);
+	}
+
+	/**
+	 * Called when the profile is loaded or has failed, so that the other profiles no longer wait for it.
+	 */
+	public void leaveSharedOSMImport(RouteProfileConfiguration rpc) {
+		SharedOSMImport.Participant sharedImport = getSharedOSMImport(rpc);
+		if (sharedImport != null)
+			sharedImport.leave();
+	}
+
 	public void releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed() {
 		if (elevationProvider != null){
 			elevationProvider.release();
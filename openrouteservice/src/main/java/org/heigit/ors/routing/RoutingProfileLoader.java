@@ -32,6 +32,10 @@ public class RoutingProfileLoader implements Callable<RoutingProfile> {
 	@Override
 	public RoutingProfile call() throws Exception {
 		Thread.currentThread().setName("ORS-pl-" + rpc.getName());
-		return new RoutingProfile(osmFile, rpc, loadCntx);
+		try {
+			return new RoutingProfile(osmFile, rpc, loadCntx);
+		} finally {
+			loadCntx.leaveSharedOSMImport(rpc);
+		}
 	}
 }
\ No newline at end of file
@@ -27,18 +27,21 @@ import org.heigit.ors.centrality.CentralityResult;
 import org.heigit.ors.exceptions.*;
 import org.heigit.ors.isochrones.IsochroneMap;
 import org.heigit.ors.isochrones.IsochroneSearchParameters;
+import org.heigit.ors.isochrones.IsochroneWorkerPool;
 import org.heigit.ors.mapmatching.MapMatchingRequest;
 import org.heigit.ors.matrix.MatrixErrorCodes;
 import org.heigit.ors.matrix.MatrixRequest;
 import org.heigit.ors.matrix.MatrixResult;
 import org.heigit.ors.routing.configuration.RouteProfileConfiguration;
 import org.heigit.ors.routing.configuration.RoutingManagerConfiguration;
+import org.heigit.ors.routing.graphhopper.extensions.SharedOSMImport;
 import org.heigit.ors.routing.pathprocessors.ExtraInfoProcessor;
 import org.heigit.ors.services.routing.RoutingServiceSettings;
 import org.heigit.ors.util.FormatUtility;
 import org.heigit.ors.util.RuntimeUtility;
 import org.heigit.ors.util.StringUtility;
 import org.heigit.ors.util.TimeUtility;
+import org.heigit.ors.util.WorkerPoolUtility;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -71,7 +74,6 @@ public class RoutingProfileManager {
             RoutingManagerConfiguration rmc = RoutingManagerConfiguration.loadFromFile(graphProps);
 
             routeProfiles = new RoutingProfilesCollection();
-            int nRouteInstances = rmc.getProfiles().length;
 
             RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
             ExecutorService executor = Executors.newFixedThreadPool(RoutingServiceSettings.getInitializationThreads());
@@ -79,18 +81,10 @@ public class RoutingProfileManager {
 
             int nTotalTasks = 0;
 
-            for (int i = 0; i < nRouteInstances; i++) {
-                RouteProfileConfiguration rpc = rmc.getProfiles()[i];
-                if (!rpc.getEnabled())
-                    continue;
-
-                Integer[] profilesTypes = rpc.getProfilesTypes();
-
-                if (profilesTypes != null) {
-                    Callable<RoutingProfile> task = new RoutingProfileLoader(RoutingServiceSettings.getSourceFile(), rpc, loadCntx);
-                    compService.submit(task);
-                    nTotalTasks++;
-                }
+            for (RouteProfileConfiguration rpc : initSharedOSMImports(rmc, loadCntx)) {
+                Callable<RoutingProfile> task = new RoutingProfileLoader(RoutingServiceSettings.getSourceFile(), rpc, loadCntx);
+                compService.submit(task);
+                nTotalTasks++;
             }
 
             LOGGER.info("               ");
@@ -137,7 +131,6 @@ public class RoutingProfileManager {
                     prepareGraphs(graphProps);
                 } else {
                     routeProfiles = new RoutingProfilesCollection();
-                    int nRouteInstances = rmc.getProfiles().length;
 
                     RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
                     ExecutorService executor = Executors.newFixedThreadPool(RoutingServiceSettings.getInitializationThreads());
@@ -145,16 +138,10 @@ public class RoutingProfileManager {
 
                     int nTotalTasks = 0;
 
-                    for (int i = 0; i < nRouteInstances; i++) {
-                        RouteProfileConfiguration rpc = rmc.getProfiles()[i];
-                        if (!rpc.getEnabled())
-                            continue;
-
-                        if (rpc.getProfilesTypes() != null) {
-                            Callable<RoutingProfile> task = new RoutingProfileLoader(RoutingServiceSettings.getSourceFile(), rpc, loadCntx);
-                            compService.submit(task);
-                            nTotalTasks++;
-                        }
+                    for (RouteProfileConfiguration rpc : initSharedOSMImports(rmc, loadCntx)) {
+                        Callable<RoutingProfile> task = new RoutingProfileLoader(RoutingServiceSettings.getSourceFile(), rpc, loadCntx);
+                        compService.submit(task);
+                        nTotalTasks++;
                     }
 
                     LOGGER.info("               ");
@@ -199,6 +186,38 @@ public class RoutingProfileManager {
             routeProfiles.printStatistics(LOGGER);
     }
 
+    /**
+     * Lets the profiles which have to import the OSM file read it together, so that the file is decoded only once for
+     * every batch of profiles being built at the same time. The importing profiles are returned first, so that the
+     * members of a batch are run concurrently by the initialization threads.
+     *
+     * @return the enabled profiles in the order in which they are to be loaded
+     */
+    private List<RouteProfileConfiguration> initSharedOSMImports(RoutingManagerConfiguration rmc, RoutingProfileLoadContext loadCntx) {
+        List<RouteProfileConfiguration> importing = new ArrayList<>();
+        List<RouteProfileConfiguration> loading = new ArrayList<>();
+        for (RouteProfileConfiguration rpc : rmc.getProfiles()) {
+            if (!rpc.getEnabled() || rpc.getProfilesTypes() == null)
+                continue;
+            if (new File(rpc.getGraphPath(), "properties").exists())
+                loading.add(rpc);
+            else
+                importing.add(rpc);
+        }
+
+        int batchSize = RoutingServiceSettings.getInitializationThreads();
+        File osmFile = new File(RoutingServiceSettings.getSourceFile());
+        for (int i = 0; i + 1 < importing.size() && batchSize > 1; i += batchSize) {
+            SharedOSMImport sharedImport = new SharedOSMImport(osmFile, RoutingServiceSettings.getOSMReaderThreads());
+            for (int j = i; j < Math.min(i + batchSize, importing.size()); j++)
+                loadCntx.setSharedOSMImport(importing.get(j), sharedImport.join());
+        }
+
+        List<RouteProfileConfiguration> profiles = new ArrayList<>(importing);
+        profiles.addAll(loading);
+        return profiles;
+    }
+
     public void destroy() {
         if (profileUpdater != null)
             profileUpdater.destroy();
@@ -315,20 +334,11 @@ public class RoutingProfileManager {
     }
 
     public RouteResult[] computeLinearRoute(RoutingRequest req) throws Exception {
-        List<Integer> skipSegments = req.getSkipSegments();
-        List<GHResponse> routes = new ArrayList<>();
-
         RoutingProfile rp = getRouteProfile(req, false);
         RouteSearchParameters searchParams = req.getSearchParameters();
 
         Coordinate[] coords = req.getCoordinates();
-        Coordinate c0 = coords[0];
-        Coordinate c1;
         int nSegments = coords.length - 1;
-        GHResponse prevResp = null;
-        WayPointBearing[] bearings = (req.getContinueStraight() || searchParams.getBearings() != null) ? new WayPointBearing[2] : null;
-        int profileType = req.getSearchParameters().getProfileType();
-        double[] radiuses = null;
 
         if (req.getSearchParameters().getAlternativeRoutesCount() > 1 && coords.length > 2) {
             throw new InternalServerException(RoutingErrorCodes.INVALID_PARAMETER_VALUE, "Alternative routes algorithm does not support more than two way points.");
@@ -337,88 +347,18 @@ public class RoutingProfileManager {
         int numberOfExpectedExtraInfoProcessors = req.getSearchParameters().getAlternativeRoutesCount() < 0 ? 1 : req.getSearchParameters().getAlternativeRoutesCount();
         ExtraInfoProcessor[] extraInfoProcessors = new ExtraInfoProcessor[numberOfExpectedExtraInfoProcessors];
 
-        for (int i = 1; i <= nSegments; ++i) {
-            c1 = coords[i];
-
-            if (bearings != null) {
-                bearings[0] = null;
-                if (prevResp != null && req.getContinueStraight()) {
-                    bearings[0] = new WayPointBearing(getHeadingDirection(prevResp), Double.NaN);
-                }
-
-                if (searchParams.getBearings() != null) {
-                    bearings[0] = searchParams.getBearings()[i - 1];
-                    bearings[1] = (i == nSegments && searchParams.getBearings().length != nSegments + 1) ? new WayPointBearing(Double.NaN, Double.NaN) : searchParams.getBearings()[i];
-                }
-            }
+        // With continue_straight the heading of a segment is taken from the previous one, unless explicit bearings
+        // are given, so only independent segments can be computed concurrently.
+        ExecutorService segmentExecutor = rp.getSegmentExecutor();
+        boolean dependentSegments = req.getContinueStraight() && searchParams.getBearings() == null;
 
-            if (searchParams.getMaximumRadiuses() != null) {
-                radiuses = new double[2];
-                radiuses[0] = searchParams.getMaximumRadiuses()[i - 1];
-                radiuses[1] = searchParams.getMaximumRadiuses()[i];
-            } else {
-                try {
-                    int maximumSnappingRadius = routeProfiles.getRouteProfile(profileType).getConfiguration().getMaximumSnappingRadius();
-                    radiuses = new double[2];
-                    radiuses[0] = maximumSnappingRadius;
-                    radiuses[1] = maximumSnappingRadius;
-                } catch (Exception ex) {
-                    // do nothing
-                }
-            }
-
-            GHResponse gr = rp.computeRoute(c0.y, c0.x, c1.y, c1.x, bearings, radiuses, skipSegments.contains(i), searchParams, req.getGeometrySimplify());
-
-            if (gr.hasErrors()) {
-                if (!gr.getErrors().isEmpty()) {
-                    if (gr.getErrors().get(0) instanceof com.graphhopper.util.exceptions.ConnectionNotFoundException) {
-                        throw new RouteNotFoundException(
-                                RoutingErrorCodes.ROUTE_NOT_FOUND,
-                                String.format("Unable to find a route between points %d (%s) and %d (%s).",
-                                        i,
-                                        FormatUtility.formatCoordinate(c0),
-                                        i + 1,
-                                        FormatUtility.formatCoordinate(c1))
-                        );
-                    } else if(gr.getErrors().get(0) instanceof com.graphhopper.util.exceptions.PointNotFoundException) {
-                        StringBuilder message = new StringBuilder();
-                        for(Throwable error: gr.getErrors()) {
-                            if(message.length() > 0)
-                                message.append("; ");
-                            if (error instanceof com.graphhopper.util.exceptions.PointNotFoundException) {
-                                com.graphhopper.util.exceptions.PointNotFoundException pointNotFoundException = (com.graphhopper.util.exceptions.PointNotFoundException) error;
-                                int pointReference = (i-1) + pointNotFoundException.getPointIndex();
-
-                                Coordinate pointCoordinate = (pointNotFoundException.getPointIndex() == 0) ? c0 : c1;
-                                double pointRadius = radiuses[pointNotFoundException.getPointIndex()];
-
-                                message.append(String.format("Could not find point %d: %s within a radius of %.1f meters.",
-                                        pointReference,
-                                        FormatUtility.formatCoordinate(pointCoordinate),
-                                        pointRadius));
-
-                            } else {
-                                message.append(error.getMessage());
-                            }
-                        }
-                        throw new PointNotFoundException(message.toString());
-                    } else {
-                        throw new InternalServerException(RoutingErrorCodes.UNKNOWN, gr.getErrors().get(0).getMessage());
-                    }
-                } else {
-                    // If there are no errors stored but there is indication that there are errors, something strange
-                    // has happened, so return that a route could not be found
-                    throw new RouteNotFoundException(
-                            RoutingErrorCodes.ROUTE_NOT_FOUND,
-                            String.format("Unable to find a route between points %d (%s) and %d (%s).",
-                                    i,
-                                    FormatUtility.formatCoordinate(c0),
-                                    i + 1,
-                                    FormatUtility.formatCoordinate(c1))
-                    );
-                }
-            }
+        List<GHResponse> routes;
+        if (segmentExecutor != null && nSegments > 1 && !dependentSegments)
+            routes = computeRouteSegmentsInParallel(req, rp, segmentExecutor, nSegments);
+        else
+            routes = computeRouteSegmentsInSeries(req, rp, nSegments);
 
+        for (GHResponse gr : routes) {
             if (numberOfExpectedExtraInfoProcessors > 1) {
                 int extraInfoProcessorIndex = 0;
                 for (Object o : gr.getReturnObjects()) {
@@ -444,10 +384,6 @@ public class RoutingProfileManager {
                     }
                 }
             }
-
-            prevResp = gr;
-            routes.add(gr);
-            c0 = c1;
         }
         routes = enrichDirectRoutesTime(routes);
 
@@ -460,6 +396,138 @@ public class RoutingProfileManager {
         return new RouteResultBuilder().createRouteResults(routes, req, extraInfos);
     }
 
+    private List<GHResponse> computeRouteSegmentsInSeries(RoutingRequest req, RoutingProfile rp, int nSegments) throws Exception {
+        List<GHResponse> routes = new ArrayList<>(nSegments);
+        GHResponse prevResp = null;
+
+        for (int i = 1; i <= nSegments; ++i) {
+            GHResponse gr = computeRouteSegment(req, rp, i, prevResp);
+            prevResp = gr;
+            routes.add(gr);
+        }
+
+        return routes;
+    }
+
+    /**
+     * Computes all segments of a linear route concurrently on the segment executor of the routing profile. The
+     * responses are returned in segment order; if several segments fail, the error of the first one is thrown.
+     */
+    private List<GHResponse> computeRouteSegmentsInParallel(RoutingRequest req, RoutingProfile rp, ExecutorService executor, int nSegments) throws Exception {
+        List<Future<GHResponse>> futures = new ArrayList<>(nSegments);
+        List<GHResponse> routes = new ArrayList<>(nSegments);
+
+        try {
+            for (int i = 1; i <= nSegments; ++i) {
+                final int segment = i;
+                futures.add(executor.submit(() -> computeRouteSegment(req, rp, segment, null)));
+            }
+
+            for (Future<GHResponse> future : futures)
+                routes.add(future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        } finally {
+            for (Future<GHResponse> future : futures)
+                future.cancel(true);
+        }
+
+        return routes;
+    }
+
+    private GHResponse computeRouteSegment(RoutingRequest req, RoutingProfile rp, int i, GHResponse prevResp) throws Exception {
+        RouteSearchParameters searchParams = req.getSearchParameters();
+        Coordinate[] coords = req.getCoordinates();
+        Coordinate c0 = coords[i - 1];
+        Coordinate c1 = coords[i];
+        int nSegments = coords.length - 1;
+        WayPointBearing[] bearings = (req.getContinueStraight() || searchParams.getBearings() != null) ? new WayPointBearing[2] : null;
+        int profileType = req.getSearchParameters().getProfileType();
+        double[] radiuses = null;
+
+        if (bearings != null) {
+            if (prevResp != null && req.getContinueStraight()) {
+                bearings[0] = new WayPointBearing(getHeadingDirection(prevResp), Double.NaN);
+            }
+
+            if (searchParams.getBearings() != null) {
+                bearings[0] = searchParams.getBearings()[i - 1];
+                bearings[1] = (i == nSegments && searchParams.getBearings().length != nSegments + 1) ? new WayPointBearing(Double.NaN, Double.NaN) : searchParams.getBearings()[i];
+            }
+        }
+
+        if (searchParams.getMaximumRadiuses() != null) {
+            radiuses = new double[2];
+            radiuses[0] = searchParams.getMaximumRadiuses()[i - 1];
+            radiuses[1] = searchParams.getMaximumRadiuses()[i];
+        } else {
+            try {
+                int maximumSnappingRadius = routeProfiles.getRouteProfile(profileType).getConfiguration().getMaximumSnappingRadius();
+                radiuses = new double[2];
+                radiuses[0] = maximumSnappingRadius;
+                radiuses[1] = maximumSnappingRadius;
+            } catch (Exception ex) {
+                // do nothing
+            }
+        }
+
+        GHResponse gr = rp.computeRoute(c0.y, c0.x, c1.y, c1.x, bearings, radiuses, req.getSkipSegments().contains(i), searchParams, req.getGeometrySimplify());
+
+        if (gr.hasErrors()) {
+            if (!gr.getErrors().isEmpty()) {
+                if (gr.getErrors().get(0) instanceof com.graphhopper.util.exceptions.ConnectionNotFoundException) {
+                    throw new RouteNotFoundException(
+                            RoutingErrorCodes.ROUTE_NOT_FOUND,
+                            String.format("Unable to find a route between points %d (%s) and %d (%s).",
+                                    i,
+                                    FormatUtility.formatCoordinate(c0),
+                                    i + 1,
+                                    FormatUtility.formatCoordinate(c1))
+                    );
+                } else if(gr.getErrors().get(0) instanceof com.graphhopper.util.exceptions.PointNotFoundException) {
+                    StringBuilder message = new StringBuilder();
+                    for(Throwable error: gr.getErrors()) {
+                        if(message.length() > 0)
+                            message.append("; ");
+                        if (error instanceof com.graphhopper.util.exceptions.PointNotFoundException) {
+                            com.graphhopper.util.exceptions.PointNotFoundException pointNotFoundException = (com.graphhopper.util.exceptions.PointNotFoundException) error;
+                            int pointReference = (i-1) + pointNotFoundException.getPointIndex();
+
+                            Coordinate pointCoordinate = (pointNotFoundException.getPointIndex() == 0) ? c0 : c1;
+                            double pointRadius = radiuses[pointNotFoundException.getPointIndex()];
+
+                            message.append(String.format("Could not find point %d: %s within a radius of %.1f meters.",
+                                    pointReference,
+                                    FormatUtility.formatCoordinate(pointCoordinate),
+                                    pointRadius));
+
+                        } else {
+                            message.append(error.getMessage());
+                        }
+                    }
+                    throw new PointNotFoundException(message.toString());
+                } else {
+                    throw new InternalServerException(RoutingErrorCodes.UNKNOWN, gr.getErrors().get(0).getMessage());
+                }
+            } else {
+                // If there are no errors stored but there is indication that there are errors, something strange
+                // has happened, so return that a route could not be found
+                throw new RouteNotFoundException(
+                        RoutingErrorCodes.ROUTE_NOT_FOUND,
+                        String.format("Unable to find a route between points %d (%s) and %d (%s).",
+                                i,
+                                FormatUtility.formatCoordinate(c0),
+                                i + 1,
+                                FormatUtility.formatCoordinate(c1))
+                );
+            }
+        }
+
+        return gr;
+    }
+
     /**
      * This will enrich all direct routes with an approximated travel time that is being calculated from the real graphhopper
      * results. The routes object should contain all routes, so the function can maintain and return the proper order!
@@ -618,6 +686,21 @@ public class RoutingProfileManager {
         return rp.buildIsochrone(parameters);
     }
 
+    /**
+     * Builds the isochrones of several locations. The isochrones are computed concurrently on the isochrone worker pool
+     * if the isochrones service allows more than one thread.
+     *
+     * @param parameters The {@link IsochroneSearchParameters} of each location
+     * @return The {@link IsochroneMap}s in the order of the parameters
+     * @throws Exception
+     */
+    public List<IsochroneMap> buildIsochrones(List<IsochroneSearchParameters> parameters) throws Exception {
+        List<Callable<IsochroneMap>> tasks = new ArrayList<>(parameters.size());
+        for (IsochroneSearchParameters searchParams : parameters)
+            tasks.add(() -> buildIsochrone(searchParams));
+        return WorkerPoolUtility.invokeAll(IsochroneWorkerPool.getExecutor(), tasks);
+    }
+
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
         RoutingProfile rp = routeProfiles.getRouteProfile(req.getProfileType(), !req.getFlexibleMode());
 
@@ -13,12 +13,14 @@
  */
 package org.heigit.ors.routing;
 
-import com.graphhopper.GraphHopper;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.util.Helper;
 import org.apache.commons.io.FileUtils;
 import org.heigit.ors.routing.configuration.RouteProfileConfiguration;
 import org.heigit.ors.routing.configuration.RouteUpdateConfiguration;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.SharedOSMImport;
+import org.heigit.ors.services.routing.RoutingServiceSettings;
 import org.heigit.ors.util.DebugUtility;
 import org.heigit.ors.util.FileUtility;
 import org.heigit.ors.util.StackTraceUtility;
@@ -32,10 +34,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -72,6 +75,14 @@ public class RoutingProfilesUpdater {
 			throw new IllegalArgumentException("DataSource is null or empty.");
 		if (this.config.getWorkingDirectory() == null || this.config.getWorkingDirectory().isEmpty())
 			throw new IllegalArgumentException("WorkingDirectory is null or empty.");
+		// the graphs are always rebuilt from a complete extract, change files cannot be applied to them
+		if (isChangeFile(this.config.getDataSource()))
+			throw new IllegalArgumentException("DataSource '" + this.config.getDataSource() + "' is an OSM change file, which is not supported. Use a complete OSM file instead.");
+	}
+
+	private static boolean isChangeFile(String dataSource) {
+		String name = dataSource.toLowerCase();
+		return name.endsWith(".osc") || name.endsWith(".osc.gz") || name.endsWith(".osc.bz2");
 	}
 
 	public void start() {
@@ -226,22 +237,13 @@ public class RoutingProfilesUpdater {
 				File file = new File(osmFile);
 				String newFileStamp = Long.toString(file.length());
 
-				String tempGraphLocation = Paths.get(config.getWorkingDirectory(), "graph").toString();
-
-				try {
-					// Clear directory from a previous build
-					File fileGraph = new File(tempGraphLocation);
-					if (fileGraph.exists())
-						FileUtils.deleteDirectory(fileGraph);	
-				} catch(Exception ex) {
-					// do nothing
-				}
-
+				File graphsDir = Paths.get(config.getWorkingDirectory(), "graph").toFile();
+				// every update is loaded from its own directory, as the graphs of the previous one may still be in use
+				deleteUnusedGraphs(graphsDir);
+				String tempGraphLocation = new File(graphsDir, Long.toString(startTime)).toString();
 				FileUtility.makeDirectory(tempGraphLocation);
 
-				RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
-				int nUpdatedProfiles = 0;
-
+				List<RoutingProfile> staleProfiles = new ArrayList<>();
 				for (RoutingProfile profile : routingProfilesCollection.getUniqueProfiles()) {
 					RouteProfileConfiguration rpc = profile.getConfiguration();
 
@@ -266,21 +268,10 @@ public class RoutingProfilesUpdater {
 						}
 					}
 
-					try {
-						updateStatus = "preparing profile '" + rpc.getProfiles() +"'";
-						RouteProfileConfiguration rpcNew = new RouteProfileConfiguration(rpc);
-						rpcNew.setGraphPath(tempGraphLocation);
-						GraphHopper gh = RoutingProfile.initGraphHopper(osmFile, rpcNew, loadCntx);
-						profile.updateGH(gh);
-						nUpdatedProfiles++;
-					} catch (Exception ex) {
-						LOGGER.severe("Failed to update graph profile. Message:" + ex.getMessage() + "; StackTrace: " +	StackTraceUtility.getStackTrace(ex));
-					}
-
-					updateStatus = null;
+					staleProfiles.add(profile);
 				}
 
-				loadCntx.releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed();
+				int nUpdatedProfiles = updateProfiles(staleProfiles, osmFile, tempGraphLocation);
 				
 				FileUtils.writeStringToFile(fileLastUpdate, md5Sum);
 
@@ -305,6 +296,130 @@ public class RoutingProfilesUpdater {
 		isRunning = false;
 	}
 
+	/**
+	 * Rebuilds the given profiles in batches. The profiles of a batch are built concurrently and decode the OSM file
+	 * together. A batch holds at most as many profiles as there are update threads, and the capacities of their
+	 * current graphs, which serve as an estimate of the memory needed for building them, have to fit into the memory
+	 * budget.
+	 *
+	 * @return the number of updated profiles
+	 */
+	private int updateProfiles(List<RoutingProfile> profiles, String osmFile, String graphsLocation) throws InterruptedException {
+		int threads = Math.max(1, config.getThreads());
+		long memoryBudget = (long) config.getMemoryBudget() * 1024 * 1024;
+		RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		int nUpdatedProfiles = 0;
+
+		try {
+			int next = 0;
+			while (next < profiles.size()) {
+				int first = next;
+				long batchMemory = 0;
+				while (next < profiles.size() && next - first < threads) {
+					long memory = profiles.get(next).getCapacity();
+					if (next > first && memoryBudget > 0 && batchMemory + memory > memoryBudget)
+						break;
+					batchMemory += memory;
+					next++;
+				}
+				nUpdatedProfiles += updateBatch(profiles.subList(first, next), first, osmFile, graphsLocation, executor, loadCntx);
+			}
+		} finally {
+			executor.shutdownNow();
+			loadCntx.releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed();
+			updateStatus = null;
+		}
+
+		return nUpdatedProfiles;
+	}
+
+	private int updateBatch(List<RoutingProfile> batch, int firstIndex, String osmFile, String graphsLocation, ExecutorService executor, RoutingProfileLoadContext loadCntx) throws InterruptedException {
+		List<RouteProfileConfiguration> configs = new ArrayList<>(batch.size());
+		StringBuilder names = new StringBuilder();
+		for (int i = 0; i < batch.size(); i++) {
+			RouteProfileConfiguration rpcNew = new RouteProfileConfiguration(batch.get(i).getConfiguration());
+			rpcNew.setGraphPath(Paths.get(graphsLocation, Integer.toString(firstIndex + i)).toString());
+			configs.add(rpcNew);
+			if (i > 0)
+				names.append("', '");
+			names.append(rpcNew.getProfiles());
+		}
+		updateStatus = "preparing profiles '" + names + "'";
+
+		// all participants have to join before the first of them starts reading
+		if (batch.size() > 1) {
+			SharedOSMImport sharedImport = new SharedOSMImport(new File(osmFile), RoutingServiceSettings.getOSMReaderThreads());
+			for (RouteProfileConfiguration rpcNew : configs)
+				loadCntx.setSharedOSMImport(rpcNew, sharedImport.join());
+		}
+
+		List<Future<Boolean>> futures = new ArrayList<>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			RoutingProfile profile = batch.get(i);
+			RouteProfileConfiguration rpcNew = configs.get(i);
+			futures.add(executor.submit(() -> updateProfile(profile, rpcNew, osmFile, loadCntx)));
+		}
+
+		int nUpdatedProfiles = 0;
+		for (Future<Boolean> future : futures) {
+			try {
+				if (future.get())
+					nUpdatedProfiles++;
+			} catch (ExecutionException ex) {
+				LOGGER.severe("Failed to update graph profile. Message:" + ex.getCause().getMessage());
+			}
+		}
+		return nUpdatedProfiles;
+	}
+
+	private static boolean updateProfile(RoutingProfile profile, RouteProfileConfiguration rpcNew, String osmFile, RoutingProfileLoadContext loadCntx) {
+		try {
+			FileUtility.makeDirectory(rpcNew.getGraphPath());
+			ORSGraphHopper gh;
+			try {
+				gh = RoutingProfile.initGraphHopper(osmFile, rpcNew, loadCntx);
+			} finally {
+				loadCntx.leaveSharedOSMImport(rpcNew);
+			}
+			profile.updateGH(gh);
+			return true;
+		} catch (Exception ex) {
+			LOGGER.severe("Failed to update graph profile. Message:" + ex.getMessage() + "; StackTrace: " +	StackTraceUtility.getStackTrace(ex));
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes the graphs of earlier updates which are not loaded by any of the profiles.
+	 */
+	private void deleteUnusedGraphs(File graphsDir) throws IOException {
+		if (!graphsDir.exists())
+			return;
+
+		Set<File> usedDirs = new HashSet<>();
+		for (RoutingProfile profile : routingProfilesCollection.getUniqueProfiles())
+			usedDirs.add(new File(profile.getGraphLocation()).getCanonicalFile());
+
+		File[] updateDirs = graphsDir.listFiles(File::isDirectory);
+		if (updateDirs == null)
+			return;
+		for (File updateDir : updateDirs) {
+			File[] profileDirs = updateDir.listFiles(File::isDirectory);
+			boolean used = false;
+			if (profileDirs != null) {
+				for (File profileDir : profileDirs) {
+					if (usedDirs.contains(profileDir.getCanonicalFile()))
+						used = true;
+					else
+						FileUtils.deleteDirectory(profileDir);
+				}
+			}
+			if (!used)
+				FileUtils.deleteDirectory(updateDir);
+		}
+	}
+
 	public void stop() {
 		if (timer != null) {
 			timer.cancel();
@@ -0,0 +1,316 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package org.heigit.ors.routing.algorithms;
+
+import java.util.PriorityQueue;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.ch.DownwardSearchEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.edgefilters.ch.UpwardSearchEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPState;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+
+/**
+ * RPHAST search like {@link RPHASTAlgorithm}, keeping the shortest path trees of all sources in a
+ * {@link MultiTreeSPState} instead of creating an object per settled node and tree.
+ *
+ * The returned state is pooled per thread, so it has to be released once its trees have been read.
+ *
+ * If the precomputed metrics of the shortcuts are set, the durations and distances of the trees are summed up
+ * during the search, so that they can be read from the state without unpacking the paths.
+ */
+public class RPHASTStateAlgorithm {
+	private final Graph graph;
+	private final Weighting weighting;
+	private final TraversalMode traversalMode;
+	private final EdgeExplorer outEdgeExplorer;
+	private EdgeExplorer searchExplorer;
+	private UpwardSearchEdgeFilter upwardEdgeFilter;
+	private DownwardSearchEdgeFilter downwardEdgeFilter;
+	private SubGraph targetGraph;
+	private MultiTreeSPState state;
+	private ShortcutMetricsStorage shortcutMetrics;
+	private Weighting timeWeighting;
+	private int maxVisitedNodes = Integer.MAX_VALUE;
+	private int visitedCountFrom;
+	private int visitedCountTo;
+
+	public RPHASTStateAlgorithm(Graph graph, Weighting weighting, TraversalMode traversalMode) {
+		this.graph = graph;
+		this.weighting = weighting;
+		this.traversalMode = traversalMode;
+
+		CHGraph chGraph = null;
+		if (graph instanceof CHGraph)
+			chGraph = (CHGraph) graph;
+		else if (graph instanceof QueryGraph) {
+			QueryGraph qGraph = (QueryGraph) graph;
+			chGraph = (CHGraph) qGraph.getMainGraph();
+		}
+
+		FlagEncoder encoder = weighting.getFlagEncoder();
+
+		upwardEdgeFilter = new UpwardSearchEdgeFilter(chGraph, encoder);
+		downwardEdgeFilter = new DownwardSearchEdgeFilter(chGraph, encoder);
+
+		outEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+	}
+
+	public void setMaxVisitedNodes(int numberOfNodes) {
+		maxVisitedNodes = numberOfNodes;
+	}
+
+	/**
+	 * Lets the searches carry durations and distances along with the weights. The durations of the base edges are
+	 * calculated with the given weighting, those of the shortcuts are taken from the storage.
+	 */
+	public void setShortcutMetrics(ShortcutMetricsStorage shortcutMetrics, Weighting timeWeighting) {
+		this.shortcutMetrics = shortcutMetrics;
+		this.timeWeighting = timeWeighting;
+	}
+
+	public int getVisitedNodes() {
+		return visitedCountFrom + visitedCountTo;
+	}
+
+	public void prepare(int[] targets) {
+		PriorityQueue<Integer> localPrioQueue = new PriorityQueue<>(100);
+
+		// Phase I: build shortest path tree from all target nodes to the
+		// highest node
+		targetGraph = new SubGraph(graph);
+
+		for (int nodeId : targets) {
+			if (nodeId >= 0) {
+				targetGraph.addEdge(nodeId, null, true);
+				localPrioQueue.add(nodeId);
+			}
+		}
+
+		while (!localPrioQueue.isEmpty()) {
+			int adjNode = localPrioQueue.poll();
+			EdgeIterator iter = outEdgeExplorer.setBaseNode(adjNode);
+			downwardEdgeFilter.setBaseNode(adjNode);
+
+			while (iter.next()) {
+				if (!downwardEdgeFilter.accept(iter))
+					continue;
+
+				if (targetGraph.addEdge(adjNode, iter, true))
+					localPrioQueue.add(iter.getAdjNode());
+			}
+		}
+	}
+
+	/**
+	 * Runs the upward search from all sources and the downward search into the target graph built by
+	 * {@link #prepare(int[])}. The weights of source i are stored in tree i of the returned state.
+	 */
+	public MultiTreeSPState calcPaths(int[] from) {
+		if (traversalMode.isEdgeBased())
+			throw new IllegalStateException("Edge-based behavior not supported");
+
+		state = MultiTreeSPState.acquire(from.length, shortcutMetrics != null);
+		try {
+			for (int i = 0; i < from.length; i++) {
+				if (from[i] == -1)
+					continue;
+
+				//If two queried points are on the same node, this case can occur
+				int slot = state.getSlot(from[i]);
+				if (slot == -1) {
+					slot = state.addNode(from[i]);
+					state.resetUpdate(slot, true);
+					state.setVisited(slot, true);
+				}
+				state.setWeight(slot, i, 0.0);
+				state.updateTotalWeight(slot);
+				state.push(slot);
+			}
+
+			searchExplorer = graph.createEdgeExplorer();
+
+			while (maxVisitedNodes >= getVisitedNodes() && !state.isHeapEmpty()) {
+				fillEdgesUpward(state.poll());
+				visitedCountFrom++;
+			}
+
+			int highestSlot = state.getSlot(upwardEdgeFilter.getHighestNode());
+			state.setVisited(highestSlot, true);
+			state.resetUpdate(highestSlot, true);
+			state.clearHeap();
+			state.push(highestSlot);
+
+			for (int i = 0; i < from.length; i++) {
+				if (from[i] == -1)
+					continue;
+				int slot = state.getSlot(from[i]);
+				state.setUpdate(slot, i, true);
+				state.push(slot);
+			}
+
+			searchExplorer = targetGraph.createExplorer();
+			while (!state.isHeapEmpty()) {
+				fillEdgesDownward(state.poll());
+				visitedCountTo++;
+			}
+		} catch (RuntimeException e) {
+			state.release();
+			throw e;
+		}
+
+		return state;
+	}
+
+	private void fillEdgesUpward(int slot) {
+		int baseNode = state.getNode(slot);
+		EdgeIterator iter = searchExplorer.setBaseNode(baseNode);
+
+		if (iter == null) // we reach one of the target nodes
+			return;
+
+		upwardEdgeFilter.setBaseNode(baseNode);
+		int numTrees = state.getNumTrees();
+
+		while (iter.next()) {
+			if (!upwardEdgeFilter.accept(iter))
+				continue;
+
+			upwardEdgeFilter.updateHighestNode(iter);
+
+			double edgeWeight = weighting.calcWeight(iter, false, 0);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			double edgeTime = 0.0;
+			double edgeDistance = 0.0;
+			if (state.hasMetrics()) {
+				edgeTime = calcEdgeTime(iter);
+				if (edgeTime < 0)
+					continue;
+				edgeDistance = calcEdgeDistance(iter);
+			}
+
+			int adjSlot = state.getSlot(iter.getAdjNode());
+			if (adjSlot == -1) {
+				adjSlot = state.addNode(iter.getAdjNode());
+				state.extendFrom(adjSlot, slot, iter.getEdge(), edgeWeight, edgeTime, edgeDistance, true);
+				state.push(adjSlot);
+			} else {
+				boolean addToQueue = false;
+
+				for (int i = 0; i < numTrees; ++i) {
+					double entryWeight = state.getWeight(slot, i);
+					if (entryWeight == Double.POSITIVE_INFINITY || !state.isUpdate(slot, i))
+						continue;
+
+					addToQueue |= relax(adjSlot, i, slot, iter.getEdge(), edgeWeight + entryWeight, edgeTime, edgeDistance);
+				}
+
+				if (addToQueue) {
+					state.updateTotalWeight(adjSlot);
+					state.push(adjSlot);
+				}
+			}
+		}
+
+		if (!targetGraph.containsNode(baseNode))
+			state.resetUpdate(slot, false);
+	}
+
+	private void fillEdgesDownward(int slot) {
+		EdgeIterator iter = searchExplorer.setBaseNode(state.getNode(slot));
+
+		if (iter == null)
+			return;
+
+		int numTrees = state.getNumTrees();
+
+		while (iter.next()) {
+			double edgeWeight = weighting.calcWeight(iter, false, 0);
+			if (Double.isInfinite(edgeWeight))
+				continue;
+
+			double edgeTime = 0.0;
+			double edgeDistance = 0.0;
+			if (state.hasMetrics()) {
+				edgeTime = calcEdgeTime(iter);
+				if (edgeTime < 0)
+					continue;
+				edgeDistance = calcEdgeDistance(iter);
+			}
+
+			int adjSlot = state.getSlot(iter.getAdjNode());
+			if (adjSlot == -1) {
+				adjSlot = state.addNode(iter.getAdjNode());
+				state.extendFrom(adjSlot, slot, iter.getEdge(), edgeWeight, edgeTime, edgeDistance, true);
+				state.setVisited(adjSlot, true);
+				state.push(adjSlot);
+			} else {
+				boolean addToQueue = false;
+
+				for (int i = 0; i < numTrees; ++i) {
+					double entryWeight = state.getWeight(slot, i);
+					if (entryWeight == Double.POSITIVE_INFINITY)
+						continue;
+
+					addToQueue |= relax(adjSlot, i, slot, iter.getEdge(), edgeWeight + entryWeight, edgeTime, edgeDistance);
+				}
+
+				state.updateTotalWeight(adjSlot);
+
+				// A node which has only been reached in the upward search is needed to access the lower level
+				// nodes of the target graph, even if its weights have not changed
+				if (!state.isVisited(adjSlot) || addToQueue) {
+					state.setVisited(adjSlot, true);
+					state.push(adjSlot);
+				}
+			}
+		}
+	}
+
+	private boolean relax(int adjSlot, int tree, int slot, int edge, double weight, double edgeTime, double edgeDistance) {
+		if (!state.hasMetrics())
+			return state.relax(adjSlot, tree, slot, edge, weight);
+		return state.relax(adjSlot, tree, slot, edge, weight, state.getTime(slot, tree) + edgeTime,
+				state.getDistance(slot, tree) + edgeDistance);
+	}
+
+	/**
+	 * The edge states of both searches are oriented in the direction of the search from the sources to the targets.
+	 *
+	 * @return the duration in seconds, or a negative value for a shortcut which cannot be traversed in this direction
+	 */
+	private double calcEdgeTime(EdgeIteratorState edge) {
+		if (shortcutMetrics.isShortcut(edge.getEdge()))
+			return shortcutMetrics.getTime(edge.getEdge(), edge.getBaseNode(), edge.getAdjNode());
+		return timeWeighting.calcMillis(edge, false, EdgeIterator.NO_EDGE) / 1000.0;
+	}
+
+	private double calcEdgeDistance(EdgeIteratorState edge) {
+		if (shortcutMetrics.isShortcut(edge.getEdge()))
+			return shortcutMetrics.getDistance(edge.getEdge());
+		return edge.getDistance();
+	}
+}
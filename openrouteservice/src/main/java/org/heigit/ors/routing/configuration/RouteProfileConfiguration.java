@@ -35,6 +35,7 @@ public class RouteProfileConfiguration {
 	private Double maximumDistanceAlternativeRoutes = 0.0;
 	private Double maximumDistanceRoundTripRoutes = 0.0;
 	private Integer maximumWayPoints = 0;
+	private int segmentThreads = 1;
 	private boolean instructions = true;
 	private boolean optimize = false;
 	
@@ -48,6 +49,8 @@ public class RouteProfileConfiguration {
 	private String elevationProvider = null;
 	private String elevationCachePath = null;
 	private String elevationDataAccess = "MMAP";
+	private String graphDataAccess = "RAM_STORE";
+	private int graphWarmupThreads = 0;
 	private boolean elevationCacheClear = true;
 	private boolean elevationSmoothing = true;
 	private boolean interpolateBridgesAndTunnels = true;
@@ -76,6 +79,7 @@ public class RouteProfileConfiguration {
 		maximumDistanceDynamicWeights = rpc.maximumDistanceDynamicWeights;
 		maximumDistanceAvoidAreas = rpc.maximumDistanceAvoidAreas;
 		maximumWayPoints = rpc.maximumWayPoints;
+		segmentThreads = rpc.segmentThreads;
 		optimize = rpc.optimize;
 		instructions = rpc.instructions;
 
@@ -92,6 +96,8 @@ public class RouteProfileConfiguration {
 		elevationCacheClear = rpc.elevationCacheClear;
 		elevationProvider = rpc.elevationProvider;
 		elevationDataAccess = rpc.elevationDataAccess;
+		graphDataAccess = rpc.graphDataAccess;
+		graphWarmupThreads = rpc.graphWarmupThreads;
 		elevationSmoothing = rpc.elevationSmoothing;
 		interpolateBridgesAndTunnels = rpc.interpolateBridgesAndTunnels;
 
@@ -243,6 +249,16 @@ public class RouteProfileConfiguration {
 	{
 		return maximumWayPoints;
 	}
+
+	public void setSegmentThreads(int value)
+	{
+		segmentThreads = value;
+	}
+
+	public int getSegmentThreads()
+	{
+		return segmentThreads;
+	}
 	
 	public void setEncoderFlagsSize(Integer value)
 	{
@@ -304,6 +320,26 @@ public class RouteProfileConfiguration {
 		return elevationDataAccess;
 	}
 	
+	public void setGraphDataAccess(String value)
+	{
+		graphDataAccess = value;
+	}
+
+	public String getGraphDataAccess()
+	{
+		return graphDataAccess;
+	}
+
+	public void setGraphWarmupThreads(int value)
+	{
+		graphWarmupThreads = value;
+	}
+
+	public int getGraphWarmupThreads()
+	{
+		return graphWarmupThreads;
+	}
+
 	public void setElevationCacheClear(Boolean value)
 	{
 		elevationCacheClear = value;
@@ -20,6 +20,9 @@ public class RouteUpdateConfiguration {
 	private String dataSource;
 	private String time = "7, 12:00:00, 60000";
 	private String workingDirectory;
+	private int threads = 1;
+	/// Memory in MB which the profiles built concurrently may take up, 0 for no limit
+	private int memoryBudget = 0;
 
 	public String getExtent() {
 		return extent;
@@ -60,4 +63,20 @@ public class RouteUpdateConfiguration {
 	public void setWorkingDirectory(String workingDirectory) {
 		this.workingDirectory = workingDirectory;
 	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public void setMemoryBudget(int memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
 }
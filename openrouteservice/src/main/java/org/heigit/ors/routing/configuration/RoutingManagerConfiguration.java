@@ -210,6 +210,15 @@ public class RoutingManagerConfiguration  {
 					case "maximum_waypoints":
 						profile.setMaximumWayPoints(Integer.parseInt(paramItem.getValue().toString()));
 						break;
+					case "segment_threads":
+						profile.setSegmentThreads(Integer.parseInt(paramItem.getValue().toString()));
+						break;
+					case "graph_data_access":
+						profile.setGraphDataAccess(StringUtility.trimQuotes(paramItem.getValue().toString()));
+						break;
+					case "graph_warmup_threads":
+						profile.setGraphWarmupThreads(Integer.parseInt(paramItem.getValue().toString()));
+						break;
 					case "extent":
 						@SuppressWarnings("unchecked") 
 						List<Double> bbox = (List<Double>)paramItem.getValue();
@@ -245,6 +254,12 @@ public class RoutingManagerConfiguration  {
 		ruc.setDataSource(RoutingServiceSettings.getParameter("update.source"));
 		ruc.setExtent(RoutingServiceSettings.getParameter("update.extent"));
 		ruc.setWorkingDirectory(RoutingServiceSettings.getParameter("update.working_directory"));
+		String value = RoutingServiceSettings.getParameter("update.threads");
+		if (!Helper.isEmpty(value))
+			ruc.setThreads(Integer.parseInt(value));
+		value = RoutingServiceSettings.getParameter("update.memory_budget");
+		if (!Helper.isEmpty(value))
+			ruc.setMemoryBudget(Integer.parseInt(value));
 
 		gc.setUpdateConfig(ruc);
 		return gc;
@@ -13,6 +13,7 @@
  */
 package org.heigit.ors.routing.graphhopper.extensions;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EdgeFilterFactory;
@@ -46,7 +47,10 @@ public class ORSEdgeFilterFactory implements EdgeFilterFactory {
 
             /* Avoid areas */
             if (params.hasObj("avoid_areas")) {
-                edgeFilters.add(new AvoidAreasEdgeFilter((Polygon[]) params.getObj("avoid_areas")));
+                if (params.hasObj("avoid_areas_blocked_edges") && gs != null)
+                    edgeFilters.add(new AvoidAreasEdgeFilter((Polygon[]) params.getObj("avoid_areas"), (IntHashSet) params.getObj("avoid_areas_blocked_edges"), gs.getAllEdges().length()));
+                else
+                    edgeFilters.add(new AvoidAreasEdgeFilter((Polygon[]) params.getObj("avoid_areas")));
             }
     
             /* Heavy vehicle filter */
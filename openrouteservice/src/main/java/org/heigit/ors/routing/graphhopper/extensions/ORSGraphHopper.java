@@ -63,6 +63,8 @@ import org.heigit.ors.routing.graphhopper.extensions.edgefilters.core.*;
 import org.heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
 import org.heigit.ors.routing.graphhopper.extensions.storages.BordersGraphStorage;
 import org.heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+import org.heigit.ors.routing.graphhopper.extensions.storages.TrafficEdgeIndex;
 import org.heigit.ors.routing.graphhopper.extensions.util.ORSPMap;
 import org.heigit.ors.routing.graphhopper.extensions.weighting.MaximumSpeedWeighting;
 import org.heigit.ors.routing.graphhopper.extensions.util.ORSParameters;
@@ -85,8 +87,8 @@ public class ORSGraphHopper extends GraphHopper {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ORSGraphHopper.class);
 
 	private GraphProcessContext processContext;
-	private HashMap<Long, ArrayList<Integer>> osmId2EdgeIds; // one osm id can correspond to multiple edges
-	private HashMap<Integer, Long> tmcEdges;
+	private SharedOSMImport.Participant sharedImport;
+	private TrafficEdgeIndex trafficEdgeIndex;
 	private Eccentricity eccentricity;
 
 	private int minNetworkSize = 200;
@@ -95,6 +97,7 @@ public class ORSGraphHopper extends GraphHopper {
 	private final CoreAlgoFactoryDecorator coreFactoryDecorator =  new CoreAlgoFactoryDecorator();
 	private final CoreLMAlgoFactoryDecorator coreLMFactoryDecorator = new CoreLMAlgoFactoryDecorator();
 	private final FastIsochroneFactory fastIsochroneFactory = new FastIsochroneFactory();
+	private final Map<CHProfile, ShortcutMetricsStorage> shortcutMetrics = new HashMap<>();
 
 	private double maximumSpeedLowerBound;
 
@@ -146,53 +149,64 @@ public class ORSGraphHopper extends GraphHopper {
 		super.cleanUp();
 	}
 
+	/**
+	 * Makes the import read the OSM file through the given shared import, which decodes it once for several profiles.
+	 */
+	public void setSharedOSMImport(SharedOSMImport.Participant sharedImport) {
+		this.sharedImport = sharedImport;
+	}
+
 	@Override
 	protected DataReader createReader(GraphHopperStorage tmpGraph) {
-		return initDataReader(new ORSOSMReader(tmpGraph, processContext));
+		ORSOSMReader reader = new ORSOSMReader(tmpGraph, processContext);
+		reader.setSharedImport(sharedImport);
+		return initDataReader(reader);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public GraphHopper importOrLoad() {
 		GraphHopper gh = super.importOrLoad();
 
-		if ((tmcEdges != null) && (osmId2EdgeIds !=null)) {
-			java.nio.file.Path path = Paths.get(gh.getGraphHopperLocation(), "edges_ors_traffic");
-
-			if ((tmcEdges.size() == 0) || (osmId2EdgeIds.size()==0)) {
-				// try to load TMC edges from file.
-
-				File file = path.toFile();
-				if (file.exists()) {
-					try (FileInputStream fis = new FileInputStream(path.toString());
-						 ObjectInputStream ois = new ObjectInputStream(fis)) {
-						tmcEdges = (HashMap<Integer, Long>)ois.readObject();
-						osmId2EdgeIds = (HashMap<Long, ArrayList<Integer>>)ois.readObject();
-						LOGGER.info("Serialized HashMap data is saved in trafficEdges");
-					} catch (IOException ioe) {
-						LOGGER.error(Arrays.toString(ioe.getStackTrace()));
-					}
-					catch(ClassNotFoundException c) {
-						LOGGER.error("Class not found");
-						LOGGER.error(Arrays.toString(c.getStackTrace()));
-					}
-				}
-			} else {
-				// save TMC edges if needed.
-				try (FileOutputStream fos = new FileOutputStream(path.toString());
-					 ObjectOutputStream oos = new ObjectOutputStream(fos)){
-					oos.writeObject(tmcEdges);
-					oos.writeObject(osmId2EdgeIds);
-					LOGGER.info("Serialized HashMap data is saved in trafficEdges");
-				} catch (IOException ioe) {
-					LOGGER.error(Arrays.toString(ioe.getStackTrace()));
-				}
-			}
-		}
+		TrafficEdgeIndex index = new TrafficEdgeIndex(gh.getGraphHopperStorage().getDirectory());
+		File legacyFile = Paths.get(gh.getGraphHopperLocation(), "edges_ors_traffic").toFile();
+		if (index.loadExisting())
+			trafficEdgeIndex = index;
+		else if (legacyFile.exists())
+			trafficEdgeIndex = convertTrafficEdges(legacyFile, index);
 
 		return gh;
 	}
 
+	/**
+	 * Converts the traffic edge maps which have been serialized by earlier versions into the binary index.
+	 */
+	@SuppressWarnings("unchecked")
+	private TrafficEdgeIndex convertTrafficEdges(File file, TrafficEdgeIndex index) {
+		try (FileInputStream fis = new FileInputStream(file);
+			 ObjectInputStream ois = new ObjectInputStream(fis)) {
+			HashMap<Integer, Long> tmcEdges = (HashMap<Integer, Long>) ois.readObject();
+			HashMap<Long, ArrayList<Integer>> osmId2EdgeIds = (HashMap<Long, ArrayList<Integer>>) ois.readObject();
+			index.build(tmcEdges, osmId2EdgeIds).flush();
+		} catch (IOException | ClassNotFoundException ex) {
+			LOGGER.error("Unable to convert the traffic edges in '" + file + "'.", ex);
+			return null;
+		}
+
+		if (!file.delete())
+			LOGGER.warn("Unable to delete '" + file + "'.");
+		LOGGER.info("Converted the traffic edges into a binary index");
+		return index;
+	}
+
+	@Override
+	public void close() {
+		if (trafficEdgeIndex != null)
+			trafficEdgeIndex.close();
+		for (ShortcutMetricsStorage storage : shortcutMetrics.values())
+			storage.close();
+		super.close();
+	}
+
 	@Override
 	public List<Path> calcPaths(GHRequest request, GHResponse ghRsp) {
 		if (getGraphHopperStorage() == null || !isFullyLoaded())
@@ -590,12 +604,11 @@ public class ORSGraphHopper extends GraphHopper {
     }
 
 
-    public HashMap<Integer, Long> getTmcGraphEdges() {
-        return tmcEdges;
-    }
-
-    public HashMap<Long, ArrayList<Integer>> getOsmId2EdgeIds() {
-        return osmId2EdgeIds;
+    /**
+     * @return the index resolving OSM ids and TMC location codes of traffic data to edges, or null if the graph has none
+     */
+    public TrafficEdgeIndex getTrafficEdgeIndex() {
+        return trafficEdgeIndex;
     }
 
 	/**
@@ -658,6 +671,8 @@ public class ORSGraphHopper extends GraphHopper {
 		if (!isCorePrepared())
 			prepareCore();
 
+		loadOrPrepareShortcutMetrics();
+
 		//Create the landmarks in the core
 		if (coreLMFactoryDecorator.isEnabled())
 			coreLMFactoryDecorator.createPreparations(gs, super.getLocationIndex());
@@ -747,6 +762,40 @@ public class ORSGraphHopper extends GraphHopper {
 				|| "true".equals(getGraphHopperStorage().getProperties().get("prepare.done"));
 	}
 
+	/**
+	 * Precomputes the distances and durations of the shortcuts of all CH and core profiles, or loads them if they
+	 * have been stored with the graph before.
+	 */
+	protected void loadOrPrepareShortcutMetrics() {
+		GraphHopperStorage gs = getGraphHopperStorage();
+		if (getCHFactoryDecorator().isEnabled()) {
+			for (CHProfile chProfile : getCHFactoryDecorator().getCHProfiles())
+				loadOrPrepareShortcutMetrics(gs, chProfile, "ch");
+		}
+		if (coreFactoryDecorator.isEnabled()) {
+			for (CHProfile chProfile : coreFactoryDecorator.getCHProfiles())
+				loadOrPrepareShortcutMetrics(gs, chProfile, "core");
+		}
+	}
+
+	private void loadOrPrepareShortcutMetrics(GraphHopperStorage gs, CHProfile chProfile, String prefix) {
+		ShortcutMetricsStorage storage = new ShortcutMetricsStorage(gs.getDirectory(), gs.getCHGraph(chProfile), prefix);
+		if (!storage.loadExisting()) {
+			StopWatch sw = new StopWatch().start();
+			storage.build();
+			storage.flush();
+			LOGGER.info(String.format("Calculated the metrics of the %s shortcuts of %s in %.1f s", prefix, chProfile, sw.stop().getSeconds()));
+		}
+		shortcutMetrics.put(chProfile, storage);
+	}
+
+	/**
+	 * @return the distances and durations of the shortcuts of the CH or core profile, or null if they are not available
+	 */
+	public ShortcutMetricsStorage getShortcutMetrics(CHProfile chProfile) {
+		return shortcutMetrics.get(chProfile);
+	}
+
 	/**
 	 * Enables or disables core calculation.
 	 */
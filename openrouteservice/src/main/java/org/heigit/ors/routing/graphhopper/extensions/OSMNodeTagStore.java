@@ -0,0 +1,144 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.graphhopper.reader.ReaderNode;
+
+import java.util.*;
+
+/**
+ * Stores the tags of OSM nodes which are needed when processing the ways. Keys and values are interned into integer
+ * codes, and the codes of all nodes are kept in primitive arrays ordered by OSM id, so that no objects are created per
+ * stored node. Nodes are usually read in the order of their ids; otherwise the arrays are sorted on the first lookup.
+ */
+public class OSMNodeTagStore {
+    private static final int VALUE_BITS = 24;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+    private static final int MAX_KEYS = 1 << (32 - VALUE_BITS);
+
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, Integer> keyCodes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> valueCodes = new HashMap<>();
+
+    private LongArrayList ids = new LongArrayList();
+    // the tags of the node at index i are stored from offsets[i] to offsets[i + 1]
+    private IntArrayList offsets = new IntArrayList();
+    private IntArrayList tags = new IntArrayList();
+    private boolean sorted = true;
+
+    public OSMNodeTagStore() {
+        offsets.add(0);
+    }
+
+    /**
+     * Stores the tags of the node whose keys are contained in the given set.
+     *
+     * @return true if the node has any of these tags
+     */
+    public boolean add(ReaderNode node, Set<String> tagKeys) {
+        int start = tags.size();
+        for (String key : node.getTags().keySet()) {
+            if (tagKeys.contains(key)) {
+                String value = node.getTag(key);
+                tags.add(encode(key, value));
+            }
+        }
+        if (tags.size() == start)
+            return false;
+
+        long id = node.getId();
+        if (!ids.isEmpty() && id <= ids.get(ids.size() - 1))
+            sorted = false;
+        ids.add(id);
+        offsets.add(tags.size());
+        return true;
+    }
+
+    /**
+     * @return the tags stored for the node, or null if there are none
+     */
+    public HashMap<String, String> get(long osmId) {
+        int index = indexOf(osmId);
+        if (index < 0)
+            return null;
+
+        int end = offsets.get(index + 1);
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = offsets.get(index); i < end; i++) {
+            int code = tags.get(i);
+            result.put(keys.get(code >>> VALUE_BITS), values.get(code & VALUE_MASK));
+        }
+        return result;
+    }
+
+    public boolean contains(long osmId) {
+        return indexOf(osmId) >= 0;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private int encode(String key, String value) {
+        Integer keyCode = keyCodes.get(key);
+        if (keyCode == null) {
+            if (keys.size() == MAX_KEYS)
+                throw new IllegalStateException("Cannot store more than " + MAX_KEYS + " different node tag keys.");
+            keyCode = keys.size();
+            keys.add(key);
+            keyCodes.put(key, keyCode);
+        }
+        Integer valueCode = valueCodes.get(value);
+        if (valueCode == null) {
+            if (values.size() > VALUE_MASK)
+                throw new IllegalStateException("Cannot store more than " + (VALUE_MASK + 1) + " different node tag values.");
+            valueCode = values.size();
+            values.add(value);
+            valueCodes.put(value, valueCode);
+        }
+        return (keyCode << VALUE_BITS) | valueCode;
+    }
+
+    private int indexOf(long osmId) {
+        if (!sorted)
+            sort();
+        int index = Arrays.binarySearch(ids.buffer, 0, ids.size(), osmId);
+        return index < 0 ? -1 : index;
+    }
+
+    private void sort() {
+        LongArrayList unsortedIds = ids;
+        int[] order = IndirectSort.mergesort(0, unsortedIds.size(), (a, b) -> Long.compare(unsortedIds.get(a), unsortedIds.get(b)));
+
+        LongArrayList sortedIds = new LongArrayList(unsortedIds.size());
+        IntArrayList sortedOffsets = new IntArrayList(offsets.size());
+        IntArrayList sortedTags = new IntArrayList(tags.size());
+        sortedOffsets.add(0);
+        for (int index : order) {
+            sortedIds.add(unsortedIds.get(index));
+            for (int i = offsets.get(index); i < offsets.get(index + 1); i++)
+                sortedTags.add(tags.get(i));
+            sortedOffsets.add(sortedTags.size());
+        }
+
+        ids = sortedIds;
+        offsets = sortedOffsets;
+        tags = sortedTags;
+        sorted = true;
+    }
+}
@@ -0,0 +1,273 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.reader.ReaderRelation;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.reader.osm.OSMFileHeader;
+import com.graphhopper.reader.osm.OSMInput;
+import com.graphhopper.reader.osm.OSMInputFile;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes an OSM file once for several {@link ORSOSMReader}s which import it at the same time. Each reading pass of
+ * the participants is served by a single decoding of the file, whose elements are handed to all participants in
+ * chunks. Every participant receives its own copies of the elements, as the readers modify their tags.
+ *
+ * The participants have to read concurrently: a pass is started as soon as every participant which has not left
+ * has opened it, and it proceeds at the speed of the slowest participant.
+ */
+public class SharedOSMImport {
+    private static final Logger LOGGER = Logger.getLogger(SharedOSMImport.class.getName());
+    private static final int CHUNK_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 32;
+    private static final List<ReaderElement> END_OF_PASS = Collections.unmodifiableList(new ArrayList<>(0));
+
+    private final File osmFile;
+    private final int workerThreads;
+    private final List<Participant> participants = new ArrayList<>();
+    private int startedPasses = 0;
+
+    public SharedOSMImport(File osmFile, int workerThreads) {
+        this.osmFile = osmFile;
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Registers a new participant. All participants have to join before the first pass is opened.
+     */
+    public synchronized Participant join() {
+        if (startedPasses > 0)
+            throw new IllegalStateException("Cannot join a shared OSM import which has already been started.");
+        Participant participant = new Participant();
+        participants.add(participant);
+        return participant;
+    }
+
+    private synchronized PassInput open(Participant participant) {
+        if (participant.left)
+            throw new IllegalStateException("Cannot open the OSM file after leaving the shared import.");
+        participant.openedPasses++;
+        participant.input = new PassInput();
+        startPassIfReady();
+        return participant.input;
+    }
+
+    private synchronized void leave(Participant participant) {
+        if (participant.left)
+            return;
+        participant.left = true;
+        if (participant.input != null)
+            participant.input.close();
+        startPassIfReady();
+    }
+
+    private void startPassIfReady() {
+        List<PassInput> inputs = new ArrayList<>(participants.size());
+        for (Participant participant : participants) {
+            if (participant.left)
+                continue;
+            if (participant.openedPasses <= startedPasses)
+                return;
+            inputs.add(participant.input);
+        }
+        if (inputs.isEmpty())
+            return;
+
+        startedPasses++;
+        Thread thread = new Thread(() -> decode(inputs), "ORS-osm-import-" + startedPasses);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void decode(List<PassInput> inputs) {
+        long startTime = System.currentTimeMillis();
+        long elements = 0;
+        boolean complete = false;
+        Exception error = null;
+        try (OSMInput in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open()) {
+            List<ReaderElement> chunk = new ArrayList<>(CHUNK_SIZE);
+            ReaderElement item;
+            while ((item = in.getNext()) != null) {
+                chunk.add(item);
+                if (chunk.size() == CHUNK_SIZE) {
+                    if (!publish(inputs, chunk))
+                        return;
+                    elements += chunk.size();
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            elements += chunk.size();
+            if (!chunk.isEmpty() && !publish(inputs, chunk))
+                return;
+            complete = true;
+            LOGGER.info(String.format("Shared %d OSM elements of '%s' with %d readers in %d ms.", elements, osmFile, inputs.size(), System.currentTimeMillis() - startTime));
+        } catch (Exception ex) {
+            LOGGER.error("Failed to read OSM file '" + osmFile + "'.", ex);
+            error = ex;
+        } finally {
+            // the readers which are still open must not take a stopped pass for a complete one
+            if (!complete && error == null)
+                error = new IllegalStateException("The pass over the OSM file has been stopped.");
+            if (error != null) {
+                for (PassInput input : inputs)
+                    input.error = error;
+            }
+            endPass(inputs);
+        }
+    }
+
+    /**
+     * @return false if all inputs have been closed, so that the pass can be stopped
+     */
+    private boolean publish(List<PassInput> inputs, List<ReaderElement> chunk) {
+        boolean open = false;
+        for (PassInput input : inputs) {
+            try {
+                while (!input.closed) {
+                    if (input.queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                        open = true;
+                        break;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Hands the end of the pass to all inputs which are still open. An interrupt is only restored afterwards, as the
+     * readers would otherwise wait for the end of the pass forever.
+     */
+    private void endPass(List<PassInput> inputs) {
+        boolean interrupted = Thread.interrupted();
+        for (PassInput input : inputs) {
+            while (!input.closed) {
+                try {
+                    if (input.queue.offer(END_OF_PASS, 100, TimeUnit.MILLISECONDS))
+                        break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static ReaderElement copy(ReaderElement item) {
+        ReaderElement copy;
+        switch (item.getType()) {
+            case ReaderElement.NODE:
+                ReaderNode node = (ReaderNode) item;
+                copy = new ReaderNode(node.getId(), node.getLat(), node.getLon());
+                break;
+            case ReaderElement.WAY:
+                ReaderWay way = new ReaderWay(item.getId());
+                way.getNodes().addAll(((ReaderWay) item).getNodes());
+                copy = way;
+                break;
+            case ReaderElement.RELATION:
+                ReaderRelation relation = new ReaderRelation(item.getId());
+                for (ReaderRelation.Member member : ((ReaderRelation) item).getMembers())
+                    relation.add(new ReaderRelation.Member(member.getType(), member.getRef(), member.getRole()));
+                copy = relation;
+                break;
+            case ReaderElement.FILEHEADER:
+                copy = new OSMFileHeader();
+                break;
+            default:
+                return item;
+        }
+        for (Map.Entry<String, Object> tag : item.getTags().entrySet())
+            copy.setTag(tag.getKey(), tag.getValue());
+        return copy;
+    }
+
+    /**
+     * A reader taking part in the shared import. It has to leave the import when it is done or has failed, so that
+     * the other participants do not wait for it.
+     */
+    public class Participant {
+        private int openedPasses = 0;
+        private boolean left = false;
+        private PassInput input;
+
+        private Participant() {
+        }
+
+        /**
+         * Opens the next pass over the OSM file.
+         */
+        public OSMInput openInput() {
+            return open(this);
+        }
+
+        public void leave() {
+            SharedOSMImport.this.leave(this);
+        }
+    }
+
+    private static class PassInput implements OSMInput {
+        private final BlockingQueue<List<ReaderElement>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean closed = false;
+        private volatile Exception error;
+        private List<ReaderElement> chunk = Collections.emptyList();
+        private int index = 0;
+
+        @Override
+        public ReaderElement getNext() {
+            while (index >= chunk.size()) {
+                if (chunk == END_OF_PASS) {
+                    if (error != null)
+                        throw new IllegalStateException("Failed to read the shared OSM file.", error);
+                    return null;
+                }
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Thread was interrupted", ex);
+                }
+                index = 0;
+            }
+            return copy(chunk.get(index++));
+        }
+
+        @Override
+        public int getUnprocessedElements() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+}
@@ -23,7 +23,6 @@ import com.graphhopper.routing.lm.LandmarkSuggestion;
 import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.routing.weighting.AbstractWeighting;
 import com.graphhopper.routing.weighting.Weighting;
-import com.graphhopper.storage.CHGraphImpl;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.StorableProperties;
@@ -68,6 +67,7 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
     private boolean disablingAllowed = true;
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
+    private int landmarkThreads = 1;
     private ExecutorService threadPool;
     private boolean logDetails = false;
     private CoreLMOptions coreLMOptions = new CoreLMOptions();
@@ -79,6 +79,7 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
     @Override
     public void init(CmdArgs args) {
         setPreparationThreads(args.getInt(CoreLandmark.PREPARE + "threads", getPreparationThreads()));
+        setLandmarkThreads(args.getInt(CoreLandmark.LANDMARK_THREADS, getLandmarkThreads()));
 
         landmarkCount = args.getInt(CoreLandmark.COUNT, landmarkCount);
         activeLandmarkCount = args.getInt(CoreLandmark.ACTIVE_COUNT, Math.min(4, landmarkCount));
@@ -147,6 +148,18 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getLandmarkThreads() {
+        return landmarkThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to calculate the weights of the landmarks within one preparation.
+     * Default is 1. Every thread holds the search trees of one core exploration.
+     */
+    public void setLandmarkThreads(int landmarkThreads) {
+        this.landmarkThreads = landmarkThreads;
+    }
+
     /**
      *
      *
@@ -301,7 +314,7 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
 
         for (Weighting weighting : getWeightings()) {
 
-            Map<Integer, Integer> coreNodeIdMap = createCoreNodeIdMap(ghStorage, weighting);
+            CoreNodeIdMap coreNodeIdMap = createCoreNodeIdMap(ghStorage, weighting);
 
             for (LMEdgeFilterSequence edgeFilterSequence : coreLMOptions.getFilters()) {
                 Double maximumWeight = maximumWeights.get(weighting.getName());
@@ -311,7 +324,8 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
 
                 PrepareCoreLandmarks tmpPrepareLM = new PrepareCoreLandmarks(ghStorage.getDirectory(), ghStorage, coreNodeIdMap, weighting, edgeFilterSequence,
                         landmarkCount, activeLandmarkCount).setLandmarkSuggestions(lmSuggestions)
-                        .setMaximumWeight(maximumWeight).setLogDetails(logDetails);
+                        .setMaximumWeight(maximumWeight).setLogDetails(logDetails)
+                        .setLandmarkThreads(landmarkThreads);
                 if (minNodes > 1)
                     tmpPrepareLM.setMinimumNodes(minNodes);
                 preparations.add(tmpPrepareLM);
@@ -321,20 +335,14 @@ public class CoreLMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecora
 
     /**
      * This method creates a mapping of CoreNode ids to integers from 0 to numCoreNodes to save space.
-     * Otherwise we would have to store a lot of empty info
+     * Otherwise we would have to store a lot of empty info. The mapping is loaded if it has been stored with the graph
+     * before, so that it is not rebuilt at every startup.
      */
-
-    public Map<Integer, Integer> createCoreNodeIdMap(GraphHopperStorage graph, Weighting weighting) {
-        CHGraphImpl core = graph.getCoreGraph(weighting);
-        HashMap<Integer, Integer> coreNodeIdMap = new HashMap<>();
-        int maxNode = graph.getNodes();
-        int coreNodeLevel = maxNode + 1;
-        int index = 0;
-        for (int i = 0; i < maxNode; i++){
-            if (core.getLevel(i) < coreNodeLevel)
-                continue;
-            coreNodeIdMap.put(i, index);
-            index++;
+    public CoreNodeIdMap createCoreNodeIdMap(GraphHopperStorage graph, Weighting weighting) {
+        CoreNodeIdMap coreNodeIdMap = new CoreNodeIdMap(graph.getDirectory(), graph.getCoreGraph(weighting), weighting);
+        if (!coreNodeIdMap.loadExisting()) {
+            coreNodeIdMap.build();
+            coreNodeIdMap.flush();
         }
         return coreNodeIdMap;
     }
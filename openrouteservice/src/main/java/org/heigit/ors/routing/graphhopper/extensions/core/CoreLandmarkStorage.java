@@ -41,6 +41,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -81,16 +85,17 @@ public class CoreLandmarkStorage implements Storable<LandmarkStorage>{
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private SpatialRuleLookup ruleLookup;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
     private LMEdgeFilterSequence landmarksFilter;
     private int count = 0;
 
-    private Map<Integer, Integer> coreNodeIdMap;
+    private CoreNodeIdMap coreNodeIdMap;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
     static final long PRECISION = 1 << 16;
 
-    public CoreLandmarkStorage(Directory dir, GraphHopperStorage graph, Map<Integer, Integer> coreNodeIdMap, final Weighting weighting, LMEdgeFilterSequence landmarksFilter, int landmarks) {
+    public CoreLandmarkStorage(Directory dir, GraphHopperStorage graph, CoreNodeIdMap coreNodeIdMap, final Weighting weighting, LMEdgeFilterSequence landmarksFilter, int landmarks) {
         this.graph = graph;
         this.coreNodeIdMap = coreNodeIdMap;
         this.core = graph.getCoreGraph(weighting);
@@ -249,21 +254,29 @@ public class CoreLandmarkStorage implements Storable<LandmarkStorage>{
             LOGGER.info(String.format("Calculated %d subnetworks via tarjan in %ss, %s", graphComponents.size(), sw.stop().getSeconds(), Helper.getMemInfo()));
         CHEdgeExplorer tmpExplorer = this.core.createEdgeExplorer(new CoreAndRequireBothDirectionsEdgeFilter(encoder));
 
+        // the threads calculating the landmark weights are shared by all subnetworks of this preparation
+        int nThreads = Math.min(landmarkThreads, landmarks - 1);
+        ExecutorService threadPool = nThreads > 1 ? Executors.newFixedThreadPool(nThreads) : null;
         int nodes = 0;
-        for (IntArrayList subnetworkIds : graphComponents) {
-            nodes += subnetworkIds.size();
-            if (subnetworkIds.size() < minimumNodes)
-                continue;
-
-            int index = subnetworkIds.size() - 1;
-            // ensure start node is reachable from both sides and no subnetwork is associated
-            for (; index >= 0; index--) {
-                int nextStartNode = subnetworkIds.get(index);
-                if (subnetworks[coreNodeIdMap.get(nextStartNode)] == UNSET_SUBNETWORK
-                    && GHUtility.count(tmpExplorer.setBaseNode(nextStartNode)) > 0
-                    && createLandmarksForSubnetwork(nextStartNode, subnetworks, blockedEdges))
-                    break;
+        try {
+            for (IntArrayList subnetworkIds : graphComponents) {
+                nodes += subnetworkIds.size();
+                if (subnetworkIds.size() < minimumNodes)
+                    continue;
+
+                int index = subnetworkIds.size() - 1;
+                // ensure start node is reachable from both sides and no subnetwork is associated
+                for (; index >= 0; index--) {
+                    int nextStartNode = subnetworkIds.get(index);
+                    if (subnetworks[coreNodeIdMap.get(nextStartNode)] == UNSET_SUBNETWORK
+                        && GHUtility.count(tmpExplorer.setBaseNode(nextStartNode)) > 0
+                        && createLandmarksForSubnetwork(nextStartNode, subnetworks, blockedEdges, threadPool))
+                        break;
+                }
             }
+        } finally {
+            if (threadPool != null)
+                threadPool.shutdownNow();
         }
 
         int subnetworkCount = landmarkIDs.size();
@@ -304,9 +317,10 @@ public class CoreLandmarkStorage implements Storable<LandmarkStorage>{
     /**
      * This method creates landmarks for the specified subnetwork (integer list)
      *
+     * @param threadPool the threads calculating the landmark weights, or null to calculate them in the calling thread
      * @return landmark mapping
      */
-    protected boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, IntHashSet blockedEdges) {
+    protected boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, IntHashSet blockedEdges, ExecutorService threadPool) {
         final int subnetworkId = landmarkIDs.size();
         int[] tmpLandmarkNodeIds = new int[landmarks];
         int logOffset = Math.max(1, tmpLandmarkNodeIds.length / 2);
@@ -382,43 +396,95 @@ public class CoreLandmarkStorage implements Storable<LandmarkStorage>{
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted");
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            CoreLandmarkExplorer explorer = new CoreLandmarkExplorer(graph, this, lmWeighting, traversalMode);
-            explorer.initFrom(lmNodeId, 0);
-            EdgeFilterSequence coreEdgeFilter = new EdgeFilterSequence();
-            coreEdgeFilter.add(new CoreAndBlockedEdgesFilter(encoder, false, true, blockedEdges));
-            coreEdgeFilter.add(landmarksFilter);
-            explorer.setFilter(coreEdgeFilter);
-            explorer.runAlgo(true, coreEdgeFilter);
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, lmRowLength, fromOffset);
+        // the explorations of the first landmark also set the subnetwork ids and can reject the subnetwork, all
+        // others only write into their own slots of the landmark rows and are run concurrently
+        if (!calcLandmarkWeights(0, tmpLandmarkNodeIds[0], blockedEdges, subnetworks, subnetworkId))
+            return false;
+        calcRemainingLandmarkWeights(tmpLandmarkNodeIds, blockedEdges, threadPool);
 
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0 && explorer.setSubnetworks(subnetworks, subnetworkId))
-                return false;
+        // TODO (Peter TODO) set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
+        landmarkIDs.add(tmpLandmarkNodeIds);
+        return true;
+    }
+
+    /**
+     * Runs the forward and the backward exploration from the landmark with the specified index and stores the resulting
+     * weights. If subnetworks is not null, the subnetwork id is set for all explored nodes.
+     *
+     * @return false if the explored nodes already belong to another subnetwork
+     */
+    private boolean calcLandmarkWeights(int lmIdx, int lmNodeId, IntHashSet blockedEdges, byte[] subnetworks, int subnetworkId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Thread was interrupted");
+        }
+        CoreLandmarkExplorer explorer = new CoreLandmarkExplorer(graph, this, lmWeighting, traversalMode);
+        explorer.initFrom(lmNodeId, 0);
+        EdgeFilterSequence coreEdgeFilter = new EdgeFilterSequence();
+        coreEdgeFilter.add(new CoreAndBlockedEdgesFilter(encoder, false, true, blockedEdges));
+        coreEdgeFilter.add(landmarksFilter);
+        explorer.setFilter(coreEdgeFilter);
+        explorer.runAlgo(true, coreEdgeFilter);
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, lmRowLength, fromOffset);
+
+        if (subnetworks != null && explorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
 
-            explorer = new CoreLandmarkExplorer(graph, this, lmWeighting, traversalMode);
-            explorer.initTo(lmNodeId, 0);
-            EdgeFilterSequence coreEdgeFilterBWD = new EdgeFilterSequence();
-            coreEdgeFilterBWD.add(new CoreAndBlockedEdgesFilter(encoder, true, false, blockedEdges));
-            coreEdgeFilterBWD.add(landmarksFilter);
-            explorer.setFilter(coreEdgeFilterBWD);
-            explorer.runAlgo(false, coreEdgeFilterBWD);
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, lmRowLength, toOffset);
+        explorer = new CoreLandmarkExplorer(graph, this, lmWeighting, traversalMode);
+        explorer.initTo(lmNodeId, 0);
+        EdgeFilterSequence coreEdgeFilterBWD = new EdgeFilterSequence();
+        coreEdgeFilterBWD.add(new CoreAndBlockedEdgesFilter(encoder, true, false, blockedEdges));
+        coreEdgeFilterBWD.add(landmarksFilter);
+        explorer.setFilter(coreEdgeFilterBWD);
+        explorer.runAlgo(false, coreEdgeFilterBWD);
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, lmRowLength, toOffset);
 
-            if (lmIdx == 0 && explorer.setSubnetworks(subnetworks, subnetworkId))
-                return false;
+        return subnetworks == null || !explorer.setSubnetworks(subnetworks, subnetworkId);
+    }
 
-            if (logDetails && lmIdx % logOffset == 0 && LOGGER.isInfoEnabled())
-                LOGGER.info(String.format("Set landmarks weights [%s]. Progress %d%%", lmWeighting, (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length)));
+    /**
+     * Calculates the weights of all but the first landmark, using the threads of the pool if there is one. Every
+     * landmark owns the 4 bytes at lmIdx * 4 of each landmark row, so the explorations never write to the same location.
+     */
+    private void calcRemainingLandmarkWeights(final int[] landmarkNodeIds, final IntHashSet blockedEdges, ExecutorService threadPool) {
+        final int logOffset = Math.max(1, landmarkNodeIds.length / 2);
+        final AtomicInteger finished = new AtomicInteger(1);
+
+        if (threadPool == null) {
+            for (int lmIdx = 1; lmIdx < landmarkNodeIds.length; lmIdx++) {
+                calcLandmarkWeights(lmIdx, landmarkNodeIds[lmIdx], blockedEdges, null, UNSET_SUBNETWORK);
+                logWeightsProgress(finished.getAndIncrement(), logOffset, landmarkNodeIds.length);
+            }
+            return;
         }
 
-        // TODO (Peter TODO) set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
-        landmarkIDs.add(tmpLandmarkNodeIds);
-        return true;
+        List<Future<?>> futures = new ArrayList<>(landmarkNodeIds.length - 1);
+        try {
+            for (int lmIdx = 1; lmIdx < landmarkNodeIds.length; lmIdx++) {
+                final int idx = lmIdx;
+                futures.add(threadPool.submit(() -> {
+                    calcLandmarkWeights(idx, landmarkNodeIds[idx], blockedEdges, null, UNSET_SUBNETWORK);
+                    logWeightsProgress(finished.getAndIncrement(), logOffset, landmarkNodeIds.length);
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // the pool outlives this subnetwork, so tasks left over after a failure must not keep running
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private void logWeightsProgress(int lmIdx, int logOffset, int landmarkCount) {
+        if (logDetails && lmIdx % logOffset == 0 && LOGGER.isInfoEnabled())
+            LOGGER.info(String.format("Set landmarks weights [%s]. Progress %d%%", lmWeighting, (int) (100.0 * lmIdx / landmarkCount)));
     }
 
     @Override
@@ -483,6 +549,13 @@ public class CoreLandmarkStorage implements Storable<LandmarkStorage>{
         this.logDetails = logDetails;
     }
 
+    /**
+     * Sets the number of threads used to calculate the landmark weights of the subnetworks. Default is 1.
+     */
+    public void setLandmarkThreads(int landmarkThreads) {
+        this.landmarkThreads = Math.max(1, landmarkThreads);
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
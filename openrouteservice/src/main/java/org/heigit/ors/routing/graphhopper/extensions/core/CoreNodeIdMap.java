@@ -0,0 +1,113 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions.core;
+
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+
+/**
+ * Maps the ids of core nodes to the consecutive integers 0..coreNodes-1 used as rows of the core landmark weights.
+ * The mapping is stored densely with one int per graph node, so that a lookup is a single read, and is persisted
+ * next to the landmark data of the weighting.
+ */
+public class CoreNodeIdMap implements Storable<CoreNodeIdMap> {
+    public static final int NOT_IN_CORE = -1;
+
+    private final DataAccess da;
+    private final CHGraph core;
+    private int nodes;
+    private int coreNodes;
+
+    public CoreNodeIdMap(Directory dir, CHGraph core, Weighting weighting) {
+        this.core = core;
+        this.da = dir.find("landmarks_core_nodeids_" + AbstractWeighting.weightingToFileName(weighting));
+    }
+
+    /**
+     * Assigns the ids to the core nodes in the order of their node ids.
+     */
+    public CoreNodeIdMap build() {
+        nodes = core.getNodes();
+        int coreNodeLevel = nodes + 1;
+        create(1000);
+        da.ensureCapacity((long) nodes * 4);
+
+        int index = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (core.getLevel(node) < coreNodeLevel)
+                da.setInt((long) node * 4, NOT_IN_CORE);
+            else
+                da.setInt((long) node * 4, index++);
+        }
+        coreNodes = index;
+
+        da.setHeader(0, nodes);
+        da.setHeader(4, coreNodes);
+        return this;
+    }
+
+    /**
+     * @return the id of the given core node, or NOT_IN_CORE if the node is not part of the core
+     */
+    public int get(int node) {
+        return da.getInt((long) node * 4);
+    }
+
+    public int getCoreNodes() {
+        return coreNodes;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+
+        nodes = da.getHeader(0);
+        coreNodes = da.getHeader(4);
+        if (nodes != core.getNodes())
+            throw new IllegalStateException("Cannot load core node ids as written for different graph storage with "
+                    + nodes + " nodes, not " + core.getNodes());
+        return true;
+    }
+
+    @Override
+    public CoreNodeIdMap create(long byteCount) {
+        da.create(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        da.flush();
+    }
+
+    @Override
+    public void close() {
+        da.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
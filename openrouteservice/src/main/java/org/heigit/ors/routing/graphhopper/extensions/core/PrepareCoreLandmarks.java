@@ -31,7 +31,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * This class does the preprocessing for the ALT algorithm (A* , landmark, triangle inequality) in the core.
@@ -53,7 +52,7 @@ public class PrepareCoreLandmarks extends AbstractAlgoPreparation {
     private int defaultActiveLandmarks;
     private LMEdgeFilterSequence landmarksFilter;
 
-    public PrepareCoreLandmarks(Directory dir, GraphHopperStorage graph, Map<Integer, Integer> coreNodeIdMap, Weighting weighting, LMEdgeFilterSequence landmarksFilter, int landmarks,
+    public PrepareCoreLandmarks(Directory dir, GraphHopperStorage graph, CoreNodeIdMap coreNodeIdMap, Weighting weighting, LMEdgeFilterSequence landmarksFilter, int landmarks,
                                 int activeLandmarks) {
         if (activeLandmarks > landmarks)
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarks
@@ -111,6 +110,14 @@ public class PrepareCoreLandmarks extends AbstractAlgoPreparation {
         return this;
     }
 
+    /**
+     * @see CoreLandmarkStorage#setLandmarkThreads(int)
+     */
+    public PrepareCoreLandmarks setLandmarkThreads(int landmarkThreads) {
+        lms.setLandmarkThreads(landmarkThreads);
+        return this;
+    }
+
     public CoreLandmarkStorage getLandmarkStorage() {
         return lms;
     }
@@ -13,17 +13,35 @@
  */
 package org.heigit.ors.routing.graphhopper.extensions.edgefilters;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 
 import java.io.Serializable;
 
 public class AvoidAreasEdgeFilter implements EdgeFilter {
+	// margin (in degrees) added to the polygon envelopes when querying the location index, as the index only
+	// registers edges with the cells of its raster that their geometry is approximated to pass through
+	private static final double INDEX_QUERY_BUFFER = 0.01;
+	// polygons extending more than this (in degrees) get a grid of cells lying completely inside of them
+	private static final double LARGE_AREA_EXTENT = 0.05;
 
 	private Envelope env; 
 	private Polygon[] polys;
+	private PreparedGeometry[] preparedPolys;
+	// edges of the base graph with ids below this have been evaluated up front
+	private int baseEdgeCount = 0;
+	private IntHashSet blockedEdges;
 	private DefaultCoordinateSequence coordSequence;
 	private GeometryFactory geomFactory = new GeometryFactory();
 	
@@ -57,14 +75,97 @@ public class AvoidAreasEdgeFilter implements EdgeFilter {
 			env = new Envelope(minX, maxX, minY, maxY);
 
 			coordSequence = new DefaultCoordinateSequence(new Coordinate[1], 1);
+
+			preparedPolys = new PreparedGeometry[polys.length];
+			for (int i = 0; i < polys.length; i++)
+				preparedPolys[i] = PreparedGeometryFactory.prepare(polys[i]);
+		}
+	}
+
+	/**
+	 * Creates an edge filter which looks up the edges of the base graph in the given set of blocked edges, see
+	 * {@link #findBlockedEdges(Polygon[], Graph, LocationIndex)}. Edges of the query graph (or shortcuts) are still
+	 * tested individually. The set is only read, so that it can be shared by the filters of all searches of a request.
+	 *
+	 * @param baseEdgeCount the number of edges of the base graph the blocked edges have been determined for
+	 */
+	public AvoidAreasEdgeFilter(Polygon[] polys, IntHashSet blockedEdges, int baseEdgeCount)
+	{
+		this(polys);
+
+		if (env != null) {
+			this.blockedEdges = blockedEdges;
+			this.baseEdgeCount = baseEdgeCount;
 		}
 	}
 
+	/**
+	 * Determines the edges of the base graph which are blocked by the given polygons. Candidate edges are found by
+	 * querying the location index with the envelopes of the polygons.
+	 */
+	public static IntHashSet findBlockedEdges(Polygon[] polys, Graph graph, LocationIndex locationIndex) {
+		AvoidAreasEdgeFilter filter = new AvoidAreasEdgeFilter(polys);
+		if (filter.env == null)
+			return new IntHashSet();
+		return filter.findBlockedEdges(graph, locationIndex);
+	}
+
+	private IntHashSet findBlockedEdges(Graph graph, LocationIndex locationIndex) {
+		InteriorGrid[] interiorGrids = new InteriorGrid[polys.length];
+		for (int i = 0; i < polys.length; i++) {
+			Envelope polyEnv = polys[i].getEnvelopeInternal();
+			if (polyEnv.getWidth() > LARGE_AREA_EXTENT || polyEnv.getHeight() > LARGE_AREA_EXTENT)
+				interiorGrids[i] = new InteriorGrid(preparedPolys[i], polyEnv, geomFactory);
+		}
+
+		IntHashSet blockedEdges = new IntHashSet();
+		IntHashSet evaluatedEdges = new IntHashSet();
+		EdgeExplorer explorer = graph.createEdgeExplorer();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+
+		for (Polygon poly : polys) {
+			Envelope polyEnv = poly.getEnvelopeInternal();
+			BBox bbox = new BBox(polyEnv.getMinX() - INDEX_QUERY_BUFFER, polyEnv.getMaxX() + INDEX_QUERY_BUFFER,
+					polyEnv.getMinY() - INDEX_QUERY_BUFFER, polyEnv.getMaxY() + INDEX_QUERY_BUFFER);
+			locationIndex.query(bbox, new LocationIndex.Visitor() {
+				@Override
+				public void onNode(int nodeId) {
+					// An edge with an end node in the interior of an area either crosses its boundary or is contained
+					// by it, so the edges of such nodes are blocked without looking at their geometry.
+					boolean inInterior = inInteriorCell(interiorGrids, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId));
+					EdgeIterator iter = explorer.setBaseNode(nodeId);
+					while (iter.next()) {
+						int edgeId = iter.getEdge();
+						if (evaluatedEdges.add(edgeId) && (inInterior || isBlocked(iter)))
+							blockedEdges.add(edgeId);
+					}
+				}
+			});
+		}
+		return blockedEdges;
+	}
+
+	private static boolean inInteriorCell(InteriorGrid[] interiorGrids, double x, double y) {
+		for (InteriorGrid grid : interiorGrids) {
+			if (grid != null && grid.isInInteriorCell(x, y))
+				return true;
+		}
+		return false;
+	}
+
 	@Override
 	public final boolean accept(EdgeIteratorState iter ) {
 		if (env == null)
 			return true;
 
+		int edgeId = iter.getEdge();
+		if (edgeId < baseEdgeCount)
+			return !blockedEdges.contains(edgeId);
+
+		return !isBlocked(iter);
+	}
+
+	private boolean isBlocked(EdgeIteratorState iter) {
 		boolean inEnv = false;
 		//   PointList pl = iter.fetchWayGeometry(2); // does not work
 		PointList pl = iter.fetchWayGeometry(3);
@@ -126,19 +227,74 @@ public class AvoidAreasEdgeFilter implements EdgeFilter {
 
 				for (int i = 0; i < polys.length; i++)
 				{
+					// the prepared tests rule out most edges before the exact (and expensive) predicates are evaluated
+					PreparedGeometry preparedPoly = preparedPolys[i];
+					if (!preparedPoly.intersects(ls))
+						continue;
+
 					Polygon poly = polys[i];
-					if (poly.contains(ls) || ls.crosses(poly))
+					if (preparedPoly.containsProperly(ls) || poly.contains(ls) || ls.crosses(poly))
 					{
-						return false;
+						return true;
 					}
 				}
 			}
 			else
 			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lazily classified grid over the envelope of a large area, used to find points which are in its interior
+	 * without testing them against the polygon itself.
+	 */
+	private static class InteriorGrid {
+		private static final double CELL_SIZE = 0.005;
+		private static final int MAX_CELLS_PER_AXIS = 256;
+		private static final double CELL_BUFFER = 1e-9;
+		private static final byte UNKNOWN = 0;
+		private static final byte INTERIOR = 1;
+		private static final byte NOT_INTERIOR = 2;
+
+		private final PreparedGeometry area;
+		private final Envelope env;
+		private final GeometryFactory geomFactory;
+		private final int cols;
+		private final int rows;
+		private final double cellWidth;
+		private final double cellHeight;
+		private final byte[] cells;
+
+		InteriorGrid(PreparedGeometry area, Envelope env, GeometryFactory geomFactory) {
+			this.area = area;
+			this.env = env;
+			this.geomFactory = geomFactory;
+			cols = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(env.getWidth() / CELL_SIZE)));
+			rows = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(env.getHeight() / CELL_SIZE)));
+			cellWidth = env.getWidth() / cols;
+			cellHeight = env.getHeight() / rows;
+			cells = new byte[cols * rows];
+		}
+
+		boolean isInInteriorCell(double x, double y) {
+			if (!env.contains(x, y))
 				return false;
+
+			int col = Math.min(cols - 1, (int) ((x - env.getMinX()) / cellWidth));
+			int row = Math.min(rows - 1, (int) ((y - env.getMinY()) / cellHeight));
+			int index = row * cols + col;
+			if (cells[index] == UNKNOWN) {
+				double minX = env.getMinX() + col * cellWidth;
+				double minY = env.getMinY() + row * cellHeight;
+				Envelope cell = new Envelope(minX, minX + cellWidth, minY, minY + cellHeight);
+				cell.expandBy(CELL_BUFFER);
+				cells[index] = area.containsProperly(geomFactory.toGeometry(cell)) ? INTERIOR : NOT_INTERIOR;
 			}
+			return cells[index] == INTERIOR;
 		}
-		return true;
 	}
 
 	/**
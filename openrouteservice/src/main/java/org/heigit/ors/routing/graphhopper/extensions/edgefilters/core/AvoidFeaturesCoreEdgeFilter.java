@@ -22,13 +22,13 @@ import org.heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 import org.heigit.ors.routing.graphhopper.extensions.storages.WayCategoryGraphStorage;
 
 public class AvoidFeaturesCoreEdgeFilter implements EdgeFilter {
-	private byte[] buffer;
+	// the filter is shared by the concurrent landmark explorations, so each thread reads into its own buffer
+	private final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[10]);
 	private WayCategoryGraphStorage storage;
 	private int avoidFeatures;
 	private static final String TYPE = "avoid_features";
 
 	public AvoidFeaturesCoreEdgeFilter(GraphStorage graphStorage, int profileCategory) {
-		buffer = new byte[10];
 		avoidFeatures = AvoidFeatureFlags.getProfileFlags(profileCategory);
 		storage = GraphStorageUtils.getGraphExtension(graphStorage, WayCategoryGraphStorage.class);
 	}
@@ -42,7 +42,7 @@ public class AvoidFeaturesCoreEdgeFilter implements EdgeFilter {
 	public final boolean accept(EdgeIteratorState iter) {
 		if(iter instanceof CHEdgeIterator && ((CHEdgeIterator)iter).isShortcut())
 			return true;
-		return (storage.getEdgeValue(iter.getEdge(), buffer) & avoidFeatures) == 0;
+		return (storage.getEdgeValue(iter.getEdge(), buffer.get()) & avoidFeatures) == 0;
 	}
 
 	public String getType() {
@@ -14,15 +14,21 @@
 package org.heigit.ors.routing.graphhopper.extensions.reader.borders;
 
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import org.apache.log4j.Logger;
 
 import java.io.InvalidObjectException;
 
 public class CountryBordersPolygon {
     private static final Logger LOGGER = Logger.getLogger(CountryBordersPolygon.class);
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
     private String name;
     private MultiPolygon boundary;
     private Geometry boundaryLine;
+    // prepared geometries build their spatial indices on first use and are reused for all subsequent tests
+    private PreparedGeometry preparedBoundary;
+    private PreparedGeometry preparedBoundaryLine;
     private double area = 0;
     private double minLat = 180f;
     private double minLon = 180f;
@@ -49,6 +55,8 @@ public class CountryBordersPolygon {
             throw new InvalidObjectException("Invalid geometry for boundary " + name);
         }
         this.boundaryLine = boundary.getBoundary();
+        this.preparedBoundary = PreparedGeometryFactory.prepare(this.boundary);
+        this.preparedBoundaryLine = PreparedGeometryFactory.prepare(this.boundaryLine);
         this.area = this.boundary.getArea();
         // calculate lat and lon values
         Geometry bbox = boundary.getEnvelope();
@@ -67,12 +75,12 @@ public class CountryBordersPolygon {
     public boolean shares(MultiPolygon other) {
         // Check if this country polygon shares a border with the one passed
         // Assume intersection is a yes
-        return this.boundary.intersects(other);
+        return this.preparedBoundary.intersects(other);
     }
 
     public boolean crossesBoundary(LineString line) {
         // Check if the given linestring crosses the boundary of this country
-        return this.boundaryLine.intersects(line);
+        return this.preparedBoundaryLine.intersects(line);
     }
 
     public String getName() {
@@ -89,14 +97,27 @@ public class CountryBordersPolygon {
 
     public boolean inArea(Coordinate c) {
         if(!Double.isNaN(c.x) && !Double.isNaN(c.y) && inBbox(c)) {
-            GeometryFactory gf = new GeometryFactory();
-
-            return boundary.contains(gf.createPoint(c));
+            return preparedBoundary.contains(GEOMETRY_FACTORY.createPoint(c));
         }
 
         return false;
     }
 
+    /**
+     * Check if the given geometry lies in the interior of the boundary without touching it, i.e. all of its points
+     * are reported as being in the area by {@link #inArea(Coordinate)}.
+     */
+    boolean containsProperly(Geometry geom) {
+        return preparedBoundary.containsProperly(geom);
+    }
+
+    /**
+     * Check if the given geometry has at least one point in common with the area, including its boundary.
+     */
+    boolean intersects(Geometry geom) {
+        return preparedBoundary.intersects(geom);
+    }
+
     public double getArea() {
         return this.area;
     }
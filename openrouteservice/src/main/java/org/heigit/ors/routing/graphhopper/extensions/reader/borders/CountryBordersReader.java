@@ -14,7 +14,10 @@
 package org.heigit.ors.routing.graphhopper.extensions.reader.borders;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import org.heigit.ors.geojson.GeometryJSON;
 import org.heigit.ors.util.CSVUtility;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -26,6 +29,8 @@ import org.json.JSONObject;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
 
 public class CountryBordersReader {
     private static final Logger LOGGER = Logger.getLogger(CountryBordersReader.class);
@@ -34,6 +39,12 @@ public class CountryBordersReader {
     public static final String INTERNATIONAL_ID = "-1";
     public static final String KEY_PROPERTIES = "properties";
 
+    // size (in degrees) of the cells of the lookup cache
+    private static final double GRID_CELL_SIZE = 0.1;
+    private static final double GRID_CELL_BUFFER = 1e-9;
+    private static final CountryBordersPolygon[] NO_POLYGONS = new CountryBordersPolygon[0];
+    private static final int NO_COUNTRY_ID = 0;
+
     private final String borderFile;
     private final String nameField;
     private final String hierarchyIdField;
@@ -47,6 +58,9 @@ public class CountryBordersReader {
 
     private HashMap<Long, CountryBordersHierarchy> hierarchies = new HashMap<>();
 
+    private volatile PolygonIndex polygonIndex = null;
+    private final ConcurrentHashMap<Long, GridCell> gridCells = new ConcurrentHashMap<>();
+
     private static CountryBordersReader currentInstance = null;
 
     /**
@@ -100,6 +114,7 @@ public class CountryBordersReader {
     public void addHierarchy(Long id, CountryBordersHierarchy hierarchy) {
         if(!hierarchies.containsKey(id)) {
             hierarchies.put(id, hierarchy);
+            invalidateIndex();
         }
     }
 
@@ -109,6 +124,8 @@ public class CountryBordersReader {
             ids.put(localName, new CountryInfo(id, localName, englishName));
             isoCodes.put(cca2.trim().toUpperCase(), Integer.parseInt(id));
             isoCodes.put(cca3.trim().toUpperCase(), Integer.parseInt(id));
+            // the index holds the numeric ids of the polygons
+            invalidateIndex();
         }
     }
 
@@ -255,6 +272,52 @@ public class CountryBordersReader {
         }
 
         LOGGER.info(objectCount + " countries read in " + hierarchyCount + " hiearchies");
+        invalidateIndex();
+    }
+
+    private synchronized void invalidateIndex() {
+        polygonIndex = null;
+        gridCells.clear();
+    }
+
+    /**
+     * Get the spatial index over the bounding boxes of all country polygons, building it if the polygons have changed.
+     */
+    private PolygonIndex getPolygonIndex() {
+        PolygonIndex index = polygonIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = polygonIndex;
+                if (index == null) {
+                    index = new PolygonIndex(hierarchies.values(), this::getNumericId);
+                    polygonIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the cached classification of the grid cell that the given (valid) coordinate is located in.
+     */
+    private GridCell getGridCell(Coordinate c) {
+        long col = (long) Math.floor(c.x / GRID_CELL_SIZE);
+        long row = (long) Math.floor(c.y / GRID_CELL_SIZE);
+        Long key = (row << 32) | (col & 0xFFFFFFFFL);
+
+        GridCell cell = gridCells.get(key);
+        if (cell == null) {
+            Envelope env = new Envelope(col * GRID_CELL_SIZE, (col + 1) * GRID_CELL_SIZE,
+                    row * GRID_CELL_SIZE, (row + 1) * GRID_CELL_SIZE);
+            // enlarge the cell slightly so that rounding when computing the cell of a coordinate cannot place it
+            // outside of the classified area
+            env.expandBy(GRID_CELL_BUFFER);
+            cell = getPolygonIndex().classify(env);
+            GridCell existing = gridCells.putIfAbsent(key, cell);
+            if (existing != null)
+                cell = existing;
+        }
+        return cell;
     }
 
     /**
@@ -265,25 +328,45 @@ public class CountryBordersReader {
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCountry(Coordinate c) {
+        if (Double.isNaN(c.x) || Double.isNaN(c.y))
+            return NO_POLYGONS;
+
+        // Most coordinates are located in cells that are completely inside of the same countries
+        GridCell cell = getGridCell(c);
+        if (cell.countries != null)
+            return cell.countries.clone();
+
         ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                List<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c) && cp.inArea(c)) {
-                        countries.add(cp);
-                    }
-                }
+        for(CountryBordersPolygon cp : getPolygonIndex().query(c)) {
+            if(cp.inArea(c)) {
+                countries.add(cp);
             }
         }
 
         return countries.toArray(new CountryBordersPolygon[countries.size()]);
     }
 
+    /**
+     * Method for getting the numeric identifier of the country that the given point can be found within. If the point
+     * is found in overlapping regions, the identifier of the first of the countries returned by getCountry is used.
+     * Unlike getCountry, no arrays are created and the identifiers are resolved when building the index, so this
+     * method should be preferred when only the identifier is needed, e.g. for each edge of a route.
+     *
+     * @param c     The point that you want to know which country is in
+     * @return      The identifier of the country (read from the ids csv), or 0 if the point is not within any country
+     *              or the country has no numeric identifier
+     */
+    public int getCountryId(Coordinate c) {
+        if (Double.isNaN(c.x) || Double.isNaN(c.y))
+            return NO_COUNTRY_ID;
+
+        GridCell cell = getGridCell(c);
+        if (cell.countries != null)
+            return cell.countryId;
+
+        return getPolygonIndex().findCountryId(c);
+    }
+
     /**
      * Method for getting a list of country objects that the given point COULD be found within. This could be more than
      * one if the point is found in overlapping regions. This tests against bounding boxes, and so the countries
@@ -294,22 +377,14 @@ public class CountryBordersReader {
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCandidateCountry(Coordinate c) {
-        ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                List<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c)) {
-                        countries.add(cp);
-                    }
-                }
-            }
-        }
+        if (Double.isNaN(c.x) || Double.isNaN(c.y))
+            return NO_POLYGONS;
+
+        GridCell cell = getGridCell(c);
+        if (cell.candidates != null)
+            return cell.candidates.clone();
 
+        List<CountryBordersPolygon> countries = getPolygonIndex().query(c);
         return countries.toArray(new CountryBordersPolygon[countries.size()]);
     }
 
@@ -329,6 +404,17 @@ public class CountryBordersReader {
             return "";
     }
 
+    private int getNumericId(String name) {
+        String id = getId(name);
+        if (id.isEmpty())
+            return NO_COUNTRY_ID;
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return NO_COUNTRY_ID;
+        }
+    }
+
     /**
      * Get the English name of the country (read from the id CSV)
      *
@@ -444,6 +530,123 @@ public class CountryBordersReader {
         }
     }
 
+    /**
+     * STR-tree over the bounding boxes of the country polygons. Query results are returned in the order in which the
+     * polygons were added so that lookups are deterministic. The numeric country ids of the polygons are resolved
+     * once when the index is built.
+     */
+    private static class PolygonIndex {
+        private final GeometryFactory gf = new GeometryFactory();
+        private final CountryBordersPolygon[] polygons;
+        private final int[] countryIds;
+        private final STRtree tree = new STRtree();
+
+        PolygonIndex(Collection<CountryBordersHierarchy> hierarchies, ToIntFunction<String> idOfName) {
+            ArrayList<CountryBordersPolygon> all = new ArrayList<>();
+            for (CountryBordersHierarchy h : hierarchies)
+                all.addAll(h.getPolygons());
+            polygons = all.toArray(new CountryBordersPolygon[all.size()]);
+            countryIds = new int[polygons.length];
+
+            for (int i = 0; i < polygons.length; i++) {
+                double[] bb = polygons[i].getBBox();
+                tree.insert(new Envelope(bb[0], bb[1], bb[2], bb[3]), i);
+                countryIds[i] = idOfName.applyAsInt(polygons[i].getName());
+            }
+            // build explicitly, as building on the first query is not thread safe
+            tree.build();
+        }
+
+        private int[] queryIndices(Envelope env) {
+            List<?> items = tree.query(env);
+            int[] indices = new int[items.size()];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = (Integer) items.get(i);
+            Arrays.sort(indices);
+            return indices;
+        }
+
+        private List<CountryBordersPolygon> query(Envelope env) {
+            int[] indices = queryIndices(env);
+            ArrayList<CountryBordersPolygon> result = new ArrayList<>(indices.length);
+            for (int i : indices)
+                result.add(polygons[i]);
+            return result;
+        }
+
+        /**
+         * Get the id of the first country whose polygon contains the given coordinate
+         */
+        int findCountryId(Coordinate c) {
+            for (int i : queryIndices(new Envelope(c))) {
+                if (polygons[i].inArea(c))
+                    return countryIds[i];
+            }
+            return NO_COUNTRY_ID;
+        }
+
+        /**
+         * Get the polygons whose bounding box contains the given coordinate
+         */
+        List<CountryBordersPolygon> query(Coordinate c) {
+            List<CountryBordersPolygon> result = query(new Envelope(c));
+            result.removeIf(cp -> !cp.inBbox(c));
+            return result;
+        }
+
+        /**
+         * Determine whether the results of the lookups are the same for all coordinates inside of the given cell.
+         */
+        GridCell classify(Envelope cell) {
+            Geometry cellGeom = gf.toGeometry(cell);
+
+            boolean uniformCandidates = true;
+            boolean uniformCountries = true;
+            ArrayList<CountryBordersPolygon> candidates = new ArrayList<>();
+            ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
+            int countryId = NO_COUNTRY_ID;
+            for (int i : queryIndices(cell)) {
+                CountryBordersPolygon cp = polygons[i];
+                double[] bb = cp.getBBox();
+                if (new Envelope(bb[0], bb[1], bb[2], bb[3]).contains(cell))
+                    candidates.add(cp);
+                else
+                    uniformCandidates = false;
+
+                if (uniformCountries) {
+                    if (cp.containsProperly(cellGeom)) {
+                        if (countries.isEmpty())
+                            countryId = countryIds[i];
+                        countries.add(cp);
+                    }
+                    else if (cp.intersects(cellGeom))
+                        uniformCountries = false; // border cell, coordinates need to be tested individually
+                }
+            }
+
+            return new GridCell(
+                    uniformCandidates ? candidates.toArray(new CountryBordersPolygon[candidates.size()]) : null,
+                    uniformCountries ? countries.toArray(new CountryBordersPolygon[countries.size()]) : null,
+                    countryId);
+        }
+    }
+
+    /**
+     * Cached lookup results for a cell of the grid. A null value means that the result differs within the cell. The
+     * country id is only valid if the countries are.
+     */
+    private static class GridCell {
+        private final CountryBordersPolygon[] candidates;
+        private final CountryBordersPolygon[] countries;
+        private final int countryId;
+
+        GridCell(CountryBordersPolygon[] candidates, CountryBordersPolygon[] countries, int countryId) {
+            this.candidates = candidates;
+            this.countries = countries;
+            this.countryId = countryId;
+        }
+    }
+
     /**
      * Holder class for storing information about a country read from the ids csv.
      */
@@ -0,0 +1,150 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of the int elements 0 to capacity - 1, ordered by a double key per element. Unlike a
+ * {@link java.util.PriorityQueue} it holds no objects, and the key of an element in the heap can be changed in place,
+ * in both directions.
+ */
+public class IntDoubleMinHeap {
+	private int[] elements;
+	private int[] positions;
+	private double[] keys;
+	private int size;
+
+	public IntDoubleMinHeap(int capacity) {
+		elements = new int[capacity];
+		positions = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	public void ensureCapacity(int capacity) {
+		int oldCapacity = positions.length;
+		if (capacity <= oldCapacity)
+			return;
+		capacity = Math.max(capacity, oldCapacity + (oldCapacity >> 1));
+		elements = Arrays.copyOf(elements, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		Arrays.fill(positions, oldCapacity, capacity, -1);
+	}
+
+	public int getCapacity() {
+		return positions.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int element) {
+		return positions[element] != -1;
+	}
+
+	/**
+	 * Adds the element with the given key, or changes its key if it is already in the heap.
+	 */
+	public void push(int element, double key) {
+		int pos = positions[element];
+		if (pos == -1) {
+			pos = size++;
+			elements[pos] = element;
+			positions[element] = pos;
+			keys[element] = key;
+			siftUp(pos);
+		} else {
+			double oldKey = keys[element];
+			keys[element] = key;
+			if (key < oldKey)
+				siftUp(pos);
+			else if (key > oldKey)
+				siftDown(pos);
+		}
+	}
+
+	public double peekKey() {
+		if (size == 0)
+			throw new IllegalStateException("Heap is empty");
+		return keys[elements[0]];
+	}
+
+	/**
+	 * Removes and returns the element with the smallest key.
+	 */
+	public int poll() {
+		if (size == 0)
+			throw new IllegalStateException("Heap is empty");
+		int min = elements[0];
+		positions[min] = -1;
+		size--;
+		if (size > 0) {
+			elements[0] = elements[size];
+			positions[elements[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			positions[elements[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int pos) {
+		int element = elements[pos];
+		double key = keys[element];
+		while (pos > 0) {
+			int parentPos = (pos - 1) >> 1;
+			int parent = elements[parentPos];
+			if (keys[parent] <= key)
+				break;
+			elements[pos] = parent;
+			positions[parent] = pos;
+			pos = parentPos;
+		}
+		elements[pos] = element;
+		positions[element] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int element = elements[pos];
+		double key = keys[element];
+		int half = size >> 1;
+		while (pos < half) {
+			int childPos = 2 * pos + 1;
+			int child = elements[childPos];
+			int rightPos = childPos + 1;
+			if (rightPos < size && keys[elements[rightPos]] < keys[child]) {
+				childPos = rightPos;
+				child = elements[childPos];
+			}
+			if (key <= keys[child])
+				break;
+			elements[pos] = child;
+			positions[child] = pos;
+			pos = childPos;
+		}
+		elements[pos] = element;
+		positions[element] = pos;
+	}
+}
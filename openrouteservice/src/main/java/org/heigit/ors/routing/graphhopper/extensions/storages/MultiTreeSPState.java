@@ -0,0 +1,348 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path trees of several sources kept in flat primitive arrays, as an alternative to one
+ * {@link MultiTreeSPEntry} with an item per tree for every settled node.
+ *
+ * Every node reached by the search gets a slot. The values of tree t at slot s are stored at index s * numTrees + t
+ * of the weight, edge, parent and update arrays, the parent being the slot of the previous node of that tree. The
+ * slots are ordered in a {@link IntDoubleMinHeap} by the sum of their finite weights.
+ *
+ * If the state is acquired with metrics, the durations and distances of the trees are carried along with their
+ * weights in two further arrays, so that the metrics of a tree can be read without unpacking its path.
+ *
+ * The arrays are pooled per thread and reused by the following searches of that thread, see {@link #acquire(int)}.
+ * Only states of up to MAX_POOLED_ENTRIES entries are kept, which take at most 33 bytes per entry, so that every
+ * request thread holds no more than about 9 MB.
+ */
+public class MultiTreeSPState {
+	private static final int MAX_POOLED_ENTRIES = 1 << 18;
+	// the largest array size supported by common JVMs
+	private static final int MAX_ENTRIES = Integer.MAX_VALUE - 8;
+	private static final int INITIAL_SLOTS = 256;
+	private static final ThreadLocal<MultiTreeSPState> POOL = ThreadLocal.withInitial(MultiTreeSPState::new);
+
+	private boolean inUse = false;
+	private int numTrees;
+	private final IntIntHashMap slotOfNode = new IntIntHashMap(INITIAL_SLOTS);
+	private int[] nodeOfSlot = new int[INITIAL_SLOTS];
+	private int slotCount;
+	private boolean[] visited = new boolean[INITIAL_SLOTS];
+	private double[] totalWeights = new double[INITIAL_SLOTS];
+	private double[] weights = new double[0];
+	private int[] edges = new int[0];
+	private int[] parents = new int[0];
+	private boolean[] updates = new boolean[0];
+	private boolean withMetrics;
+	private double[] times = new double[0];
+	private double[] distances = new double[0];
+	private final IntDoubleMinHeap heap = new IntDoubleMinHeap(INITIAL_SLOTS);
+
+	private MultiTreeSPState() {
+	}
+
+	/**
+	 * Returns the state pooled for the calling thread, reset for a search with the given number of trees. If the
+	 * pooled state is still in use, a new one is created. The state has to be released after its results have been
+	 * read.
+	 */
+	public static MultiTreeSPState acquire(int numTrees) {
+		return acquire(numTrees, false);
+	}
+
+	/**
+	 * Like {@link #acquire(int)}, additionally carrying durations and distances if withMetrics is set.
+	 */
+	public static MultiTreeSPState acquire(int numTrees, boolean withMetrics) {
+		MultiTreeSPState state = POOL.get();
+		if (state.inUse)
+			state = new MultiTreeSPState();
+		state.init(numTrees, withMetrics);
+		return state;
+	}
+
+	/**
+	 * Clears the state for the next search of this thread. States which have grown too large are not kept.
+	 */
+	public void release() {
+		clear();
+		inUse = false;
+		if ((long) weights.length > MAX_POOLED_ENTRIES && POOL.get() == this)
+			POOL.remove();
+	}
+
+	private void init(int numTrees, boolean withMetrics) {
+		this.numTrees = numTrees;
+		this.withMetrics = withMetrics;
+		// the slots of a pooled state could be too many for the trees of this search
+		if (nodeOfSlot.length > INITIAL_SLOTS && (long) nodeOfSlot.length * numTrees > MAX_POOLED_ENTRIES) {
+			nodeOfSlot = new int[INITIAL_SLOTS];
+			visited = new boolean[INITIAL_SLOTS];
+			totalWeights = new double[INITIAL_SLOTS];
+		}
+		ensureEntryCapacity(nodeOfSlot.length);
+		inUse = true;
+	}
+
+	private void clear() {
+		slotOfNode.clear();
+		slotCount = 0;
+		heap.clear();
+	}
+
+	/**
+	 * @return the number of entries of the given number of slots, which all fit into the arrays
+	 * @throws IllegalStateException if there are more entries than an array can hold
+	 */
+	private int getEntries(int slots) {
+		long entries = (long) slots * numTrees;
+		if (entries > MAX_ENTRIES)
+			throw new IllegalStateException("Cannot keep " + numTrees + " shortest path trees of " + slots + " nodes.");
+		return (int) entries;
+	}
+
+	private void ensureEntryCapacity(int slots) {
+		int entries = getEntries(slots);
+		if (weights.length < entries) {
+			weights = new double[entries];
+			edges = new int[entries];
+			parents = new int[entries];
+			updates = new boolean[entries];
+		}
+		if (withMetrics && times.length < entries) {
+			times = new double[entries];
+			distances = new double[entries];
+		}
+	}
+
+	private void growSlots() {
+		int capacity = (int) Math.min(nodeOfSlot.length + (long) (nodeOfSlot.length >> 1), MAX_ENTRIES / numTrees);
+		if (capacity <= nodeOfSlot.length)
+			capacity = nodeOfSlot.length + 1;
+		int entries = getEntries(capacity);
+		nodeOfSlot = Arrays.copyOf(nodeOfSlot, capacity);
+		visited = Arrays.copyOf(visited, capacity);
+		totalWeights = Arrays.copyOf(totalWeights, capacity);
+		if (weights.length < entries) {
+			weights = Arrays.copyOf(weights, entries);
+			edges = Arrays.copyOf(edges, entries);
+			parents = Arrays.copyOf(parents, entries);
+			updates = Arrays.copyOf(updates, entries);
+		}
+		if (withMetrics && times.length < entries) {
+			times = Arrays.copyOf(times, entries);
+			distances = Arrays.copyOf(distances, entries);
+		}
+		heap.ensureCapacity(capacity);
+	}
+
+	public int getNumTrees() {
+		return numTrees;
+	}
+
+	public boolean hasMetrics() {
+		return withMetrics;
+	}
+
+	/**
+	 * @return the slot of the node, or -1 if the node has not been reached
+	 */
+	public int getSlot(int node) {
+		return slotOfNode.getOrDefault(node, -1);
+	}
+
+	public int getNode(int slot) {
+		return nodeOfSlot[slot];
+	}
+
+	/**
+	 * Adds a slot for the node, in which no tree has reached the node yet.
+	 */
+	public int addNode(int node) {
+		if (slotCount == nodeOfSlot.length)
+			growSlots();
+		int slot = slotCount++;
+		slotOfNode.put(node, slot);
+		nodeOfSlot[slot] = node;
+		visited[slot] = false;
+		totalWeights[slot] = 0.0;
+		int start = slot * numTrees;
+		Arrays.fill(weights, start, start + numTrees, Double.POSITIVE_INFINITY);
+		Arrays.fill(edges, start, start + numTrees, EdgeIterator.NO_EDGE);
+		Arrays.fill(parents, start, start + numTrees, -1);
+		Arrays.fill(updates, start, start + numTrees, false);
+		if (withMetrics) {
+			Arrays.fill(times, start, start + numTrees, 0.0);
+			Arrays.fill(distances, start, start + numTrees, 0.0);
+		}
+		return slot;
+	}
+
+	/**
+	 * Sets the trees of the slot to the trees of the parent slot extended by the given edge. Trees which have not
+	 * reached the parent are left unset.
+	 */
+	public void extendFrom(int slot, int parentSlot, int edge, double edgeWeight, boolean update) {
+		extendFrom(slot, parentSlot, edge, edgeWeight, 0.0, 0.0, update);
+	}
+
+	/**
+	 * Like {@link #extendFrom(int, int, int, double, boolean)}, adding the duration and distance of the edge to the
+	 * metrics of the trees if the state carries them.
+	 */
+	public void extendFrom(int slot, int parentSlot, int edge, double edgeWeight, double edgeTime, double edgeDistance,
+			boolean update) {
+		int index = slot * numTrees;
+		int parentIndex = parentSlot * numTrees;
+		for (int tree = 0; tree < numTrees; tree++, index++, parentIndex++) {
+			double parentWeight = weights[parentIndex];
+			if (parentWeight == Double.POSITIVE_INFINITY)
+				continue;
+			weights[index] = edgeWeight + parentWeight;
+			edges[index] = edge;
+			parents[index] = parentSlot;
+			updates[index] = update;
+			if (withMetrics) {
+				times[index] = edgeTime + times[parentIndex];
+				distances[index] = edgeDistance + distances[parentIndex];
+			}
+		}
+		updateTotalWeight(slot);
+	}
+
+	/**
+	 * Sets the tree to reach the slot from the parent slot via the edge if that is shorter than its current weight.
+	 *
+	 * @return true if the weight of the tree has been improved
+	 */
+	public boolean relax(int slot, int tree, int parentSlot, int edge, double weight) {
+		return relax(slot, tree, parentSlot, edge, weight, 0.0, 0.0);
+	}
+
+	/**
+	 * Like {@link #relax(int, int, int, int, double)}, setting the duration and distance of the tree along with its
+	 * weight if the state carries them.
+	 */
+	public boolean relax(int slot, int tree, int parentSlot, int edge, double weight, double time, double distance) {
+		int index = slot * numTrees + tree;
+		if (weights[index] <= weight)
+			return false;
+		weights[index] = weight;
+		edges[index] = edge;
+		parents[index] = parentSlot;
+		updates[index] = true;
+		if (withMetrics) {
+			times[index] = time;
+			distances[index] = distance;
+		}
+		return true;
+	}
+
+	public double getWeight(int slot, int tree) {
+		return weights[slot * numTrees + tree];
+	}
+
+	public void setWeight(int slot, int tree, double weight) {
+		weights[slot * numTrees + tree] = weight;
+	}
+
+	/**
+	 * @return the duration of the tree at the slot in seconds, only available if the state carries metrics
+	 */
+	public double getTime(int slot, int tree) {
+		return times[slot * numTrees + tree];
+	}
+
+	/**
+	 * @return the distance of the tree at the slot in meters, only available if the state carries metrics
+	 */
+	public double getDistance(int slot, int tree) {
+		return distances[slot * numTrees + tree];
+	}
+
+	public int getEdge(int slot, int tree) {
+		return edges[slot * numTrees + tree];
+	}
+
+	/**
+	 * @return the slot of the previous node of the tree, or -1 if there is none
+	 */
+	public int getParent(int slot, int tree) {
+		return parents[slot * numTrees + tree];
+	}
+
+	public boolean isUpdate(int slot, int tree) {
+		return updates[slot * numTrees + tree];
+	}
+
+	public void setUpdate(int slot, int tree, boolean update) {
+		updates[slot * numTrees + tree] = update;
+	}
+
+	public void resetUpdate(int slot, boolean update) {
+		int start = slot * numTrees;
+		Arrays.fill(updates, start, start + numTrees, update);
+	}
+
+	public boolean isVisited(int slot) {
+		return visited[slot];
+	}
+
+	public void setVisited(int slot, boolean value) {
+		visited[slot] = value;
+	}
+
+	public double getTotalWeight(int slot) {
+		return totalWeights[slot];
+	}
+
+	/**
+	 * Recalculates the sum of the finite weights of the slot, by which it is ordered in the heap.
+	 */
+	public void updateTotalWeight(int slot) {
+		double total = 0.0;
+		int start = slot * numTrees;
+		for (int i = start; i < start + numTrees; i++) {
+			if (weights[i] != Double.POSITIVE_INFINITY)
+				total += weights[i];
+		}
+		totalWeights[slot] = total;
+	}
+
+	/**
+	 * Adds the slot to the heap with its total weight, or moves it to its new position if it is already in the heap.
+	 */
+	public void push(int slot) {
+		heap.push(slot, totalWeights[slot]);
+	}
+
+	public int poll() {
+		return heap.poll();
+	}
+
+	public boolean isHeapEmpty() {
+		return heap.isEmpty();
+	}
+
+	public void clearHeap() {
+		heap.clear();
+	}
+}
@@ -0,0 +1,206 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.profiles.BooleanEncodedValue;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * Distances and durations of the shortcuts of a CH or core graph, so that they do not have to be obtained by
+ * unpacking the shortcuts at query time. The shortcuts of the graph themselves only store their weights.
+ *
+ * Every shortcut has an entry of three ints: its distance in meters as float bits, and its duration in milliseconds
+ * when traversed from its node with the lower id to the one with the higher id and the other way round. The
+ * durations are calculated with the weighting of the graph, MISSING marking a direction in which the shortcut cannot
+ * be traversed. The data is persisted next to the graph, one file per profile.
+ */
+public class ShortcutMetricsStorage implements Storable<ShortcutMetricsStorage> {
+	private static final int ENTRY_SIZE = 12;
+	private static final int DISTANCE = 0;
+	private static final int TIME_ASCENDING = 4;
+	private static final int TIME_DESCENDING = 8;
+	private static final int MISSING = -1;
+	private static final int NOT_CALCULATED = -2;
+
+	private final DataAccess da;
+	private final CHGraph chGraph;
+	private final Weighting weighting;
+	private int baseEdges;
+	private int shortcuts;
+
+	/**
+	 * @param prefix distinguishes the files of CH and core graphs prepared with the same weighting
+	 */
+	public ShortcutMetricsStorage(Directory dir, CHGraph chGraph, String prefix) {
+		this.chGraph = chGraph;
+		this.weighting = chGraph.getCHProfile().getWeighting();
+		this.da = dir.find(prefix + "_shortcut_metrics_" + AbstractWeighting.weightingToFileName(weighting));
+	}
+
+	/**
+	 * Calculates the metrics of all shortcuts by unpacking each of them once. Shortcuts skipping other shortcuts use
+	 * the entries of these, which are calculated first if necessary.
+	 */
+	public ShortcutMetricsStorage build() {
+		baseEdges = chGraph.getBaseGraph().getAllEdges().length();
+		shortcuts = chGraph.getAllEdges().length() - baseEdges;
+		create(1000);
+		da.ensureCapacity((long) shortcuts * ENTRY_SIZE);
+
+		for (int i = 0; i < shortcuts; i++) {
+			long pointer = (long) i * ENTRY_SIZE;
+			da.setInt(pointer + DISTANCE, Float.floatToRawIntBits(Float.NaN));
+			da.setInt(pointer + TIME_ASCENDING, NOT_CALCULATED);
+			da.setInt(pointer + TIME_DESCENDING, NOT_CALCULATED);
+		}
+
+		BooleanEncodedValue accessEnc = weighting.getFlagEncoder().getAccessEnc();
+		for (int edge = baseEdges; edge < baseEdges + shortcuts; edge++) {
+			CHEdgeIteratorState shortcut = chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+			calcDistance(edge);
+			calcMillis(edge, shortcut.getBaseNode(), shortcut.getAdjNode(), accessEnc);
+			calcMillis(edge, shortcut.getAdjNode(), shortcut.getBaseNode(), accessEnc);
+		}
+
+		da.setHeader(0, baseEdges);
+		da.setHeader(4, shortcuts);
+		return this;
+	}
+
+	private double calcDistance(int edge) {
+		if (!isShortcut(edge))
+			return chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE).getDistance();
+
+		long pointer = getPointer(edge) + DISTANCE;
+		float distance = Float.intBitsToFloat(da.getInt(pointer));
+		if (Float.isNaN(distance)) {
+			CHEdgeIteratorState shortcut = chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+			distance = (float) (calcDistance(shortcut.getSkippedEdge1()) + calcDistance(shortcut.getSkippedEdge2()));
+			da.setInt(pointer, Float.floatToRawIntBits(distance));
+		}
+		return distance;
+	}
+
+	/**
+	 * @return the duration of traversing the edge from one of its nodes to the other, or MISSING if it is not
+	 * accessible in this direction
+	 */
+	private long calcMillis(int edge, int from, int to, BooleanEncodedValue accessEnc) {
+		if (!isShortcut(edge)) {
+			CHEdgeIteratorState edgeState = chGraph.getEdgeIteratorState(edge, to);
+			if (!edgeState.get(accessEnc))
+				return MISSING;
+			return weighting.calcMillis(edgeState, false, EdgeIterator.NO_EDGE);
+		}
+
+		long pointer = getPointer(edge) + (from < to ? TIME_ASCENDING : TIME_DESCENDING);
+		int millis = da.getInt(pointer);
+		if (millis != NOT_CALCULATED)
+			return millis;
+
+		CHEdgeIteratorState shortcut = chGraph.getEdgeIteratorState(edge, to);
+		int skippedEdgeFrom = shortcut.getSkippedEdge1();
+		int skippedEdgeTo = shortcut.getSkippedEdge2();
+		CHEdgeIteratorState edgeFrom = chGraph.getEdgeIteratorState(skippedEdgeFrom, from);
+		if (edgeFrom == null) {
+			skippedEdgeFrom = shortcut.getSkippedEdge2();
+			skippedEdgeTo = shortcut.getSkippedEdge1();
+			edgeFrom = chGraph.getEdgeIteratorState(skippedEdgeFrom, from);
+		}
+
+		// edgeFrom points towards the start node of the shortcut, its base node is the node between the skipped edges
+		int viaNode = edgeFrom.getBaseNode();
+		long millisFrom = calcMillis(skippedEdgeFrom, from, viaNode, accessEnc);
+		long millisTo = millisFrom == MISSING ? MISSING : calcMillis(skippedEdgeTo, viaNode, to, accessEnc);
+		millis = millisTo == MISSING ? MISSING : (int) Math.min(millisFrom + millisTo, Integer.MAX_VALUE);
+		da.setInt(pointer, millis);
+		return millis;
+	}
+
+	private long getPointer(int shortcut) {
+		return (long) (shortcut - baseEdges) * ENTRY_SIZE;
+	}
+
+	/**
+	 * @return true if the edge id belongs to a shortcut of the graph, and not to a base edge or a virtual edge of a
+	 * query graph
+	 */
+	public boolean isShortcut(int edge) {
+		return edge >= baseEdges && edge < baseEdges + shortcuts;
+	}
+
+	/**
+	 * @return the sum of the distances of the base edges skipped by the shortcut in meters
+	 */
+	public double getDistance(int shortcut) {
+		return Float.intBitsToFloat(da.getInt(getPointer(shortcut) + DISTANCE));
+	}
+
+	/**
+	 * @return the duration of traversing the shortcut from one of its nodes to the other in seconds, or -1 if the
+	 * shortcut cannot be traversed in this direction, in which case the searches have to skip the shortcut instead of
+	 * adding the value to their durations
+	 */
+	public double getTime(int shortcut, int fromNode, int toNode) {
+		int millis = da.getInt(getPointer(shortcut) + (fromNode < toNode ? TIME_ASCENDING : TIME_DESCENDING));
+		return millis == MISSING ? -1 : millis / 1000.0;
+	}
+
+	@Override
+	public boolean loadExisting() {
+		if (!da.loadExisting())
+			return false;
+
+		baseEdges = da.getHeader(0);
+		shortcuts = da.getHeader(4);
+		int edges = chGraph.getAllEdges().length();
+		if (baseEdges + shortcuts != edges)
+			throw new IllegalStateException("Cannot load shortcut metrics as written for different graph storage with "
+					+ (baseEdges + shortcuts) + " edges, not " + edges);
+		return true;
+	}
+
+	@Override
+	public ShortcutMetricsStorage create(long byteCount) {
+		da.create(byteCount);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+		da.flush();
+	}
+
+	@Override
+	public void close() {
+		da.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return da.isClosed();
+	}
+
+	@Override
+	public long getCapacity() {
+		return da.getCapacity();
+	}
+}
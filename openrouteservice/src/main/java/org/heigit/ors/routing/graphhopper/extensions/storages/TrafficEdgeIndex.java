@@ -0,0 +1,198 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps OSM way ids to the ids of the edges created from them, and edge ids to TMC location codes, for resolving
+ * traffic data on the graph. Both mappings are stored in sorted arrays which are searched binarily, so that they are
+ * read directly from the storage of the graph instead of being deserialized into maps.
+ *
+ * The OSM id mapping is stored in compressed sparse row format: the sorted OSM ids, followed by the offsets of their
+ * edges and the edge ids. The TMC mapping holds pairs of edge id and location code sorted by edge id.
+ */
+public class TrafficEdgeIndex implements Storable<TrafficEdgeIndex> {
+    private static final int[] NO_EDGES = new int[0];
+    private static final int TMC_ENTRY_BYTES = 12;
+
+    private final DataAccess osmIdEdges;
+    private final DataAccess tmcEdges;
+    private int osmIds;
+    private long offsetsPointer;
+    private long edgesPointer;
+    private int tmcEntries;
+
+    public TrafficEdgeIndex(Directory dir) {
+        osmIdEdges = dir.find("traffic_osmid_edges");
+        tmcEdges = dir.find("traffic_tmc_edges");
+    }
+
+    /**
+     * Writes the given mappings, replacing any existing ones.
+     */
+    public TrafficEdgeIndex build(Map<Integer, Long> tmcCodes, Map<Long, ? extends List<Integer>> osmId2EdgeIds) {
+        create(1000);
+
+        long[] ids = new long[osmId2EdgeIds.size()];
+        int i = 0;
+        int edges = 0;
+        for (Map.Entry<Long, ? extends List<Integer>> entry : osmId2EdgeIds.entrySet()) {
+            ids[i++] = entry.getKey();
+            edges += entry.getValue().size();
+        }
+        Arrays.sort(ids);
+
+        setPointers(ids.length);
+        osmIdEdges.ensureCapacity(edgesPointer + 4L * edges);
+        int offset = 0;
+        for (i = 0; i < ids.length; i++) {
+            setLong(osmIdEdges, 8L * i, ids[i]);
+            osmIdEdges.setInt(offsetsPointer + 4L * i, offset);
+            for (int edge : osmId2EdgeIds.get(ids[i]))
+                osmIdEdges.setInt(edgesPointer + 4L * offset++, edge);
+        }
+        osmIdEdges.setInt(offsetsPointer + 4L * ids.length, offset);
+        osmIdEdges.setHeader(0, ids.length);
+
+        int[] edgeIds = new int[tmcCodes.size()];
+        i = 0;
+        for (Integer edge : tmcCodes.keySet())
+            edgeIds[i++] = edge;
+        Arrays.sort(edgeIds);
+
+        tmcEntries = edgeIds.length;
+        tmcEdges.ensureCapacity((long) TMC_ENTRY_BYTES * tmcEntries);
+        for (i = 0; i < tmcEntries; i++) {
+            long pointer = (long) TMC_ENTRY_BYTES * i;
+            tmcEdges.setInt(pointer, edgeIds[i]);
+            setLong(tmcEdges, pointer + 4, tmcCodes.get(edgeIds[i]));
+        }
+        tmcEdges.setHeader(0, tmcEntries);
+        return this;
+    }
+
+    /**
+     * @return the ids of the edges created from the OSM way, or an empty array if there are none
+     */
+    public int[] getEdgeIds(long osmId) {
+        int low = 0;
+        int high = osmIds - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = getLong(osmIdEdges, 8L * mid);
+            if (midId < osmId) {
+                low = mid + 1;
+            } else if (midId > osmId) {
+                high = mid - 1;
+            } else {
+                int from = osmIdEdges.getInt(offsetsPointer + 4L * mid);
+                int to = osmIdEdges.getInt(offsetsPointer + 4L * (mid + 1));
+                int[] edges = new int[to - from];
+                for (int i = 0; i < edges.length; i++)
+                    edges[i] = osmIdEdges.getInt(edgesPointer + 4L * (from + i));
+                return edges;
+            }
+        }
+        return NO_EDGES;
+    }
+
+    /**
+     * @return the TMC location code of the edge, or -1 if it has none
+     */
+    public long getTmcCode(int edgeId) {
+        int low = 0;
+        int high = tmcEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pointer = (long) TMC_ENTRY_BYTES * mid;
+            int midEdge = tmcEdges.getInt(pointer);
+            if (midEdge < edgeId)
+                low = mid + 1;
+            else if (midEdge > edgeId)
+                high = mid - 1;
+            else
+                return getLong(tmcEdges, pointer + 4);
+        }
+        return -1;
+    }
+
+    public int getOsmIdCount() {
+        return osmIds;
+    }
+
+    public int getTmcEdgeCount() {
+        return tmcEntries;
+    }
+
+    private void setPointers(int osmIds) {
+        this.osmIds = osmIds;
+        offsetsPointer = 8L * osmIds;
+        edgesPointer = offsetsPointer + 4L * (osmIds + 1);
+    }
+
+    private static void setLong(DataAccess da, long pointer, long value) {
+        da.setInt(pointer, (int) (value >>> 32));
+        da.setInt(pointer + 4, (int) value);
+    }
+
+    private static long getLong(DataAccess da, long pointer) {
+        return ((long) da.getInt(pointer) << 32) | (da.getInt(pointer + 4) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!osmIdEdges.loadExisting() || !tmcEdges.loadExisting())
+            return false;
+
+        setPointers(osmIdEdges.getHeader(0));
+        tmcEntries = tmcEdges.getHeader(0);
+        return true;
+    }
+
+    @Override
+    public TrafficEdgeIndex create(long byteCount) {
+        osmIdEdges.create(byteCount);
+        tmcEdges.create(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        osmIdEdges.flush();
+        tmcEdges.flush();
+    }
+
+    @Override
+    public void close() {
+        osmIdEdges.close();
+        tmcEdges.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return osmIdEdges.isClosed() && tmcEdges.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return osmIdEdges.getCapacity() + tmcEdges.getCapacity();
+    }
+}
@@ -27,7 +27,9 @@ import org.heigit.ors.routing.graphhopper.extensions.storages.BordersGraphStorag
 import org.heigit.ors.util.ErrorLoggingUtility;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.MissingResourceException;
 
 /**
@@ -233,12 +235,14 @@ public class BordersGraphStorageBuilder extends AbstractGraphStorageBuilder {
                 // there is an overlap
                 Coordinate c = coords[i];
                 if(!Double.isNaN(c.x) && !Double.isNaN(c.y)) {
-                    // Check each country candidate
+                    // Check each country candidate. The reader resolves most coordinates from its grid cache
+                    // without testing against the polygons.
                     boolean found = false;
                     int countriesFound = 0;
+                    List<CountryBordersPolygon> containing = Arrays.asList(cbReader.getCountry(c));
 
                     for(CountryBordersPolygon cbp : countries) {
-                        if (cbp.inArea(c)) {
+                        if (containing.contains(cbp)) {
                             found = true;
                             countriesFound++;
                             if(!temp.contains(cbp)) {
@@ -0,0 +1,94 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.routing.graphhopper.extensions.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the files of a graph directory in parallel, so that their pages are held in the page cache of the operating
+ * system before the first requests access the memory-mapped storages. As the page cache is shared, several processes
+ * serving the same graph files also share its memory.
+ */
+public class GraphWarmup {
+    private static final Logger LOGGER = Logger.getLogger(GraphWarmup.class.getName());
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long RANGE_SIZE = 64L << 20;
+
+    private GraphWarmup() {}
+
+    /**
+     * Reads all files of the given directory in ranges of 64MB which are distributed over the given number of threads.
+     *
+     * @return the number of bytes read
+     */
+    public static long warmup(File graphDir, int threads) throws InterruptedException {
+        File[] files = graphDir.listFiles(File::isFile);
+        if (files == null || files.length == 0)
+            return 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (File file : files) {
+                long length = file.length();
+                for (long start = 0; start < length; start += RANGE_SIZE) {
+                    long rangeStart = start;
+                    long rangeLength = Math.min(RANGE_SIZE, length - start);
+                    futures.add(executor.submit(() -> readRange(file, rangeStart, rangeLength)));
+                }
+            }
+
+            long bytes = 0;
+            for (Future<Long> future : futures) {
+                try {
+                    bytes += future.get();
+                } catch (ExecutionException ex) {
+                    // the files are only read ahead of time, failures are reported once they are actually accessed
+                    LOGGER.warn("Unable to read graph files in '" + graphDir + "': " + ex.getCause().getMessage());
+                }
+            }
+            return bytes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long readRange(File file, long start, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long read = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (read < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, length - read));
+                int count = channel.read(buffer, start + read);
+                if (count < 0)
+                    break;
+                read += count;
+            }
+        }
+        return read;
+    }
+}
@@ -74,6 +74,10 @@ public class ORSParameters {
          * Specifies how many landmarks should be created
          */
         public static final String COUNT = PREPARE + "landmarks";
+        /**
+         * Specifies how many threads should calculate the landmark weights of one preparation
+         */
+        public static final String LANDMARK_THREADS = PREPARE + "landmark_threads";
         /**
          * This property name configures at start if the DISABLE parameter can have an effect.
          */
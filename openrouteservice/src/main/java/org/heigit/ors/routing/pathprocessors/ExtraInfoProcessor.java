@@ -27,7 +27,6 @@ import com.graphhopper.util.PointList;
 import com.vividsolutions.jts.geom.Coordinate;
 import org.heigit.ors.routing.*;
 import org.heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderKeys;
-import org.heigit.ors.routing.graphhopper.extensions.reader.borders.CountryBordersPolygon;
 import org.heigit.ors.routing.graphhopper.extensions.reader.borders.CountryBordersReader;
 import org.heigit.ors.routing.graphhopper.extensions.storages.*;
 import org.heigit.ors.routing.graphhopper.extensions.util.ORSPMap;
@@ -389,9 +388,9 @@ public class ExtraInfoProcessor implements PathProcessor {
 				Coordinate coordinate = new Coordinate();
 				coordinate.x = geom.getLon(0);
 				coordinate.y = geom.getLat(0);
-				CountryBordersPolygon[] countries = countryBordersReader.getCountry(coordinate);
-				if (countries.length >= 1) {
-					country1 = Short.parseShort(countryBordersReader.getId(countryBordersReader.getCountry(coordinate)[0].getName()));
+				int countryId = countryBordersReader.getCountryId(coordinate);
+				if (countryId != 0) {
+					country1 = (short) countryId;
 				}
 			}
 			if (countryTraversalInfoBuilder != null && country1 != 0) {
@@ -0,0 +1,34 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.services.centrality;
+
+import org.heigit.ors.config.AppConfig;
+
+public class CentralityServiceSettings {
+    private static int maximumThreads = 1;
+
+    public static final String PARAM_CENTRALITY = "centrality";
+
+    static {
+        String value = AppConfig.getGlobal().getServiceParameter(PARAM_CENTRALITY, "maximum_threads");
+        if (value != null)
+            maximumThreads = Math.max(1, Integer.parseInt(value));
+    }
+
+    private CentralityServiceSettings() {}
+
+    public static int getMaximumThreads() {
+        return maximumThreads;
+    }
+}
@@ -30,6 +30,7 @@ import static org.heigit.ors.common.TravelRangeType.DISTANCE;
 public class IsochronesServiceSettings {
 	private static boolean enabled = true;
 	private static int maximumLocations = 1;
+	private static int maximumThreads = 1;
 	private static int maximumRangeDistance = 100000; //  in meters
 	private static Map<Integer, Integer> profileMaxRangeDistances;
 	private static int maximumRangeTime = 3600; // in seconds
@@ -64,6 +65,9 @@ public class IsochronesServiceSettings {
 		value = AppConfig.getGlobal().getServiceParameter(SERVICE_NAME_ISOCHRONES, "maximum_locations");
 		if (value != null)
 			maximumLocations = Integer.parseInt(value);
+		value = AppConfig.getGlobal().getServiceParameter(SERVICE_NAME_ISOCHRONES, "maximum_threads");
+		if (value != null)
+			maximumThreads = Math.max(1, Integer.parseInt(value));
 		value = AppConfig.getGlobal().getServiceParameter(SERVICE_NAME_ISOCHRONES, "weightings");
 		if (value != null)
 			weightings = value;
@@ -198,6 +202,10 @@ public class IsochronesServiceSettings {
 		return maximumLocations;
 	}
 
+	public static int getMaximumThreads() {
+		return maximumThreads;
+	}
+
 	public static int getMaximumRange(int profileType, String calcMethod, TravelRangeType range) {
 		Integer res;
 		if(fastIsochroneProfiles.contains(profileType) && calcMethod.equalsIgnoreCase("fastisochrone"))
@@ -92,11 +92,11 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
         if (!travellers.isEmpty()) {
             IsochroneMapCollection isoMaps = new IsochroneMapCollection();
 
-            for (int i = 0; i < travellers.size(); ++i) {
-                IsochroneSearchParameters searchParams = req.getSearchParameters(i);
-                IsochroneMap isochroneMap = RoutingProfileManager.getInstance().buildIsochrone(searchParams);
+            List<IsochroneSearchParameters> searchParams = new ArrayList<>(travellers.size());
+            for (int i = 0; i < travellers.size(); ++i)
+                searchParams.add(req.getSearchParameters(i));
+            for (IsochroneMap isochroneMap : RoutingProfileManager.getInstance().buildIsochrones(searchParams))
                 isoMaps.add(isochroneMap);
-            }
             writeResponse(response, req, isoMaps);
         }
     }
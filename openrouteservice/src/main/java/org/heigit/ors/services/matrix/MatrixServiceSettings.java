@@ -19,7 +19,11 @@ public class MatrixServiceSettings {
 	private static int maximumRoutes = 2500;
 	private static int maximumRoutesFlexible = 25;
 	private static int maximumVisitedNodes = 100000;
+	private static int maximumThreads = 1;
 	private static double maximumSearchRadius = 2000;
+	private static double bucketCellCost = 0.05;
+	private static double rphastBaseCost = 10;
+	private static double rphastCellCost = 0.02;
 	private static boolean allowResolveLocations = true;
 	private static String attribution = "";
 	private static boolean enabled = true;
@@ -42,6 +46,18 @@ public class MatrixServiceSettings {
 		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, "maximum_visited_nodes");
 		if (value != null)
 			maximumVisitedNodes = Math.max(1, Integer.parseInt(value));
+		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, "maximum_threads");
+		if (value != null)
+			maximumThreads = Math.max(1, Integer.parseInt(value));
+		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, "bucket_cell_cost");
+		if (value != null)
+			bucketCellCost = Double.parseDouble(value);
+		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, "rphast_base_cost");
+		if (value != null)
+			rphastBaseCost = Math.max(0, Double.parseDouble(value));
+		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, "rphast_cell_cost");
+		if (value != null)
+			rphastCellCost = Math.max(0, Double.parseDouble(value));
 		value = AppConfig.getGlobal().getServiceParameter(PARAM_MATRIX, " allow_resolve_locations");
 		if (value != null)
 			allowResolveLocations = Boolean.parseBoolean(value);
@@ -64,6 +80,10 @@ public class MatrixServiceSettings {
 		return maximumVisitedNodes;
 	}
 	
+	public static int getMaximumThreads() {
+		return maximumThreads;
+	}
+
 	public static int getMaximumRoutes(boolean flexible) {
 		return (flexible? maximumRoutesFlexible : maximumRoutes);
 	}
@@ -71,6 +91,18 @@ public class MatrixServiceSettings {
 	public static double getMaximumSearchRadius() {
 		return maximumSearchRadius;
 	}
+
+	public static double getBucketCellCost() {
+		return bucketCellCost;
+	}
+
+	public static double getRPHASTBaseCost() {
+		return rphastBaseCost;
+	}
+
+	public static double getRPHASTCellCost() {
+		return rphastCellCost;
+	}
 	
 	public static String getAttribution() {
 		return attribution;
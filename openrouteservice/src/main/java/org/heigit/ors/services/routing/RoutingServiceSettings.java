@@ -26,6 +26,7 @@ public class RoutingServiceSettings {
 	private static String sourceFile = "";
 	private static String workingMode = "Normal"; // Normal or PrepareGraphs
 	private static int initializationThreads = 1;
+	private static int osmReaderThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
 	private static boolean distanceApproximation = false;
 	private static String storageFormat = "Native";
 	private static String attribution = "";
@@ -56,6 +57,10 @@ public class RoutingServiceSettings {
 		value = config.getServiceParameter(SERVICE_NAME_ROUTING, "init_threads");
 		if (value != null)
 			initializationThreads = Integer.parseInt(value);
+
+		value = config.getServiceParameter(SERVICE_NAME_ROUTING, "osm_reader_threads");
+		if (value != null)
+			osmReaderThreads = Math.max(1, Integer.parseInt(value));
 		
 		value = config.getServiceParameter(SERVICE_NAME_ROUTING, "distance_approximation");
 		if (value != null)
@@ -89,6 +94,13 @@ public class RoutingServiceSettings {
 	public static int getInitializationThreads() {
 		return initializationThreads;
 	}
+
+	/**
+	 * @return the number of threads decoding the OSM file which is shared by the profiles built at the same time
+	 */
+	public static int getOSMReaderThreads() {
+		return osmReaderThreads;
+	}
 	
 	public static boolean getDistanceApproximation()	{
 		return distanceApproximation;
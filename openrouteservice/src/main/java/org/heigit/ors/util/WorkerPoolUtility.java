@@ -0,0 +1,53 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package org.heigit.ors.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the independent tasks of a calculation on one of the worker pools of the services, e.g.
+ * {@link org.heigit.ors.matrix.MatrixWorkerPool} or {@link org.heigit.ors.isochrones.IsochroneWorkerPool}.
+ */
+public class WorkerPoolUtility {
+	private WorkerPoolUtility() {}
+
+	/**
+	 * Runs the tasks on the executor, or one after another in the calling thread if the executor is null or there is
+	 * only one task. The results are returned in the order of the tasks, independent of the order in which the tasks
+	 * finish. If a task fails, its exception is thrown after all tasks have finished.
+	 */
+	public static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws Exception {
+		List<T> results = new ArrayList<>(tasks.size());
+		if (executor == null || tasks.size() < 2) {
+			for (Callable<T> task : tasks)
+				results.add(task.call());
+			return results;
+		}
+
+		try {
+			for (Future<T> future : executor.invokeAll(tasks))
+				results.add(future.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+		return results;
+	}
+}
@@ -8,6 +8,7 @@ import org.heigit.ors.exceptions.ServerLimitExceededException;
 import org.heigit.ors.exceptions.StatusCodeException;
 import org.heigit.ors.matrix.MatrixMetricsType;
 import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.routing.AvoidFeatureFlags;
 import org.heigit.ors.routing.RoutingProfileType;
 import org.heigit.ors.routing.WeightingMethod;
 import org.heigit.ors.services.matrix.MatrixServiceSettings;
@@ -17,6 +18,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MatrixRequestHandlerTest {
@@ -116,6 +118,23 @@ public class MatrixRequestHandlerTest {
         Assert.assertEquals(3, matrixRequest.getMetrics());
     }
 
+    @Test
+    public void convertMatrixRequestAvoidFeaturesTest() throws StatusCodeException {
+        org.heigit.ors.api.requests.matrix.MatrixRequest springMatrixRequest = new org.heigit.ors.api.requests.matrix.MatrixRequest(bareCoordinates);
+        springMatrixRequest.setProfile(APIEnums.Profile.DRIVING_CAR);
+        springMatrixRequest.setOptimized(true);
+        springMatrixRequest.setAvoidFeatures(new APIEnums.AvoidFeatures[]{APIEnums.AvoidFeatures.FERRIES, APIEnums.AvoidFeatures.HIGHWAYS});
+        MatrixRequest matrixRequest = MatrixRequestHandler.convertMatrixRequest(springMatrixRequest);
+
+        Assert.assertEquals(AvoidFeatureFlags.FERRIES | AvoidFeatureFlags.HIGHWAYS, matrixRequest.getAvoidFeatures());
+        Assert.assertTrue(matrixRequest.getFlexibleMode());
+    }
+
+    @Test(expected = ParameterValueException.class)
+    public void convertIncompatibleAvoidFeaturesTest() throws ParameterValueException {
+        MatrixRequestHandler.convertAvoidFeatures(new APIEnums.AvoidFeatures[]{APIEnums.AvoidFeatures.STEPS}, RoutingProfileType.DRIVING_CAR);
+    }
+
     @Test(expected = ParameterValueException.class)
     public void invalidLocationsTest() throws StatusCodeException {
         org.heigit.ors.api.requests.matrix.MatrixRequest springMatrixRequest = new org.heigit.ors.api.requests.matrix.MatrixRequest(new ArrayList<>());
@@ -164,18 +183,48 @@ public class MatrixRequestHandlerTest {
     }
 
     @Test(expected = ParameterValueException.class)
-    public void notEnoughLocationsTest() throws ParameterValueException, ServerLimitExceededException {
-        MatrixRequestHandler.convertLocations(minimalLocations, 5);
+    public void notEnoughLocationsTest() throws ParameterValueException {
+        MatrixRequestHandler.convertLocations(minimalLocations);
     }
 
     @Test(expected = ServerLimitExceededException.class)
-    public void maximumExceedingLocationsTest() throws ParameterValueException, ServerLimitExceededException {
-        MatrixRequestHandler.convertLocations(listOfBareCoordinatesList, maximumRoutes);
+    public void maximumExceedingLocationsTest() throws ServerLimitExceededException {
+        MatrixRequestHandler.checkNumberOfRoutes(maximumRoutes, false);
+    }
+
+    @Test
+    public void flexibleModeMaximumRoutesTest() throws StatusCodeException {
+        int maximumRoutesFlexible = MatrixServiceSettings.getMaximumRoutes(true);
+        MatrixRequestHandler.checkNumberOfRoutes(maximumRoutesFlexible, true);
+        try {
+            MatrixRequestHandler.checkNumberOfRoutes(maximumRoutesFlexible + 1, true);
+            Assert.fail();
+        } catch (ServerLimitExceededException e) {
+            Assert.assertTrue(e.getMessage().endsWith("Only a total of " + maximumRoutesFlexible + " routes are allowed."));
+        }
+
+        // avoid features switch to the flexible mode, whose limit applies then
+        org.heigit.ors.api.requests.matrix.MatrixRequest springMatrixRequest = new org.heigit.ors.api.requests.matrix.MatrixRequest(new ArrayList<>());
+        springMatrixRequest.setProfile(APIEnums.Profile.DRIVING_CAR);
+        springMatrixRequest.setLocations(HelperFunctions.fakeListLocations(2, 2));
+        springMatrixRequest.setSources(new String[]{"0"});
+        String[] destinations = new String[maximumRoutesFlexible + 1];
+        Arrays.fill(destinations, "1");
+        springMatrixRequest.setDestinations(destinations);
+        Assert.assertFalse(MatrixRequestHandler.convertMatrixRequest(springMatrixRequest).getFlexibleMode());
+
+        springMatrixRequest.setAvoidFeatures(new APIEnums.AvoidFeatures[]{APIEnums.AvoidFeatures.FERRIES});
+        try {
+            MatrixRequestHandler.convertMatrixRequest(springMatrixRequest);
+            Assert.fail();
+        } catch (ServerLimitExceededException e) {
+            Assert.assertTrue(e.getMessage().endsWith("Only a total of " + maximumRoutesFlexible + " routes are allowed."));
+        }
     }
 
     @Test
-    public void convertLocationsTest() throws ParameterValueException, ServerLimitExceededException {
-        Coordinate[] coordinates = MatrixRequestHandler.convertLocations(listOfBareCoordinatesList, 3);
+    public void convertLocationsTest() throws ParameterValueException {
+        Coordinate[] coordinates = MatrixRequestHandler.convertLocations(listOfBareCoordinatesList);
         Assert.assertEquals(8.681495, coordinates[0].x, 0);
         Assert.assertEquals(49.41461, coordinates[0].y, 0);
         Assert.assertEquals(Double.NaN, coordinates[0].z, 0);
@@ -0,0 +1,95 @@
+package org.heigit.ors.api.responses.matrix.binary;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.heigit.ors.api.requests.common.APIEnums;
+import org.heigit.ors.api.requests.matrix.MatrixRequest;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.ResolvedLocation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class BinaryMatrixResponseTest {
+    private MatrixResult matrixResult;
+    private MatrixRequest matrixRequest;
+
+    @Before
+    public void setUp() {
+        System.setProperty("ors_app_config", "target/test-classes/app.config.test");
+
+        Double[][] bareCoordinates = new Double[][]{{8.681495, 49.41461}, {8.686507, 49.41943}};
+        ResolvedLocation[] sources = new ResolvedLocation[]{
+                new ResolvedLocation(new Coordinate(8.681495, 49.41461), "Straße", 1.5),
+                null};
+        ResolvedLocation[] destinations = new ResolvedLocation[]{
+                new ResolvedLocation(new Coordinate(8.686507, 49.41943), "foo", 0.0)};
+
+        matrixResult = new MatrixResult(sources, destinations);
+        matrixResult.setTable(MatrixMetricsType.DURATION, new float[]{12.345f, -1});
+        matrixResult.setTable(MatrixMetricsType.DISTANCE, new float[]{100.5f, 200});
+
+        matrixRequest = new MatrixRequest(bareCoordinates);
+        matrixRequest.setProfile(APIEnums.Profile.DRIVING_CAR);
+        matrixRequest.setResolveLocations(true);
+    }
+
+    private ByteBuffer write(BinaryMatrixResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.write(out);
+        return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        ByteBuffer buffer = write(new BinaryMatrixResponse(matrixResult, matrixRequest));
+
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        Assert.assertEquals("ORSM", new String(magic, StandardCharsets.US_ASCII));
+        Assert.assertEquals(BinaryMatrixResponse.VERSION, buffer.getInt());
+        Assert.assertEquals(2, buffer.getInt());
+        Assert.assertEquals(1, buffer.getInt());
+        Assert.assertEquals(MatrixMetricsType.DURATION | MatrixMetricsType.DISTANCE, buffer.getInt());
+
+        Assert.assertEquals(8.681495, buffer.getDouble(), 0);
+        Assert.assertEquals(49.41461, buffer.getDouble(), 0);
+        Assert.assertEquals(1.5f, buffer.getFloat(), 0);
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        Assert.assertEquals("Straße", new String(name, StandardCharsets.UTF_8));
+
+        Assert.assertTrue(Double.isNaN(buffer.getDouble()));
+        Assert.assertTrue(Double.isNaN(buffer.getDouble()));
+        Assert.assertTrue(Float.isNaN(buffer.getFloat()));
+        Assert.assertEquals(0, buffer.getInt());
+
+        Assert.assertEquals(8.686507, buffer.getDouble(), 0);
+        Assert.assertEquals(49.41943, buffer.getDouble(), 0);
+        Assert.assertEquals(0f, buffer.getFloat(), 0);
+        Assert.assertEquals(3, buffer.getInt());
+        buffer.position(buffer.position() + 3);
+
+        Assert.assertEquals(12.345f, buffer.getFloat(), 0);
+        Assert.assertTrue(Float.isNaN(buffer.getFloat()));
+        Assert.assertEquals(100.5f, buffer.getFloat(), 0);
+        Assert.assertEquals(200f, buffer.getFloat(), 0);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testWithoutResolveLocations() throws IOException {
+        matrixRequest.setResolveLocations(false);
+        ByteBuffer buffer = write(new BinaryMatrixResponse(matrixResult, matrixRequest));
+
+        // skip the header and the coordinates of the first source
+        buffer.position(4 * Integer.BYTES + 4 + 2 * Double.BYTES + Float.BYTES);
+        Assert.assertEquals(0, buffer.getInt());
+    }
+}
@@ -18,6 +18,9 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CentralityAlgorithmTest extends TestCase {
     private CentralityAlgorithm alg = new BrandesCentralityAlgorithm();
@@ -138,6 +141,109 @@ public class CentralityAlgorithmTest extends TestCase {
         }
     }
 
+    @Test
+    public void testMediumGraphSingleThread() throws Exception {
+        graphHopper = new ORSGraphHopper();
+        graphHopper.setCHEnabled(false);
+        graphHopper.setCoreEnabled(false);
+        graphHopper.setCoreLMEnabled(false);
+        graphHopper.setEncodingManager(encodingManager);
+        graphHopper.setGraphHopperStorage(createMediumGraph());
+        graphHopper.postProcessing();
+
+        Graph graph = graphHopper.getGraphHopperStorage().getBaseGraph();
+        FlagEncoder flagEncoder = graphHopper.getEncodingManager().getEncoder("car");
+
+        HintsMap hintsMap = new HintsMap();
+        hintsMap.put("weighting", "fastest");
+        hintsMap.put("weighting_method", "fastest");
+        Weighting weighting = new ORSWeightingFactory().createWeighting(hintsMap, flagEncoder, graphHopper.getGraphHopperStorage());
+
+        ArrayList<Integer> nodes = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8));
+
+        CentralityAlgorithm serialAlg = new BrandesCentralityAlgorithm(null, 1);
+        serialAlg.init(graph, weighting);
+        HashMap<Integer, Double> serialBetweenness = serialAlg.compute(nodes);
+
+        HashMap<Integer, Double> parallelBetweenness;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CentralityAlgorithm parallelAlg = new BrandesCentralityAlgorithm(executor, 4);
+            parallelAlg.init(graph, weighting);
+            parallelBetweenness = parallelAlg.compute(nodes);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Integer v : nodes) {
+            assertEquals(serialBetweenness.get(v), parallelBetweenness.get(v), 0.0001d);
+        }
+        assertEquals(47d / 3d, serialBetweenness.get(4), 0.0001d);
+    }
+
+    @Test
+    public void testMediumGraphSampled() throws Exception {
+        graphHopper = new ORSGraphHopper();
+        graphHopper.setCHEnabled(false);
+        graphHopper.setCoreEnabled(false);
+        graphHopper.setCoreLMEnabled(false);
+        graphHopper.setEncodingManager(encodingManager);
+        graphHopper.setGraphHopperStorage(createMediumGraph());
+        graphHopper.postProcessing();
+
+        Graph graph = graphHopper.getGraphHopperStorage().getBaseGraph();
+        FlagEncoder flagEncoder = graphHopper.getEncodingManager().getEncoder("car");
+
+        HintsMap hintsMap = new HintsMap();
+        hintsMap.put("weighting", "fastest");
+        hintsMap.put("weighting_method", "fastest");
+        Weighting weighting = new ORSWeightingFactory().createWeighting(hintsMap, flagEncoder, graphHopper.getGraphHopperStorage());
+
+        ArrayList<Integer> nodes = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8));
+
+        CentralityAlgorithm exactAlg = new BrandesCentralityAlgorithm();
+        exactAlg.init(graph, weighting);
+        HashMap<Integer, Double> exactBetweenness = exactAlg.compute(nodes);
+
+        // a sample covering all nodes yields the exact result
+        CentralityAlgorithm fullSampleAlg = new BrandesCentralityAlgorithm(null, 1, new Random(42));
+        fullSampleAlg.init(graph, weighting);
+        fullSampleAlg.setSampleSize(20);
+        HashMap<Integer, Double> fullSampleBetweenness = fullSampleAlg.compute(nodes);
+        assertEquals(9, fullSampleAlg.getSampleSize());
+        assertEquals(0d, fullSampleAlg.getEstimatedError(), 0d);
+        for (Integer v : nodes) {
+            assertEquals(exactBetweenness.get(v), fullSampleBetweenness.get(v), 0.0001d);
+        }
+
+        CentralityAlgorithm sampledAlg = new BrandesCentralityAlgorithm(null, 1, new Random(42));
+        sampledAlg.init(graph, weighting);
+        sampledAlg.setSampleSize(3);
+        HashMap<Integer, Double> sampledBetweenness = sampledAlg.compute(nodes);
+        assertEquals(3, sampledAlg.getSampleSize());
+        // sources 8, 1 and 0 are sampled, the largest error is 61/6 at node 4
+        assertEquals(11.5d, sampledBetweenness.get(0), 0.0001d);
+        assertEquals(20.5d, sampledBetweenness.get(2), 0.0001d);
+        assertEquals(5.5d, sampledBetweenness.get(4), 0.0001d);
+        // well below the maximum possible score (n-1)(n-2) = 56
+        assertEquals(13.715d, sampledAlg.getEstimatedError(), 0.001d);
+        assertEquals(nodes.size(), sampledBetweenness.size());
+        for (Integer v : nodes) {
+            assertTrue(sampledBetweenness.get(v) >= 0);
+            assertEquals(exactBetweenness.get(v), sampledBetweenness.get(v), sampledAlg.getEstimatedError());
+        }
+
+        // the estimated error shrinks as the sample grows
+        CentralityAlgorithm largerSampleAlg = new BrandesCentralityAlgorithm(null, 1, new Random(42));
+        largerSampleAlg.init(graph, weighting);
+        largerSampleAlg.setSampleSize(6);
+        HashMap<Integer, Double> largerSampleBetweenness = largerSampleAlg.compute(nodes);
+        assertEquals(7.057d, largerSampleAlg.getEstimatedError(), 0.001d);
+        for (Integer v : nodes) {
+            assertEquals(exactBetweenness.get(v), largerSampleBetweenness.get(v), largerSampleAlg.getEstimatedError());
+        }
+    }
+
     @Test
     public void testTwoComponentGraph() {
         graphHopper = new ORSGraphHopper();
@@ -1,5 +1,7 @@
 package org.heigit.ors.fastisochrones;
 
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
@@ -17,6 +19,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class FastIsochroneAlgorithmTest {
     private final CarFlagEncoder carEncoder = new CarFlagEncoder();
@@ -172,8 +176,8 @@ public class FastIsochroneAlgorithmTest {
 
         fastIsochroneAlgorithm.calcIsochroneNodes(1, 5.5);
 
-        Set<Integer> cellIds = fastIsochroneAlgorithm.getFullyReachableCells();
-        Set<Integer> expectedCellIds = new HashSet<>();
+        IntHashSet cellIds = fastIsochroneAlgorithm.getFullyReachableCells();
+        IntHashSet expectedCellIds = new IntHashSet();
 
         assertEquals(expectedCellIds, cellIds);
 
@@ -190,7 +194,7 @@ public class FastIsochroneAlgorithmTest {
         fastIsochroneAlgorithm.calcIsochroneNodes(1, 6);
 
         cellIds = fastIsochroneAlgorithm.getFullyReachableCells();
-        expectedCellIds = new HashSet<>();
+        expectedCellIds = new IntHashSet();
         expectedCellIds.add(2);
         assertEquals(expectedCellIds, cellIds);
 
@@ -207,9 +211,72 @@ public class FastIsochroneAlgorithmTest {
         fastIsochroneAlgorithm.calcIsochroneNodes(8, 6);
 
         cellIds = fastIsochroneAlgorithm.getFullyReachableCells();
-        expectedCellIds = new HashSet<>();
+        expectedCellIds = new IntHashSet();
         expectedCellIds.add(2);
         expectedCellIds.add(3);
         assertEquals(expectedCellIds, cellIds);
     }
-}
\ No newline at end of file
+
+    /**
+     * The start cell search of the largest limit shared by all limits must give the same results as separate searches
+     * per limit, including the entries beyond each limit that are needed for the edges crossing the isochrone.
+     */
+    @Test
+    public void testSharedStartCellSearch() {
+        GraphHopperStorage graphHopperStorage = ToyGraphCreationUtil.createMediumGraphWithAdditionalEdge(encodingManager);
+        Weighting shortestWeighting = new ShortestWeighting(carEncoder);
+        createMockStorages(graphHopperStorage);
+        Eccentricity ecc = new Eccentricity(graphHopperStorage, null, ins, cs);
+
+        ecc.loadExisting(shortestWeighting);
+        ecc.calcEccentricities(shortestWeighting, new EdgeFilterSequence(), carEncoder);
+        ecc.calcBorderNodeDistances(shortestWeighting, new EdgeFilterSequence(), carEncoder);
+
+        double[] limits = new double[]{0.5, 1.5, 2.5, 3.5, 5.5, 7};
+        for (int from : new int[]{0, 1, 8}) {
+            IntObjectMap<SPTEntry> startCellSearch = createFastIsochroneAlgorithm(graphHopperStorage, shortestWeighting, ecc)
+                    .searchStartCell(from, limits[limits.length - 1]);
+            for (double limit : limits) {
+                FastIsochroneAlgorithm separate = createFastIsochroneAlgorithm(graphHopperStorage, shortestWeighting, ecc);
+                separate.calcIsochroneNodes(from, limit);
+                FastIsochroneAlgorithm shared = createFastIsochroneAlgorithm(graphHopperStorage, shortestWeighting, ecc);
+                shared.setStartCellSearch(startCellSearch);
+                shared.calcIsochroneNodes(from, limit);
+
+                assertEquals(separate.getFullyReachableCells(), shared.getFullyReachableCells());
+                assertEquals(separate.getActiveCellMaps().size(), shared.getActiveCellMaps().size());
+                for (IntObjectCursor<IntObjectMap<SPTEntry>> cell : separate.getActiveCellMaps())
+                    assertSameEntries(cell.value, shared.getActiveCellMaps().get(cell.key));
+            }
+        }
+    }
+
+    private FastIsochroneAlgorithm createFastIsochroneAlgorithm(GraphHopperStorage graphHopperStorage, Weighting weighting, Eccentricity ecc) {
+        return new FastIsochroneAlgorithm(
+                graphHopperStorage.getBaseGraph(),
+                weighting,
+                TraversalMode.NODE_BASED,
+                cs,
+                ins,
+                ecc.getEccentricityStorage(weighting),
+                ecc.getBorderNodeDistanceStorage(weighting),
+                null);
+    }
+
+    private void assertSameEntries(IntObjectMap<SPTEntry> expected, IntObjectMap<SPTEntry> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (IntObjectCursor<SPTEntry> entry : expected) {
+            SPTEntry actualEntry = actual.get(entry.key);
+            assertNotNull(actualEntry);
+            assertEquals(entry.value.weight, actualEntry.weight, 1e-10);
+            // the parents are used to place the edges crossing the isochrone
+            if (entry.value.parent == null) {
+                assertNull(actualEntry.parent);
+            } else {
+                assertNotNull(actualEntry.parent);
+                assertEquals(entry.value.parent.weight, actualEntry.parent.weight, 1e-10);
+            }
+        }
+    }
+}
@@ -111,5 +111,11 @@ public class CellAndIsochroneNodeStorageTest {
         nodesCell3.addAll(2, 3, 4);
         assertEquals(nodesCell2, cs.getNodesOfCell(2));
         assertEquals(nodesCell3, cs.getNodesOfCell(3));
+        assertEquals(2, cs.getNodeCount(2));
+        assertEquals(3, cs.getNodeCount(3));
+
+        IntHashSet visitedNodes = new IntHashSet();
+        cs.forEachNodeOfCell(3, visitedNodes::add);
+        assertEquals(nodesCell3, visitedNodes);
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package org.heigit.ors.isochrones.statistics.raster;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+
+public class PopulationGridTest {
+    private final GeometryFactory gf = new GeometryFactory();
+    private File sourceFile;
+    private File gridFile;
+    private PopulationGrid grid;
+
+    @Before
+    public void setUp() throws IOException {
+        // 4x3 cells of 1 degree between 10,50 and 14,53, the first row is the northern one
+        sourceFile = File.createTempFile("population", ".asc");
+        try (Writer writer = new FileWriter(sourceFile)) {
+            writer.write("ncols 4\nnrows 3\nxllcorner 10\nyllcorner 50\ncellsize 1\nNODATA_value -9999\n");
+            writer.write("1 2 3 4\n");
+            writer.write("10 20 -9999 40\n");
+            writer.write("1e2 200 300 400\n");
+        }
+        gridFile = File.createTempFile("population", ".grid");
+        PopulationGrid.convertAsciiGrid(sourceFile, gridFile);
+        grid = new PopulationGrid(gridFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        grid.close();
+        sourceFile.delete();
+        gridFile.delete();
+    }
+
+    private Polygon createPolygon(double... coords) {
+        Coordinate[] ring = new Coordinate[coords.length / 2];
+        for (int i = 0; i < ring.length; i++)
+            ring[i] = new Coordinate(coords[2 * i], coords[2 * i + 1]);
+        return gf.createPolygon(gf.createLinearRing(ring), null);
+    }
+
+    @Test
+    public void testWholeGrid() {
+        Polygon polygon = createPolygon(9, 49, 15, 49, 15, 54, 9, 54, 9, 49);
+        assertEquals(1080, grid.getPopulation(polygon), 1e-9);
+    }
+
+    @Test
+    public void testCellCentersInside() {
+        // covers the centers of the cells in the second and third column of the two southern rows
+        Polygon polygon = createPolygon(11.4, 50.4, 12.6, 50.4, 12.6, 51.6, 11.4, 51.6, 11.4, 50.4);
+        assertEquals(20 + 200 + 300, grid.getPopulation(polygon), 1e-9);
+    }
+
+    @Test
+    public void testTriangle() {
+        // contains the centers 10.5,52.5 / 10.5,51.5 / 11.5,51.5 / 10.5,50.5 / 11.5,50.5 / 12.5,50.5
+        Polygon polygon = createPolygon(10, 50, 13.2, 50, 10, 53.2, 10, 50);
+        assertEquals(1 + 10 + 20 + 100 + 200 + 300, grid.getPopulation(polygon), 1e-9);
+    }
+
+    @Test
+    public void testHoleAndMultiPolygon() {
+        LinearRing shell = gf.createLinearRing(new Coordinate[]{new Coordinate(10, 50), new Coordinate(14, 50),
+                new Coordinate(14, 53), new Coordinate(10, 53), new Coordinate(10, 50)});
+        LinearRing hole = gf.createLinearRing(new Coordinate[]{new Coordinate(11.2, 51.2), new Coordinate(11.8, 51.2),
+                new Coordinate(11.8, 51.8), new Coordinate(11.2, 51.8), new Coordinate(11.2, 51.2)});
+        Polygon withHole = gf.createPolygon(shell, new LinearRing[]{hole});
+        assertEquals(1080 - 20, grid.getPopulation(withHole), 1e-9);
+
+        Geometry multi = gf.createMultiPolygon(new Polygon[]{
+                createPolygon(10, 52, 11, 52, 11, 53, 10, 53, 10, 52),
+                createPolygon(13, 50, 14, 50, 14, 51, 13, 51, 13, 50)});
+        assertEquals(1 + 400, grid.getPopulation(multi), 1e-9);
+    }
+
+    @Test
+    public void testOutsideGrid() {
+        Polygon polygon = createPolygon(0, 0, 1, 0, 1, 1, 0, 1, 0, 0);
+        assertEquals(0, grid.getPopulation(polygon), 1e-9);
+    }
+}
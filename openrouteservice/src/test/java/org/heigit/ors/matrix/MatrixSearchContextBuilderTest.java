@@ -0,0 +1,27 @@
+package org.heigit.ors.matrix;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MatrixSearchContextBuilderTest {
+    @Test
+    public void testLocationKeyOfNearIdenticalCoordinates() {
+        long key = MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681495, 49.41461));
+        assertEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681495, 49.41461)));
+        assertEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.6814951, 49.4146099)));
+    }
+
+    @Test
+    public void testLocationKeyOfDifferentCoordinates() {
+        long key = MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681495, 49.41461));
+        assertNotEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681496, 49.41461)));
+        assertNotEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681495, 49.41462)));
+        // swapped coordinates and negative coordinates must not collide
+        assertNotEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(49.41461, 8.681495)));
+        assertNotEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(-8.681495, 49.41461)));
+        assertNotEquals(key, MatrixSearchContextBuilder.getLocationKey(new Coordinate(8.681495, -49.41461)));
+    }
+}
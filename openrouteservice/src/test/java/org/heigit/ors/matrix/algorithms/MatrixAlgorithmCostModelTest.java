@@ -0,0 +1,39 @@
+package org.heigit.ors.matrix.algorithms;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MatrixAlgorithmCostModelTest {
+    private final MatrixAlgorithmCostModel costModel = new MatrixAlgorithmCostModel(0.05, 10, 0.02);
+
+    @Test
+    public void testCosts() {
+        assertEquals(20 + 0.05 * 100, costModel.getBucketCost(10, 10), 1e-9);
+        assertEquals(10 + 10 + 0.02 * 10 * 20, costModel.getRPHASTCost(10, 10), 1e-9);
+    }
+
+    @Test
+    public void testAsymmetricMatrices() {
+        assertTrue(costModel.preferBucketAlgorithm(1, 1));
+        assertTrue(costModel.preferBucketAlgorithm(1, 100));
+        assertTrue(costModel.preferBucketAlgorithm(100, 1));
+        assertTrue(costModel.preferBucketAlgorithm(2500, 1));
+    }
+
+    @Test
+    public void testLargeMatrices() {
+        assertFalse(costModel.preferBucketAlgorithm(50, 50));
+        assertFalse(costModel.preferBucketAlgorithm(100, 100));
+        assertFalse(costModel.preferBucketAlgorithm(1, 2500));
+    }
+
+    @Test
+    public void testDisabled() {
+        MatrixAlgorithmCostModel disabled = new MatrixAlgorithmCostModel(-1, 10, 0.02);
+        assertFalse(disabled.preferBucketAlgorithm(1, 1));
+        assertFalse(disabled.preferBucketAlgorithm(100, 1));
+    }
+}
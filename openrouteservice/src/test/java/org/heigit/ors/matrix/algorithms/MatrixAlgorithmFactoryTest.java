@@ -0,0 +1,61 @@
+package org.heigit.ors.matrix.algorithms;
+
+import com.graphhopper.storage.CHGraph;
+import com.vividsolutions.jts.geom.Coordinate;
+import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.algorithms.bucket.BucketManyToManyMatrixAlgorithm;
+import org.heigit.ors.matrix.algorithms.dijkstra.DijkstraMatrixAlgorithm;
+import org.heigit.ors.matrix.algorithms.rphast.RPHASTMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class MatrixAlgorithmFactoryTest {
+    private ToyMatrixGraph toyGraph;
+    private CHGraph chGraph;
+    private ORSGraphHopper ghWithoutMetrics;
+
+    @Before
+    public void setUp() {
+        toyGraph = new ToyMatrixGraph();
+        chGraph = toyGraph.contract(new CoreTestEdgeFilter());
+        ghWithoutMetrics = toyGraph.createGraphHopper(null);
+    }
+
+    private MatrixRequest createRequest() {
+        MatrixRequest req = toyGraph.createRequest();
+        req.setSources(new Coordinate[]{new Coordinate(0, 0)});
+        req.setDestinations(new Coordinate[]{new Coordinate(0.02, 0.02)});
+        return req;
+    }
+
+    @Test
+    public void testCHProfileOfWeighting() {
+        MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(createRequest(), ghWithoutMetrics, chGraph.getCHProfile(), "shortest");
+        assertTrue(alg instanceof RPHASTMatrixAlgorithm);
+    }
+
+    @Test
+    public void testNoCHProfileOfWeighting() {
+        // e.g. a request for the shortest weighting on a graph which has only been contracted for the fastest one
+        MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(createRequest(), ghWithoutMetrics, null, "shortest");
+        assertTrue(alg instanceof DijkstraMatrixAlgorithm);
+    }
+
+    @Test
+    public void testFlexibleMode() {
+        MatrixRequest req = createRequest();
+        req.setFlexibleMode(true);
+        MatrixAlgorithm alg = MatrixAlgorithmFactory.createAlgorithm(req, ghWithoutMetrics, chGraph.getCHProfile(), "shortest");
+        assertTrue(alg instanceof DijkstraMatrixAlgorithm);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBucketAlgorithmOnBaseGraph() {
+        new BucketManyToManyMatrixAlgorithm().init(toyGraph.createRequest(), toyGraph.createGraphHopper(toyGraph.buildShortcutMetrics()),
+                toyGraph.getStorage().getBaseGraph(), toyGraph.getEncoder(), toyGraph.getWeighting());
+    }
+}
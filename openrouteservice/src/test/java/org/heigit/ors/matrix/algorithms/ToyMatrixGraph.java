@@ -0,0 +1,184 @@
+package org.heigit.ors.matrix.algorithms;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCore;
+import org.heigit.ors.routing.graphhopper.extensions.storages.ShortcutMetricsStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Toy graph for comparing the results of the matrix algorithms.
+ *
+ * The length of edge i is a whole number of kilometers plus 2^i centimeters, so that no two different paths have the
+ * same weight and all algorithms have to agree on the durations and distances as well. The edge from 1 to 2 is a
+ * one-way road, so that some shortcuts can only be traversed in one direction.
+ */
+public class ToyMatrixGraph {
+    public static final int UNREACHABLE_NODE = 9;
+    public static final int METRICS = MatrixMetricsType.DURATION | MatrixMetricsType.DISTANCE | MatrixMetricsType.WEIGHT;
+
+    private final CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 3);
+    private final EncodingManager encodingManager = EncodingManager.create(encoder);
+    private final Weighting weighting = new ShortestWeighting(encoder);
+    private final GraphHopperStorage ghStorage;
+    private CHGraph chGraph;
+
+    //    3---4--5
+    //   /\   |  |
+    //  2--0  6--7
+    //  ^ / \   /
+    //  |/   \ /
+    //  1-----8      9--10
+    public ToyMatrixGraph() {
+        ghStorage = new GraphBuilder(encodingManager).setCHProfiles(new ArrayList<>()).setCoreGraph(weighting).create();
+        NodeAccess na = ghStorage.getNodeAccess();
+        na.setNode(0, 0.02, 0.01);
+        na.setNode(1, 0.0, 0.0);
+        na.setNode(2, 0.02, 0.0);
+        na.setNode(3, 0.03, 0.005);
+        na.setNode(4, 0.03, 0.02);
+        na.setNode(5, 0.03, 0.03);
+        na.setNode(6, 0.02, 0.02);
+        na.setNode(7, 0.02, 0.03);
+        na.setNode(8, 0.0, 0.02);
+        na.setNode(9, 0.0, 0.04);
+        na.setNode(10, 0.0, 0.05);
+
+        addEdge(0, 1, 1, 50, true);
+        addEdge(0, 2, 1, 30, true);
+        addEdge(0, 3, 5, 90, true);
+        addEdge(0, 8, 1, 60, true);
+        addEdge(1, 2, 1, 40, false);
+        addEdge(1, 8, 2, 50, true);
+        addEdge(2, 3, 2, 70, true);
+        addEdge(3, 4, 2, 100, true);
+        addEdge(4, 5, 1, 30, true);
+        addEdge(4, 6, 1, 50, true);
+        addEdge(5, 7, 1, 60, true);
+        addEdge(6, 7, 2, 80, true);
+        addEdge(7, 8, 3, 120, true);
+        addEdge(9, 10, 1, 50, true);
+    }
+
+    private void addEdge(int a, int b, int km, int speed, boolean bothDirections) {
+        int edge = ghStorage.getAllEdges().length();
+        ghStorage.edge(a, b, km * 1000 + 0.01 * (1 << edge), bothDirections).set(encoder.getAverageSpeedEnc(), speed);
+    }
+
+    public CarFlagEncoder getEncoder() {
+        return encoder;
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    public GraphHopperStorage getStorage() {
+        return ghStorage;
+    }
+
+    /**
+     * Contracts all nodes which are not adjacent to one of the restricted edges. Without restricted edges the result is
+     * a complete contraction hierarchy.
+     */
+    public CHGraph contract(CoreTestEdgeFilter restrictedEdges) {
+        chGraph = ghStorage.getCHGraph(new CHProfile(weighting, TraversalMode.NODE_BASED, TurnWeighting.INFINITE_U_TURN_COSTS, "core"));
+        PrepareCore prepare = new PrepareCore(new GHDirectory("", DAType.RAM_INT), ghStorage, chGraph, restrictedEdges);
+        prepare.setPeriodicUpdates(20);
+        prepare.setLazyUpdates(10);
+        prepare.setNeighborUpdates(20);
+        prepare.setContractedNodes(100);
+        prepare.doWork();
+        return chGraph;
+    }
+
+    public ShortcutMetricsStorage buildShortcutMetrics() {
+        return new ShortcutMetricsStorage(new RAMDirectory(), chGraph, "core").build();
+    }
+
+    /**
+     * @param shortcutMetrics the metrics returned for the contracted graph, or null
+     */
+    public ORSGraphHopper createGraphHopper(ShortcutMetricsStorage shortcutMetrics) {
+        ORSGraphHopper gh = new ORSGraphHopper() {
+            @Override
+            public ShortcutMetricsStorage getShortcutMetrics(CHProfile chProfile) {
+                return shortcutMetrics;
+            }
+        };
+        gh.setCHEnabled(false);
+        gh.setEncodingManager(encodingManager);
+        gh.setGraphHopperStorage(ghStorage);
+        return gh;
+    }
+
+    /**
+     * Creates a query graph with a virtual node in the middle of each of the edges. The id of the virtual node on the
+     * i-th edge is the number of nodes of the graph plus i, independent of the graph the query graph is based on.
+     */
+    public QueryGraph createQueryGraph(Graph graph, int... edges) {
+        List<QueryResult> queryResults = new ArrayList<>(edges.length);
+        for (int edge : edges) {
+            EdgeIteratorState edgeState = ghStorage.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            NodeAccess na = ghStorage.getNodeAccess();
+            QueryResult qr = new QueryResult((na.getLat(edgeState.getBaseNode()) + na.getLat(edgeState.getAdjNode())) / 2,
+                    (na.getLon(edgeState.getBaseNode()) + na.getLon(edgeState.getAdjNode())) / 2);
+            qr.setClosestNode(edgeState.getBaseNode());
+            qr.setClosestEdge(edgeState);
+            qr.setWayIndex(0);
+            qr.setSnappedPosition(QueryResult.Position.EDGE);
+            qr.calcSnappedPoint(new DistanceCalcEarth());
+            queryResults.add(qr);
+        }
+        QueryGraph queryGraph = new QueryGraph(graph);
+        queryGraph.lookup(queryResults);
+        return queryGraph;
+    }
+
+    public MatrixRequest createRequest() {
+        MatrixRequest req = new MatrixRequest();
+        req.setMetrics(METRICS);
+        return req;
+    }
+
+    /**
+     * @param nodes the node ids of the locations, -1 for a location which could not be snapped
+     */
+    public static MatrixLocations createLocations(int... nodes) {
+        MatrixLocations locations = new MatrixLocations(nodes.length);
+        for (int i = 0; i < nodes.length; i++)
+            locations.setData(i, nodes[i], null);
+        return locations;
+    }
+
+    public static void assertSameTables(MatrixResult expected, MatrixResult actual) {
+        assertSameTable(expected.getTable(MatrixMetricsType.WEIGHT), actual.getTable(MatrixMetricsType.WEIGHT), 1e-2);
+        assertSameTable(expected.getTable(MatrixMetricsType.DURATION), actual.getTable(MatrixMetricsType.DURATION), 1e-3);
+        assertSameTable(expected.getTable(MatrixMetricsType.DISTANCE), actual.getTable(MatrixMetricsType.DISTANCE), 1e-2);
+    }
+
+    private static void assertSameTable(float[] expected, float[] actual, double delta) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("cell " + i, expected[i], actual[i], delta);
+    }
+}
@@ -0,0 +1,106 @@
+package org.heigit.ors.matrix.algorithms.bucket;
+
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import org.heigit.ors.exceptions.ServerLimitExceededException;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.algorithms.ToyMatrixGraph;
+import org.heigit.ors.matrix.algorithms.rphast.RPHASTMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.UNREACHABLE_NODE;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.assertSameTables;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.createLocations;
+import static org.junit.Assert.assertEquals;
+
+public class BucketManyToManyMatrixAlgorithmTest {
+    private static final int[] NODES = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    private ToyMatrixGraph toyGraph;
+    private CHGraph chGraph;
+    private ORSGraphHopper gh;
+    private ORSGraphHopper ghWithoutMetrics;
+
+    @Before
+    public void setUp() {
+        toyGraph = new ToyMatrixGraph();
+        chGraph = toyGraph.contract(new CoreTestEdgeFilter());
+        gh = toyGraph.createGraphHopper(toyGraph.buildShortcutMetrics());
+        ghWithoutMetrics = toyGraph.createGraphHopper(null);
+    }
+
+    private MatrixResult compute(Graph graph, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        BucketManyToManyMatrixAlgorithm algorithm = new BucketManyToManyMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), gh, graph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        return algorithm.compute(sources, destinations, ToyMatrixGraph.METRICS);
+    }
+
+    /**
+     * The RPHAST matrix with the shortcuts being unpacked, as reference for the durations and distances which are
+     * carried along by the bucket searches.
+     */
+    private MatrixResult computeRPHAST(Graph graph, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        RPHASTMatrixAlgorithm algorithm = new RPHASTMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), ghWithoutMetrics, graph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        return algorithm.compute(sources, destinations, ToyMatrixGraph.METRICS);
+    }
+
+    private void assertSameAsRPHAST(Graph graph, int[] sources, int[] destinations) throws Exception {
+        assertSameTables(computeRPHAST(graph, createLocations(sources), createLocations(destinations)),
+                compute(graph, createLocations(sources), createLocations(destinations)));
+    }
+
+    @Test
+    public void testSameAsRPHAST() throws Exception {
+        assertSameAsRPHAST(chGraph, NODES, NODES);
+        assertSameAsRPHAST(chGraph, new int[]{3}, NODES);
+        assertSameAsRPHAST(chGraph, NODES, new int[]{7});
+        assertSameAsRPHAST(chGraph, new int[]{8, 1}, new int[]{4, 2, 6});
+    }
+
+    @Test
+    public void testSourceEqualsTarget() throws Exception {
+        assertSameAsRPHAST(chGraph, new int[]{5, 5, 0}, new int[]{5, 0, 5});
+
+        MatrixResult result = compute(chGraph, createLocations(4), createLocations(4));
+        assertEquals(0, result.getTable(MatrixMetricsType.WEIGHT)[0], 0);
+        assertEquals(0, result.getTable(MatrixMetricsType.DURATION)[0], 0);
+        assertEquals(0, result.getTable(MatrixMetricsType.DISTANCE)[0], 0);
+    }
+
+    @Test
+    public void testUnreachableAndInvalidTargets() throws Exception {
+        int[] destinations = {2, UNREACHABLE_NODE, -1, 10, 6};
+        assertSameAsRPHAST(chGraph, NODES, destinations);
+        assertSameAsRPHAST(chGraph, new int[]{-1, 4}, destinations);
+
+        MatrixResult result = compute(chGraph, createLocations(0), createLocations(destinations));
+        float[] weights = result.getTable(MatrixMetricsType.WEIGHT);
+        assertEquals(-1, weights[1], 0);
+        assertEquals(-1, weights[2], 0);
+        assertEquals(-1, weights[3], 0);
+    }
+
+    @Test
+    public void testVirtualNodes() throws Exception {
+        Graph queryGraph = toyGraph.createQueryGraph(chGraph, 3, 7, 10);
+        int nodes = chGraph.getNodes();
+        int[] locations = {nodes, 4, nodes + 1, 1, nodes + 2, nodes};
+        assertSameAsRPHAST(queryGraph, locations, locations);
+        assertSameAsRPHAST(queryGraph, new int[]{nodes + 2}, locations);
+        assertSameAsRPHAST(queryGraph, locations, new int[]{nodes + 1, UNREACHABLE_NODE});
+    }
+
+    @Test(expected = ServerLimitExceededException.class)
+    public void testVisitedNodesLimit() throws Exception {
+        BucketManyToManyMatrixAlgorithm algorithm = new BucketManyToManyMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), gh, chGraph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        algorithm.setMaxVisitedNodes(1);
+        algorithm.compute(createLocations(NODES), createLocations(NODES), ToyMatrixGraph.METRICS);
+    }
+}
@@ -0,0 +1,151 @@
+package org.heigit.ors.matrix.algorithms.core;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import org.heigit.ors.exceptions.ServerLimitExceededException;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.algorithms.ToyMatrixGraph;
+import org.heigit.ors.matrix.algorithms.dijkstra.DijkstraMatrixAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.UNREACHABLE_NODE;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.assertSameTables;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.createLocations;
+import static org.junit.Assert.assertEquals;
+
+public class CoreMatrixAlgorithmTest {
+    private static final int[] NODES = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    private ToyMatrixGraph toyGraph;
+    private CHGraph coreGraph;
+    private ORSGraphHopper gh;
+
+    @Before
+    public void setUp() {
+        toyGraph = new ToyMatrixGraph();
+        // the core consists of the nodes 3, 4, 6, 7 and 8
+        CoreTestEdgeFilter restrictedEdges = new CoreTestEdgeFilter();
+        restrictedEdges.add(7);
+        restrictedEdges.add(9);
+        restrictedEdges.add(11);
+        restrictedEdges.add(12);
+        coreGraph = toyGraph.contract(restrictedEdges);
+        gh = toyGraph.createGraphHopper(null);
+    }
+
+    private MatrixResult computeCore(Graph graph, EdgeFilter edgeFilter, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        return computeCore(gh, graph, edgeFilter, sources, destinations);
+    }
+
+    private MatrixResult computeCore(ORSGraphHopper graphHopper, Graph graph, EdgeFilter edgeFilter, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        CoreMatrixAlgorithm algorithm = new CoreMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), graphHopper, graph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        algorithm.setEdgeFilter(edgeFilter);
+        return algorithm.compute(sources, destinations, ToyMatrixGraph.METRICS);
+    }
+
+    private MatrixResult computeDijkstra(Graph graph, EdgeFilter edgeFilter, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        DijkstraMatrixAlgorithm algorithm = new DijkstraMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), gh, graph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        algorithm.setEdgeFilter(edgeFilter);
+        return algorithm.compute(sources, destinations, ToyMatrixGraph.METRICS);
+    }
+
+    private void assertSameAsDijkstra(EdgeFilter edgeFilter, int[] sources, int[] destinations) throws Exception {
+        assertSameTables(computeDijkstra(toyGraph.getStorage(), edgeFilter, createLocations(sources), createLocations(destinations)),
+                computeCore(coreGraph, edgeFilter, createLocations(sources), createLocations(destinations)));
+    }
+
+    @Test
+    public void testWithoutFilter() throws Exception {
+        assertSameAsDijkstra(null, NODES, NODES);
+        assertSameAsDijkstra(null, new int[]{2}, NODES);
+        assertSameAsDijkstra(null, NODES, new int[]{6});
+        assertSameAsDijkstra(null, new int[]{5, -1, 1, 5}, new int[]{8, 3, 3, -1, 0});
+    }
+
+    @Test
+    public void testAvoidFilter() throws Exception {
+        CoreTestEdgeFilter avoidEdges = new CoreTestEdgeFilter();
+        avoidEdges.add(9);
+        assertSameAsDijkstra(avoidEdges, NODES, NODES);
+
+        avoidEdges.clear();
+        avoidEdges.add(7);
+        avoidEdges.add(11);
+        assertSameAsDijkstra(avoidEdges, NODES, NODES);
+        assertSameAsDijkstra(avoidEdges, new int[]{6, 0}, new int[]{4, 7, 2, 6});
+
+        // 3-4 is avoided, so that the shortest path leads along 3-2-0-8-7-5-4
+        MatrixResult unrestricted = computeCore(coreGraph, null, createLocations(3), createLocations(4));
+        MatrixResult restricted = computeCore(coreGraph, avoidEdges, createLocations(3), createLocations(4));
+        assertEquals(2001.28, unrestricted.getTable(MatrixMetricsType.WEIGHT)[0], 1e-2);
+        assertEquals(9054.5, restricted.getTable(MatrixMetricsType.WEIGHT)[0], 1e-2);
+    }
+
+    @Test
+    public void testUnreachableTargets() throws Exception {
+        int[] destinations = {4, UNREACHABLE_NODE, 0, 10, 6};
+        // the Dijkstra search fails for targets it cannot find, they are therefore left out of its request
+        int[] reachableDestinations = {4, -1, 0, -1, 6};
+        CoreTestEdgeFilter avoidEdges = new CoreTestEdgeFilter();
+        avoidEdges.add(9);
+        for (EdgeFilter edgeFilter : new EdgeFilter[]{null, avoidEdges}) {
+            MatrixResult expected = computeDijkstra(toyGraph.getStorage(), edgeFilter, createLocations(NODES), createLocations(reachableDestinations));
+            MatrixResult result = computeCore(coreGraph, edgeFilter, createLocations(NODES), createLocations(destinations));
+            assertSameTables(expected, result);
+        }
+    }
+
+    @Test
+    public void testVirtualNodes() throws Exception {
+        // not on restricted edges, as the filters do not know the ids of the virtual edges
+        int[] edges = {0, 3, 8};
+        int nodes = coreGraph.getNodes();
+        int[] locations = {nodes, 2, nodes + 1, 6, nodes + 2, nodes, 3};
+
+        CoreTestEdgeFilter avoidEdges = new CoreTestEdgeFilter();
+        avoidEdges.add(7);
+        avoidEdges.add(11);
+        for (EdgeFilter edgeFilter : new EdgeFilter[]{null, avoidEdges}) {
+            MatrixResult expected = computeDijkstra(toyGraph.createQueryGraph(toyGraph.getStorage(), edges), edgeFilter,
+                    createLocations(locations), createLocations(locations));
+            MatrixResult result = computeCore(toyGraph.createQueryGraph(coreGraph, edges), edgeFilter,
+                    createLocations(locations), createLocations(locations));
+            assertSameTables(expected, result);
+        }
+    }
+
+    @Test(expected = ServerLimitExceededException.class)
+    public void testVisitedNodesLimit() throws Exception {
+        CoreMatrixAlgorithm algorithm = new CoreMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), gh, coreGraph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        algorithm.setMaxVisitedNodes(1);
+        algorithm.compute(createLocations(NODES), createLocations(NODES), ToyMatrixGraph.METRICS);
+    }
+
+    /**
+     * The durations and distances of the shortcuts taken from the precomputed metrics have to match those obtained by
+     * unpacking the shortcuts during the search and those of the Dijkstra search.
+     */
+    @Test
+    public void testShortcutMetrics() throws Exception {
+        ORSGraphHopper ghWithMetrics = toyGraph.createGraphHopper(toyGraph.buildShortcutMetrics());
+        CoreTestEdgeFilter avoidEdges = new CoreTestEdgeFilter();
+        avoidEdges.add(7);
+        avoidEdges.add(11);
+        for (EdgeFilter edgeFilter : new EdgeFilter[]{null, avoidEdges}) {
+            MatrixResult expected = computeDijkstra(toyGraph.getStorage(), edgeFilter, createLocations(NODES), createLocations(NODES));
+            MatrixResult unpacked = computeCore(coreGraph, edgeFilter, createLocations(NODES), createLocations(NODES));
+            MatrixResult carried = computeCore(ghWithMetrics, coreGraph, edgeFilter, createLocations(NODES), createLocations(NODES));
+            assertSameTables(expected, unpacked);
+            assertSameTables(expected, carried);
+        }
+    }
+}
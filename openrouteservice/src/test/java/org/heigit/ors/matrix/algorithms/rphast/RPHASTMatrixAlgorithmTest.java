@@ -0,0 +1,164 @@
+package org.heigit.ors.matrix.algorithms.rphast;
+
+import com.graphhopper.routing.ch.PreparationWeighting;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import org.heigit.ors.matrix.MatrixLocations;
+import org.heigit.ors.matrix.MatrixMetricsType;
+import org.heigit.ors.matrix.MatrixRequest;
+import org.heigit.ors.matrix.MatrixResult;
+import org.heigit.ors.matrix.MultiTreeMetricsExtractor;
+import org.heigit.ors.matrix.algorithms.ToyMatrixGraph;
+import org.heigit.ors.routing.algorithms.RPHASTAlgorithm;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.UNREACHABLE_NODE;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.assertSameTables;
+import static org.heigit.ors.matrix.algorithms.ToyMatrixGraph.createLocations;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class RPHASTMatrixAlgorithmTest {
+    private ToyMatrixGraph toyGraph;
+    private CHGraph chGraph;
+    private ORSGraphHopper gh;
+
+    @Before
+    public void setUp() {
+        toyGraph = new ToyMatrixGraph();
+        chGraph = toyGraph.contract(new CoreTestEdgeFilter());
+        gh = toyGraph.createGraphHopper(null);
+    }
+
+    private MatrixResult compute(Graph graph, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        return compute(gh, graph, sources, destinations);
+    }
+
+    private MatrixResult compute(ORSGraphHopper graphHopper, Graph graph, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        RPHASTMatrixAlgorithm algorithm = new RPHASTMatrixAlgorithm();
+        algorithm.init(toyGraph.createRequest(), graphHopper, graph, toyGraph.getEncoder(), toyGraph.getWeighting());
+        return algorithm.compute(sources, destinations, ToyMatrixGraph.METRICS);
+    }
+
+    /**
+     * The matrix as computed with the trees of {@link RPHASTAlgorithm}, before the searches kept their state in a
+     * {@link org.heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPState}.
+     */
+    private MatrixResult computeWithTrees(Graph graph, MatrixLocations srcData, MatrixLocations dstData) throws Exception {
+        MatrixRequest req = toyGraph.createRequest();
+        Weighting prepareWeighting = new PreparationWeighting(toyGraph.getWeighting());
+        RPHASTAlgorithm algorithm = new RPHASTAlgorithm(graph, prepareWeighting, TraversalMode.NODE_BASED);
+        MultiTreeMetricsExtractor extractor = new MultiTreeMetricsExtractor(req.getMetrics(), graph, toyGraph.getEncoder(),
+                toyGraph.getWeighting(), req.getUnits());
+
+        int[] srcIds = getValidNodeIds(srcData);
+        int[] destIds = getValidNodeIds(dstData);
+        algorithm.prepare(srcIds, destIds);
+        MultiTreeSPEntry[] destTrees = algorithm.calcPaths(srcIds, destIds);
+
+        MultiTreeSPEntry[] originalDestTrees = new MultiTreeSPEntry[dstData.size()];
+        for (int i = 0, j = 0; i < dstData.size(); i++) {
+            if (dstData.getNodeId(i) != -1)
+                originalDestTrees[i] = destTrees[j++];
+        }
+
+        int tableSize = srcData.size() * dstData.size();
+        float[] times = new float[tableSize];
+        float[] distances = new float[tableSize];
+        float[] weights = new float[tableSize];
+        extractor.calcValues(originalDestTrees, srcData, dstData, times, distances, weights);
+
+        MatrixResult result = new MatrixResult(srcData.getLocations(), dstData.getLocations());
+        result.setTable(MatrixMetricsType.DURATION, times);
+        result.setTable(MatrixMetricsType.DISTANCE, distances);
+        result.setTable(MatrixMetricsType.WEIGHT, weights);
+        return result;
+    }
+
+    private int[] getValidNodeIds(MatrixLocations locations) {
+        int count = 0;
+        for (int node : locations.getNodeIds()) {
+            if (node != -1)
+                count++;
+        }
+        int[] res = new int[count];
+        count = 0;
+        for (int node : locations.getNodeIds()) {
+            if (node != -1)
+                res[count++] = node;
+        }
+        return res;
+    }
+
+    private void assertSameAsTrees(Graph graph, MatrixLocations sources, MatrixLocations destinations) throws Exception {
+        assertSameTables(computeWithTrees(graph, sources, destinations), compute(graph, sources, destinations));
+    }
+
+    @Test
+    public void testSameAsTrees() throws Exception {
+        int[] nodes = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        assertSameAsTrees(chGraph, createLocations(nodes), createLocations(nodes));
+        assertSameAsTrees(chGraph, createLocations(1), createLocations(nodes));
+        assertSameAsTrees(chGraph, createLocations(nodes), createLocations(5));
+        assertSameAsTrees(chGraph, createLocations(2, 7, 4), createLocations(6, 3, 1, 8));
+    }
+
+    @Test
+    public void testDuplicateAndInvalidLocations() throws Exception {
+        assertSameAsTrees(chGraph, createLocations(2, 5, 2, -1, 7), createLocations(7, -1, 3, 3, 0, 7));
+        assertSameAsTrees(chGraph, createLocations(4, 4, 4), createLocations(1, 1));
+    }
+
+    @Test
+    public void testUnreachableNodes() throws Exception {
+        assertSameAsTrees(chGraph, createLocations(0, 5, 8), createLocations(UNREACHABLE_NODE, 3, 10));
+        assertSameAsTrees(chGraph, createLocations(UNREACHABLE_NODE, 6, 10), createLocations(1, 10, 7, UNREACHABLE_NODE));
+
+        MatrixResult result = compute(chGraph, createLocations(0, 5), createLocations(UNREACHABLE_NODE, 10, 4));
+        float[] weights = result.getTable(MatrixMetricsType.WEIGHT);
+        for (int i : new int[]{0, 1, 3, 4})
+            assertEquals(-1, weights[i], 0);
+        assertNotEquals(-1, weights[2], 0);
+        assertNotEquals(-1, weights[5], 0);
+
+        // the only edge of the other component is the 14th edge of the graph
+        result = compute(chGraph, createLocations(UNREACHABLE_NODE, 6), createLocations(10));
+        assertEquals(1000 + 0.01 * (1 << 13), result.getTable(MatrixMetricsType.WEIGHT)[0], 1e-2);
+    }
+
+    @Test
+    public void testVirtualNodes() throws Exception {
+        Graph queryGraph = toyGraph.createQueryGraph(chGraph, 3, 9, 12);
+        int nodes = chGraph.getNodes();
+        int[] locations = {nodes, 2, nodes + 1, 5, nodes + 2, nodes, UNREACHABLE_NODE};
+        assertSameAsTrees(queryGraph, createLocations(locations), createLocations(locations));
+        assertSameAsTrees(queryGraph, createLocations(nodes + 1), createLocations(locations));
+        assertSameAsTrees(queryGraph, createLocations(locations), createLocations(nodes + 2, 0));
+    }
+
+    /**
+     * The durations and distances carried along with the precomputed shortcut metrics have to match those obtained by
+     * unpacking the shortcuts.
+     */
+    @Test
+    public void testShortcutMetrics() throws Exception {
+        ORSGraphHopper ghWithMetrics = toyGraph.createGraphHopper(toyGraph.buildShortcutMetrics());
+        int[] nodes = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        assertSameTables(compute(chGraph, createLocations(nodes), createLocations(nodes)),
+                compute(ghWithMetrics, chGraph, createLocations(nodes), createLocations(nodes)));
+        assertSameTables(compute(chGraph, createLocations(2, 5, 2, -1, 1), createLocations(8, 1, -1, 8, 2)),
+                compute(ghWithMetrics, chGraph, createLocations(2, 5, 2, -1, 1), createLocations(8, 1, -1, 8, 2)));
+
+        Graph queryGraph = toyGraph.createQueryGraph(chGraph, 4, 6, 11);
+        int n = chGraph.getNodes();
+        int[] locations = {n, 1, n + 1, 2, n + 2, 7};
+        assertSameTables(compute(queryGraph, createLocations(locations), createLocations(locations)),
+                compute(ghWithMetrics, queryGraph, createLocations(locations), createLocations(locations)));
+    }
+}
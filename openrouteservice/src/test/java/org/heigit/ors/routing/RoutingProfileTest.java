@@ -0,0 +1,82 @@
+package org.heigit.ors.routing;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import org.heigit.ors.routing.configuration.RouteProfileConfiguration;
+import org.heigit.ors.routing.graphhopper.extensions.ORSGraphHopper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RoutingProfileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ORSGraphHopper createGraphHopper(File location) {
+        EncodingManager encodingManager = EncodingManager.create(new CarFlagEncoder());
+        GraphHopperStorage storage = new GraphBuilder(encodingManager).setLocation(location.getAbsolutePath()).setStore(true).create();
+        storage.getNodeAccess().setNode(0, 49.4, 8.7);
+        storage.flush();
+
+        ORSGraphHopper gh = new ORSGraphHopper();
+        gh.setCHEnabled(false);
+        gh.setCoreEnabled(false);
+        gh.setCoreLMEnabled(false);
+        gh.setGraphHopperLocation(location.getAbsolutePath());
+        gh.setEncodingManager(encodingManager);
+        gh.setGraphHopperStorage(storage);
+        return gh;
+    }
+
+    @Test(timeout = 60000)
+    public void testUpdateWaitsForReleasedGraph() throws Exception {
+        File graphDir = folder.newFolder("graph");
+        File updateDir = folder.newFolder("update");
+        RouteProfileConfiguration rpc = new RouteProfileConfiguration();
+        rpc.setGraphPath(graphDir.getAbsolutePath());
+
+        ORSGraphHopper oldGh = createGraphHopper(graphDir);
+        ORSGraphHopper newGh = createGraphHopper(updateDir);
+        RoutingProfile profile = new RoutingProfile(rpc, oldGh);
+
+        // a running request holding the current graph
+        RoutingProfile.GraphVersion graph = profile.acquireGraph();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> update = executor.submit(() -> {
+                profile.updateGH(newGh);
+                return null;
+            });
+
+            // new requests use the new graph right away, while the old one stays open
+            while (profile.getGraphhopper() != newGh)
+                Thread.sleep(10);
+            Thread.sleep(200);
+            assertFalse(update.isDone());
+            assertFalse(oldGh.getGraphHopperStorage().isClosed());
+
+            RoutingProfile.GraphVersion newGraph = profile.acquireGraph();
+            newGraph.release();
+
+            graph.release();
+            update.get(30, TimeUnit.SECONDS);
+            assertTrue(oldGh.getGraphHopperStorage().isClosed());
+            assertSame(newGh, profile.getGraphhopper());
+            assertTrue(new File(graphDir, "nodes").exists());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
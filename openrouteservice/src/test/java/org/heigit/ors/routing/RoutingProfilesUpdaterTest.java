@@ -0,0 +1,29 @@
+package org.heigit.ors.routing;
+
+import org.heigit.ors.routing.configuration.RouteUpdateConfiguration;
+import org.junit.Test;
+
+public class RoutingProfilesUpdaterTest {
+    private RouteUpdateConfiguration createConfig(String dataSource) {
+        RouteUpdateConfiguration config = new RouteUpdateConfiguration();
+        config.setDataSource(dataSource);
+        config.setWorkingDirectory("update");
+        return config;
+    }
+
+    @Test
+    public void testCompleteFileSource() {
+        new RoutingProfilesUpdater(createConfig("heidelberg.osm.pbf"), null);
+        new RoutingProfilesUpdater(createConfig("https://download.example.org/heidelberg-latest.osm.gz"), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChangeFileSource() {
+        new RoutingProfilesUpdater(createConfig("heidelberg.osc.gz"), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChangeFileUrlSource() {
+        new RoutingProfilesUpdater(createConfig("https://download.example.org/updates/000/001.OSC"), null);
+    }
+}
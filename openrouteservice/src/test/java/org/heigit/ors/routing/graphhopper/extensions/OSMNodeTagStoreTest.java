@@ -0,0 +1,68 @@
+package org.heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.reader.ReaderNode;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OSMNodeTagStoreTest {
+    private final Set<String> tagKeys = new HashSet<>(Arrays.asList("kerb", "kerb:height", "barrier"));
+
+    private ReaderNode createNode(long id, String... tags) {
+        ReaderNode node = new ReaderNode(id, 49.4, 8.7);
+        for (int i = 0; i < tags.length; i += 2)
+            node.setTag(tags[i], tags[i + 1]);
+        return node;
+    }
+
+    @Test
+    public void testStoresOnlyRequestedTags() {
+        OSMNodeTagStore store = new OSMNodeTagStore();
+        assertTrue(store.add(createNode(1, "kerb", "lowered", "highway", "crossing"), tagKeys));
+        assertFalse(store.add(createNode(2, "highway", "traffic_signals"), tagKeys));
+
+        assertEquals(1, store.size());
+        HashMap<String, String> tags = store.get(1);
+        assertEquals(1, tags.size());
+        assertEquals("lowered", tags.get("kerb"));
+        assertNull(store.get(2));
+        assertFalse(store.contains(3));
+    }
+
+    @Test
+    public void testSharedKeysAndValues() {
+        OSMNodeTagStore store = new OSMNodeTagStore();
+        store.add(createNode(10, "kerb", "raised", "kerb:height", "0.1"), tagKeys);
+        store.add(createNode(20, "kerb", "raised"), tagKeys);
+        store.add(createNode(30, "barrier", "gate", "kerb:height", "0.1"), tagKeys);
+
+        assertEquals("0.1", store.get(10).get("kerb:height"));
+        assertEquals("raised", store.get(10).get("kerb"));
+        assertEquals(1, store.get(20).size());
+        assertEquals("gate", store.get(30).get("barrier"));
+        assertEquals("0.1", store.get(30).get("kerb:height"));
+    }
+
+    @Test
+    public void testNodesOutOfOrder() {
+        OSMNodeTagStore store = new OSMNodeTagStore();
+        store.add(createNode(300, "barrier", "bollard"), tagKeys);
+        store.add(createNode(100, "kerb", "flush"), tagKeys);
+        store.add(createNode(200, "kerb", "raised", "barrier", "kerb"), tagKeys);
+
+        assertEquals("flush", store.get(100).get("kerb"));
+        assertEquals("kerb", store.get(200).get("barrier"));
+        assertEquals("bollard", store.get(300).get("barrier"));
+
+        // nodes added after a lookup are found as well
+        store.add(createNode(150, "kerb", "lowered"), tagKeys);
+        assertEquals("lowered", store.get(150).get("kerb"));
+        assertEquals("flush", store.get(100).get("kerb"));
+        assertEquals(4, store.size());
+    }
+}
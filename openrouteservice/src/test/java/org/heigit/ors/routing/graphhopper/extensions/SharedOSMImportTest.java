@@ -0,0 +1,145 @@
+package org.heigit.ors.routing.graphhopper.extensions;
+
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.osm.OSMInput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class SharedOSMImportTest {
+    // more elements than fit into the queue of a participant, so that a participant which neither reads nor leaves
+    // would stop the pass
+    private static final int NODES = 40000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File osmFile;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        osmFile = folder.newFile("test.osm");
+        try (PrintWriter writer = new PrintWriter(osmFile, "UTF-8")) {
+            writer.println("<?xml version='1.0' encoding='UTF-8'?>");
+            writer.println("<osm version=\"0.6\" generator=\"test\">");
+            for (int i = 1; i <= NODES; i++)
+                writer.println("  <node id=\"" + i + "\" lat=\"49.4\" lon=\"8.7\"/>");
+            writer.println("  <way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/><tag k=\"highway\" v=\"primary\"/></way>");
+            writer.println("</osm>");
+        }
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the number of nodes and ways read in the pass
+     */
+    private static int[] readPass(SharedOSMImport.Participant participant) {
+        int[] counts = new int[2];
+        OSMInput input = participant.openInput();
+        ReaderElement item;
+        while ((item = input.getNext()) != null) {
+            if (item.getType() == ReaderElement.NODE)
+                counts[0]++;
+            else if (item.getType() == ReaderElement.WAY)
+                counts[1]++;
+        }
+        return counts;
+    }
+
+    private static void assertCompletePass(int[] counts) {
+        assertEquals(NODES, counts[0]);
+        assertEquals(1, counts[1]);
+    }
+
+    @Test(timeout = 60000)
+    public void testAllParticipantsReadEveryPass() throws Exception {
+        SharedOSMImport sharedImport = new SharedOSMImport(osmFile, 2);
+        List<Future<List<int[]>>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SharedOSMImport.Participant participant = sharedImport.join();
+            futures.add(executor.submit(() -> {
+                List<int[]> passes = new ArrayList<>();
+                passes.add(readPass(participant));
+                passes.add(readPass(participant));
+                participant.leave();
+                return passes;
+            }));
+        }
+
+        for (Future<List<int[]>> future : futures) {
+            List<int[]> passes = future.get();
+            assertEquals(2, passes.size());
+            for (int[] counts : passes)
+                assertCompletePass(counts);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testParticipantLeavingMidPass() throws Exception {
+        SharedOSMImport sharedImport = new SharedOSMImport(osmFile, 2);
+        List<Callable<List<int[]>>> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            SharedOSMImport.Participant participant = sharedImport.join();
+            readers.add(() -> {
+                List<int[]> passes = new ArrayList<>();
+                passes.add(readPass(participant));
+                // the second pass is started without the participant which has left
+                passes.add(readPass(participant));
+                participant.leave();
+                return passes;
+            });
+        }
+        SharedOSMImport.Participant leaving = sharedImport.join();
+        Future<Object> leavingFuture = executor.submit(() -> {
+            assertNotNull(leaving.openInput().getNext());
+            leaving.leave();
+            return null;
+        });
+
+        List<Future<List<int[]>>> futures = new ArrayList<>();
+        for (Callable<List<int[]>> reader : readers)
+            futures.add(executor.submit(reader));
+
+        leavingFuture.get();
+        for (Future<List<int[]>> future : futures) {
+            for (int[] counts : future.get())
+                assertCompletePass(counts);
+        }
+    }
+
+    @Test
+    public void testJoinAfterStart() {
+        SharedOSMImport sharedImport = new SharedOSMImport(osmFile, 2);
+        SharedOSMImport.Participant participant = sharedImport.join();
+        participant.openInput();
+        try {
+            sharedImport.join();
+            fail("Joining a started import must fail");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            participant.leave();
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.graphhopper.routing.weighting.TurnWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import org.heigit.ors.routing.graphhopper.extensions.core.CoreLandmarkStorage;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreNodeIdMap;
 import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
 import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCore;
 import org.heigit.ors.routing.graphhopper.extensions.edgefilters.core.LMEdgeFilterSequence;
@@ -29,7 +30,6 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 
 import static org.junit.Assert.assertEquals;
 
@@ -88,18 +88,8 @@ public class CoreLandmarkStorageTest {
         return g;
     }
 
-    private HashMap<Integer, Integer> createCoreNodeIdMap(CHGraph core) {
-       HashMap<Integer, Integer> coreNodeIdMap = new HashMap<>();
-        int maxNode = core.getNodes();
-        int coreNodeLevel = maxNode + 1;
-        int index = 0;
-        for (int i = 0; i < maxNode; i++){
-            if (core.getLevel(i) < coreNodeLevel)
-                continue;
-            coreNodeIdMap.put(i, index);
-            index++;
-        }
-        return coreNodeIdMap;
+    private CoreNodeIdMap createCoreNodeIdMap(CHGraph core) {
+        return new CoreNodeIdMap(new RAMDirectory(), core, weighting).build();
     }
 
     private CHGraph contractGraph(GraphHopperStorage g, CoreTestEdgeFilter restrictedEdges) {
@@ -147,7 +137,7 @@ public class CoreLandmarkStorageTest {
         restrictedEdges.add(12);
         ghStorage = createMediumGraph();
         CHGraph g = contractGraph(ghStorage, restrictedEdges);
-        HashMap<Integer, Integer> coreNodeIdMap = createCoreNodeIdMap(g);
+        CoreNodeIdMap coreNodeIdMap = createCoreNodeIdMap(g);
 
         CoreLandmarkStorage storage = new CoreLandmarkStorage(dir, ghStorage, coreNodeIdMap, weighting,new LMEdgeFilterSequence(), 2 );
         storage.setMinimumNodes(2);
@@ -180,7 +170,7 @@ public class CoreLandmarkStorageTest {
 
         ghStorage = createMediumGraph();
         CHGraph g = contractGraph(ghStorage, restrictedEdges);
-        HashMap<Integer, Integer> coreNodeIdMap = createCoreNodeIdMap(g);
+        CoreNodeIdMap coreNodeIdMap = createCoreNodeIdMap(g);
 
 
         LMEdgeFilterSequence lmEdgeFilterSequence = new LMEdgeFilterSequence();
@@ -27,6 +27,7 @@ import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Helper;
 import org.heigit.ors.routing.graphhopper.extensions.core.CoreLandmarkStorage;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreNodeIdMap;
 import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
 import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCore;
 import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCoreLandmarks;
@@ -70,18 +71,8 @@ public class PrepareCoreLandmarksTest
         graph = tmp;
     }
 
-    public HashMap<Integer, Integer> createCoreNodeIdMap(CHGraph core) {
-        HashMap<Integer, Integer> coreNodeIdMap = new HashMap<>();
-        int maxNode = core.getNodes();
-        int coreNodeLevel = maxNode + 1;
-        int index = 0;
-        for (int i = 0; i < maxNode; i++){
-            if (core.getLevel(i) < coreNodeLevel)
-                continue;
-            coreNodeIdMap.put(i, index);
-            index++;
-        }
-        return coreNodeIdMap;
+    public CoreNodeIdMap createCoreNodeIdMap(CHGraph core) {
+        return new CoreNodeIdMap(new RAMDirectory(), core, weighting).build();
     }
 
     public CHGraph contractGraph(GraphHopperStorage g, CoreTestEdgeFilter restrictedEdges) {
@@ -112,13 +103,13 @@ public class PrepareCoreLandmarksTest
     }
 
 
-    @Test
-    public void testLandmarkStorageAndRouting() {
-        // create graph with lat,lon
-        // 0  1  2  ...
-        // 15 16 17 ...
+    /**
+     * Creates a grid with lat,lon and random speeds where all edges are restricted, i.e. part of the core
+     * 0  1  2  ...
+     * 15 16 17 ...
+     */
+    private CoreTestEdgeFilter createGrid(int width, int height) {
         Random rand = new Random(0);
-        int width = 15, height = 15;
         CoreTestEdgeFilter restrictedEdges = new CoreTestEdgeFilter();
 
         for (int hIndex = 0; hIndex < height; hIndex++) {
@@ -147,8 +138,14 @@ public class PrepareCoreLandmarksTest
                 }
             }
         }
+        return restrictedEdges;
+    }
+
+    @Test
+    public void testLandmarkStorageAndRouting() {
+        CoreTestEdgeFilter restrictedEdges = createGrid(15, 15);
         CHGraph g = contractGraph(graph, restrictedEdges);
-        HashMap<Integer, Integer> coreNodeIdMap = createCoreNodeIdMap(g);
+        CoreNodeIdMap coreNodeIdMap = createCoreNodeIdMap(g);
         LocationIndex index = new LocationIndexTree(graph, dir);
         index.prepareIndex();
 
@@ -235,6 +232,33 @@ public class PrepareCoreLandmarksTest
         assertEquals(expectedAlgo.getVisitedNodes(), qGraphOneDirAlgo.getVisitedNodes() + 133);
     }
 
+    @Test
+    public void testParallelLandmarkWeights() {
+        CHGraph g = contractGraph(graph, createGrid(15, 15));
+        CoreNodeIdMap coreNodeIdMap = createCoreNodeIdMap(g);
+
+        int lm = 8;
+        CoreLandmarkStorage sequential = new CoreLandmarkStorage(new RAMDirectory(), graph, coreNodeIdMap, weighting, new LMEdgeFilterSequence(), lm);
+        sequential.setMinimumNodes(2);
+        sequential.createLandmarks();
+
+        CoreLandmarkStorage parallel = new CoreLandmarkStorage(new RAMDirectory(), graph, coreNodeIdMap, weighting, new LMEdgeFilterSequence(), lm);
+        parallel.setMinimumNodes(2);
+        parallel.setLandmarkThreads(4);
+        parallel.createLandmarks();
+
+        assertEquals(sequential.getSubnetworksWithLandmarks(), parallel.getSubnetworksWithLandmarks());
+        assertEquals(Arrays.toString(sequential.getLandmarks(1)), Arrays.toString(parallel.getLandmarks(1)));
+        for (int node = 0; node < graph.getNodes(); node++) {
+            if (coreNodeIdMap.get(node) == CoreNodeIdMap.NOT_IN_CORE)
+                continue;
+            for (int lmIdx = 0; lmIdx < lm; lmIdx++) {
+                assertEquals(sequential.getFromWeight(lmIdx, node), parallel.getFromWeight(lmIdx, node));
+                assertEquals(sequential.getToWeight(lmIdx, node), parallel.getToWeight(lmIdx, node));
+            }
+        }
+    }
+
     @Test
     public void testStoreAndLoad() {
         CoreTestEdgeFilter restrictedEdges = new CoreTestEdgeFilter();
@@ -243,12 +267,14 @@ public class PrepareCoreLandmarksTest
         restrictedEdges.add(0);
         restrictedEdges.add(1);
         CHGraph g = contractGraph(graph, restrictedEdges);
-        HashMap<Integer, Integer> coreNodeIdMap = createCoreNodeIdMap(g);
         String fileStr = "./target/tmp-lm";
         Helper.removeDir(new File(fileStr));
 
         Directory dir = new RAMDirectory(fileStr, true).create();
         Weighting weighting = new FastestWeighting(encoder);
+        CoreNodeIdMap coreNodeIdMap = new CoreNodeIdMap(dir, g, weighting).build();
+        coreNodeIdMap.flush();
+        int coreNodes = coreNodeIdMap.getCoreNodes();
         PrepareCoreLandmarks plm = new PrepareCoreLandmarks(dir, graph, coreNodeIdMap, weighting, new LMEdgeFilterSequence(), 2, 2);
         plm.setMinimumNodes(2);
         plm.doWork();
@@ -261,6 +287,9 @@ public class PrepareCoreLandmarksTest
         assertEquals(4791, Math.round(plm.getLandmarkStorage().getFromWeight(0, 1) * expectedFactor));
 
         dir = new RAMDirectory(fileStr, true);
+        coreNodeIdMap = new CoreNodeIdMap(dir, g, weighting);
+        assertTrue(coreNodeIdMap.loadExisting());
+        assertEquals(coreNodes, coreNodeIdMap.getCoreNodes());
         plm = new PrepareCoreLandmarks(dir, graph, coreNodeIdMap, weighting, new LMEdgeFilterSequence(), 2, 2);
         assertTrue(plm.loadExisting());
         assertEquals(expectedFactor, plm.getLandmarkStorage().getFactor(), 1e-6);
@@ -1,10 +1,15 @@
 package org.heigit.ors.routing.graphhopper.extensions.edgefilters;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.GraphExtension;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -15,6 +20,7 @@ import org.heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactor
 import org.heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -51,4 +57,44 @@ public class AvoidAreasEdgeFilterTest {
         assertFalse(filter.accept(iter1));
         assertTrue(filter.accept(iter2));
     }
+
+    @Test
+    public void TestAvoidPolygonsWithLocationIndex() {
+        NodeAccess nodeAccess = _graphStorage.getNodeAccess();
+        nodeAccess.setNode(0, 0, 0);
+        nodeAccess.setNode(1, 10, 0);
+        nodeAccess.setNode(2, -10, 0);
+        nodeAccess.setNode(3, 5.4, 0.5);
+        nodeAccess.setNode(4, 5.4, 3);
+        nodeAccess.setNode(5, 20, 20);
+        nodeAccess.setNode(6, 21, 20);
+        // crosses the polygon without a node inside of it
+        EdgeIteratorState iter1 = _graphStorage.edge(0, 1, 100, true);
+        EdgeIteratorState iter2 = _graphStorage.edge(0, 2, 200, true);
+        // starts inside of the polygon
+        EdgeIteratorState iter3 = _graphStorage.edge(3, 4, 100, true);
+        EdgeIteratorState iter4 = _graphStorage.edge(5, 6, 100, true);
+
+        LocationIndex index = new LocationIndexTree(_graphStorage, new RAMDirectory());
+        index.prepareIndex();
+
+        GeometryFactory gf = new GeometryFactory();
+
+        Polygon poly = gf.createPolygon(new Coordinate[]{ new Coordinate(-1,5),
+                new Coordinate(1,5),
+                new Coordinate(1,6),
+                new Coordinate(-1,5)});
+
+        IntHashSet blockedEdges = AvoidAreasEdgeFilter.findBlockedEdges(new Polygon[] {poly}, _graphStorage, index);
+        assertEquals(2, blockedEdges.size());
+
+        // the filters of all searches of a request share the blocked edges
+        for (int i = 0; i < 2; i++) {
+            AvoidAreasEdgeFilter filter = new AvoidAreasEdgeFilter(new Polygon[] {poly}, blockedEdges, _graphStorage.getAllEdges().length());
+            assertFalse(filter.accept(iter1));
+            assertTrue(filter.accept(iter2));
+            assertFalse(filter.accept(iter3));
+            assertTrue(filter.accept(iter4));
+        }
+    }
 }
@@ -107,6 +107,67 @@ public class CountryBordersReaderTest {
         assertEquals("country3", polys[0].getName());
     }
 
+    /**
+     * Test that countries are found both in cells of the lookup grid that are completely inside of a country and in
+     * cells that are crossed by a border
+     */
+    @Test
+    public void TestGetCountryInInteriorAndBorderCells() {
+        // interior cell
+        CountryBordersPolygon[] polys = _reader.getCountry(new Coordinate(0.55, 0.55));
+        assertEquals(1, polys.length);
+        assertEquals("country1", polys[0].getName());
+
+        // border cells
+        polys = _reader.getCountry(new Coordinate(0.99, 0.5));
+        assertEquals(1, polys.length);
+        assertEquals("country1", polys[0].getName());
+        polys = _reader.getCountry(new Coordinate(1.01, 1.5));
+        assertEquals(1, polys.length);
+        assertEquals("country2", polys[0].getName());
+        polys = _reader.getCountry(new Coordinate(-0.49, -0.49));
+        assertEquals(0, polys.length);
+        polys = _reader.getCountry(new Coordinate(-0.51, -0.51));
+        assertEquals(1, polys.length);
+        assertEquals("country3", polys[0].getName());
+
+        // inside of the bounding box, but outside of the polygon
+        polys = _reader.getCountry(new Coordinate(-0.25, -0.25));
+        assertEquals(0, polys.length);
+        polys = _reader.getCandidateCountry(new Coordinate(-0.25, -0.25));
+        assertEquals(1, polys.length);
+
+        // repeated lookups are answered from the cache
+        polys = _reader.getCountry(new Coordinate(0.56, 0.56));
+        assertEquals(1, polys.length);
+        assertEquals("country1", polys[0].getName());
+    }
+
+    /**
+     * Test that hierarchies added after a lookup are taken into account
+     */
+    @Test
+    public void TestGetCountryAfterAddingHierarchy() throws Exception {
+        Coordinate c = new Coordinate(5.5, 5.5);
+        assertEquals(0, _reader.getCountry(c).length);
+        assertEquals(0, _reader.getCandidateCountry(c).length);
+
+        CountryBordersHierarchy hierarchy = new CountryBordersHierarchy();
+        hierarchy.add(new CountryBordersPolygon("country5", gf.createPolygon(new Coordinate[] {
+                new Coordinate(5,6),
+                new Coordinate(6,6),
+                new Coordinate(6,5),
+                new Coordinate(5,5),
+                new Coordinate(5,6)
+        })));
+        _reader.addHierarchy(3l, hierarchy);
+
+        CountryBordersPolygon[] polys = _reader.getCountry(c);
+        assertEquals(1, polys.length);
+        assertEquals("country5", polys[0].getName());
+        assertEquals(1, _reader.getCandidateCountry(c).length);
+    }
+
     /**
      * Test that the correct id is returned for a country of the given local name
      */
@@ -115,6 +176,26 @@ public class CountryBordersReaderTest {
         assertEquals("1", _reader.getId("country1"));
     }
 
+    /**
+     * Test that the numeric id of the country surrounding the given point is returned, and 0 if there is no country
+     * with an id
+     */
+    @Test
+    public void TestGetCountryIdOfCoordinate() {
+        // interior and border cells
+        assertEquals(1, _reader.getCountryId(new Coordinate(0.55, 0.55)));
+        assertEquals(1, _reader.getCountryId(new Coordinate(0.99, 0.5)));
+        // country without id
+        assertEquals(0, _reader.getCountryId(new Coordinate(1.01, 1.5)));
+        // inside of the bounding box, but outside of the polygon
+        assertEquals(0, _reader.getCountryId(new Coordinate(-0.25, -0.25)));
+        assertEquals(0, _reader.getCountryId(new Coordinate(5.5, 5.5)));
+
+        _reader.addId("3", "country3", "country3 English", "CX", "CTX");
+        assertEquals(3, _reader.getCountryId(new Coordinate(-0.51, -0.51)));
+        assertEquals(3, _reader.getCountryId(new Coordinate(-0.9, -0.9)));
+    }
+
     /**
      * Test that the correct English name is returned for a country of the given local name
      */
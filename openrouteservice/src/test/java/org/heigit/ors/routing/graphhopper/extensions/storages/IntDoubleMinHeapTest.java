@@ -0,0 +1,94 @@
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntDoubleMinHeapTest {
+    @Test
+    public void testPollInKeyOrder() {
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(4);
+        heap.push(0, 3.0);
+        heap.push(1, 1.0);
+        heap.push(2, 2.0);
+        heap.push(3, 0.5);
+
+        assertEquals(4, heap.size());
+        assertEquals(0.5, heap.peekKey(), 0);
+        assertEquals(3, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testUpdateKey() {
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(3);
+        heap.push(0, 1.0);
+        heap.push(1, 2.0);
+        heap.push(2, 3.0);
+
+        // decrease and increase keys of elements in the heap
+        heap.push(2, 0.5);
+        heap.push(0, 5.0);
+
+        assertEquals(3, heap.size());
+        assertEquals(2, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void testPushPolledElementAgain() {
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(2);
+        heap.push(0, 1.0);
+        heap.push(1, 2.0);
+        assertEquals(0, heap.poll());
+        assertFalse(heap.contains(0));
+
+        heap.push(0, 3.0);
+        assertTrue(heap.contains(0));
+        assertEquals(1, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void testClearAndGrow() {
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(2);
+        heap.push(0, 1.0);
+        heap.push(1, 2.0);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+
+        heap.ensureCapacity(10);
+        heap.push(9, 1.0);
+        heap.push(0, 2.0);
+        assertEquals(9, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void testRandomKeys() {
+        Random random = new Random(42);
+        int count = 1000;
+        IntDoubleMinHeap heap = new IntDoubleMinHeap(count);
+        for (int i = 0; i < count; i++)
+            heap.push(i, random.nextDouble());
+        for (int i = 0; i < count; i += 3)
+            heap.push(i, random.nextDouble());
+
+        double previous = Double.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            assertTrue(key >= previous);
+            heap.poll();
+            previous = key;
+        }
+    }
+}
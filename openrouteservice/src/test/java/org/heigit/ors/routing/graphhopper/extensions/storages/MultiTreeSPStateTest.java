@@ -0,0 +1,143 @@
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.util.EdgeIterator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MultiTreeSPStateTest {
+    @Test
+    public void testExtendAndRelax() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(2);
+        try {
+            int source = state.addNode(100);
+            assertEquals(source, state.getSlot(100));
+            assertEquals(-1, state.getSlot(101));
+            assertEquals(Double.POSITIVE_INFINITY, state.getWeight(source, 0), 0);
+            assertEquals(EdgeIterator.NO_EDGE, state.getEdge(source, 0));
+
+            state.setWeight(source, 0, 0.0);
+            state.updateTotalWeight(source);
+            assertEquals(0.0, state.getTotalWeight(source), 0);
+
+            // only the tree which has reached the source is extended
+            int slot = state.addNode(101);
+            state.extendFrom(slot, source, 7, 2.5, true);
+            assertEquals(2.5, state.getWeight(slot, 0), 0);
+            assertEquals(7, state.getEdge(slot, 0));
+            assertEquals(source, state.getParent(slot, 0));
+            assertTrue(state.isUpdate(slot, 0));
+            assertEquals(Double.POSITIVE_INFINITY, state.getWeight(slot, 1), 0);
+            assertEquals(-1, state.getParent(slot, 1));
+            assertEquals(2.5, state.getTotalWeight(slot), 0);
+
+            assertFalse(state.relax(slot, 0, source, 8, 3.0));
+            assertTrue(state.relax(slot, 1, source, 8, 4.0));
+            assertEquals(8, state.getEdge(slot, 1));
+            state.updateTotalWeight(slot);
+            assertEquals(6.5, state.getTotalWeight(slot), 0);
+        } finally {
+            state.release();
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(2, true);
+        try {
+            assertTrue(state.hasMetrics());
+            int source = state.addNode(100);
+            state.setWeight(source, 0, 0.0);
+            state.setWeight(source, 1, 0.0);
+
+            int slot = state.addNode(101);
+            state.extendFrom(slot, source, 7, 2.5, 10.0, 100.0, true);
+            assertEquals(10.0, state.getTime(slot, 0), 0);
+            assertEquals(100.0, state.getDistance(slot, 1), 0);
+
+            int next = state.addNode(102);
+            state.extendFrom(next, slot, 8, 1.0, 5.0, 50.0, true);
+            assertEquals(15.0, state.getTime(next, 0), 0);
+            assertEquals(150.0, state.getDistance(next, 0), 0);
+
+            assertTrue(state.relax(next, 1, source, 9, 3.0, 12.0, 120.0));
+            assertEquals(12.0, state.getTime(next, 1), 0);
+            assertEquals(120.0, state.getDistance(next, 1), 0);
+            assertEquals(15.0, state.getTime(next, 0), 0);
+        } finally {
+            state.release();
+        }
+    }
+
+    @Test
+    public void testHeapOrder() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(1);
+        try {
+            for (int node = 0; node < 1000; node++) {
+                int slot = state.addNode(node);
+                state.setWeight(slot, 0, 1000 - node);
+                state.updateTotalWeight(slot);
+                state.push(slot);
+            }
+            assertEquals(999, state.getNode(state.poll()));
+            assertEquals(998, state.getNode(state.poll()));
+        } finally {
+            state.release();
+        }
+    }
+
+    @Test
+    public void testPooling() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(3);
+        state.addNode(5);
+        // a second search of the same thread gets its own state while the first one is in use
+        MultiTreeSPState other = MultiTreeSPState.acquire(3);
+        assertNotSame(state, other);
+        other.release();
+        state.release();
+
+        MultiTreeSPState reused = MultiTreeSPState.acquire(4);
+        assertSame(state, reused);
+        assertEquals(-1, reused.getSlot(5));
+        assertTrue(reused.isHeapEmpty());
+        reused.release();
+    }
+
+    @Test
+    public void testLargeStatesAreNotPooled() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(1);
+        for (int node = 0; node < 300000; node++)
+            state.addNode(node);
+        state.release();
+
+        MultiTreeSPState next = MultiTreeSPState.acquire(1);
+        assertNotSame(state, next);
+        next.release();
+    }
+
+    @Test
+    public void testManyTreesOnPooledState() {
+        MultiTreeSPState state = MultiTreeSPState.acquire(1);
+        for (int node = 0; node < 10000; node++)
+            state.addNode(node);
+        state.release();
+
+        // the slots of the pooled state are not allocated for each of the trees
+        MultiTreeSPState reused = MultiTreeSPState.acquire(10000);
+        try {
+            int slot = reused.addNode(5);
+            assertEquals(Double.POSITIVE_INFINITY, reused.getWeight(slot, 9999), 0);
+        } finally {
+            reused.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooManyTrees() {
+        MultiTreeSPState.acquire(Integer.MAX_VALUE / 100);
+    }
+}
@@ -0,0 +1,112 @@
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.Helper;
+import org.heigit.ors.routing.graphhopper.extensions.core.CoreTestEdgeFilter;
+import org.heigit.ors.routing.graphhopper.extensions.core.PrepareCore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShortcutMetricsStorageTest {
+    private final CarFlagEncoder carEncoder = new CarFlagEncoder();
+    private final EncodingManager encodingManager = EncodingManager.create(carEncoder);
+    private final Weighting weighting = new ShortestWeighting(carEncoder);
+    private GraphHopperStorage ghStorage;
+    private CHGraph chGraph;
+    private File location;
+
+    @Before
+    public void setUp() throws Exception {
+        location = File.createTempFile("shortcut_metrics", "");
+        location.delete();
+
+        //    3---4--5
+        //   /\   |  |
+        //  2--0  6--7
+        //  | / \   /
+        //  |/   \ /
+        //  1-----8
+        ghStorage = new GraphBuilder(encodingManager).setCHProfiles(new ArrayList<>()).setCoreGraph(weighting).create();
+        addEdge(0, 1, 1);
+        addEdge(0, 2, 1);
+        addEdge(0, 3, 5);
+        addEdge(0, 8, 1);
+        addEdge(1, 2, 1);
+        addEdge(1, 8, 2);
+        addEdge(2, 3, 2);
+        addEdge(3, 4, 2);
+        addEdge(4, 5, 1);
+        addEdge(4, 6, 1);
+        addEdge(5, 7, 1);
+        addEdge(6, 7, 2);
+        addEdge(7, 8, 3);
+
+        chGraph = ghStorage.getCHGraph(new CHProfile(weighting, TraversalMode.NODE_BASED, TurnWeighting.INFINITE_U_TURN_COSTS, "core"));
+        // no restricted edges, so that all nodes are contracted
+        PrepareCore prepare = new PrepareCore(new GHDirectory("", DAType.RAM_INT), ghStorage, chGraph, new CoreTestEdgeFilter());
+        prepare.doWork();
+    }
+
+    @After
+    public void tearDown() {
+        ghStorage.close();
+        Helper.removeDir(location);
+    }
+
+    private void addEdge(int a, int b, double distance) {
+        // 90 km/h, so that the duration of an edge in seconds is its length in meters divided by 25
+        ghStorage.edge(a, b, distance, true).set(carEncoder.getAverageSpeedEnc(), 90);
+    }
+
+    private void assertShortcutMetrics(ShortcutMetricsStorage storage) {
+        int shortcuts = 0;
+        AllCHEdgesIterator iter = chGraph.getAllEdges();
+        while (iter.next()) {
+            if (!iter.isShortcut()) {
+                assertFalse(storage.isShortcut(iter.getEdge()));
+                continue;
+            }
+            shortcuts++;
+            assertTrue(storage.isShortcut(iter.getEdge()));
+            // the weight of a shortcut of the shortest weighting is the distance of the edges skipped by it
+            assertEquals(iter.getWeight(), storage.getDistance(iter.getEdge()), 1e-3);
+            assertEquals(iter.getWeight() / 25, storage.getTime(iter.getEdge(), iter.getBaseNode(), iter.getAdjNode()), 1e-3);
+            assertEquals(iter.getWeight() / 25, storage.getTime(iter.getEdge(), iter.getAdjNode(), iter.getBaseNode()), 1e-3);
+        }
+        assertTrue(shortcuts > 0);
+    }
+
+    @Test
+    public void testBuild() {
+        ShortcutMetricsStorage storage = new ShortcutMetricsStorage(new RAMDirectory(), chGraph, "core").build();
+        assertShortcutMetrics(storage);
+    }
+
+    @Test
+    public void testLoadExisting() {
+        ShortcutMetricsStorage storage = new ShortcutMetricsStorage(new RAMDirectory(location.getAbsolutePath(), true), chGraph, "core");
+        assertFalse(storage.loadExisting());
+        storage.build();
+        storage.flush();
+        storage.close();
+
+        ShortcutMetricsStorage loaded = new ShortcutMetricsStorage(new RAMDirectory(location.getAbsolutePath(), true), chGraph, "core");
+        assertTrue(loaded.loadExisting());
+        assertShortcutMetrics(loaded);
+        loaded.close();
+    }
+}
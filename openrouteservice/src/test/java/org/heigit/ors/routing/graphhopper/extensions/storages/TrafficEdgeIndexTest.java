@@ -0,0 +1,55 @@
+package org.heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TrafficEdgeIndexTest {
+    private TrafficEdgeIndex createIndex() {
+        HashMap<Integer, Long> tmcEdges = new HashMap<>();
+        tmcEdges.put(7, 12345L);
+        tmcEdges.put(3, 1L << 40);
+        tmcEdges.put(11, 99L);
+
+        HashMap<Long, ArrayList<Integer>> osmId2EdgeIds = new HashMap<>();
+        osmId2EdgeIds.put(5000000000L, new ArrayList<>(Arrays.asList(3, 4)));
+        osmId2EdgeIds.put(42L, new ArrayList<>(Arrays.asList(7)));
+        osmId2EdgeIds.put(100L, new ArrayList<>(Arrays.asList(11, 9, 10)));
+
+        return new TrafficEdgeIndex(new RAMDirectory()).build(tmcEdges, osmId2EdgeIds);
+    }
+
+    @Test
+    public void testEdgeIds() {
+        TrafficEdgeIndex index = createIndex();
+        assertEquals(3, index.getOsmIdCount());
+        assertArrayEquals(new int[]{7}, index.getEdgeIds(42));
+        assertArrayEquals(new int[]{11, 9, 10}, index.getEdgeIds(100));
+        assertArrayEquals(new int[]{3, 4}, index.getEdgeIds(5000000000L));
+        assertArrayEquals(new int[0], index.getEdgeIds(43));
+        assertArrayEquals(new int[0], index.getEdgeIds(-1));
+    }
+
+    @Test
+    public void testTmcCodes() {
+        TrafficEdgeIndex index = createIndex();
+        assertEquals(3, index.getTmcEdgeCount());
+        assertEquals(1L << 40, index.getTmcCode(3));
+        assertEquals(12345L, index.getTmcCode(7));
+        assertEquals(99L, index.getTmcCode(11));
+        assertEquals(-1, index.getTmcCode(8));
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        TrafficEdgeIndex index = new TrafficEdgeIndex(new RAMDirectory()).build(new HashMap<>(), new HashMap<>());
+        assertArrayEquals(new int[0], index.getEdgeIds(42));
+        assertEquals(-1, index.getTmcCode(0));
+    }
+}
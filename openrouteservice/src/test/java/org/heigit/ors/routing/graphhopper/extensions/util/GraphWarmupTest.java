@@ -0,0 +1,43 @@
+package org.heigit.ors.routing.graphhopper.extensions.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+
+public class GraphWarmupTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void createFile(File file, long length) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    @Test
+    public void testReadsAllFiles() throws Exception {
+        File graphDir = folder.newFolder("graph");
+        createFile(new File(graphDir, "nodes"), 1000);
+        createFile(new File(graphDir, "edges"), 0);
+        // spans two of the ranges which are read by different threads
+        createFile(new File(graphDir, "geometry"), (64L << 20) + 12345);
+        // subdirectories are not read
+        File subDir = new File(graphDir, "sub");
+        subDir.mkdir();
+        createFile(new File(subDir, "other"), 5000);
+
+        assertEquals(1000 + (64L << 20) + 12345, GraphWarmup.warmup(graphDir, 4));
+        assertEquals(1000 + (64L << 20) + 12345, GraphWarmup.warmup(graphDir, 1));
+    }
+
+    @Test
+    public void testEmptyAndMissingDirectories() throws Exception {
+        assertEquals(0, GraphWarmup.warmup(folder.newFolder("empty"), 2));
+        assertEquals(0, GraphWarmup.warmup(new File(folder.getRoot(), "missing"), 2));
+    }
+}
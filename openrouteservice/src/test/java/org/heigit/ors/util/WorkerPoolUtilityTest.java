@@ -0,0 +1,61 @@
+package org.heigit.ors.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class WorkerPoolUtilityTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private List<Callable<Integer>> createTasks(int count) {
+        List<Callable<Integer>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int value = i;
+            tasks.add(() -> {
+                // let the earlier tasks finish last
+                Thread.sleep(count - value);
+                return value;
+            });
+        }
+        return tasks;
+    }
+
+    @Test
+    public void testResultsInTaskOrder() throws Exception {
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), WorkerPoolUtility.invokeAll(executor, createTasks(8)));
+    }
+
+    @Test
+    public void testWithoutExecutor() throws Exception {
+        assertEquals(Arrays.asList(0, 1, 2), WorkerPoolUtility.invokeAll(null, createTasks(3)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTaskExceptionIsRethrown() throws Exception {
+        List<Callable<Integer>> tasks = createTasks(3);
+        tasks.add(() -> {
+            throw new IOException("failed");
+        });
+        WorkerPoolUtility.invokeAll(executor, tasks);
+    }
+}